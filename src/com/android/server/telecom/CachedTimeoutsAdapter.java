@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.DeviceConfig;
+import android.provider.Settings;
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Timeouts.Adapter} which serves the timeouts from a {@link Timeouts.Snapshot} rather
+ * than reading the settings provider and {@link DeviceConfig} on every call.
+ * <p>
+ * The snapshot is loaded once when created, and replaced on a background thread whenever one of
+ * the Telecom timeout settings or the {@link DeviceConfig} namespaces the timeouts are read from
+ * change.  Reads never block, and are safe from any thread.  The {@link ContentResolver} passed
+ * to the getters is ignored; the values are those of the resolver given on creation.
+ */
+public class CachedTimeoutsAdapter extends Timeouts.Adapter {
+    private static final String TAG = CachedTimeoutsAdapter.class.getSimpleName();
+
+    private final ContentResolver mContentResolver;
+    private volatile Timeouts.Snapshot mSnapshot;
+    private final AtomicLong mReloads = new AtomicLong(0);
+
+    /**
+     * Creates the adapter and starts listening for changes to the timeouts.
+     */
+    public CachedTimeoutsAdapter(Context context) {
+        this(context.getContentResolver());
+        HandlerThread handlerThread = new HandlerThread(TAG);
+        handlerThread.start();
+        Handler handler = handlerThread.getThreadHandler();
+        mContentResolver.registerContentObserver(Settings.Secure.CONTENT_URI,
+                true /* notifyForDescendants */, new ContentObserver(handler) {
+                    @Override
+                    public void onChange(boolean selfChange, Uri uri) {
+                        onSettingChanged(uri);
+                    }
+                });
+        DeviceConfig.OnPropertiesChangedListener listener = properties -> reload();
+        DeviceConfig.addOnPropertiesChangedListener(DeviceConfig.NAMESPACE_TELEPHONY,
+                handler::post, listener);
+        DeviceConfig.addOnPropertiesChangedListener(DeviceConfig.NAMESPACE_PRIVACY,
+                handler::post, listener);
+    }
+
+    /**
+     * Creates the adapter without listening for changes; see {@link #reload()}.
+     */
+    @VisibleForTesting
+    public CachedTimeoutsAdapter(ContentResolver contentResolver) {
+        mContentResolver = contentResolver;
+        mSnapshot = new Timeouts.Snapshot(contentResolver);
+    }
+
+    /**
+     * Reloads the snapshot if a Telecom timeout setting changed.
+     * @param uri The changed setting, or {@code null} if unknown.
+     */
+    @VisibleForTesting
+    public void onSettingChanged(Uri uri) {
+        String name = uri == null ? null : uri.getLastPathSegment();
+        if (name == null || name.startsWith(Timeouts.PREFIX)) {
+            reload();
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the current values.
+     */
+    @VisibleForTesting
+    public void reload() {
+        mSnapshot = new Timeouts.Snapshot(mContentResolver);
+        mReloads.incrementAndGet();
+        Log.i(TAG, "reload: timeouts reloaded");
+    }
+
+    @VisibleForTesting
+    public long getReloadCount() {
+        return mReloads.get();
+    }
+
+    @Override
+    public long getCallScreeningTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.callScreeningTimeoutMillis;
+    }
+
+    @Override
+    public long getCallBindBluetoothInCallServicesDelay(ContentResolver cr) {
+        return mSnapshot.callBindBluetoothInCallServicesDelay;
+    }
+
+    @Override
+    public long getCallRemoveUnbindInCallServicesDelay(ContentResolver cr) {
+        return mSnapshot.callRemoveUnbindInCallServicesDelay;
+    }
+
+    @Override
+    public long getRetryBluetoothConnectAudioBackoffMillis(ContentResolver cr) {
+        return mSnapshot.retryBluetoothConnectAudioBackoffMillis;
+    }
+
+    @Override
+    public long getBluetoothPendingTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.bluetoothPendingTimeoutMillis;
+    }
+
+    @Override
+    public long getEmergencyCallbackWindowMillis(ContentResolver cr) {
+        return mSnapshot.emergencyCallbackWindowMillis;
+    }
+
+    @Override
+    public long getEmergencyCallTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.emergencyCallTimeoutMillis;
+    }
+
+    @Override
+    public long getEmergencyCallTimeoutRadioOffMillis(ContentResolver cr) {
+        return mSnapshot.emergencyCallTimeoutRadioOffMillis;
+    }
+
+    @Override
+    public long getUserDefinedCallRedirectionTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.userDefinedCallRedirectionTimeoutMillis;
+    }
+
+    @Override
+    public long getCarrierCallRedirectionTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.carrierCallRedirectionTimeoutMillis;
+    }
+
+    @Override
+    public long getPhoneAccountSuggestionServiceTimeout(ContentResolver cr) {
+        return mSnapshot.phoneAccountSuggestionServiceTimeout;
+    }
+
+    @Override
+    public long getCallRecordingToneRepeatIntervalMillis(ContentResolver cr) {
+        return mSnapshot.callRecordingToneRepeatIntervalMillis;
+    }
+
+    @Override
+    public long getCallDiagnosticServiceTimeoutMillis(ContentResolver cr) {
+        return mSnapshot.callDiagnosticServiceTimeoutMillis;
+    }
+
+    @Override
+    public long getCallStartAppOpDebounceIntervalMillis() {
+        return mSnapshot.callStartAppOpDebounceIntervalMillis;
+    }
+
+    @Override
+    public long getVoipCallTransitoryStateTimeoutMillis() {
+        return mSnapshot.voipCallTransitoryStateTimeoutMillis;
+    }
+
+    @Override
+    public long getVoipEmergencyCallTransitoryStateTimeoutMillis() {
+        return mSnapshot.voipEmergencyCallTransitoryStateTimeoutMillis;
+    }
+
+    @Override
+    public long getNonVoipCallTransitoryStateTimeoutMillis() {
+        return mSnapshot.nonVoipCallTransitoryStateTimeoutMillis;
+    }
+
+    @Override
+    public long getNonVoipEmergencyCallTransitoryStateTimeoutMillis() {
+        return mSnapshot.nonVoipEmergencyCallTransitoryStateTimeoutMillis;
+    }
+
+    @Override
+    public long getVoipCallIntermediateStateTimeoutMillis() {
+        return mSnapshot.voipCallIntermediateStateTimeoutMillis;
+    }
+
+    @Override
+    public long getVoipEmergencyCallIntermediateStateTimeoutMillis() {
+        return mSnapshot.voipEmergencyCallIntermediateStateTimeoutMillis;
+    }
+
+    @Override
+    public long getNonVoipCallIntermediateStateTimeoutMillis() {
+        return mSnapshot.nonVoipCallIntermediateStateTimeoutMillis;
+    }
+
+    @Override
+    public long getNonVoipEmergencyCallIntermediateStateTimeoutMillis() {
+        return mSnapshot.nonVoipEmergencyCallIntermediateStateTimeoutMillis;
+    }
+
+    @Override
+    public long getEmergencyCallTimeBeforeUserDisconnectThresholdMillis() {
+        return mSnapshot.emergencyCallTimeBeforeUserDisconnectThresholdMillis;
+    }
+
+    @Override
+    public long getEmergencyCallActiveTimeThresholdMillis() {
+        return mSnapshot.emergencyCallActiveTimeThresholdMillis;
+    }
+
+    @Override
+    public int getDaysBackToSearchEmergencyDiagnosticEntries() {
+        return mSnapshot.daysBackToSearchEmergencyDiagnosticEntries;
+    }
+
+    @Override
+    public long getNewOutgoingCallCancelMillis(ContentResolver cr) {
+        return mSnapshot.newOutgoingCallCancelMillis;
+    }
+
+    @Override
+    public long getMaxNewOutgoingCallCancelMillis(ContentResolver cr) {
+        return mSnapshot.maxNewOutgoingCallCancelMillis;
+    }
+
+    @Override
+    public long getDelayBetweenDtmfTonesMillis(ContentResolver cr) {
+        return mSnapshot.delayBetweenDtmfTonesMillis;
+    }
+
+    @Override
+    public void dump(IndentingPrintWriter pw, ContentResolver cr) {
+        pw.println("CachedTimeoutsAdapter: reloads=" + mReloads.get());
+        mSnapshot.dump(pw);
+    }
+}
@@ -71,6 +71,7 @@ import android.telephony.TelephonyManager;
 import android.telephony.emergency.EmergencyNumber;
 import android.telephony.ims.ImsReasonInfo;
 import android.text.TextUtils;
+import android.util.IndentingPrintWriter;
 import android.widget.Toast;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -97,9 +98,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -163,6 +162,20 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         return mCallStateListeners.remove(newListener);
     }
 
+    // The kinds of events a Listener can be informed of; see addListener(Listener, int...).
+    /** Calls succeeding or failing, post-dial, handover, streaming and cancellation. */
+    public static final int LISTENER_EVENT_STATE = 0;
+    /** Changes to the handle, caller info, phone accounts, capabilities, video state, etc. */
+    public static final int LISTENER_EVENT_DETAILS = 1;
+    /** Extras being changed or removed. */
+    public static final int LISTENER_EVENT_EXTRAS = 2;
+    /** Changes to the conference the call is part of, or to its children. */
+    public static final int LISTENER_EVENT_CONFERENCE = 3;
+    /** Connection events, hold and switch failures, call quality reports, D2D messages and RTT. */
+    public static final int LISTENER_EVENT_CONNECTION_EVENTS = 4;
+    private static final String[] LISTENER_EVENT_NAMES = {
+            "state", "details", "extras", "conference", "connectionEvents" };
+
     /**
      * Listener for events on the call.
      */
@@ -536,14 +549,9 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
      */
     private Intent mOriginalCallIntent = null;
 
-    /** Set of listeners on this call.
-     *
-     * ConcurrentHashMap constructor params: 8 is initial table size, 0.9f is
-     * load factor before resizing, 1 means we only expect a single thread to
-     * access the map so make only a single shard
-     */
-    private final Set<Listener> mListeners = Collections.newSetFromMap(
-            new ConcurrentHashMap<Listener, Boolean>(8, 0.9f, 1));
+    /** Set of listeners on this call. */
+    private final ListenerRegistry<Listener> mListeners =
+            new ListenerRegistry<>("Call listeners", LISTENER_EVENT_NAMES);
 
     private CreateConnectionProcessor mCreateConnectionProcessor;
 
@@ -589,6 +597,15 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     private boolean mIsVoipAudioMode;
     private StatusHints mStatusHints;
     private Bundle mExtras;
+
+    /**
+     * Incremented whenever the extras, child calls or conferenceable calls of this call change,
+     * so that {@link ParcelableCallUtils} knows when to rebuild the parts of a
+     * {@link android.telecom.ParcelableCall} it derives from them.
+     */
+    private int mParcelGeneration = 0;
+    private final ParcelableCallUtils.ParcelCache mParcelCache =
+            new ParcelableCallUtils.ParcelCache();
     private final ConnectionServiceRepository mRepository;
     private final Context mContext;
     private final CallsManager mCallsManager;
@@ -1077,12 +1094,29 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         mListeners.add(listener);
     }
 
+    /**
+     * Adds a listener which is only informed of some kinds of events.
+     * @param listener The listener.
+     * @param events The {@code LISTENER_EVENT_*} kinds of events to inform the listener of.
+     */
+    public void addListener(Listener listener, int... events) {
+        mListeners.add(listener, ListenerRegistry.eventMask(events));
+    }
+
     public void removeListener(Listener listener) {
         if (listener != null) {
             mListeners.remove(listener);
         }
     }
 
+    /**
+     * Dumps the listeners of the call and the time they spent handling its events.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dumpListeners(IndentingPrintWriter pw) {
+        mListeners.dump(pw);
+    }
+
     public void initAnalytics() {
         initAnalytics(null, null);
     }
@@ -1535,9 +1569,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
     void setRingbackRequested(boolean ringbackRequested) {
         mRingbackRequested = ringbackRequested;
-        for (Listener l : mListeners) {
-            l.onRingbackRequested(this, mRingbackRequested);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onRingbackRequested(
+                this, mRingbackRequested));
     }
 
     public boolean isRingbackRequested() {
@@ -1629,8 +1662,9 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     public void setCallerNumberVerificationStatus(
             @Connection.VerificationStatus int callerNumberVerificationStatus) {
         mCallerNumberVerificationStatus = callerNumberVerificationStatus;
-        mListeners.forEach(l -> l.onCallerNumberVerificationStatusChanged(this,
-                callerNumberVerificationStatus));
+        mListeners.dispatch(LISTENER_EVENT_DETAILS,
+                l -> l.onCallerNumberVerificationStatusChanged(this,
+                        callerNumberVerificationStatus));
     }
 
     public @Connection.VerificationStatus int getCallerNumberVerificationStatus() {
@@ -1687,9 +1721,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             } else {
                 Log.i(this, "skip incoming caller info lookup");
             }
-            for (Listener l : mListeners) {
-                l.onHandleChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onHandleChanged(this));
         }
     }
 
@@ -1728,9 +1760,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                 presentation != mCallerDisplayNamePresentation) {
             mCallerDisplayName = callerDisplayName;
             mCallerDisplayNamePresentation = presentation;
-            for (Listener l : mListeners) {
-                l.onCallerDisplayNameChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onCallerDisplayNameChanged(this));
         }
     }
 
@@ -1865,9 +1895,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     public void setConnectionManagerPhoneAccount(PhoneAccountHandle accountHandle) {
         if (!Objects.equals(mConnectionManagerPhoneAccountHandle, accountHandle)) {
             mConnectionManagerPhoneAccountHandle = accountHandle;
-            for (Listener l : mListeners) {
-                l.onConnectionManagerPhoneAccountChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS,
+                    l -> l.onConnectionManagerPhoneAccountChanged(this));
         }
         checkIfRttCapable();
     }
@@ -1924,9 +1953,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                 mCallsManager.getEmergencyCallHelper().setLastOutgoingEmergencyCallPAH(
                         accountHandle);
             }
-            for (Listener l : mListeners) {
-                l.onTargetPhoneAccountChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onTargetPhoneAccountChanged(this));
             configureCallAttributes();
         }
         checkIfVideoCapable();
@@ -2384,9 +2411,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         if (forceUpdate || mConnectionCapabilities != connectionCapabilities) {
             int previousCapabilities = mConnectionCapabilities;
             mConnectionCapabilities = connectionCapabilities;
-            for (Listener l : mListeners) {
-                l.onConnectionCapabilitiesChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onConnectionCapabilitiesChanged(
+                    this));
 
             int strippedCaps = getConnectionCapabilities();
             int xorCaps = previousCapabilities ^ strippedCaps;
@@ -2463,9 +2489,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             mWasHighDefAudio = (connectionProperties & Connection.PROPERTY_HIGH_DEF_AUDIO) ==
                     Connection.PROPERTY_HIGH_DEF_AUDIO;
             mWasWifi = (connectionProperties & Connection.PROPERTY_WIFI) > 0;
-            for (Listener l : mListeners) {
-                l.onConnectionPropertiesChanged(this, didRttChange);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onConnectionPropertiesChanged(
+                    this, didRttChange));
 
             boolean wasExternal = (previousProperties & Connection.PROPERTY_IS_EXTERNAL_CALL)
                     == Connection.PROPERTY_IS_EXTERNAL_CALL;
@@ -2481,9 +2506,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                     boolean isInEmergencyCall = mCallsManager.isInEmergencyCall();
                     setIsPullExternalCallSupported(!isInEmergencyCall);
                 }
-                for (Listener l : mListeners) {
-                    l.onExternalCallChanged(this, isExternal);
-                }
+                mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onExternalCallChanged(
+                        this, isExternal));
             }
 
             boolean wasDowngradedConference =
@@ -2670,7 +2694,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             return;
         }
         mCreateConnectionProcessor = new CreateConnectionProcessor(this, mRepository, this,
-                phoneAccountRegistrar, mCallsManager, mContext, mFlags, new Timeouts.Adapter());
+                phoneAccountRegistrar, mCallsManager, mContext, mFlags,
+                mCallsManager.getTimeoutsAdapter());
         mCreateConnectionProcessor.process();
     }
 
@@ -2695,15 +2720,11 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             case CALL_DIRECTION_INCOMING:
                 // Listeners (just CallsManager for now) will be responsible for checking whether
                 // the call should be blocked.
-                for (Listener l : mListeners) {
-                    l.onSuccessfulIncomingCall(this);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onSuccessfulIncomingCall(this));
                 break;
             case CALL_DIRECTION_OUTGOING:
-                for (Listener l : mListeners) {
-                    l.onSuccessfulOutgoingCall(this,
-                            getStateFromConnectionState(conference.getState()));
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onSuccessfulOutgoingCall(
+                        this, getStateFromConnectionState(conference.getState())));
                 break;
         }
     }
@@ -2733,6 +2754,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         for (String id : connection.getConferenceableConnectionIds()) {
             mConferenceableCalls.add(idMapper.getCall(id));
         }
+        mParcelGeneration++;
 
         switch (mCallDirection) {
             case CALL_DIRECTION_INCOMING:
@@ -2740,21 +2762,15 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
                 // Listeners (just CallsManager for now) will be responsible for checking whether
                 // the call should be blocked.
-                for (Listener l : mListeners) {
-                    l.onSuccessfulIncomingCall(this);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onSuccessfulIncomingCall(this));
                 break;
             case CALL_DIRECTION_OUTGOING:
-                for (Listener l : mListeners) {
-                    l.onSuccessfulOutgoingCall(this,
-                            getStateFromConnectionState(connection.getState()));
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onSuccessfulOutgoingCall(
+                        this, getStateFromConnectionState(connection.getState())));
                 break;
             case CALL_DIRECTION_UNKNOWN:
-                for (Listener l : mListeners) {
-                    l.onSuccessfulUnknownCall(this, getStateFromConnectionState(connection
-                            .getState()));
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onSuccessfulUnknownCall(
+                        this, getStateFromConnectionState(connection.getState())));
                 break;
         }
     }
@@ -2769,14 +2785,11 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
         switch (mCallDirection) {
             case CALL_DIRECTION_INCOMING:
-                for (Listener listener : mListeners) {
-                    listener.onFailedIncomingCall(this);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onFailedIncomingCall(this));
                 break;
             case CALL_DIRECTION_OUTGOING:
-                for (Listener listener : mListeners) {
-                    listener.onFailedOutgoingCall(this, disconnectCause);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onFailedOutgoingCall(
+                        this, disconnectCause));
                 break;
         }
     }
@@ -2791,19 +2804,14 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
         switch (mCallDirection) {
             case CALL_DIRECTION_INCOMING:
-                for (Listener listener : mListeners) {
-                    listener.onFailedIncomingCall(this);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onFailedIncomingCall(this));
                 break;
             case CALL_DIRECTION_OUTGOING:
-                for (Listener listener : mListeners) {
-                    listener.onFailedOutgoingCall(this, disconnectCause);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onFailedOutgoingCall(
+                        this, disconnectCause));
                 break;
             case CALL_DIRECTION_UNKNOWN:
-                for (Listener listener : mListeners) {
-                    listener.onFailedUnknownCall(this);
-                }
+                mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onFailedUnknownCall(this));
                 break;
         }
     }
@@ -2951,15 +2959,13 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                 // the second call so that in-call only ever sees a single call...eliminating the
                 // jank altogether. The app will also be able to set the timeout via an extra on
                 // the ordered broadcast.
-                for (Listener listener : mListeners) {
-                    if (listener.onCanceledViaNewOutgoingCallBroadcast(
-                            this, disconnectionTimeout)) {
-                        // The first listener to handle this wins. A return value of true means that
-                        // the listener will handle the disconnection process later and so we
-                        // should not continue it here.
-                        setLocallyDisconnecting(false);
-                        return;
-                    }
+                // The first listener to handle this wins. A return value of true means that
+                // the listener will handle the disconnection process later and so we
+                // should not continue it here.
+                if (mListeners.dispatchUntilHandled(LISTENER_EVENT_STATE,
+                        l -> l.onCanceledViaNewOutgoingCallBroadcast(this, disconnectionTimeout))) {
+                    setLocallyDisconnecting(false);
+                    return;
                 }
             }
 
@@ -3351,6 +3357,22 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         return mExtras;
     }
 
+    /**
+     * @return A number which changes whenever the extras, child calls or conferenceable calls of
+     * this call change.
+     */
+    int getParcelGeneration() {
+        return mParcelGeneration;
+    }
+
+    /**
+     * @return The parts of this call's {@link android.telecom.ParcelableCall} which
+     * {@link ParcelableCallUtils} reuses until {@link #getParcelGeneration()} changes.
+     */
+    ParcelableCallUtils.ParcelCache getParcelCache() {
+        return mParcelCache;
+    }
+
     /**
      * Adds extras to the extras bundle associated with this {@link Call}, as made by a
      * {@link ConnectionService} or other non {@link android.telecom.InCallService} source.
@@ -3398,10 +3420,10 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             mExtras = new Bundle();
         }
         mExtras.putAll(extras);
+        mParcelGeneration++;
 
-        for (Listener l : mListeners) {
-            l.onExtrasChanged(this, source, extras, requestingPackageName);
-        }
+        mListeners.dispatch(LISTENER_EVENT_EXTRAS, l -> l.onExtrasChanged(
+                this, source, extras, requestingPackageName));
 
         // If mExtra shows that the call using Volte, record it with mWasVolte
         if (mExtras.containsKey(TelecomManager.EXTRA_CALL_NETWORK_TYPE) &&
@@ -3442,6 +3464,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         if (mExtras.containsKey(TelecomManager.EXTRA_DO_NOT_LOG_CALL)) {
             if (source != SOURCE_CONNECTION_SERVICE || !mIsModifyStatePermissionGranted) {
                 mExtras.remove(TelecomManager.EXTRA_DO_NOT_LOG_CALL);
+                mParcelGeneration++;
             }
         }
 
@@ -3486,10 +3509,9 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         for (String key : keys) {
             mExtras.remove(key);
         }
+        mParcelGeneration++;
 
-        for (Listener l : mListeners) {
-            l.onExtrasRemoved(this, source, keys);
-        }
+        mListeners.dispatch(LISTENER_EVENT_EXTRAS, l -> l.onExtrasRemoved(this, source, keys));
 
         // If the change originated from an InCallService, notify the connection service.
         if (source == SOURCE_INCALL_SERVICE) {
@@ -3537,15 +3559,11 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     }
 
     void onPostDialWait(String remaining) {
-        for (Listener l : mListeners) {
-            l.onPostDialWait(this, remaining);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onPostDialWait(this, remaining));
     }
 
     void onPostDialChar(char nextChar) {
-        for (Listener l : mListeners) {
-            l.onPostDialChar(this, nextChar);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onPostDialChar(this, nextChar));
     }
 
     void postDialContinue(boolean proceed) {
@@ -3617,9 +3635,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                     mConferenceLevelActiveCall = null;
                     break;
             }
-            for (Listener l : mListeners) {
-                l.onCdmaConferenceSwap(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onCdmaConferenceSwap(this));
         }
     }
 
@@ -3732,9 +3748,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
      */
     void notifyBluetoothCallQualityReport(@NonNull BluetoothCallQualityReport report) {
         Log.addEvent(this, LogUtils.Events.BT_QUALITY_REPORT, "choppy=" + report.isChoppyVoice());
-        for (Listener l : mListeners) {
-            l.onBluetoothCallQualityReport(this, report);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onBluetoothCallQualityReport(
+                this, report));
     }
 
     /**
@@ -3769,9 +3784,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
      */
     void notifyParentChanged(Call parentCall) {
         Log.addEvent(this, LogUtils.Events.SET_PARENT, parentCall);
-        for (Listener l : mListeners) {
-            l.onParentChanged(this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onParentChanged(this));
     }
 
     /**
@@ -3813,6 +3826,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     void setConferenceableCalls(List<Call> conferenceableCalls) {
         mConferenceableCalls.clear();
         mConferenceableCalls.addAll(conferenceableCalls);
+        mParcelGeneration++;
         String confCallIds = "";
         if (!conferenceableCalls.isEmpty()) {
             confCallIds = conferenceableCalls.stream()
@@ -3821,9 +3835,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         }
         Log.addEvent(this, LogUtils.Events.CONF_CALLS_CHANGED, confCallIds);
 
-        for (Listener l : mListeners) {
-            l.onConferenceableCallsChanged(this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onConferenceableCallsChanged(this));
     }
 
     @VisibleForTesting
@@ -3848,6 +3860,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             // See definition of mConferenceLevelActiveCall for more detail.
             mConferenceLevelActiveCall = call;
             mChildCalls.add(call);
+            mParcelGeneration++;
 
             // When adding a child, we will potentially adjust the various times from the calls
             // based on the children being added.  This ensures the parent of the conference has a
@@ -3856,9 +3869,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
             Log.addEvent(this, LogUtils.Events.ADD_CHILD, call);
 
-            for (Listener l : mListeners) {
-                l.onChildrenChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onChildrenChanged(this));
         }
     }
 
@@ -3888,10 +3899,9 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
     private void removeChildCall(Call call) {
         if (mChildCalls.remove(call)) {
+            mParcelGeneration++;
             Log.addEvent(this, LogUtils.Events.REMOVE_CHILD, call);
-            for (Listener l : mListeners) {
-                l.onChildrenChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onChildrenChanged(this));
         }
     }
 
@@ -4039,9 +4049,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
         if (mCallerInfo.getContactDisplayPhotoUri() == null || mCallerInfo.cachedPhotoIcon != null
             || mCallerInfo.cachedPhoto != null || contactNameChanged) {
-            for (Listener l : mListeners) {
-                l.onCallerInfoChanged(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onCallerInfoChanged(this));
         }
     }
 
@@ -4062,9 +4070,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                             if (result.length > 0) {
                                 Log.d(this, "maybeLoadCannedSmsResponses: got %s", result[0]);
                                 mCannedSmsResponses = result[0];
-                                for (Listener l : mListeners) {
-                                    l.onCannedSmsResponsesLoaded(Call.this);
-                                }
+                                mListeners.dispatch(LISTENER_EVENT_DETAILS,
+                                        l -> l.onCannedSmsResponsesLoaded(Call.this));
                             }
                         }
 
@@ -4144,9 +4151,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     public void onRttConnectionFailure(int reason) {
         Log.i(this, "Got RTT initiation failure with reason %d", reason);
         Log.addEvent(this, LogUtils.Events.ON_RTT_FAILED, "reason="  + reason);
-        for (Listener l : mListeners) {
-            l.onRttInitiationFailure(this, reason);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onRttInitiationFailure(
+                this, reason));
     }
 
     public void onRemoteRttRequest() {
@@ -4157,9 +4163,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         }
 
         mPendingRttRequestId = mCallsManager.getNextRttRequestId();
-        for (Listener l : mListeners) {
-            l.onRemoteRttRequest(this, mPendingRttRequestId);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onRemoteRttRequest(
+                this, mPendingRttRequestId));
     }
 
     public void handleRttRequestResponse(int id, boolean accept) {
@@ -4240,9 +4245,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             }
         }
 
-        for (Listener l : mListeners) {
-            l.onVideoCallProviderChanged(Call.this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onVideoCallProviderChanged(Call.this));
     }
 
     /**
@@ -4319,9 +4322,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                 Log.addEvent(this, LogUtils.Events.VIDEO_STATE_CHANGED,
                         VideoProfile.videoStateToString(videoState));
             }
-            for (Listener l : mListeners) {
-                l.onVideoStateChanged(this, previousVideoState, mVideoState);
-            }
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onVideoStateChanged(
+                    this, previousVideoState, mVideoState));
         }
 
         if (mFlags.transactionalVideoState() && mIsTransactionalCall) {
@@ -4356,9 +4358,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             Log.addEvent(this, LogUtils.Events.SET_VOIP_MODE, audioModeIsVoip ? "Y" : "N");
         }
         mIsVoipAudioMode = audioModeIsVoip;
-        for (Listener l : mListeners) {
-            l.onIsVoipAudioModeChanged(this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onIsVoipAudioModeChanged(this));
     }
 
     public StatusHints getStatusHints() {
@@ -4367,9 +4367,7 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
 
     public void setStatusHints(StatusHints statusHints) {
         mStatusHints = statusHints;
-        for (Listener l : mListeners) {
-            l.onStatusHintsChanged(this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onStatusHintsChanged(this));
     }
 
     public boolean isUnknown() {
@@ -4515,9 +4513,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
     public void onConnectionEvent(String event, Bundle extras) {
         if (mIsTransactionalCall) {
             // send the Event directly to the ICS via the InCallController listener
-            for (Listener l : mListeners) {
-                l.onConnectionEvent(this, event, extras);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onConnectionEvent(
+                    this, event, extras));
             // Don't run the below block since it applies to Calls that are attached to a
             // ConnectionService
             return;
@@ -4531,27 +4528,17 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             Log.addEvent(this, LogUtils.Events.REMOTELY_HELD);
             // Inform listeners of the fact that a call hold tone was received.  This will trigger
             // the CallAudioManager to play a tone via the InCallTonePlayer.
-            for (Listener l : mListeners) {
-                l.onHoldToneRequested(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onHoldToneRequested(this));
         } else if (Connection.EVENT_ON_HOLD_TONE_END.equals(event)) {
             mIsRemotelyHeld = false;
             Log.addEvent(this, LogUtils.Events.REMOTELY_UNHELD);
-            for (Listener l : mListeners) {
-                l.onHoldToneRequested(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onHoldToneRequested(this));
         } else if (Connection.EVENT_CALL_HOLD_FAILED.equals(event)) {
-            for (Listener l : mListeners) {
-                l.onCallHoldFailed(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onCallHoldFailed(this));
         } else if (Connection.EVENT_CALL_SWITCH_FAILED.equals(event)) {
-            for (Listener l : mListeners) {
-                l.onCallSwitchFailed(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onCallSwitchFailed(this));
         } else if (Connection.EVENT_CALL_RESUME_FAILED.equals(event)) {
-            for (Listener l : mListeners) {
-                l.onCallResumeFailed(this);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onCallResumeFailed(this));
         } else if (Connection.EVENT_DEVICE_TO_DEVICE_MESSAGE.equals(event)
                 && extras != null && extras.containsKey(
                 Connection.EXTRA_DEVICE_TO_DEVICE_MESSAGE_TYPE)
@@ -4560,15 +4547,13 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             // CallDiagnosticService.
             int messageType = extras.getInt(Connection.EXTRA_DEVICE_TO_DEVICE_MESSAGE_TYPE);
             int messageValue = extras.getInt(Connection.EXTRA_DEVICE_TO_DEVICE_MESSAGE_VALUE);
-            for (Listener l : mListeners) {
-                l.onReceivedDeviceToDeviceMessage(this, messageType, messageValue);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS,
+                    l -> l.onReceivedDeviceToDeviceMessage(this, messageType, messageValue));
         } else if (Connection.EVENT_CALL_QUALITY_REPORT.equals(event)
                 && extras != null && extras.containsKey(Connection.EXTRA_CALL_QUALITY_REPORT)) {
             CallQuality callQuality = extras.getParcelable(Connection.EXTRA_CALL_QUALITY_REPORT);
-            for (Listener l : mListeners) {
-                l.onReceivedCallQualityReport(this, callQuality);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS,
+                    l -> l.onReceivedCallQualityReport(this, callQuality));
         } else {
             if (event.equals(EVENT_DISPLAY_EMERGENCY_MESSAGE) && !isEmergencyCall()) {
                 Log.w(this, "onConnectionEvent: EVENT_DISPLAY_EMERGENCY_MESSAGE is sent "
@@ -4576,9 +4561,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
                 return;
             }
 
-            for (Listener l : mListeners) {
-                l.onConnectionEvent(this, event, extras);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_EVENTS, l -> l.onConnectionEvent(
+                    this, event, extras));
         }
     }
 
@@ -4595,16 +4579,12 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         if (mConnectionService != null) {
             mConnectionService.handoverComplete(this);
         }
-        for (Listener l : mListeners) {
-            l.onHandoverComplete(this);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onHandoverComplete(this));
     }
 
     public void onHandoverFailed(int handoverError) {
         Log.i(this, "onHandoverFailed; callId=%s, handoverError=%d", getId(), handoverError);
-        for (Listener l : mListeners) {
-            l.onHandoverFailed(this, handoverError);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onHandoverFailed(this, handoverError));
     }
 
     public void setOriginalConnectionId(String originalConnectionId) {
@@ -4661,9 +4641,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
      */
     private void requestHandover(PhoneAccountHandle handoverToHandle, int videoState,
                                  Bundle extras, boolean isLegacy) {
-        for (Listener l : mListeners) {
-            l.onHandoverRequested(this, handoverToHandle, videoState, extras, isLegacy);
-        }
+        mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onHandoverRequested(
+                this, handoverToHandle, videoState, extras, isLegacy));
     }
 
     private TelephonyManager getTelephonyManager() {
@@ -4679,9 +4658,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
         Log.addEvent(this, LogUtils.Events.CONF_STATE_CHANGED, "isConference=" + isConference);
         // Ultimately CallsManager needs to know so it can update the "add call" state and inform
         // the UI to update itself.
-        for (Listener l : mListeners) {
-            l.onConferenceStateChanged(this, isConference);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONFERENCE, l -> l.onConferenceStateChanged(
+                this, isConference));
     }
 
     /**
@@ -4695,10 +4673,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             Log.addEvent(this, LogUtils.Events.CALL_DIRECTION_CHANGED, "callDirection="
                     + callDirection);
             mCallDirection = callDirection;
-            for (Listener l : mListeners) {
-                // Update InCallService directly, do not notify CallsManager.
-                l.onCallDirectionChanged(this);
-            }
+            // Update InCallService directly, do not notify CallsManager.
+            mListeners.dispatch(LISTENER_EVENT_DETAILS, l -> l.onCallDirectionChanged(this));
         }
     }
 
@@ -5085,9 +5061,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             }
 
             mIsStreaming = true;
-            for (Listener listener : mListeners) {
-                listener.onCallStreamingStateChanged(this, true /** isStreaming */);
-            }
+            mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onCallStreamingStateChanged(
+                    this, true /** isStreaming */));
         }
     }
 
@@ -5099,9 +5074,8 @@ public class Call implements CreateConnectionResponse, EventManager.Loggable,
             }
             Log.addEvent(this, LogUtils.Events.STOP_STREAMING);
             mIsStreaming = false;
-            for (Listener listener : mListeners) {
-                listener.onCallStreamingStateChanged(this, false /** isStreaming */);
-            }
+            mListeners.dispatch(LISTENER_EVENT_STATE, l -> l.onCallStreamingStateChanged(
+                    this, false /** isStreaming */));
         }
     }
 
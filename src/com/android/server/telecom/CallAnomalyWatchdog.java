@@ -42,9 +42,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -116,8 +114,8 @@ public class CallAnomalyWatchdog extends CallsManagerListenerBase implements Cal
         }
     }
 
-    // Handler for tracking pending timeouts.
-    private final ScheduledExecutorService mScheduledExecutorService;
+    // Shared timer service for tracking pending timeouts.
+    private final TelecomTimerService mTimerService;
     private final TelecomSystem.SyncRoot mLock;
     private final Timeouts.Adapter mTimeoutAdapter;
     private final ClockProxy mClockProxy;
@@ -162,13 +160,13 @@ public class CallAnomalyWatchdog extends CallsManagerListenerBase implements Cal
         mAnomalyReporter = mAnomalyReporterAdapter;
     }
 
-    public CallAnomalyWatchdog(ScheduledExecutorService executorService,
+    public CallAnomalyWatchdog(TelecomTimerService timerService,
             TelecomSystem.SyncRoot lock,
             FeatureFlags featureFlags,
             Timeouts.Adapter timeoutAdapter, ClockProxy clockProxy,
             EmergencyCallDiagnosticLogger emergencyCallDiagnosticLogger,
             TelecomMetricsController metricsController) {
-        mScheduledExecutorService = executorService;
+        mTimerService = timerService;
         mLock = lock;
         mFeatureFlags = featureFlags;
         mTimeoutAdapter = timeoutAdapter;
@@ -184,7 +182,7 @@ public class CallAnomalyWatchdog extends CallsManagerListenerBase implements Cal
     @Override
     public void onStartCreateConnection(Call call) {
         maybeTrackCall(call);
-        call.addListener(this);
+        call.addListener(this, Call.LISTENER_EVENT_STATE);
     }
 
     @Override
@@ -331,8 +329,8 @@ public class CallAnomalyWatchdog extends CallsManagerListenerBase implements Cal
 
             // Post cleanup to the executor service and cache the future, so we can cancel it if
             // needed.
-            ScheduledFuture<?> future = mScheduledExecutorService.schedule(cleanupRunnable,
-                    timeoutMillis, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> future = mTimerService.schedule(this, call, "CAW.cleanup",
+                    cleanupRunnable, timeoutMillis);
             mScheduledFutureMap.put(call, future);
         }
     }
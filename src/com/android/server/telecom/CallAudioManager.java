@@ -191,6 +191,10 @@ public class CallAudioManager extends CallsManagerListenerBase {
             newBinForCall.add(call);
         }
         updateForegroundCall();
+        if (mCalls.isEmpty()) {
+            // Get the tones likely to be played during the calls ready ahead of time.
+            mPlayerFactory.prewarm();
+        }
         mCalls.add(call);
         sendCallStatusToBluetoothStateReceiver();
 
@@ -212,6 +216,9 @@ public class CallAudioManager extends CallsManagerListenerBase {
         sendCallStatusToBluetoothStateReceiver();
 
         onCallLeavingState(call, call.getState());
+        if (mCalls.isEmpty()) {
+            mPlayerFactory.releaseWarmResources();
+        }
     }
 
     private void sendCallStatusToBluetoothStateReceiver() {
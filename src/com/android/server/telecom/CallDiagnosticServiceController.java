@@ -266,7 +266,8 @@ public class CallDiagnosticServiceController extends CallsManagerListenerBase {
         }
         if (mCallIdMapper.getCallId(call) == null) {
             mCallIdMapper.addCall(call);
-            call.addListener(mCallListener);
+            call.addListener(mCallListener, Call.LISTENER_EVENT_DETAILS,
+                    Call.LISTENER_EVENT_EXTRAS, Call.LISTENER_EVENT_CONNECTION_EVENTS);
         }
         if (isConnected()) {
             sendCallToBoundService(call, mCallDiagnosticService);
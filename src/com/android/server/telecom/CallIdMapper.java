@@ -16,22 +16,26 @@
 
 package com.android.server.telecom;
 
-import android.util.ArrayMap;
-
 import com.android.internal.annotations.VisibleForTesting;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 
-/** Utility to map {@link Call} objects to unique IDs. IDs are generated when a call is added. */
+/**
+ * Utility to map {@link Call} objects to unique IDs. IDs are generated when a call is added.
+ * <p>
+ * Every event from a connection service or in-call service resolves a call ID, so both
+ * directions are hashed rather than binary searched.
+ */
 @VisibleForTesting
 public class CallIdMapper {
     /**
-     * A very basic bidirectional map.
+     * A very basic bidirectional map, backed by hash maps.
      */
     static class BiMap<K, V> {
-        private Map<K, V> mPrimaryMap = new ArrayMap<>();
-        private Map<V, K> mSecondaryMap = new ArrayMap<>();
+        private Map<K, V> mPrimaryMap = new HashMap<>();
+        private Map<V, K> mSecondaryMap = new HashMap<>();
 
         public boolean put(K key, V value) {
             if (key == null || value == null || mPrimaryMap.containsKey(key) ||
@@ -93,13 +97,15 @@ public class CallIdMapper {
         mCallInfo = callInfo;
     }
 
-    void replaceCall(Call newCall, Call callToReplace) {
+    @VisibleForTesting
+    public void replaceCall(Call newCall, Call callToReplace) {
         // Use the old call's ID for the new call.
         String callId = getCallId(callToReplace);
         mCalls.put(callId, newCall);
     }
 
-    void addCall(Call call, String id) {
+    @VisibleForTesting
+    public void addCall(Call call, String id) {
         if (call == null) {
             return;
         }
@@ -110,25 +116,29 @@ public class CallIdMapper {
         addCall(call, mCallInfo.getCallId(call));
     }
 
-    void removeCall(Call call) {
+    @VisibleForTesting
+    public void removeCall(Call call) {
         if (call == null) {
             return;
         }
         mCalls.removeValue(call);
     }
 
-    void removeCall(String callId) {
+    @VisibleForTesting
+    public void removeCall(String callId) {
         mCalls.remove(callId);
     }
 
-    String getCallId(Call call) {
+    @VisibleForTesting
+    public String getCallId(Call call) {
         if (call == null || mCalls.getKey(call) == null) {
             return null;
         }
         return mCallInfo.getCallId(call);
     }
 
-    Call getCall(Object objId) {
+    @VisibleForTesting
+    public Call getCall(Object objId) {
         String callId = null;
         if (objId instanceof String) {
             callId = (String) objId;
@@ -137,11 +147,13 @@ public class CallIdMapper {
         return mCalls.getValue(callId);
     }
 
-    Collection<Call> getCalls() {
+    @VisibleForTesting
+    public Collection<Call> getCalls() {
         return mCalls.getValues();
     }
 
-    void clear() {
+    @VisibleForTesting
+    public void clear() {
         mCalls.clear();
     }
 }
@@ -31,7 +31,6 @@ import android.location.Country;
 import android.location.CountryDetector;
 import android.location.Location;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerExecutor;
@@ -51,6 +50,7 @@ import android.telecom.VideoProfile;
 import android.telephony.CarrierConfigManager;
 import android.telephony.PhoneNumberUtils;
 import android.telephony.SubscriptionManager;
+import android.util.IndentingPrintWriter;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -128,6 +128,8 @@ public final class CallLogManager extends CallsManagerListenerBase {
     private String mCurrentCountryIso;
     private HandlerExecutor mCountryCodeExecutor;
     private SensitivePhoneNumbers mSensitivePhoneNumbers;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final CallLogWriter mCallLogWriter;
 
     private final FeatureFlags mFeatureFlags;
 
@@ -143,6 +145,8 @@ public final class CallLogManager extends CallsManagerListenerBase {
         mCountryCodeExecutor = new HandlerExecutor(new Handler(Looper.getMainLooper()));
         mFeatureFlags = featureFlags;
         mSensitivePhoneNumbers = SensitivePhoneNumbers.getInstance();
+        mCallLogWriter = new CallLogWriter(CallLogWriter::addCallIfAvailable,
+                context.getResources().getInteger(R.integer.call_log_write_delay_millis));
     }
 
     @Override
@@ -556,82 +560,43 @@ public final class CallLogManager extends CallsManagerListenerBase {
 
     /**
      * Adds the call defined by the parameters in the provided AddCallArgs to the CallLogProvider
-     * using an AsyncTask to avoid blocking the main thread.
+     * using the {@link CallLogWriter} to avoid blocking the main thread.
      *
      * @param args Prepopulated call details.
-     * @return A handle to the AsyncTask that will add the call to the call log asynchronously.
      */
-    public AsyncTask<AddCallArgs, Void, Uri[]> logCallAsync(AddCallArgs args) {
-        return new LogCallAsyncTask().execute(args);
+    public void logCallAsync(AddCallArgs args) {
+        mCallLogWriter.write(args.context, args.params, args.call.getId(),
+                uri -> onCallLogged(args, uri));
     }
 
     /**
-     * Helper AsyncTask to access the call logs database asynchronously since database operations
-     * can take a long time depending on the system's load. Since it extends AsyncTask, it uses
-     * its own thread pool.
+     * Called on the {@link CallLogWriter} thread once a call was written to the call log, or
+     * could not be written.
      */
-    private class LogCallAsyncTask extends AsyncTask<AddCallArgs, Void, Uri[]> {
-
-        private LogCallCompletedListener[] mListeners;
-
-        @Override
-        protected Uri[] doInBackground(AddCallArgs... callList) {
-            int count = callList.length;
-            Uri[] result = new Uri[count];
-            mListeners = new LogCallCompletedListener[count];
-            for (int i = 0; i < count; i++) {
-                AddCallArgs c = callList[i];
-                mListeners[i] = c.logCallCompletedListener;
-                try {
-                    result[i] = Calls.addCall(c.context, c.params);
-                    Log.i(TAG, "LogCall; logged callId=%s, uri=%s",
-                            c.call.getId(), result[i]);
-                    if (result[i] == null) {
-                        // No call was added or even worse we lost a call in the log.  Trigger an
-                        // anomaly report.  Note: it technically possible that an app modified the
-                        // call log while we were writing to it here; that is pretty unlikely, and
-                        // the goal here is to try and identify potential anomalous conditions with
-                        // logging calls.
-                        mAnomalyReporterAdapter.reportAnomaly(LOG_CALL_FAILED_ANOMALY_ID,
-                                LOG_CALL_FAILED_ANOMALY_DESC);
-                    }
-                } catch (Exception e) {
-                    // This is very rare but may happen in legitimate cases.
-                    // E.g. If the phone is encrypted and thus write request fails, it may cause
-                    // some kind of Exception (right now it is IllegalArgumentException, but this
-                    // might change).
-                    //
-                    // We don't want to crash the whole process just because of that, so just log
-                    // it instead.
-                    Log.e(TAG, e, "LogCall: Exception raised adding callId=%s", c.call.getId());
-                    result[i] = null;
-                    mAnomalyReporterAdapter.reportAnomaly(LOG_CALL_FAILED_ANOMALY_ID,
-                            LOG_CALL_FAILED_ANOMALY_DESC);
-                }
-            }
-            return result;
-        }
-
-        @Override
-        protected void onPostExecute(Uri[] result) {
-            for (int i = 0; i < result.length; i++) {
-                Uri uri = result[i];
-                /*
-                 Performs a simple correctness check to make sure the call was written in the
-                 database.
-                 Typically there is only one result per call so it is easy to identify which one
-                 failed.
-                 */
-                if (uri == null) {
-                    Log.w(TAG, "Failed to write call to the log.");
-                }
-                if (mListeners[i] != null) {
-                    mListeners[i].onLogCompleted(uri);
-                }
-            }
+    private void onCallLogged(AddCallArgs args, @Nullable Uri uri) {
+        Log.i(TAG, "LogCall; logged callId=%s, uri=%s", args.call.getId(), uri);
+        if (uri == null) {
+            // No call was added or even worse we lost a call in the log.  Trigger an anomaly
+            // report.  Note: it technically possible that an app modified the call log while we
+            // were writing to it here; that is pretty unlikely, and the goal here is to try and
+            // identify potential anomalous conditions with logging calls.
+            Log.w(TAG, "Failed to write call to the log.");
+            mAnomalyReporterAdapter.reportAnomaly(LOG_CALL_FAILED_ANOMALY_ID,
+                    LOG_CALL_FAILED_ANOMALY_DESC);
+        }
+        if (args.logCallCompletedListener != null) {
+            mMainHandler.post(() -> args.logCallCompletedListener.onLogCompleted(uri));
         }
     }
 
+    /**
+     * Dumps the state of the call log writer.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        mCallLogWriter.dump(pw);
+    }
+
     private void sendAddCallBroadcast(int callType, long duration) {
         Intent callAddIntent = new Intent(ACTION_CALLS_TABLE_ADD_ENTRY);
         callAddIntent.putExtra(CALL_TYPE, callType);
@@ -0,0 +1,278 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.annotation.Nullable;
+import android.content.ContentProviderClient;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.provider.CallLog;
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes calls to the call log on a dedicated thread.
+ * <p>
+ * Calls are written in the order they were logged, each with its own
+ * {@link CallLog.Calls#addCall}, which also adds the per-user copies of the entry and trims the
+ * call log.  Writes may optionally be delayed, so calls logged close together are written by one
+ * run of the writer thread; this does not save any provider transactions.  A write is retried
+ * with a growing delay, up to {@link #MAX_WRITE_ATTEMPTS} times, only when the call log provider
+ * was found unavailable before anything was inserted; any other failure may have happened after
+ * the row was added, so it is not retried to avoid duplicate entries.
+ * The {@link CallLogManager.LogCallCompletedListener} of each call is invoked on the writer
+ * thread once the call was written or given up on.  The writer thread quits once no writes are
+ * left, and is started again by the next write.
+ */
+public class CallLogWriter {
+    /**
+     * Adds a single call to the call log; exists to aid with testing.
+     */
+    public interface CallLogInserter {
+        /**
+         * @return The URI of the added call, or {@code null} if it wasn't added.
+         */
+        Uri addCall(Context context, CallLog.AddCallParams params);
+    }
+
+    /**
+     * Thrown by a {@link CallLogInserter} which found the call log provider unavailable before it
+     * inserted anything, so the call can be retried without risking a duplicate entry.
+     */
+    public static class CallLogUnavailableException extends RuntimeException {
+        public CallLogUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A call which has not been written to the call log yet.
+     */
+    private static class PendingWrite {
+        public final Context context;
+        public final CallLog.AddCallParams params;
+        public final String callId;
+        @Nullable
+        public final CallLogManager.LogCallCompletedListener listener;
+        public int attempts = 0;
+
+        PendingWrite(Context context, CallLog.AddCallParams params, String callId,
+                @Nullable CallLogManager.LogCallCompletedListener listener) {
+            this.context = context;
+            this.params = params;
+            this.callId = callId;
+            this.listener = listener;
+        }
+    }
+
+    private static final String TAG = CallLogWriter.class.getSimpleName();
+
+    @VisibleForTesting
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    private final CallLogInserter mInserter;
+    private final long mWriteDelayMillis;
+
+    private final Object mLock = new Object();
+    private final List<PendingWrite> mPendingWrites = new ArrayList<>();
+    private boolean mIsFlushScheduled = false;
+    // The handler of the writer thread, or null while there is nothing to write.
+    private Handler mHandler;
+
+    private final AtomicLong mFlushes = new AtomicLong(0);
+    private final AtomicLong mWritten = new AtomicLong(0);
+    private final AtomicLong mRetried = new AtomicLong(0);
+    private final AtomicLong mFailed = new AtomicLong(0);
+
+    /**
+     * @param inserter Adds the calls to the call log.
+     * @param writeDelayMillis How long to wait before writing a call; 0 writes each call as soon
+     * as the writer thread gets to it.
+     */
+    public CallLogWriter(CallLogInserter inserter, long writeDelayMillis) {
+        mInserter = inserter;
+        mWriteDelayMillis = Math.max(0, writeDelayMillis);
+    }
+
+    /**
+     * Queues a call to be written to the call log; may be called from any thread.
+     * @param context The context to write the call with.
+     * @param params The call log entry.
+     * @param callId The ID of the call, for logging.
+     * @param listener Informed of the URI of the entry once written, or {@code null} if it could
+     * not be written.
+     */
+    public void write(Context context, CallLog.AddCallParams params, String callId,
+            @Nullable CallLogManager.LogCallCompletedListener listener) {
+        synchronized (mLock) {
+            mPendingWrites.add(new PendingWrite(context, params, callId, listener));
+            scheduleFlushLocked(mWriteDelayMillis);
+        }
+    }
+
+    /**
+     * Adds a call to the call log with {@link CallLog.Calls#addCall}, unless the call log provider
+     * is unavailable.
+     * @throws CallLogUnavailableException if the call log provider is unavailable.
+     */
+    public static Uri addCallIfAvailable(Context context, CallLog.AddCallParams params) {
+        try (ContentProviderClient client = context.getContentResolver()
+                .acquireUnstableContentProviderClient(CallLog.AUTHORITY)) {
+            if (client == null) {
+                throw new CallLogUnavailableException("call log provider unavailable");
+            }
+        }
+        return CallLog.Calls.addCall(context, params);
+    }
+
+    private void scheduleFlushLocked(long delayMillis) {
+        if (mIsFlushScheduled) {
+            return;
+        }
+        mIsFlushScheduled = true;
+        if (mHandler == null) {
+            HandlerThread handlerThread = new HandlerThread(TAG);
+            handlerThread.start();
+            mHandler = handlerThread.getThreadHandler();
+        }
+        mHandler.postDelayed(this::flush, delayMillis);
+    }
+
+    /**
+     * Writes the queued calls; runs on the writer thread.
+     */
+    private void flush() {
+        List<PendingWrite> pendingWrites;
+        synchronized (mLock) {
+            mIsFlushScheduled = false;
+            pendingWrites = new ArrayList<>(mPendingWrites);
+            mPendingWrites.clear();
+        }
+        if (pendingWrites.isEmpty()) {
+            quitIfIdle();
+            return;
+        }
+        mFlushes.incrementAndGet();
+        Log.i(TAG, "flush: writing %d calls", pendingWrites.size());
+
+        List<PendingWrite> retries = new ArrayList<>();
+        int maxAttempts = 0;
+        for (PendingWrite pendingWrite : pendingWrites) {
+            pendingWrite.attempts++;
+            Uri uri;
+            try {
+                uri = mInserter.addCall(pendingWrite.context, pendingWrite.params);
+            } catch (CallLogUnavailableException e) {
+                if (pendingWrite.attempts < MAX_WRITE_ATTEMPTS) {
+                    Log.w(TAG, "flush: retrying callId=%s after %s", pendingWrite.callId, e);
+                    mRetried.incrementAndGet();
+                    retries.add(pendingWrite);
+                    maxAttempts = Math.max(maxAttempts, pendingWrite.attempts);
+                } else {
+                    Log.e(TAG, e, "flush: giving up on callId=%s", pendingWrite.callId);
+                    complete(pendingWrite, null);
+                }
+                continue;
+            } catch (RuntimeException e) {
+                // This is very rare but may happen in legitimate cases, e.g. if the phone is
+                // encrypted and thus the write request fails.  The row may have been added
+                // before the failure, so retrying could duplicate it.
+                Log.e(TAG, e, "flush: Exception raised adding callId=%s", pendingWrite.callId);
+                complete(pendingWrite, null);
+                continue;
+            }
+            complete(pendingWrite, uri);
+        }
+
+        if (!retries.isEmpty()) {
+            synchronized (mLock) {
+                // Keep the calls being retried ahead of the ones logged since.
+                mPendingWrites.addAll(0, retries);
+                scheduleFlushLocked(RETRY_DELAY_MILLIS * maxAttempts);
+            }
+        }
+        quitIfIdle();
+    }
+
+    /**
+     * Quits the writer thread unless more calls are waiting to be written; runs on the writer
+     * thread.
+     */
+    private void quitIfIdle() {
+        synchronized (mLock) {
+            if (mIsFlushScheduled || mHandler == null) {
+                return;
+            }
+            mHandler.getLooper().quitSafely();
+            mHandler = null;
+        }
+    }
+
+    private void complete(PendingWrite pendingWrite, @Nullable Uri uri) {
+        if (uri != null) {
+            mWritten.incrementAndGet();
+        } else {
+            mFailed.incrementAndGet();
+        }
+        if (pendingWrite.listener != null) {
+            pendingWrite.listener.onLogCompleted(uri);
+        }
+    }
+
+    @VisibleForTesting
+    public long getFlushCount() {
+        return mFlushes.get();
+    }
+
+    @VisibleForTesting
+    public long getRetryCount() {
+        return mRetried.get();
+    }
+
+    @VisibleForTesting
+    public boolean isWriterThreadRunning() {
+        synchronized (mLock) {
+            return mHandler != null;
+        }
+    }
+
+    /**
+     * Dumps the write statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        int pending;
+        synchronized (mLock) {
+            pending = mPendingWrites.size();
+        }
+        pw.println("CallLogWriter: writeDelayMillis=" + mWriteDelayMillis
+                + ", flushes=" + mFlushes.get()
+                + ", written=" + mWritten.get()
+                + ", retried=" + mRetried.get()
+                + ", failed=" + mFailed.get()
+                + ", pending=" + pending);
+    }
+}
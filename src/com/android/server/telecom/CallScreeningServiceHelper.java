@@ -17,6 +17,7 @@
 package com.android.server.telecom;
 
 import android.Manifest;
+import android.annotation.Nullable;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
@@ -71,13 +72,15 @@ public class CallScreeningServiceHelper {
     private final UserHandle mUserHandle;
     private final Context mContext;
     private final AppLabelProxy mAppLabelProxy;
+    private final ServiceComponentRegistry mServiceComponentRegistry;
     private final Session mLoggingSession;
     private CompletableFuture mFuture;
     private String mPackageName;
 
     public CallScreeningServiceHelper(Context context, TelecomSystem.SyncRoot telecomLock,
             String packageName, ParcelableCallUtils.Converter converter,
-            UserHandle userHandle, Call call, AppLabelProxy appLabelProxy) {
+            UserHandle userHandle, Call call, AppLabelProxy appLabelProxy,
+            @Nullable ServiceComponentRegistry serviceComponentRegistry) {
         mContext = context;
         mTelecomLock = telecomLock;
         mParcelableCallUtilsConverter = converter;
@@ -85,6 +88,7 @@ public class CallScreeningServiceHelper {
         mUserHandle = userHandle;
         mPackageName = packageName;
         mAppLabelProxy = appLabelProxy;
+        mServiceComponentRegistry = serviceComponentRegistry;
         mLoggingSession = Log.createSubsession();
     }
 
@@ -160,7 +164,8 @@ public class CallScreeningServiceHelper {
             }
         };
 
-        if (!bindCallScreeningService(mContext, mUserHandle, mPackageName, serviceConnection)) {
+        if (!bindCallScreeningService(mContext, mServiceComponentRegistry, mUserHandle,
+                mPackageName, serviceConnection)) {
             Log.i(this, "bindAndGetCallIdentification - bind failed");
             mFuture.complete(null);
         }
@@ -198,6 +203,24 @@ public class CallScreeningServiceHelper {
      */
     public static boolean bindCallScreeningService(Context context, UserHandle userHandle,
             String packageName, ServiceConnection serviceConnection) {
+        return bindCallScreeningService(context, null /* serviceComponentRegistry */, userHandle,
+                packageName, serviceConnection);
+    }
+
+    /**
+     * Binds to a {@link CallScreeningService}, resolving it through a
+     * {@link ServiceComponentRegistry}.
+     * @param context The current context.
+     * @param serviceComponentRegistry The registry to resolve the service through, or
+     *                                 {@code null} to query the package manager.
+     * @param userHandle User to bind as.
+     * @param packageName Package name of the {@link CallScreeningService}.
+     * @param serviceConnection The {@link ServiceConnection} to be notified of binding.
+     * @return {@code true} if binding succeeds, {@code false} otherwise.
+     */
+    public static boolean bindCallScreeningService(Context context,
+            @Nullable ServiceComponentRegistry serviceComponentRegistry, UserHandle userHandle,
+            String packageName, ServiceConnection serviceConnection) {
         if (TextUtils.isEmpty(packageName)) {
             Log.i(TAG, "PackageName is empty. Not performing call screening.");
             return false;
@@ -205,8 +228,8 @@ public class CallScreeningServiceHelper {
 
         Intent intent = new Intent(CallScreeningService.SERVICE_INTERFACE)
                 .setPackage(packageName);
-        List<ResolveInfo> entries = context.getPackageManager().queryIntentServicesAsUser(
-                intent, 0, userHandle.getIdentifier());
+        List<ResolveInfo> entries = ServiceComponentRegistry.queryIntentServicesAsUser(
+                serviceComponentRegistry, context, intent, 0, userHandle.getIdentifier());
         if (entries.isEmpty()) {
             Log.i(TAG, packageName + " has no call screening service defined.");
             return false;
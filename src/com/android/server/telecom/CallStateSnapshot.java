@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.os.UserHandle;
+import android.telecom.PhoneAccount;
+import android.telephony.TelephonyManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable snapshot of the aggregate call state tracked by {@link CallsManager}.
+ * <p>
+ * {@link CallsManager} publishes a new snapshot whenever a call is added or removed, changes
+ * state, or changes how it is counted (conference parent, external, connection properties). The
+ * read-only state queries in {@link TelecomServiceImpl} are answered from the latest published
+ * snapshot so that they do not have to acquire the Telecom lock.
+ * <p>
+ * Only top-level, non-external calls are counted, which matches
+ * {@link CallsManager#getNumCallsWithState}.
+ */
+public class CallStateSnapshot {
+    /**
+     * The snapshot used before any calls have been tracked.
+     */
+    public static final CallStateSnapshot EMPTY = new CallStateSnapshot(0, new Entry[0],
+            TelephonyManager.CALL_STATE_IDLE, false /* isInEmergencyCall */);
+
+    // One more than the largest CallState value.
+    private static final int NUM_CALL_STATES = CallState.SIMULATED_RINGING + 1;
+
+    /**
+     * The parts of a single call needed to answer a state query.
+     */
+    private static class Entry {
+        final int mState;
+        final boolean mIsSelfManaged;
+        final UserHandle mAssociatedUser;
+        final boolean mIsMultiUser;
+
+        Entry(int state, boolean isSelfManaged, UserHandle associatedUser, boolean isMultiUser) {
+            mState = state;
+            mIsSelfManaged = isSelfManaged;
+            mAssociatedUser = associatedUser;
+            mIsMultiUser = isMultiUser;
+        }
+
+        boolean isVisibleForUser(UserHandle userHandle) {
+            return mIsMultiUser || (mAssociatedUser != null && mAssociatedUser.equals(userHandle));
+        }
+    }
+
+    private final long mVersion;
+    private final Entry[] mEntries;
+    private final int[] mStateCounts = new int[NUM_CALL_STATES];
+    private final int[] mManagedStateCounts = new int[NUM_CALL_STATES];
+    private final int mPhoneCallState;
+    private final boolean mIsInEmergencyCall;
+
+    private CallStateSnapshot(long version, Entry[] entries, int phoneCallState,
+            boolean isInEmergencyCall) {
+        mVersion = version;
+        mEntries = entries;
+        mPhoneCallState = phoneCallState;
+        mIsInEmergencyCall = isInEmergencyCall;
+        for (Entry entry : entries) {
+            if (entry.mState < 0 || entry.mState >= NUM_CALL_STATES) {
+                continue;
+            }
+            mStateCounts[entry.mState]++;
+            if (!entry.mIsSelfManaged) {
+                mManagedStateCounts[entry.mState]++;
+            }
+        }
+    }
+
+    /**
+     * Builds a snapshot of the given calls. Must be called with the Telecom lock held.
+     * @param version The version of the new snapshot.
+     * @param calls The calls tracked by {@link CallsManager}.
+     * @param phoneCallState The {@link TelephonyManager} call state currently broadcast.
+     * @return The new snapshot.
+     */
+    static CallStateSnapshot create(long version, Collection<Call> calls, int phoneCallState) {
+        List<Entry> entries = new ArrayList<>(calls.size());
+        boolean isInEmergencyCall = false;
+        for (Call call : calls) {
+            if ((call.isEmergencyCall() || call.isNetworkIdentifiedEmergencyCall())
+                    && !call.isDisconnected()) {
+                isInEmergencyCall = true;
+            }
+            if (call.getParentCall() != null || call.isExternalCall()) {
+                continue;
+            }
+            PhoneAccount account = call.getPhoneAccountFromHandle();
+            boolean isMultiUser = account != null
+                    && account.hasCapabilities(PhoneAccount.CAPABILITY_MULTI_USER);
+            entries.add(new Entry(call.getState(), call.isSelfManaged(),
+                    call.getAssociatedUser(), isMultiUser));
+        }
+        return new CallStateSnapshot(version, entries.toArray(new Entry[0]), phoneCallState,
+                isInEmergencyCall);
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @param state A {@link CallState}.
+     * @return The number of calls in the given state, regardless of the user they belong to.
+     */
+    public int getNumCallsWithState(int state) {
+        return state >= 0 && state < NUM_CALL_STATES ? mStateCounts[state] : 0;
+    }
+
+    /**
+     * @see CallsManager#hasOngoingCalls(UserHandle, boolean)
+     */
+    public boolean hasOngoingCalls(UserHandle callingUser, boolean hasCrossUserAccess) {
+        return hasCallsWithState(false /* managedOnly */, callingUser, hasCrossUserAccess,
+                CallsManager.ONGOING_CALL_STATES);
+    }
+
+    /**
+     * @see CallsManager#hasOngoingManagedCalls(UserHandle, boolean)
+     */
+    public boolean hasOngoingManagedCalls(UserHandle callingUser, boolean hasCrossUserAccess) {
+        return hasCallsWithState(true /* managedOnly */, callingUser, hasCrossUserAccess,
+                CallsManager.ONGOING_CALL_STATES);
+    }
+
+    /**
+     * @see CallsManager#hasRingingOrSimulatedRingingCall()
+     */
+    public boolean hasRingingOrSimulatedRingingCall() {
+        return mStateCounts[CallState.SIMULATED_RINGING] > 0
+                || mStateCounts[CallState.RINGING] > 0
+                || mStateCounts[CallState.ANSWERED] > 0;
+    }
+
+    /**
+     * @return The {@link TelephonyManager} call state, see {@link CallsManager#getCallState()}.
+     */
+    public int getCallState() {
+        return mPhoneCallState;
+    }
+
+    /**
+     * @see CallsManager#isInEmergencyCall()
+     */
+    public boolean isInEmergencyCall() {
+        return mIsInEmergencyCall;
+    }
+
+    private boolean hasCallsWithState(boolean managedOnly, UserHandle callingUser,
+            boolean hasCrossUserAccess, int... states) {
+        int[] counts = managedOnly ? mManagedStateCounts : mStateCounts;
+        boolean hasAny = false;
+        for (int state : states) {
+            if (counts[state] > 0) {
+                hasAny = true;
+                break;
+            }
+        }
+        if (!hasAny || hasCrossUserAccess) {
+            return hasAny;
+        }
+        // Only need to look at the individual calls when visibility is scoped to a user.
+        for (Entry entry : mEntries) {
+            if (managedOnly && entry.mIsSelfManaged) {
+                continue;
+            }
+            if (!entry.isVisibleForUser(callingUser)) {
+                continue;
+            }
+            for (int state : states) {
+                if (entry.mState == state) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[CallStateSnapshot: version=").append(mVersion)
+                .append(", callState=").append(mPhoneCallState)
+                .append(", isInEmergencyCall=").append(mIsInEmergencyCall)
+                .append(", counts={");
+        for (int state = 0; state < NUM_CALL_STATES; state++) {
+            if (mStateCounts[state] > 0) {
+                sb.append(CallState.toString(state)).append('=').append(mStateCounts[state])
+                        .append(' ');
+            }
+        }
+        sb.append("}]");
+        return sb.toString();
+    }
+}
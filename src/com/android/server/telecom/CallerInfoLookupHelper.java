@@ -17,14 +17,24 @@
 package com.android.server.telecom;
 
 import android.annotation.Nullable;
+import android.app.ActivityManager;
 import android.content.Context;
+import android.database.ContentObserver;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.UserHandle;
+import android.provider.ContactsContract;
 import android.telecom.Log;
 import android.telecom.Logging.Runnable;
 import android.telecom.Logging.Session;
+import android.telecom.PhoneAccount;
+import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
+import android.util.IndentingPrintWriter;
+import android.util.LruCache;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -52,28 +62,100 @@ public class CallerInfoLookupHelper {
         public CallerInfo callerInfo;
         public List<OnQueryCompleteListener> listeners;
         public boolean imageQueryPending = false;
+        // The cache key of the user the query was started for.
+        public final String cacheKey;
 
-        public CallerInfoQueryInfo() {
+        public CallerInfoQueryInfo(String cacheKey) {
             listeners = new LinkedList<>();
+            this.cacheKey = cacheKey;
         }
     }
 
+    /**
+     * A decoded contact photo, see {@link CallerInfo#cachedPhoto} and
+     * {@link CallerInfo#cachedPhotoIcon}.
+     */
+    private static class CachedPhoto {
+        public final Drawable photo;
+        public final Bitmap photoIcon;
+
+        CachedPhoto(Drawable photo, Bitmap photoIcon) {
+            this.photo = photo;
+            this.photoIcon = photoIcon;
+        }
+
+        int getSizeKb() {
+            // Count at least 1KB so that entries without a bitmap are still bounded.
+            return photoIcon != null ? Math.max(1, photoIcon.getAllocationByteCount() / 1024) : 1;
+        }
+    }
+
+    // Default cache sizes when none are configured.
+    private static final int DEFAULT_CALLER_INFO_CACHE_SIZE = 64;
+    private static final int DEFAULT_PHOTO_CACHE_SIZE_KB = 2048;
+
     private final Map<Uri, CallerInfoQueryInfo> mQueryEntries = new HashMap<>();
+    // Completed lookups, keyed by user and normalized number; null if caching is disabled.  The
+    // cached objects are never handed out; listeners get copies, see #copyCallerInfo.
+    private final LruCache<String, CallerInfo> mCallerInfoCache;
+    // Decoded photos of completed lookups, bounded by size in KB; null if caching is disabled.
+    private final LruCache<String, CachedPhoto> mPhotoCache;
+    private long mCacheHits;
+    private long mCacheMisses;
+    private long mCacheInvalidations;
+    // Lookups are made against the contacts of the current user.
+    private int mCurrentUserId = ActivityManager.getCurrentUser();
 
     private final CallerInfoAsyncQueryFactory mCallerInfoAsyncQueryFactory;
     private final ContactsAsyncHelper mContactsAsyncHelper;
     private final Context mContext;
     private final TelecomSystem.SyncRoot mLock;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ContentObserver mContactsObserver = new ContentObserver(mHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            synchronized (mLock) {
+                invalidateCache();
+            }
+        }
+    };
 
     public CallerInfoLookupHelper(Context context,
             CallerInfoAsyncQueryFactory callerInfoAsyncQueryFactory,
             ContactsAsyncHelper contactsAsyncHelper,
             TelecomSystem.SyncRoot lock) {
+        this(context, callerInfoAsyncQueryFactory, contactsAsyncHelper, lock,
+                DEFAULT_CALLER_INFO_CACHE_SIZE, DEFAULT_PHOTO_CACHE_SIZE_KB);
+    }
+
+    /**
+     * @param callerInfoCacheSize The number of completed lookups to cache; {@code 0} disables
+     *                            caching.
+     * @param photoCacheSizeKb The total size of the decoded contact photos to cache.
+     */
+    public CallerInfoLookupHelper(Context context,
+            CallerInfoAsyncQueryFactory callerInfoAsyncQueryFactory,
+            ContactsAsyncHelper contactsAsyncHelper,
+            TelecomSystem.SyncRoot lock, int callerInfoCacheSize, int photoCacheSizeKb) {
         mCallerInfoAsyncQueryFactory = callerInfoAsyncQueryFactory;
         mContactsAsyncHelper = contactsAsyncHelper;
         mContext = context;
         mLock = lock;
+        if (callerInfoCacheSize > 0) {
+            mCallerInfoCache = new LruCache<>(callerInfoCacheSize);
+            mPhotoCache = new LruCache<String, CachedPhoto>(Math.max(1, photoCacheSizeKb)) {
+                @Override
+                protected int sizeOf(String key, CachedPhoto value) {
+                    return value.getSizeKb();
+                }
+            };
+            // Any change to the contacts may change the result of a lookup.
+            mContext.getContentResolver().registerContentObserverAsUser(
+                    ContactsContract.AUTHORITY_URI, true, mContactsObserver, UserHandle.ALL);
+        } else {
+            mCallerInfoCache = null;
+            mPhotoCache = null;
+        }
     }
 
     /**
@@ -151,8 +233,10 @@ public class CallerInfoLookupHelper {
                 }
                 // Since we have a pending query for this handle already, don't re-query it.
                 return;
+            } else if (deliverFromCache(handle, listener)) {
+                return;
             } else {
-                CallerInfoQueryInfo info = new CallerInfoQueryInfo();
+                CallerInfoQueryInfo info = new CallerInfoQueryInfo(getCacheKey(handle));
                 info.listeners.add(listener);
                 mQueryEntries.put(handle, info);
             }
@@ -188,6 +272,9 @@ public class CallerInfoLookupHelper {
                         Log.i(CallerInfoLookupHelper.this, "CI query for handle %s has completed;" +
                                 " notifying all listeners.", Log.piiHandle(handle));
                         CallerInfoQueryInfo info = mQueryEntries.get(handle);
+                        if (mCallerInfoCache != null && ci != null) {
+                            mCallerInfoCache.put(info.cacheKey, copyCallerInfo(ci));
+                        }
                         for (OnQueryCompleteListener l : info.listeners) {
                             l.onCallerInfoQueryComplete(handle, ci);
                         }
@@ -244,6 +331,9 @@ public class CallerInfoLookupHelper {
                         }
                         info.callerInfo.cachedPhoto = photo;
                         info.callerInfo.cachedPhotoIcon = photoIcon;
+                        if (mPhotoCache != null && (photo != null || photoIcon != null)) {
+                            mPhotoCache.put(info.cacheKey, new CachedPhoto(photo, photoIcon));
+                        }
                         for (OnQueryCompleteListener l : info.listeners) {
                             l.onContactPhotoQueryComplete(handle, info.callerInfo);
                         }
@@ -260,6 +350,136 @@ public class CallerInfoLookupHelper {
         };
     }
 
+    /**
+     * Completes a lookup from the cache if the caller info, and its photo if the contact has one,
+     * are cached. Must be called with {@link #mLock} held.
+     * @return {@code true} if the lookup was completed.
+     */
+    private boolean deliverFromCache(Uri handle, OnQueryCompleteListener listener) {
+        if (mCallerInfoCache == null) {
+            return false;
+        }
+        String key = getCacheKey(handle);
+        CallerInfo callerInfo = mCallerInfoCache.get(key);
+        CachedPhoto cachedPhoto = null;
+        if (callerInfo != null && callerInfo.getContactDisplayPhotoUri() != null) {
+            cachedPhoto = mPhotoCache.get(key);
+            if (cachedPhoto == null) {
+                // The photo was evicted; look the contact up again.
+                callerInfo = null;
+            }
+        }
+        if (callerInfo == null) {
+            mCacheMisses++;
+            return false;
+        }
+        mCacheHits++;
+        Log.i(this, "Using cached caller info for handle %s", Log.piiHandle(handle));
+        // The listener may modify its CallerInfo, e.g. a Call drops the photo when destroyed.
+        callerInfo = copyCallerInfo(callerInfo);
+        listener.onCallerInfoQueryComplete(handle, callerInfo);
+        if (cachedPhoto != null) {
+            callerInfo.cachedPhoto = cachedPhoto.photo;
+            callerInfo.cachedPhotoIcon = cachedPhoto.photoIcon;
+            listener.onContactPhotoQueryComplete(handle, callerInfo);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the result of a contacts lookup, without its photo.  The contact id cannot be set on
+     * a {@link CallerInfo}, so a copy refers to its contact by {@link CallerInfo#lookupKey}.
+     */
+    private static CallerInfo copyCallerInfo(CallerInfo other) {
+        CallerInfo callerInfo = new CallerInfo();
+        callerInfo.setName(other.getName());
+        callerInfo.setPhoneNumber(other.getPhoneNumber());
+        callerInfo.normalizedNumber = other.normalizedNumber;
+        callerInfo.geoDescription = other.geoDescription;
+        callerInfo.cnapName = other.cnapName;
+        callerInfo.numberPresentation = other.numberPresentation;
+        callerInfo.namePresentation = other.namePresentation;
+        callerInfo.contactExists = other.contactExists;
+        callerInfo.phoneLabel = other.phoneLabel;
+        callerInfo.numberType = other.numberType;
+        callerInfo.numberLabel = other.numberLabel;
+        callerInfo.photoResource = other.photoResource;
+        callerInfo.needUpdate = other.needUpdate;
+        callerInfo.contactRefUri = other.contactRefUri;
+        callerInfo.lookupKey = other.lookupKey;
+        callerInfo.preferredPhoneAccountComponent = other.preferredPhoneAccountComponent;
+        callerInfo.preferredPhoneAccountId = other.preferredPhoneAccountId;
+        callerInfo.userType = other.userType;
+        callerInfo.SetContactDisplayPhotoUri(other.getContactDisplayPhotoUri());
+        callerInfo.contactRingtoneUri = other.contactRingtoneUri;
+        callerInfo.shouldSendToVoicemail = other.shouldSendToVoicemail;
+        return callerInfo;
+    }
+
+    /**
+     * @return The cache key for a handle looked up for the current user; phone numbers are
+     * normalized so that differently formatted versions of the same number share an entry.
+     */
+    private String getCacheKey(Uri handle) {
+        String number = handle.getSchemeSpecificPart();
+        if (PhoneAccount.SCHEME_TEL.equals(handle.getScheme())) {
+            number = PhoneNumberUtils.normalizeNumber(number);
+        }
+        return mCurrentUserId + "/" + handle.getScheme() + ":" + number;
+    }
+
+    /**
+     * Drops the cached lookups of the previous user, since lookups are made against the contacts
+     * of the current user.
+     * @param userHandle The new current user.
+     */
+    public void onUserSwitch(UserHandle userHandle) {
+        synchronized (mLock) {
+            mCurrentUserId = userHandle.getIdentifier();
+            invalidateCache();
+        }
+    }
+
+    /**
+     * Drops all cached lookups. Must be called with {@link #mLock} held.
+     */
+    @VisibleForTesting
+    public void invalidateCache() {
+        if (mCallerInfoCache == null) {
+            return;
+        }
+        mCacheInvalidations++;
+        mCallerInfoCache.evictAll();
+        mPhotoCache.evictAll();
+    }
+
+    @VisibleForTesting
+    public ContentObserver getContactsObserver() {
+        return mContactsObserver;
+    }
+
+    /**
+     * Dumps the cache statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        synchronized (mLock) {
+            if (mCallerInfoCache == null) {
+                pw.println("CallerInfo cache disabled");
+                return;
+            }
+            long lookups = mCacheHits + mCacheMisses;
+            pw.println("CallerInfo cache: size=" + mCallerInfoCache.size() + "/"
+                    + mCallerInfoCache.maxSize()
+                    + ", hits=" + mCacheHits + ", misses=" + mCacheMisses
+                    + ", hitRate=" + (lookups > 0 ? (100 * mCacheHits / lookups) + "%" : "n/a")
+                    + ", evictions=" + mCallerInfoCache.evictionCount()
+                    + ", invalidations=" + mCacheInvalidations);
+            pw.println("Photo cache: sizeKb=" + mPhotoCache.size() + "/" + mPhotoCache.maxSize()
+                    + ", evictions=" + mPhotoCache.evictionCount());
+        }
+    }
+
     @VisibleForTesting
     public Map<Uri, CallerInfoQueryInfo> getCallerInfoEntries() {
         return mQueryEntries;
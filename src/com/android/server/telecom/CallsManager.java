@@ -165,7 +165,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -174,7 +173,6 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -249,6 +247,44 @@ public class CallsManager extends Call.ListenerBase
         void onSetCamera(Call call, String cameraId);
     }
 
+    // The events of the CallsManagerListener registry, one per callback, so that the time each
+    // listener spends in each callback is recorded separately.
+    static final int LISTENER_EVENT_START_CREATE_CONNECTION = 0;
+    static final int LISTENER_EVENT_CALL_ADDED = 1;
+    static final int LISTENER_EVENT_CREATE_CONNECTION_FAILED = 2;
+    static final int LISTENER_EVENT_CALL_REMOVED = 3;
+    static final int LISTENER_EVENT_CALL_STATE_CHANGED = 4;
+    static final int LISTENER_EVENT_CONNECTION_SERVICE_CHANGED = 5;
+    static final int LISTENER_EVENT_INCOMING_CALL_ANSWERED = 6;
+    static final int LISTENER_EVENT_INCOMING_CALL_REJECTED = 7;
+    static final int LISTENER_EVENT_CALL_AUDIO_STATE_CHANGED = 8;
+    static final int LISTENER_EVENT_CALL_ENDPOINT_CHANGED = 9;
+    static final int LISTENER_EVENT_AVAILABLE_CALL_ENDPOINTS_CHANGED = 10;
+    static final int LISTENER_EVENT_MUTE_STATE_CHANGED = 11;
+    static final int LISTENER_EVENT_RINGBACK_REQUESTED = 12;
+    static final int LISTENER_EVENT_IS_CONFERENCED_CHANGED = 13;
+    static final int LISTENER_EVENT_IS_VOIP_AUDIO_MODE_CHANGED = 14;
+    static final int LISTENER_EVENT_VIDEO_STATE_CHANGED = 15;
+    static final int LISTENER_EVENT_CAN_ADD_CALL_CHANGED = 16;
+    static final int LISTENER_EVENT_SESSION_MODIFY_REQUEST_RECEIVED = 17;
+    static final int LISTENER_EVENT_HOLD_TONE_REQUESTED = 18;
+    static final int LISTENER_EVENT_EXTERNAL_CALL_CHANGED = 19;
+    static final int LISTENER_EVENT_CALL_STREAMING_STATE_CHANGED = 20;
+    static final int LISTENER_EVENT_DISCONNECTED_TONE_PLAYING = 21;
+    static final int LISTENER_EVENT_CONNECTION_TIME_CHANGED = 22;
+    static final int LISTENER_EVENT_CONFERENCE_STATE_CHANGED = 23;
+    static final int LISTENER_EVENT_CDMA_CONFERENCE_SWAP = 24;
+    static final int LISTENER_EVENT_SET_CAMERA = 25;
+    private static final String[] LISTENER_EVENT_NAMES = {
+            "startCreateConnection", "callAdded", "createConnectionFailed", "callRemoved",
+            "callStateChanged", "connectionServiceChanged", "incomingCallAnswered",
+            "incomingCallRejected", "callAudioStateChanged", "callEndpointChanged",
+            "availableCallEndpointsChanged", "muteStateChanged", "ringbackRequested",
+            "isConferencedChanged", "isVoipAudioModeChanged", "videoStateChanged",
+            "canAddCallChanged", "sessionModifyRequestReceived", "holdToneRequested",
+            "externalCallChanged", "callStreamingStateChanged", "disconnectedTonePlaying",
+            "connectionTimeChanged", "conferenceStateChanged", "cdmaConferenceSwap", "setCamera" };
+
     /** Interface used to define the action which is executed delay under some condition. */
     interface PendingAction {
         void performAction();
@@ -485,9 +521,11 @@ public class CallsManager extends Call.ListenerBase
     private final CallRecordingTonePlayer mCallRecordingTonePlayer;
     private RespondViaSmsManager mRespondViaSmsManager;
     private final Ringer mRinger;
+    private final RingtoneFactory mRingtoneFactory;
     private final InCallWakeLockController mInCallWakeLockController;
-    private final CopyOnWriteArrayList<CallsManagerListener> mListeners =
-            new CopyOnWriteArrayList<>();
+    private final ListenerRegistry<CallsManagerListener> mListeners =
+            new ListenerRegistry<>("CallsManager listeners", LISTENER_EVENT_NAMES,
+                    true /* recordHistograms */);
     private final HeadsetMediaButton mHeadsetMediaButton;
     private final WiredHeadsetManager mWiredHeadsetManager;
     private final SystemStateHelper mSystemStateHelper;
@@ -496,6 +534,9 @@ public class CallsManager extends Call.ListenerBase
     private final TtyManager mTtyManager;
     private final ProximitySensorManager mProximitySensorManager;
     private final PhoneStateBroadcaster mPhoneStateBroadcaster;
+    // The latest call state published for lock-free reads; see CallStateSnapshot.
+    private volatile CallStateSnapshot mCallStateSnapshot = CallStateSnapshot.EMPTY;
+    private long mCallStateSnapshotVersion = 0;
     private final CallLogManager mCallLogManager;
     private final Context mContext;
     private final TelecomSystem.SyncRoot mLock;
@@ -505,6 +546,8 @@ public class CallsManager extends Call.ListenerBase
     private IncomingCallNotifier mIncomingCallNotifier;
     private final CallerInfoLookupHelper mCallerInfoLookupHelper;
     private final DefaultDialerCache mDefaultDialerCache;
+    // Null unless service resolution is cached, see cache_service_component_resolution.
+    private final ServiceComponentRegistry mServiceComponentRegistry;
     private final Timeouts.Adapter mTimeoutsAdapter;
     private final PhoneNumberUtilsAdapter mPhoneNumberUtilsAdapter;
     private final ClockProxy mClockProxy;
@@ -523,6 +566,7 @@ public class CallsManager extends Call.ListenerBase
     private final VoipCallMonitorLegacy mVoipCallMonitorLegacy;
     private final CallEndpointController mCallEndpointController;
     private final CallAnomalyWatchdog mCallAnomalyWatchdog;
+    private final TelecomTimerService mTimerService = TelecomTimerService.getInstance();
 
     private final EmergencyCallDiagnosticLogger mEmergencyCallDiagnosticLogger;
     private final CallStreamingController mCallStreamingController;
@@ -564,7 +608,6 @@ public class CallsManager extends Call.ListenerBase
 
     private Runnable mStopTone;
 
-    private LinkedList<HandlerThread> mGraphHandlerThreads;
 
     // An executor that can be used to fire off async tasks that do not block Telecom in any manner.
     private final Executor mAsyncTaskExecutor;
@@ -677,6 +720,9 @@ public class CallsManager extends Call.ListenerBase
         mWiredHeadsetManager = wiredHeadsetManager;
         mSystemStateHelper = systemStateHelper;
         mDefaultDialerCache = defaultDialerCache;
+        mServiceComponentRegistry = mContext.getResources().getBoolean(
+                R.bool.cache_service_component_resolution)
+                ? new ServiceComponentRegistry(mContext, mDefaultDialerCache) : null;
         mBluetoothRouteManager = bluetoothManager;
         mDockManager = new DockManager(context);
         mTimeoutsAdapter = timeoutsAdapter;
@@ -760,7 +806,7 @@ public class CallsManager extends Call.ListenerBase
                 Looper.getMainLooper());
 
         SystemSettingsUtil systemSettingsUtil = new SystemSettingsUtil();
-        RingtoneFactory ringtoneFactory = new RingtoneFactory(this, context, featureFlags);
+        mRingtoneFactory = new RingtoneFactory(this, context, featureFlags);
         SystemVibrator systemVibrator = new SystemVibrator(context);
         mInCallController = inCallControllerFactory.create(context, mLock, this,
                 systemStateHelper, defaultDialerCache, mTimeoutsAdapter,
@@ -769,7 +815,7 @@ public class CallsManager extends Call.ListenerBase
         mCallDiagnosticServiceController = callDiagnosticServiceController;
         mCallDiagnosticServiceController.setInCallTonePlayerFactory(playerFactory);
         mRinger = new Ringer(playerFactory, context, systemSettingsUtil, asyncRingtonePlayer,
-                ringtoneFactory, systemVibrator,
+                mRingtoneFactory, systemVibrator,
                 new Ringer.VibrationEffectProxy(), mInCallController,
                 mContext.getSystemService(NotificationManager.class),
                 accessibilityManagerAdapter, featureFlags, mAnomalyReporter);
@@ -796,7 +842,7 @@ public class CallsManager extends Call.ListenerBase
                 mAnomalyReporter, featureFlags);
         mConnectionServiceRepository =
                 new ConnectionServiceRepository(mPhoneAccountRegistrar, mContext, mLock, this,
-                        featureFlags);
+                        featureFlags, mDefaultDialerCache);
         mInCallWakeLockController = inCallWakeLockControllerFactory.create(context, this);
         mClockProxy = clockProxy;
         mToastFactory = toastFactory;
@@ -826,6 +872,8 @@ public class CallsManager extends Call.ListenerBase
                         mAnomalyReporter, mTimeoutsAdapter, mMetricsController, mMmiUtils,
                         mFeatureFlags), mCallAudioManager, mFeatureFlags);
 
+        mListeners.setSlowDispatchThresholdMillis(mContext.getResources().getInteger(
+                R.integer.slow_listener_dispatch_threshold_millis));
         if (mFeatureFlags.useImprovedListenerOrder()) {
             mListeners.add(mInCallController);
         }
@@ -877,7 +925,6 @@ public class CallsManager extends Call.ListenerBase
         intentFilter.setPriority(IntentFilter.SYSTEM_HIGH_PRIORITY);
         intentFilter.addAction(BlockedNumbersManager.ACTION_BLOCK_SUPPRESSION_STATE_CHANGED);
         context.registerReceiver(mReceiver, intentFilter, Context.RECEIVER_EXPORTED);
-        mGraphHandlerThreads = new LinkedList<>();
 
         mCallAnomalyWatchdog = callAnomalyWatchdog;
         mAsyncTaskExecutor = asyncTaskExecutor;
@@ -935,9 +982,8 @@ public class CallsManager extends Call.ListenerBase
         }
 
         // The call's ConnectionService has been updated.
-        for (CallsManagerListener listener : mListeners) {
-            listener.onConnectionServiceChanged(call, null, call.getConnectionService());
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONNECTION_SERVICE_CHANGED,
+                l -> l.onConnectionServiceChanged(call, null, call.getConnectionService()));
 
         if (mFeatureFlags.fixAudioFlickerForOutgoingCalls()) {
             // Allow the ConnectionService to start the call in the active state. This case is
@@ -1000,14 +1046,28 @@ public class CallsManager extends Call.ListenerBase
             return;
         } else if (performDndFilter && extras.getBoolean(PhoneAccount.EXTRA_SKIP_CALL_FILTERING)) {
             IncomingCallFilterGraph graph = setupDndFilterOnlyGraph(incomingCall);
+            maybePrebindInCallServices(incomingCall);
             graph.performFiltering();
             return;
         }
 
         IncomingCallFilterGraph graph = setUpCallFilterGraph(incomingCall);
+        maybePrebindInCallServices(incomingCall);
         graph.performFiltering();
     }
 
+    /**
+     * Starts binding to the InCallServices while an incoming call is filtered, so that the UI is
+     * ready sooner if the call is allowed.  The call itself is only sent to the services once
+     * {@link #onCallFilteringComplete} adds it.
+     */
+    private void maybePrebindInCallServices(Call incomingCall) {
+        if (mContext.getResources().getBoolean(
+                R.bool.prebind_in_call_services_during_filtering)) {
+            mInCallController.prebindToServices(incomingCall);
+        }
+    }
+
     private IncomingCallFilterGraph setupDndFilterOnlyGraph(Call incomingHfpCall) {
         incomingHfpCall.setIsUsingCallFiltering(true);
         DndCallFilter dndCallFilter = new DndCallFilter(incomingHfpCall, mRinger);
@@ -1015,7 +1075,6 @@ public class CallsManager extends Call.ListenerBase
                 incomingHfpCall,
                 this::onCallFilteringComplete, mContext, mTimeoutsAdapter, mFeatureFlags, mLock);
         graph.addFilter(dndCallFilter);
-        mGraphHandlerThreads.add(graph.getHandlerThread());
         return graph;
     }
 
@@ -1063,7 +1122,6 @@ public class CallsManager extends Call.ListenerBase
         IncomingCallFilterGraph.addEdge(blockCheckerFilter, carrierCallScreeningServiceFilter);
         IncomingCallFilterGraph.addEdge(carrierCallScreeningServiceFilter,
                 callScreeningServiceFilter);
-        mGraphHandlerThreads.add(graph.getHandlerThread());
         return graph;
     }
 
@@ -1088,7 +1146,6 @@ public class CallsManager extends Call.ListenerBase
         // that the connection service disconnected the call before it was even added to Telecom, in
         // which case it makes no sense to set it back to a ringing state.
         Log.i(this, "onCallFilteringComplete");
-        mGraphHandlerThreads.clear();
 
         if (timeout) {
             Log.i(this, "onCallFilteringCompleted: Call filters timeout!");
@@ -1103,6 +1160,7 @@ public class CallsManager extends Call.ListenerBase
             }
         } else {
             Log.i(this, "onCallFilteringCompleted: call already disconnected.");
+            mInCallController.onPrebindingCallFiltered(incomingCall);
             return;
         }
 
@@ -1210,6 +1268,8 @@ public class CallsManager extends Call.ListenerBase
                         new MissedCallNotifier.CallInfo(incomingCall), /* uri= */ null);
             }
         }
+        // Unbinds the InCallServices bound during filtering if the call was not added after all.
+        mInCallController.onPrebindingCallFiltered(incomingCall);
     }
 
     /**
@@ -1265,9 +1325,8 @@ public class CallsManager extends Call.ListenerBase
 
     @Override
     public void onRingbackRequested(Call call, boolean ringback) {
-        for (CallsManagerListener listener : mListeners) {
-            listener.onRingbackRequested(call, ringback);
-        }
+        mListeners.dispatch(LISTENER_EVENT_RINGBACK_REQUESTED,
+                l -> l.onRingbackRequested(call, ringback));
     }
 
     @Override
@@ -1296,7 +1355,8 @@ public class CallsManager extends Call.ListenerBase
                 }
             };
             mHandler.postDelayed(mStopTone.prepare(),
-                    Timeouts.getDelayBetweenDtmfTonesMillis(mContext.getContentResolver()));
+                    mTimeoutsAdapter.getDelayBetweenDtmfTonesMillis(
+                            mContext.getContentResolver()));
         } else if (nextChar == 0 || nextChar == TelecomManager.DTMF_CHARACTER_WAIT ||
                 nextChar == TelecomManager.DTMF_CHARACTER_PAUSE) {
             // Stop the tone if a tone is playing, removing any other stopTone callbacks since
@@ -1316,55 +1376,52 @@ public class CallsManager extends Call.ListenerBase
         if (didRttChange) {
             updateHasActiveRttCall();
         }
+        // Connection properties determine whether a call is a network identified emergency call.
+        publishCallStateSnapshot();
     }
 
     @Override
     public void onParentChanged(Call call) {
         // parent-child relationship affects which call should be foreground, so do an update.
         updateCanAddCall();
-        for (CallsManagerListener listener : mListeners) {
-            listener.onIsConferencedChanged(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_IS_CONFERENCED_CHANGED,
+                l -> l.onIsConferencedChanged(call));
+        publishCallStateSnapshot();
     }
 
     @Override
     public void onChildrenChanged(Call call) {
         // parent-child relationship affects which call should be foreground, so do an update.
         updateCanAddCall();
-        for (CallsManagerListener listener : mListeners) {
-            listener.onIsConferencedChanged(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_IS_CONFERENCED_CHANGED,
+                l -> l.onIsConferencedChanged(call));
+        publishCallStateSnapshot();
     }
 
     @Override
     public void onConferenceStateChanged(Call call, boolean isConference) {
         // Conference changed whether it is treated as a conference or not.
         updateCanAddCall();
-        for (CallsManagerListener listener : mListeners) {
-            listener.onConferenceStateChanged(call, isConference);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CONFERENCE_STATE_CHANGED,
+                l -> l.onConferenceStateChanged(call, isConference));
     }
 
     @Override
     public void onCdmaConferenceSwap(Call call) {
         // SWAP was executed on a CDMA conference
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCdmaConferenceSwap(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CDMA_CONFERENCE_SWAP, l -> l.onCdmaConferenceSwap(call));
     }
 
     @Override
     public void onIsVoipAudioModeChanged(Call call) {
-        for (CallsManagerListener listener : mListeners) {
-            listener.onIsVoipAudioModeChanged(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_IS_VOIP_AUDIO_MODE_CHANGED,
+                l -> l.onIsVoipAudioModeChanged(call));
     }
 
     @Override
     public void onVideoStateChanged(Call call, int previousVideoState, int newVideoState) {
-        for (CallsManagerListener listener : mListeners) {
-            listener.onVideoStateChanged(call, previousVideoState, newVideoState);
-        }
+        mListeners.dispatch(LISTENER_EVENT_VIDEO_STATE_CHANGED,
+                l -> l.onVideoStateChanged(call, previousVideoState, newVideoState));
     }
 
     @Override
@@ -1418,9 +1475,8 @@ public class CallsManager extends Call.ListenerBase
         Log.v(TAG, "onSessionModifyRequestReceived : videoProfile = " + VideoProfile
                 .videoStateToString(videoState));
 
-        for (CallsManagerListener listener : mListeners) {
-            listener.onSessionModifyRequestReceived(call, videoProfile);
-        }
+        mListeners.dispatch(LISTENER_EVENT_SESSION_MODIFY_REQUEST_RECEIVED,
+                l -> l.onSessionModifyRequestReceived(call, videoProfile));
     }
 
     /**
@@ -1430,9 +1486,7 @@ public class CallsManager extends Call.ListenerBase
      */
     @Override
     public void onSetCamera(Call call, String cameraId) {
-        for (CallsManagerListener listener : mListeners) {
-            listener.onSetCamera(call, cameraId);
-        }
+        mListeners.dispatch(LISTENER_EVENT_SET_CAMERA, l -> l.onSetCamera(call, cameraId));
     }
 
     public Collection<Call> getCalls() {
@@ -1449,9 +1503,7 @@ public class CallsManager extends Call.ListenerBase
      */
     @Override
     public void onHoldToneRequested(Call call) {
-        for (CallsManagerListener listener : mListeners) {
-            listener.onHoldToneRequested(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_HOLD_TONE_REQUESTED, l -> l.onHoldToneRequested(call));
     }
 
     /**
@@ -1546,6 +1598,18 @@ public class CallsManager extends Call.ListenerBase
         return mDefaultDialerCache;
     }
 
+    public Timeouts.Adapter getTimeoutsAdapter() {
+        return mTimeoutsAdapter;
+    }
+
+    /**
+     * @return The registry which InCallServices and CallScreeningServices are resolved through, or
+     * {@code null} if they are resolved through the {@link PackageManager} every time.
+     */
+    public @Nullable ServiceComponentRegistry getServiceComponentRegistry() {
+        return mServiceComponentRegistry;
+    }
+
     @VisibleForTesting
     public PhoneAccountRegistrar.Listener getPhoneAccountListener() {
         return mPhoneAccountListener;
@@ -2400,7 +2464,8 @@ public class CallsManager extends Call.ListenerBase
                                 Log.i(CallsManager.this, "Aborting call since there are no"
                                         + " available accounts.");
                                 showErrorMessage(R.string.cant_call_due_to_no_supported_service);
-                                mListeners.forEach(l -> l.onCreateConnectionFailed(callToPlace));
+                                mListeners.dispatch(LISTENER_EVENT_CREATE_CONNECTION_FAILED,
+                                        l -> l.onCreateConnectionFailed(callToPlace));
                                 if (callToPlace.isEmergencyCall()) {
                                     if (mFeatureFlags.telecomMetricsSupport()) {
                                         mMetricsController.getErrorStats().log(
@@ -2762,7 +2827,8 @@ public class CallsManager extends Call.ListenerBase
                     public CharSequence getAppLabel(String packageName, UserHandle userHandle) {
                         return Util.getAppLabel(mContext, userHandle, packageName, mFeatureFlags);
                     }
-                }).process();
+                },
+                mServiceComponentRegistry).process();
         future.thenApply( v -> {
             Log.i(this, "Outgoing caller ID complete");
             return null;
@@ -3502,9 +3568,8 @@ public class CallsManager extends Call.ListenerBase
         if (!mCalls.contains(call)) {
             Log.i(this, "Request to reject a non-existent call %s", call);
         } else {
-            for (CallsManagerListener listener : mListeners) {
-                listener.onIncomingCallRejected(call, rejectWithMessage, textMessage);
-            }
+            mListeners.dispatch(LISTENER_EVENT_INCOMING_CALL_REJECTED,
+                    l -> l.onIncomingCallRejected(call, rejectWithMessage, textMessage));
             call.reject(rejectWithMessage, textMessage);
         }
     }
@@ -3519,10 +3584,9 @@ public class CallsManager extends Call.ListenerBase
         if (!mCalls.contains(call)) {
             Log.i(this, "Request to reject a non-existent call %s", call);
         } else {
-            for (CallsManagerListener listener : mListeners) {
-                listener.onIncomingCallRejected(call, false /* rejectWithMessage */,
-                        null /* textMessage */);
-            }
+            mListeners.dispatch(LISTENER_EVENT_INCOMING_CALL_REJECTED,
+                    l -> l.onIncomingCallRejected(call, false /* rejectWithMessage */,
+                            null /* textMessage */));
             call.reject(rejectReason);
         }
     }
@@ -3622,9 +3686,8 @@ public class CallsManager extends Call.ListenerBase
      */
     public void disconnectCallOld(Call call, int previousState) {
         call.disconnect();
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCallStateChanged(call, previousState, call.getState());
-        }
+        mListeners.dispatch(LISTENER_EVENT_CALL_STATE_CHANGED,
+                l -> l.onCallStateChanged(call, previousState, call.getState()));
         processDisconnectCallAndCleanup(call, previousState);
     }
 
@@ -3938,17 +4001,16 @@ public class CallsManager extends Call.ListenerBase
     @Override
     public void onExternalCallChanged(Call call, boolean isExternalCall) {
         Log.v(this, "onConnectionPropertiesChanged: %b", isExternalCall);
-        for (CallsManagerListener listener : mListeners) {
-            listener.onExternalCallChanged(call, isExternalCall);
-        }
+        mListeners.dispatch(LISTENER_EVENT_EXTERNAL_CALL_CHANGED,
+                l -> l.onExternalCallChanged(call, isExternalCall));
+        publishCallStateSnapshot();
     }
 
     @Override
     public void onCallStreamingStateChanged(Call call, boolean isStreaming) {
         Log.v(this, "onCallStreamingStateChanged: %b", isStreaming);
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCallStreamingStateChanged(call, isStreaming);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CALL_STREAMING_STATE_CHANGED,
+                l -> l.onCallStreamingStateChanged(call, isStreaming));
     }
 
     private void handleCallTechnologyChange(Call call) {
@@ -4053,33 +4115,28 @@ public class CallsManager extends Call.ListenerBase
     public void onCallAudioStateChanged(CallAudioState oldAudioState, CallAudioState
             newAudioState) {
         Log.v(this, "onAudioStateChanged, audioState: %s -> %s", oldAudioState, newAudioState);
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCallAudioStateChanged(oldAudioState, newAudioState);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CALL_AUDIO_STATE_CHANGED,
+                l -> l.onCallAudioStateChanged(oldAudioState, newAudioState));
     }
 
     @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
     public void updateCallEndpoint(CallEndpoint callEndpoint) {
         Log.v(this, "updateCallEndpoint");
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCallEndpointChanged(callEndpoint);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CALL_ENDPOINT_CHANGED,
+                l -> l.onCallEndpointChanged(callEndpoint));
     }
 
     @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
     public void updateAvailableCallEndpoints(Set<CallEndpoint> availableCallEndpoints) {
         Log.v(this, "updateAvailableCallEndpoints");
-        for (CallsManagerListener listener : mListeners) {
-            listener.onAvailableCallEndpointsChanged(availableCallEndpoints);
-        }
+        mListeners.dispatch(LISTENER_EVENT_AVAILABLE_CALL_ENDPOINTS_CHANGED,
+                l -> l.onAvailableCallEndpointsChanged(availableCallEndpoints));
     }
 
     @VisibleForTesting(visibility = VisibleForTesting.Visibility.PACKAGE)
     public void updateMuteState(boolean isMuted) {
         Log.v(this, "updateMuteState");
-        for (CallsManagerListener listener : mListeners) {
-            listener.onMuteStateChanged(isMuted);
-        }
+        mListeners.dispatch(LISTENER_EVENT_MUTE_STATE_CHANGED, l -> l.onMuteStateChanged(isMuted));
     }
 
     /**
@@ -4093,9 +4150,8 @@ public class CallsManager extends Call.ListenerBase
     @VisibleForTesting
     public void onDisconnectedTonePlaying(Call call, boolean isTonePlaying) {
         Log.v(this, "onDisconnectedTonePlaying, %s", isTonePlaying ? "started" : "stopped");
-        for (CallsManagerListener listener : mListeners) {
-            listener.onDisconnectedTonePlaying(call, isTonePlaying);
-        }
+        mListeners.dispatch(LISTENER_EVENT_DISCONNECTED_TONE_PLAYING,
+                l -> l.onDisconnectedTonePlaying(call, isTonePlaying));
     }
 
     void markCallAsRinging(Call call) {
@@ -4326,7 +4382,8 @@ public class CallsManager extends Call.ListenerBase
         // Notify listeners that the call was disconnected before being added to CallsManager.
         // Listeners will not receive onAdded or onRemoved callbacks.
         if (!mCalls.contains(call)) {
-            mListeners.forEach(l -> l.onCreateConnectionFailed(call));
+            mListeners.dispatch(LISTENER_EVENT_CREATE_CONNECTION_FAILED,
+                    l -> l.onCreateConnectionFailed(call));
         }
 
         // If a call diagnostic service is in use, we will log the original telephony-provided
@@ -4920,9 +4977,8 @@ public class CallsManager extends Call.ListenerBase
         updateHasActiveRttCall();
         updateExternalCallCanPullSupport();
         // onCallAdded for calls which immediately take the foreground (like the first call).
-        for (CallsManagerListener listener : mListeners) {
-            listener.onCallAdded(call);
-        }
+        mListeners.dispatch(LISTENER_EVENT_CALL_ADDED, l -> l.onCallAdded(call));
+        publishCallStateSnapshot();
     }
 
     @VisibleForTesting
@@ -4947,14 +5003,15 @@ public class CallsManager extends Call.ListenerBase
         mSelfManagedCallsBeingSetup.remove(call);
 
         call.destroy();
+        // Timeouts still pending for the call would only act on a destroyed call.
+        mTimerService.cancelTimersForCall(call);
         updateExternalCallCanPullSupport();
         // Only broadcast changes for calls that are being tracked.
         if (shouldNotify) {
             updateCanAddCall();
             updateHasActiveRttCall();
-            for (CallsManagerListener listener : mListeners) {
-                listener.onCallRemoved(call);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CALL_REMOVED, l -> l.onCallRemoved(call));
+            publishCallStateSnapshot();
         }
     }
 
@@ -5031,9 +5088,9 @@ public class CallsManager extends Call.ListenerBase
         if (mCalls.contains(call)) {
             updateCanAddCall();
             updateHasActiveRttCall();
-            for (CallsManagerListener listener : mListeners) {
-                listener.onCallStateChanged(call, oldState, newState);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CALL_STATE_CHANGED,
+                    l -> l.onCallStateChanged(call, oldState, newState));
+            publishCallStateSnapshot();
         }
     }
 
@@ -5156,9 +5213,8 @@ public class CallsManager extends Call.ListenerBase
         boolean newCanAddCall = canAddCall();
         if (newCanAddCall != mCanAddCall) {
             mCanAddCall = newCanAddCall;
-            for (CallsManagerListener listener : mListeners) {
-                listener.onCanAddCallChanged(mCanAddCall);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CAN_ADD_CALL_CHANGED,
+                    l -> l.onCanAddCallChanged(mCanAddCall));
         }
     }
 
@@ -5963,6 +6019,8 @@ public class CallsManager extends Call.ListenerBase
         mCurrentUserHandle = userHandle;
         mMissedCallNotifier.setCurrentUserHandle(userHandle);
         mRoleManagerAdapter.setCurrentUserHandle(userHandle);
+        mCallerInfoLookupHelper.onUserSwitch(userHandle);
+        mRingtoneFactory.onUserSwitch();
         final UserManager userManager = mFeatureFlags.telecomResolveHiddenDependencies()
                 ? mContext.createContextAsUser(userHandle, 0).getSystemService(
                         UserManager.class)
@@ -6238,10 +6296,16 @@ public class CallsManager extends Call.ListenerBase
             pw.increaseIndent();
             for (Call call : mCalls) {
                 pw.println(call);
+                pw.increaseIndent();
+                call.dumpListeners(pw);
+                pw.decreaseIndent();
             }
             pw.decreaseIndent();
         }
 
+        pw.print("mCallStateSnapshot: ");
+        pw.println(mCallStateSnapshot);
+
         if (mPendingCall != null) {
             pw.print("mPendingCall:");
             pw.println(mPendingCall.getId());
@@ -6301,6 +6365,39 @@ public class CallsManager extends Call.ListenerBase
             pw.decreaseIndent();
         }
 
+        if (mCallLogManager != null) {
+            pw.println("mCallLogManager:");
+            pw.increaseIndent();
+            mCallLogManager.dump(pw);
+            pw.decreaseIndent();
+        }
+
+        if (mTimeoutsAdapter != null) {
+            pw.println("mTimeoutsAdapter:");
+            pw.increaseIndent();
+            mTimeoutsAdapter.dump(pw, mContext.getContentResolver());
+            pw.decreaseIndent();
+        }
+
+        if (mMissedCallNotifier != null) {
+            pw.println("mMissedCallNotifier:");
+            pw.increaseIndent();
+            mMissedCallNotifier.dump(pw);
+            pw.decreaseIndent();
+        }
+
+        pw.println("mListeners:");
+        pw.increaseIndent();
+        mListeners.dump(pw);
+        pw.decreaseIndent();
+
+        if (mCallerInfoLookupHelper != null) {
+            pw.println("mCallerInfoLookupHelper:");
+            pw.increaseIndent();
+            mCallerInfoLookupHelper.dump(pw);
+            pw.decreaseIndent();
+        }
+
         if (mDefaultDialerCache != null) {
             pw.println("mDefaultDialerCache:");
             pw.increaseIndent();
@@ -6308,6 +6405,10 @@ public class CallsManager extends Call.ListenerBase
             pw.decreaseIndent();
         }
 
+        if (mServiceComponentRegistry != null) {
+            mServiceComponentRegistry.dump(pw);
+        }
+
         if (mConnectionServiceRepository != null) {
             pw.println("mConnectionServiceRepository:");
             pw.increaseIndent();
@@ -6421,7 +6522,8 @@ public class CallsManager extends Call.ListenerBase
             call.setConnectionService(service);
             service.createConnectionFailed(call);
             if (!mCalls.contains(call)){
-                mListeners.forEach(l -> l.onCreateConnectionFailed(call));
+                mListeners.dispatch(LISTENER_EVENT_CREATE_CONNECTION_FAILED,
+                        l -> l.onCreateConnectionFailed(call));
             }
         }
     }
@@ -6446,7 +6548,8 @@ public class CallsManager extends Call.ListenerBase
             call.setConnectionService(service);
             service.createConferenceFailed(call);
             if (!mCalls.contains(call)){
-                mListeners.forEach(l -> l.onCreateConnectionFailed(call));
+                mListeners.dispatch(LISTENER_EVENT_CREATE_CONNECTION_FAILED,
+                        l -> l.onCreateConnectionFailed(call));
             }
         }
     }
@@ -6457,7 +6560,8 @@ public class CallsManager extends Call.ListenerBase
      * @param theCall the new call.
      */
     private void notifyStartCreateConnection(final Call theCall) {
-        mListeners.forEach(l -> l.onStartCreateConnection(theCall));
+        mListeners.dispatch(LISTENER_EVENT_START_CREATE_CONNECTION,
+                l -> l.onStartCreateConnection(theCall));
     }
 
     /**
@@ -6863,9 +6967,8 @@ public class CallsManager extends Call.ListenerBase
         public void performAction() {
             synchronized (mLock) {
                 Log.d(this, "perform answer call for %s, videoState = %d", mCall, mVideoState);
-                for (CallsManagerListener listener : mListeners) {
-                    listener.onIncomingCallAnswered(mCall);
-                }
+                mListeners.dispatch(LISTENER_EVENT_INCOMING_CALL_ANSWERED,
+                        l -> l.onIncomingCallAnswered(mCall));
 
                 CompletableFuture<Boolean> answerCallFuture = null;
                 // We do not update the UI until we get confirmation of the answer() through
@@ -6998,9 +7101,8 @@ public class CallsManager extends Call.ListenerBase
         call.setConnectTimeMillis(System.currentTimeMillis());
         call.setConnectElapsedTimeMillis(SystemClock.elapsedRealtime());
         if (mCalls.contains(call)) {
-            for (CallsManagerListener listener : mListeners) {
-                listener.onConnectionTimeChanged(call);
-            }
+            mListeners.dispatch(LISTENER_EVENT_CONNECTION_TIME_CHANGED,
+                    l -> l.onConnectionTimeChanged(call));
         }
     }
 
@@ -7008,6 +7110,25 @@ public class CallsManager extends Call.ListenerBase
         return mContext;
     }
 
+    /**
+     * Returns the most recently published {@link CallStateSnapshot}. Unlike the other call state
+     * queries on this class, this does not require the Telecom lock to be held.
+     * @return The latest call state snapshot.
+     */
+    public CallStateSnapshot getCallStateSnapshot() {
+        return mCallStateSnapshot;
+    }
+
+    /**
+     * Publishes a new {@link CallStateSnapshot} for the calls currently tracked. Called after the
+     * listeners are notified so that the phone state broadcast by {@link PhoneStateBroadcaster} is
+     * already up to date.
+     */
+    private void publishCallStateSnapshot() {
+        mCallStateSnapshot = CallStateSnapshot.create(++mCallStateSnapshotVersion, mCalls,
+                mPhoneStateBroadcaster.getCallState());
+    }
+
     /**
      * Determines if there is an ongoing emergency call. This can be either an outgoing emergency
      * call, or a number which has been identified by the number as an emergency call.
@@ -7101,10 +7222,6 @@ public class CallsManager extends Call.ListenerBase
         return PhoneAccountHandle.areFromSamePackage(call1TargetAcct, call2TargetAcct);
     }
 
-    public LinkedList<HandlerThread> getGraphHandlerThreads() {
-        return mGraphHandlerThreads;
-    }
-
     private void maybeSendPostCallScreenIntent(Call call) {
         if (call.isEmergencyCall() || (call.isNetworkIdentifiedEmergencyCall()) ||
                 (call.getPostCallPackageName() == null)) {
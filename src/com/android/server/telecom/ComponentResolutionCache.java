@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.content.ComponentName;
+import android.content.pm.ResolveInfo;
+import android.os.UserHandle;
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+import android.util.Pair;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the result of resolving a {@link android.telecom.ConnectionService} component with the
+ * {@link android.content.pm.PackageManager}, keyed by component and user.
+ * <p>
+ * {@link PhoneAccountRegistrar} resolves the component of every phone account it returns, which
+ * otherwise costs a package manager IPC per account per lookup. Entries for a package are dropped
+ * when the package is added, changed or removed.  Entries for a user are dropped when the user
+ * unlocks, since components which are not direct boot aware do not resolve before then, and when
+ * the user is switched to or removed.
+ */
+public class ComponentResolutionCache {
+    /**
+     * Performs the actual, uncached resolution.
+     */
+    public interface Resolver {
+        /**
+         * @return The resolved services, or {@code null} if the component could not be resolved
+         * and the result should not be cached.
+         */
+        List<ResolveInfo> resolve(ComponentName componentName, UserHandle userHandle);
+    }
+
+    private static final String TAG = ComponentResolutionCache.class.getSimpleName();
+
+    private final Map<Pair<ComponentName, UserHandle>, List<ResolveInfo>> mCache =
+            new ConcurrentHashMap<>();
+    private final AtomicLong mHits = new AtomicLong(0);
+    private final AtomicLong mMisses = new AtomicLong(0);
+    private final AtomicLong mInvalidations = new AtomicLong(0);
+    // Incremented whenever entries are dropped, so that a resolution which raced with the change
+    // does not store its stale result.
+    private final AtomicInteger mGeneration = new AtomicInteger(0);
+
+    /**
+     * Resolves a component, using the cached result if there is one.
+     * @param componentName The component to resolve.
+     * @param userHandle The user to resolve the component for, may be {@code null}.
+     * @param resolver Used to resolve the component on a cache miss.
+     * @return The resolved services; empty if the component could not be resolved.
+     */
+    public List<ResolveInfo> resolve(ComponentName componentName, UserHandle userHandle,
+            Resolver resolver) {
+        if (componentName == null) {
+            return Collections.EMPTY_LIST;
+        }
+        Pair<ComponentName, UserHandle> key = new Pair<>(componentName, userHandle);
+        List<ResolveInfo> result = mCache.get(key);
+        if (result != null) {
+            mHits.incrementAndGet();
+            return result;
+        }
+        mMisses.incrementAndGet();
+        int generation = mGeneration.get();
+        result = resolver.resolve(componentName, userHandle);
+        if (result == null) {
+            return Collections.EMPTY_LIST;
+        }
+        result = Collections.unmodifiableList(result);
+        if (mGeneration.get() == generation) {
+            mCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Drops the cached results for all components in a package, for all users.
+     * @param packageName The package name, or {@code null} to drop all cached results.
+     */
+    public void invalidatePackage(String packageName) {
+        mInvalidations.incrementAndGet();
+        mGeneration.incrementAndGet();
+        if (packageName == null) {
+            mCache.clear();
+            return;
+        }
+        int sizeBefore = mCache.size();
+        mCache.keySet().removeIf(key -> packageName.equals(key.first.getPackageName()));
+        Log.d(TAG, "invalidatePackage: %s, removed=%d", packageName,
+                sizeBefore - mCache.size());
+    }
+
+    /**
+     * Drops the cached results for a user.  Results resolved without a user are resolved for the
+     * calling user, so they are dropped as well.
+     * @param userHandle The user.
+     */
+    public void invalidateUser(UserHandle userHandle) {
+        mInvalidations.incrementAndGet();
+        mGeneration.incrementAndGet();
+        int sizeBefore = mCache.size();
+        mCache.keySet().removeIf(key -> key.second == null || key.second.equals(userHandle));
+        Log.d(TAG, "invalidateUser: %s, removed=%d", userHandle, sizeBefore - mCache.size());
+    }
+
+    @VisibleForTesting
+    public long getHitCount() {
+        return mHits.get();
+    }
+
+    @VisibleForTesting
+    public long getMissCount() {
+        return mMisses.get();
+    }
+
+    /**
+     * Dumps the cache statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        pw.println("ComponentResolutionCache: size=" + mCache.size()
+                + ", hits=" + mHits.get()
+                + ", misses=" + mMisses.get()
+                + ", invalidations=" + mInvalidations.get());
+    }
+}
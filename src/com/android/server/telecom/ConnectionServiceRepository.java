@@ -16,9 +16,18 @@
 
 package com.android.server.telecom;
 
+import android.app.ActivityManager;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.UserHandle;
+import android.telecom.Log;
+import android.telecom.Logging.Runnable;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.util.ArrayMap;
 import android.util.Pair;
 
 import com.android.internal.annotations.VisibleForTesting;
@@ -26,12 +35,25 @@ import com.android.internal.util.IndentingPrintWriter;
 import com.android.server.telecom.flags.FeatureFlags;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Searches for and returns connection services.
+ * <p>
+ * The connection services of a user's default outgoing {@link PhoneAccount} and SIM call manager
+ * can be kept warm: they stay bound for a grace period after their last call, and optionally are
+ * bound ahead of a call when the default dialer comes to the foreground.
  */
 @VisibleForTesting
 public class ConnectionServiceRepository {
+    /** Binding statistics of a connection service, kept across its bindings. */
+    private static class BindStats {
+        final LatencyHistogram bindLatencies = new LatencyHistogram();
+        int reuseCount;
+        int prebindCount;
+    }
+
     private final HashMap<Pair<ComponentName, UserHandle>, ConnectionServiceWrapper> mServiceCache =
             new HashMap<>();
     private final PhoneAccountRegistrar mPhoneAccountRegistrar;
@@ -39,6 +61,14 @@ public class ConnectionServiceRepository {
     private final TelecomSystem.SyncRoot mLock;
     private final CallsManager mCallsManager;
     private final FeatureFlags mFeatureFlags;
+    private final DefaultDialerCache mDefaultDialerCache;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // How long the default connection services stay bound after their last call; 0 disables it.
+    private final long mKeepWarmMillis;
+    /** The pending unbinds of idle services kept warm. */
+    private final Map<Pair<ComponentName, UserHandle>, java.lang.Runnable> mIdleUnbinds =
+            new ArrayMap<>();
+    private final Map<Pair<ComponentName, UserHandle>, BindStats> mBindStats = new ArrayMap<>();
 
     private final ServiceBinder.Listener<ConnectionServiceWrapper> mUnbindListener =
             new ServiceBinder.Listener<ConnectionServiceWrapper>() {
@@ -49,19 +79,73 @@ public class ConnectionServiceRepository {
                                 service.getUserHandle()));
                     }
                 }
+
+                @Override
+                public void onBound(ConnectionServiceWrapper service, long bindMillis) {
+                    getBindStats(service).bindLatencies.record(
+                            TimeUnit.MILLISECONDS.toMicros(bindMillis));
+                }
+
+                @Override
+                public void onActive(ConnectionServiceWrapper service) {
+                    // Only a binding kept warm or bound ahead of the call counts as reused.
+                    java.lang.Runnable pendingUnbind = mIdleUnbinds.remove(Pair.create(
+                            service.getComponentName(), service.getUserHandle()));
+                    if (pendingUnbind != null) {
+                        mHandler.removeCallbacks(pendingUnbind);
+                        getBindStats(service).reuseCount++;
+                    }
+                }
+
+                @Override
+                public boolean shouldStayBoundWhenIdle(ConnectionServiceWrapper service) {
+                    if (mKeepWarmMillis <= 0 || !isDefaultService(service.getComponentName(),
+                            service.getUserHandle())) {
+                        return false;
+                    }
+                    scheduleIdleUnbind(service);
+                    return true;
+                }
             };
 
-    ConnectionServiceRepository(
+    private final ActivityManager.OnUidImportanceListener mDialerForegroundListener =
+            (uid, importance) -> {
+                if (importance > ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND) {
+                    return;
+                }
+                UserHandle userHandle = UserHandle.getUserHandleForUid(uid);
+                if (isDefaultDialer(uid, userHandle)) {
+                    mHandler.post(new Runnable("CSR.dF", mLock) {
+                        @Override
+                        public void loggedRun() {
+                            prebindDefaultServices(userHandle);
+                        }
+                    }.prepare());
+                }
+            };
+
+    @VisibleForTesting
+    public ConnectionServiceRepository(
             PhoneAccountRegistrar phoneAccountRegistrar,
             Context context,
             TelecomSystem.SyncRoot lock,
             CallsManager callsManager,
-            FeatureFlags featureFlags) {
+            FeatureFlags featureFlags,
+            DefaultDialerCache defaultDialerCache) {
         mPhoneAccountRegistrar = phoneAccountRegistrar;
         mContext = context;
         mLock = lock;
         mCallsManager = callsManager;
         mFeatureFlags = featureFlags;
+        mDefaultDialerCache = defaultDialerCache;
+        mKeepWarmMillis = context.getResources().getInteger(
+                R.integer.connection_service_keep_warm_millis);
+        if (mKeepWarmMillis > 0 && context.getResources().getBoolean(
+                R.bool.prebind_connection_services_on_dialer_foreground)) {
+            context.getSystemService(ActivityManager.class).addOnUidImportanceListener(
+                    mDialerForegroundListener,
+                    ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND);
+        }
     }
 
     @VisibleForTesting
@@ -93,6 +177,106 @@ public class ConnectionServiceRepository {
         mServiceCache.put(cacheKey, service);
     }
 
+    /**
+     * Binds to the idle connection services of the user's default outgoing account and SIM call
+     * manager, so that the next call does not wait for the binding.  They are unbound again if no
+     * call is placed within the keep warm grace period.
+     *
+     * @param userHandle The user whose default services to bind.
+     */
+    @VisibleForTesting
+    public void prebindDefaultServices(UserHandle userHandle) {
+        if (mKeepWarmMillis <= 0) {
+            return;
+        }
+        for (PhoneAccountHandle handle : getDefaultAccounts(userHandle)) {
+            ConnectionServiceWrapper service = getService(handle.getComponentName(),
+                    handle.getUserHandle());
+            if (service.getAssociatedCallCount() > 0) {
+                continue;
+            }
+            // A service still kept warm only needs its grace period restarted.
+            if (!mIdleUnbinds.containsKey(Pair.create(handle.getComponentName(),
+                    handle.getUserHandle()))) {
+                Log.i(this, "prebindDefaultServices: %s", handle.getComponentName());
+                getBindStats(service).prebindCount++;
+                service.prebind();
+            }
+            scheduleIdleUnbind(service);
+        }
+    }
+
+    private void scheduleIdleUnbind(ConnectionServiceWrapper service) {
+        Pair<ComponentName, UserHandle> cacheKey = Pair.create(service.getComponentName(),
+                service.getUserHandle());
+        java.lang.Runnable pendingUnbind = mIdleUnbinds.remove(cacheKey);
+        if (pendingUnbind != null) {
+            mHandler.removeCallbacks(pendingUnbind);
+        }
+        pendingUnbind = new Runnable("CSR.iU", mLock) {
+            @Override
+            public void loggedRun() {
+                mIdleUnbinds.remove(cacheKey);
+                service.unbindIfIdle();
+            }
+        }.prepare();
+        mIdleUnbinds.put(cacheKey, pendingUnbind);
+        mHandler.postDelayed(pendingUnbind, mKeepWarmMillis);
+    }
+
+    @VisibleForTesting
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    private boolean isDefaultService(ComponentName componentName, UserHandle userHandle) {
+        for (PhoneAccountHandle handle : getDefaultAccounts(userHandle)) {
+            if (handle.getComponentName().equals(componentName)
+                    && handle.getUserHandle().equals(userHandle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private PhoneAccountHandle[] getDefaultAccounts(UserHandle userHandle) {
+        PhoneAccountHandle defaultOutgoing = mPhoneAccountRegistrar
+                .getOutgoingPhoneAccountForScheme(PhoneAccount.SCHEME_TEL, userHandle);
+        PhoneAccountHandle simCallManager = mPhoneAccountRegistrar.getSimCallManager(userHandle);
+        if (defaultOutgoing == null) {
+            return simCallManager == null ? new PhoneAccountHandle[0]
+                    : new PhoneAccountHandle[] { simCallManager };
+        }
+        return simCallManager == null || simCallManager.equals(defaultOutgoing)
+                ? new PhoneAccountHandle[] { defaultOutgoing }
+                : new PhoneAccountHandle[] { defaultOutgoing, simCallManager };
+    }
+
+    private boolean isDefaultDialer(int uid, UserHandle userHandle) {
+        String packageName = mDefaultDialerCache.getDefaultDialerApplication(
+                userHandle.getIdentifier());
+        if (packageName == null) {
+            return false;
+        }
+        try {
+            return mContext.getPackageManager().getPackageUidAsUser(packageName,
+                    userHandle.getIdentifier()) == uid;
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+
+    private BindStats getBindStats(ConnectionServiceWrapper service) {
+        Pair<ComponentName, UserHandle> cacheKey = Pair.create(service.getComponentName(),
+                service.getUserHandle());
+        BindStats stats = mBindStats.get(cacheKey);
+        if (stats == null) {
+            stats = new BindStats();
+            mBindStats.put(cacheKey, stats);
+        }
+        return stats;
+    }
+
     /**
      * Dumps the state of the {@link ConnectionServiceRepository}.
      *
@@ -106,5 +290,20 @@ public class ConnectionServiceRepository {
             pw.println(componentName);
         }
         pw.decreaseIndent();
+
+        pw.println("Bind stats (keepWarmMillis=" + mKeepWarmMillis + "):");
+        pw.increaseIndent();
+        for (Map.Entry<Pair<ComponentName, UserHandle>, BindStats> entry : mBindStats.entrySet()) {
+            BindStats stats = entry.getValue();
+            pw.println(entry.getKey().first.flattenToShortString()
+                    + " " + entry.getKey().second
+                    + ": binds=" + stats.bindLatencies.getCount()
+                    + ", reused=" + stats.reuseCount
+                    + ", prebinds=" + stats.prebindCount
+                    + ", p50Micros=" + stats.bindLatencies.getValueAtPercentile(50)
+                    + ", p90Micros=" + stats.bindLatencies.getValueAtPercentile(90)
+                    + ", maxMicros=" + stats.bindLatencies.getMaxMicros());
+        }
+        pw.decreaseIndent();
     }
 }
@@ -77,10 +77,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.Objects;
@@ -107,10 +104,6 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
             UUID.fromString("caafe5ea-2472-4c61-b2d8-acb9d47e13dd");
     public static final String CREATE_CONFERENCE_TIMEOUT_ERROR_MSG =
             "Timeout expired before Telecom conference was created.";
-    public static final UUID NULL_SCHEDULED_EXECUTOR_ERROR_UUID =
-            UUID.fromString("af6b293b-239f-4ccf-bf3a-db212594e29d");
-    public static final String NULL_SCHEDULED_EXECUTOR_ERROR_MSG =
-            "Scheduled executor is null when creating connection/conference.";
     public static final UUID EXECUTOR_REJECTED_EXECUTION_ERROR_UUID =
             UUID.fromString("649b348c-9d3f-451e-bae9-d9920e7b422c");
 
@@ -121,9 +114,7 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
     private static final long SERVICE_BINDING_TIMEOUT = 15000L;
     private CompletableFuture<Pair<Integer, Location>> mQueryLocationFuture = null;
     private @Nullable CancellationSignal mOngoingQueryLocationRequest = null;
-    private final ExecutorService mQueryLocationExecutor = Executors.newSingleThreadExecutor();
-    private ScheduledExecutorService mScheduledExecutor =
-            Executors.newSingleThreadScheduledExecutor();
+    private TelecomTimerService mTimerService = TelecomTimerService.getInstance();
     // Pre-allocate space for 2 calls; realistically thats all we should ever need (tm)
     private final Map<Call, ScheduledFuture<?>> mScheduledFutureMap = new ConcurrentHashMap<>(2);
     private AnomalyReporterAdapter mAnomalyReporter = new AnomalyReporterAdapterImpl();
@@ -1510,7 +1501,7 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
                         .setLocationSettingsIgnored(true)
                         .build(),
                 mOngoingQueryLocationRequest,
-                mQueryLocationExecutor,
+                mTimerService.getExecutor(),
                 (location) -> mQueryLocationFuture.complete(Pair.create(null, location)));
 
         mQueryLocationFuture.whenComplete((result, e) -> {
@@ -1612,6 +1603,27 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
         return packageUid == callingUid;
     }
 
+    /**
+     * Binds to the service ahead of a call, so that the next call does not wait for the binding.
+     * The service stays bound until {@link #unbindIfIdle()} is called.
+     */
+    void prebind() {
+        Log.d(this, "prebind() via %s.", getComponentName());
+        mBinder.bind(new BindCallback() {
+            @Override
+            public void onSuccess() {
+                Log.d(ConnectionServiceWrapper.this, "prebind: bound to %s",
+                        getComponentName());
+            }
+
+            @Override
+            public void onFailure() {
+                Log.w(ConnectionServiceWrapper.this, "prebind: failed to bind to %s",
+                        getComponentName());
+            }
+        }, null /* call */);
+    }
+
     /**
      * Creates a conference for a new outgoing call or attach to an existing incoming call.
      */
@@ -1666,26 +1678,17 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
                         }
                     }
                 };
-                if (mScheduledExecutor != null && !mScheduledExecutor.isShutdown()) {
-                    try {
-                        // Post cleanup to the executor service and cache the future,
-                        // so we can cancel it if needed.
-                        ScheduledFuture<?> future = mScheduledExecutor.schedule(
-                                r.getRunnableToCancel(),SERVICE_BINDING_TIMEOUT,
-                                TimeUnit.MILLISECONDS);
-                        mScheduledFutureMap.put(call, future);
-                    } catch (RejectedExecutionException e) {
-                        Log.e(this, e, "createConference: mScheduledExecutor was "
-                                + "already shutdown");
-                        mAnomalyReporter.reportAnomaly(
-                                EXECUTOR_REJECTED_EXECUTION_ERROR_UUID,
-                                EXECUTOR_REJECTED_EXECUTION_ERROR_MSG);
-                    }
-                } else {
-                    Log.w(this, "createConference: Scheduled executor is null or shutdown");
+                try {
+                    // Post cleanup to the shared timer service and cache the future,
+                    // so we can cancel it if needed.
+                    ScheduledFuture<?> future = mTimerService.schedule(this, call,
+                            "CSW.cCf", r.getRunnableToCancel(), SERVICE_BINDING_TIMEOUT);
+                    mScheduledFutureMap.put(call, future);
+                } catch (RejectedExecutionException e) {
+                    Log.e(this, e, "createConference: timer service rejected the timeout");
                     mAnomalyReporter.reportAnomaly(
-                        NULL_SCHEDULED_EXECUTOR_ERROR_UUID,
-                        NULL_SCHEDULED_EXECUTOR_ERROR_MSG);
+                            EXECUTOR_REJECTED_EXECUTION_ERROR_UUID,
+                            EXECUTOR_REJECTED_EXECUTION_ERROR_MSG);
                 }
                 try {
                     mServiceInterface.createConference(
@@ -1811,26 +1814,17 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
                         }
                     }
                 };
-                if (mScheduledExecutor != null && !mScheduledExecutor.isShutdown()) {
-                    try {
-                        // Post cleanup to the executor service and cache the future,
-                        // so we can cancel it if needed.
-                        ScheduledFuture<?> future = mScheduledExecutor.schedule(
-                                r.getRunnableToCancel(),SERVICE_BINDING_TIMEOUT,
-                                TimeUnit.MILLISECONDS);
-                        mScheduledFutureMap.put(call, future);
-                    } catch (RejectedExecutionException e) {
-                        Log.e(this, e, "createConnection: mScheduledExecutor was "
-                                + "already shutdown");
-                        mAnomalyReporter.reportAnomaly(
-                                EXECUTOR_REJECTED_EXECUTION_ERROR_UUID,
-                                EXECUTOR_REJECTED_EXECUTION_ERROR_MSG);
-                    }
-                } else {
-                    Log.w(this, "createConnection: Scheduled executor is null or shutdown");
+                try {
+                    // Post cleanup to the shared timer service and cache the future,
+                    // so we can cancel it if needed.
+                    ScheduledFuture<?> future = mTimerService.schedule(this, call,
+                            "CSW.cC", r.getRunnableToCancel(), SERVICE_BINDING_TIMEOUT);
+                    mScheduledFutureMap.put(call, future);
+                } catch (RejectedExecutionException e) {
+                    Log.e(this, e, "createConnection: timer service rejected the timeout");
                     mAnomalyReporter.reportAnomaly(
-                        NULL_SCHEDULED_EXECUTOR_ERROR_UUID,
-                        NULL_SCHEDULED_EXECUTOR_ERROR_MSG);
+                            EXECUTOR_REJECTED_EXECUTION_ERROR_UUID,
+                            EXECUTOR_REJECTED_EXECUTION_ERROR_MSG);
                 }
                 try {
                     if (mFlags.cswServiceInterfaceIsNull() && mServiceInterface == null) {
@@ -2548,10 +2542,6 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
         handleConnectionServiceDeath();
         mCallsManager.handleConnectionServiceDeath(this);
         mServiceInterface = null;
-        if (mScheduledExecutor != null) {
-            mScheduledExecutor.shutdown();
-            mScheduledExecutor = null;
-        }
     }
 
     @Override
@@ -2799,8 +2789,8 @@ public class ConnectionServiceWrapper extends ServiceBinder implements
     }
 
     @VisibleForTesting
-    public void setScheduledExecutorService(ScheduledExecutorService service) {
-        mScheduledExecutor = service;
+    public void setTimerService(TelecomTimerService timerService) {
+        mTimerService = timerService;
     }
 
     @VisibleForTesting
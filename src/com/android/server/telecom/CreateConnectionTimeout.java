@@ -29,6 +29,7 @@ import com.android.internal.annotations.VisibleForTesting;
 
 import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Registers a timeout for a call and disconnects the call when the timeout expires.
@@ -40,6 +41,8 @@ public final class CreateConnectionTimeout extends Runnable {
     private final ConnectionServiceWrapper mConnectionService;
     private final Call mCall;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final TelecomTimerService mTimerService;
+    private ScheduledFuture<?> mTimeoutFuture;
     private boolean mIsRegistered;
     private boolean mIsCallTimedOut;
     private final Timeouts.Adapter mTimeoutsAdapter;
@@ -53,6 +56,7 @@ public final class CreateConnectionTimeout extends Runnable {
         mConnectionService = service;
         mCall = call;
         mTimeoutsAdapter = timeoutsAdapter;
+        mTimerService = TelecomTimerService.getInstance();
     }
 
     @VisibleForTesting
@@ -98,13 +102,20 @@ public final class CreateConnectionTimeout extends Runnable {
         if (timeoutLengthMillis <= 0) {
             Log.d(this, "registerTimeout, timeout set to %d, skipping", timeoutLengthMillis);
         } else {
-            mHandler.postDelayed(prepare(), timeoutLengthMillis);
+            // Track the timeout on the shared timer service, but still run it on the main looper.
+            java.lang.Runnable timeoutRunnable = prepare();
+            mTimeoutFuture = mTimerService.schedule(this, mCall, "CCT",
+                    () -> mHandler.post(timeoutRunnable), timeoutLengthMillis);
         }
     }
 
     void unregisterTimeout() {
         Log.d(this, "unregisterTimeout");
         mIsRegistered = false;
+        if (mTimeoutFuture != null) {
+            mTimeoutFuture.cancel(false /* mayInterruptIfRunning */);
+            mTimeoutFuture = null;
+        }
         mHandler.removeCallbacksAndMessages(null);
         cancel();
     }
@@ -35,8 +35,10 @@ import android.telecom.Log;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.IndentingPrintWriter;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.IntConsumer;
 
@@ -50,9 +52,11 @@ public class DefaultDialerCache {
     private final RoleManagerAdapter mRoleManagerAdapter;
     private final ConcurrentHashMap<Integer, String> mCurrentDefaultDialerPerUser =
             new ConcurrentHashMap<>();
+    private final List<IntConsumer> mPackageChangeListeners = new CopyOnWriteArrayList<>();
     private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            int userId = getSendingUserId();
             mHandler.post(() -> {
                 Log.startSession("DDC.oR");
                 try {
@@ -70,6 +74,9 @@ public class DefaultDialerCache {
                         return;
                     }
 
+                    for (IntConsumer listener : mPackageChangeListeners) {
+                        listener.accept(userId);
+                    }
                     refreshCachesForUsersWithPackage(packageName);
                 } finally {
                     Log.endSession();
@@ -202,6 +209,17 @@ public class DefaultDialerCache {
         mRoleManagerAdapter.observeDefaultDialerApp(executor, observer);
     }
 
+    /**
+     * Registers a listener to be told when packages are added, removed or changed, using the
+     * same broadcasts which refresh the default dialer cache.
+     *
+     * @param listener Called on the main thread with the id of the user whose packages changed,
+     *                 or {@link UserHandle#USER_ALL} if it is not known.
+     */
+    public void addPackageChangeListener(IntConsumer listener) {
+        mPackageChangeListeners.add(listener);
+    }
+
     public boolean isDefaultOrSystemDialer(String packageName, int userId) {
         String defaultDialer = getDefaultDialerApplication(userId);
         return Objects.equals(packageName, defaultDialer)
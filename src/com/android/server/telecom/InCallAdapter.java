@@ -57,7 +57,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_ANSWER_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_ANSWER_CALL, () -> {
                     Log.d(this, "answerCall(%s,%d)", callId, videoState);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -65,7 +65,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "answerCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -80,7 +80,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_DEFLECT_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_DEFLECT_CALL, () -> {
                     Log.i(this, "deflectCall - %s, %s ", callId, Log.pii(address));
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -88,7 +88,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "deflectCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -105,23 +105,22 @@ class InCallAdapter extends IInCallAdapter.Stub {
             int callingUid = Binder.getCallingUid();
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_REJECT_CALL, () -> {
                     // Check to make sure the in-call app's user isn't restricted from sending SMS.
                     // If so, silently drop the outgoing message. Also drop message if the screen is
                     // locked.
-                    if (!mCallsManager.isReplyWithSmsAllowed(callingUid)) {
-                        rejectWithMessage = false;
-                        textMessage = null;
-                    }
+                    boolean isReplyAllowed = mCallsManager.isReplyWithSmsAllowed(callingUid);
+                    boolean withMessage = rejectWithMessage && isReplyAllowed;
+                    String message = isReplyAllowed ? textMessage : null;
 
-                    Log.d(this, "rejectCall(%s,%b,%s)", callId, rejectWithMessage, textMessage);
+                    Log.d(this, "rejectCall(%s,%b,%s)", callId, withMessage, message);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
-                        mCallsManager.rejectCall(call, rejectWithMessage, textMessage);
+                        mCallsManager.rejectCall(call, withMessage, message);
                     } else {
                         Log.w(this, "setRingback, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -139,7 +138,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             int callingUid = Binder.getCallingUid();
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_REJECT_CALL, () -> {
                     Log.d(this, "rejectCallWithReason(%s,%d)", callId, rejectReason);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -147,7 +146,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "rejectCallWithReason, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -161,7 +160,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_TRANSFER_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_TRANSFER_CALL, () -> {
                     Log.i(this, "transferCall - %s, %s, %b", callId, Log.pii(targetNumber),
                             isConfirmationRequired);
                     Call call = mCallIdMapper.getCall(callId);
@@ -170,7 +169,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "transferCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -186,7 +185,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_CONSULTATIVE_TRANSFER, () -> {
                     Log.i(this, "consultativeTransfer - %s, %s", callId, otherCallId);
                     Call call = mCallIdMapper.getCall(callId);
                     Call otherCall = mCallIdMapper.getCall(otherCallId);
@@ -196,7 +195,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                         Log.w(this, "consultativeTransfer, unknown call id: %s or %s",
                                 callId, otherCallId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -211,7 +210,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.pDT", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.pDT", () -> {
                     Log.d(this, "playDtmfTone(%s,%c)", callId, digit);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -219,7 +218,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "playDtmfTone, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -234,7 +233,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sDT", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sDT", () -> {
                     Log.d(this, "stopDtmfTone(%s)", callId);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -242,7 +241,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "stopDtmfTone, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -257,7 +256,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.pDC", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.pDC", () -> {
                     Log.d(this, "postDialContinue(%s)", callId);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -265,7 +264,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "postDialContinue, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -280,7 +279,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_DISCONNECT_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_DISCONNECT_CALL, () -> {
                     Log.v(this, "disconnectCall: %s", callId);
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
@@ -288,7 +287,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "disconnectCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -303,14 +302,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_HOLD_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_HOLD_CALL, () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         mCallsManager.holdCall(call);
                     } else {
                         Log.w(this, "holdCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -325,14 +324,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_UNHOLD_CALL, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_UNHOLD_CALL, () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         mCallsManager.unholdCall(call);
                     } else {
                         Log.w(this, "unholdCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -348,14 +347,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.pAS", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.pAS", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         mCallsManager.phoneAccountSelected(call, accountHandle, setDefault);
                     } else {
                         Log.w(this, "phoneAccountSelected, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -370,9 +369,9 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_MUTE, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_MUTE, () -> {
                     mCallsManager.mute(shouldMute);
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -387,9 +386,9 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_SET_AUDIO_ROUTE, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_SET_AUDIO_ROUTE, () -> {
                     mCallsManager.setAudioRoute(route, bluetoothAddress);
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -404,9 +403,9 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_SET_AUDIO_ROUTE, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_SET_AUDIO_ROUTE, () -> {
                     mCallsManager.requestCallEndpointChange(endpoint, callback);
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -423,14 +422,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             // TODO: enforce the extra permission.
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_ENTER_AUDIO_PROCESSING, () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         mCallsManager.enterBackgroundAudioProcessing(call, mOwnerPackageName);
                     } else {
                         Log.w(this, "enterBackgroundAudioProcessing, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -446,7 +445,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_EXIT_AUDIO_PROCESSING, () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         mCallsManager.exitBackgroundAudioProcessing(call, shouldRing);
@@ -454,7 +453,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                         Log.w(InCallAdapter.this,
                                 "exitBackgroundAudioProcessing, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -469,7 +468,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession(LogUtils.Sessions.ICA_CONFERENCE, mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, LogUtils.Sessions.ICA_CONFERENCE, () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     Call otherCall = mCallIdMapper.getCall(otherCallId);
                     if (call != null && otherCall != null) {
@@ -477,7 +476,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "conference, unknown call id: %s or %s", callId, otherCallId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -492,14 +491,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sFC", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sFC", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.splitFromConference();
                     } else {
                         Log.w(this, "splitFromConference, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -514,14 +513,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.mC", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.mC", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.mergeConference();
                     } else {
                         Log.w(this, "mergeConference, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -536,14 +535,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sC", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sC", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.swapConference();
                     } else {
                         Log.w(this, "swapConference, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -558,14 +557,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.aCP", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.aCP", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.addConferenceParticipants(participants);
                     } else {
                         Log.w(this, "addConferenceParticipants, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -581,14 +580,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.pEC", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.pEC", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.pullExternalCall();
                     } else {
                         Log.w(this, "pullExternalCall, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -603,14 +602,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sCE", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sCE", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.sendCallEvent(event, extras);
                     } else {
                         Log.w(this, "sendCallEvent, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -625,7 +624,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.pE", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.pE", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         // Make sure to identify the ICS that originated the extras change so that
@@ -634,7 +633,7 @@ class InCallAdapter extends IInCallAdapter.Stub {
                     } else {
                         Log.w(this, "putExtras, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -649,14 +648,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.rE", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.rE", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.removeExtras(Call.SOURCE_INCALL_SERVICE, keys);
                     } else {
                         Log.w(this, "removeExtra, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -671,9 +670,9 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.tOnPS", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.tOnPS", () -> {
                     mCallsManager.turnOnProximitySensor();
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -688,9 +687,9 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.tOffPS", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.tOffPS", () -> {
                     mCallsManager.turnOffProximitySensor(screenOnImmediately);
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -705,14 +704,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sRR", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sRR", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.sendRttRequest();
                     } else {
                         Log.w(this, "stopRtt(): call %s not found", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -727,14 +726,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.rTRR", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.rTRR", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.handleRttRequestResponse(id, accept);
                     } else {
                         Log.w(this, "respondToRttRequest(): call %s not found", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -749,14 +748,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sRTT", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sRTT", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.stopRtt();
                     } else {
                         Log.w(this, "stopRtt(): call %s not found", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -771,14 +770,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.sRM", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.sRM", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.setRttMode(mode);
                     } else {
                         Log.w(this, "setRttMode(): call %s not found", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
@@ -794,14 +793,14 @@ class InCallAdapter extends IInCallAdapter.Stub {
             Log.startSession("ICA.hT", mOwnerPackageAbbreviation);
             long token = Binder.clearCallingIdentity();
             try {
-                synchronized (mLock) {
+                LockProfiler.runLocked(mLock, "ICA.hT", () -> {
                     Call call = mCallIdMapper.getCall(callId);
                     if (call != null) {
                         call.handoverTo(destAcct, videoState, extras);
                     } else {
                         Log.w(this, "handoverTo, unknown call id: %s", callId);
                     }
-                }
+                });
             } finally {
                 Binder.restoreCallingIdentity(token);
             }
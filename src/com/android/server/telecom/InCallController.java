@@ -62,6 +62,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import com.android.internal.annotations.VisibleForTesting;
 // TODO: Needed for move to system service: import com.android.internal.R;
@@ -75,6 +76,7 @@ import com.android.server.telecom.ui.NotificationChannelManager;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -98,6 +100,13 @@ public class InCallController extends CallsManagerListenerBase implements
         AppOpsManager.OnOpActiveChangedListener {
     public static final String NOTIFICATION_TAG = InCallController.class.getSimpleName();
     public static final int IN_CALL_SERVICE_NOTIFICATION_ID = 3;
+
+    /**
+     * Boolean {@link InCallService} meta-data; when {@code true}, the service is not sent call
+     * updates which are identical to the previous update it was sent for the same call.
+     */
+    public static final String METADATA_SUPPRESS_UNCHANGED_CALL_UPDATES =
+            "com.android.server.telecom.SUPPRESS_UNCHANGED_CALL_UPDATES";
     private AnomalyReporterAdapter mAnomalyReporter = new AnomalyReporterAdapterImpl();
 
     /**
@@ -111,6 +120,11 @@ public class InCallController extends CallsManagerListenerBase implements
             UUID.fromString("7d58dedf-b71d-4c18-9d23-47b434bde58b");
     public static final String NULL_IN_CALL_SERVICE_BINDING_ERROR_MSG =
             "InCallController#sendCallToInCallService with null InCallService binding";
+    @VisibleForTesting
+    public InCallUpdateCoalescer getUpdateCoalescer() {
+        return mUpdateCoalescer;
+    }
+
     @VisibleForTesting
     public void setAnomalyReporterAdapter(AnomalyReporterAdapter mAnomalyReporterAdapter){
         mAnomalyReporter = mAnomalyReporterAdapter;
@@ -157,6 +171,7 @@ public class InCallController extends CallsManagerListenerBase implements
         private final int mType;
         private long mBindingStartTime;
         private long mDisconnectTime;
+        private boolean mIsUnchangedUpdateSuppressionEnabled;
 
         private boolean mHasCrossUserOrProfilePerm;
 
@@ -204,6 +219,14 @@ public class InCallController extends CallsManagerListenerBase implements
             mDisconnectTime = disconnectTime;
         }
 
+        public boolean isUnchangedUpdateSuppressionEnabled() {
+            return mIsUnchangedUpdateSuppressionEnabled;
+        }
+
+        public void setUnchangedUpdateSuppressionEnabled(boolean isEnabled) {
+            mIsUnchangedUpdateSuppressionEnabled = isEnabled;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -238,6 +261,32 @@ public class InCallController extends CallsManagerListenerBase implements
         }
     }
 
+    /**
+     * A bound {@link IInCallService} along with the properties of its {@link InCallServiceInfo}
+     * which are needed to decide what to send it.
+     */
+    private static final class InCallServiceRoute {
+        public final InCallServiceInfo info;
+        public final IInCallService service;
+        public final boolean isExternalCallsSupported;
+        public final boolean isSelfManagedCallsSupported;
+        public final int type;
+        // Whether the service is sent the extras which are hidden from third party services.
+        public final boolean isSystemInCallService;
+
+        InCallServiceRoute(InCallServiceInfo info, IInCallService service) {
+            this.info = info;
+            this.service = service;
+            isExternalCallsSupported = info.isExternalCallsSupported();
+            isSelfManagedCallsSupported = info.isSelfManagedCallsSupported();
+            type = info.getType();
+            isSystemInCallService = type == IN_CALL_SERVICE_TYPE_SYSTEM_UI
+                    || type == IN_CALL_SERVICE_TYPE_NON_UI;
+        }
+    }
+
+    private static final InCallServiceRoute[] NO_ROUTES = new InCallServiceRoute[0];
+
     private class InCallServiceBindingConnection extends InCallServiceConnection {
 
         private final ServiceConnection mServiceConnection = new ServiceConnection() {
@@ -1220,6 +1269,8 @@ public class InCallController extends CallsManagerListenerBase implements
     private static final int IN_CALL_SERVICE_TYPE_NON_UI = 4;
     private static final int IN_CALL_SERVICE_TYPE_COMPANION = 5;
     private static final int IN_CALL_SERVICE_TYPE_BLUETOOTH = 6;
+    private static final String[] IN_CALL_SERVICE_TYPE_NAMES = { "invalid", "defaultDialerUi",
+            "systemUi", "carModeUi", "nonUi", "companion", "bluetooth" };
 
     // Timeout value to be used to ensure future completion for mDisconnectedToneBtFutures. This is
     // set to 4 seconds to account for the exceptional case (TONE_CONGESTION).
@@ -1236,8 +1287,20 @@ public class InCallController extends CallsManagerListenerBase implements
     private final Map<UserHandle, Map<InCallServiceInfo, IInCallService>>
             mCombinedInCallServiceMap = new ArrayMap<>();
 
+    /**
+     * Immutable snapshot of {@link #getCombinedInCallServiceMap()} used to fan out updates; only
+     * rebuilt when a service is bound or unbound, see {@link #rebuildInCallServiceRoutes()}.
+     */
+    private Map<UserHandle, InCallServiceRoute[]> mInCallServiceRoutes = Collections.emptyMap();
+    /** The routes of {@link #mInCallServiceRoutes} for all users, in the same order. */
+    private InCallServiceRoute[] mAllInCallServiceRoutes = NO_ROUTES;
+
     private final CallIdMapper mCallIdMapper = new CallIdMapper(Call::getId);
     private final Collection<Call> mBtIcsCallTracker = new ArraySet<>();
+    /** Incoming calls still being filtered, which {@link #prebindToServices(Call)} bound for. */
+    private final Set<Call> mPrebindingCalls = new ArraySet<>();
+    /** The time taken to connect to each type of InCallService after requesting the binding. */
+    private final SparseArray<LatencyHistogram> mBindLatencies = new SparseArray<>();
 
     private final Context mContext;
     private final AppOpsManager mAppOpsManager;
@@ -1249,6 +1312,7 @@ public class InCallController extends CallsManagerListenerBase implements
     private final DefaultDialerCache mDefaultDialerCache;
     private final EmergencyCallHelper mEmergencyCallHelper;
     private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final InCallUpdateCoalescer mUpdateCoalescer;
     private final Map<UserHandle, CarSwappingInCallServiceConnection>
             mInCallServiceConnections = new ArrayMap<>();
     private final Map<UserHandle, NonUIInCallServiceConnectionCollection>
@@ -1341,6 +1405,8 @@ public class InCallController extends CallsManagerListenerBase implements
         userAddedFilter.setPriority(IntentFilter.SYSTEM_HIGH_PRIORITY);
         mContext.registerReceiver(mUserAddedReceiver, userAddedFilter);
         mFeatureFlags = featureFlags;
+        mUpdateCoalescer = new InCallUpdateCoalescer(mHandler, mLock, this::sendCallUpdate,
+                mContext.getResources().getBoolean(R.bool.coalesce_in_call_service_updates));
     }
 
     private void restrictPhoneCallOps() {
@@ -1417,6 +1483,8 @@ public class InCallController extends CallsManagerListenerBase implements
         UserHandle userFromCall = getUserFromCall(call);
 
         Log.i(this, "onCallAdded: %s", call);
+        mPrebindingCalls.remove(call);
+        mUpdateCoalescer.flush();
         // Track the call if we don't already know about it.
         addCall(call);
 
@@ -1512,6 +1580,8 @@ public class InCallController extends CallsManagerListenerBase implements
     @Override
     public void onCallRemoved(Call call) {
         Log.i(this, "onCallRemoved: %s", call);
+        mUpdateCoalescer.flush();
+        mUpdateCoalescer.forgetCall(call);
         // Instead of checking if there are no active calls, we should check if there any calls with
         // the same associated user returned from getUserFromCall. For instance, it's possible to
         // have calls coexist on the personal profile and work profile, in which case, we would only
@@ -1649,12 +1719,15 @@ public class InCallController extends CallsManagerListenerBase implements
         // Ensure that BT ICS instance is cleaned up
         if (mBTInCallServices.remove(userHandle) != null) {
             updateCombinedInCallServiceMap(userHandle);
+            rebuildInCallServiceRoutes();
         }
     }
 
     @Override
     public void onExternalCallChanged(Call call, boolean isExternalCall) {
         Log.i(this, "onExternalCallChanged: %s -> %b", call, isExternalCall);
+        mUpdateCoalescer.flush();
+        mUpdateCoalescer.forgetCall(call);
 
         List<ComponentName> componentsUpdated = new ArrayList<>();
         UserHandle userFromCall = getUserFromCall(call);
@@ -1776,96 +1849,77 @@ public class InCallController extends CallsManagerListenerBase implements
     @Override
     public void onCallAudioStateChanged(CallAudioState oldCallAudioState,
             CallAudioState newCallAudioState) {
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (!serviceMap.isEmpty()) {
+        if (!mInCallServiceRoutes.isEmpty()) {
             Log.i(this, "Calling onAudioStateChanged, audioState: %s -> %s", oldCallAudioState,
                     newCallAudioState);
             maybeTrackMicrophoneUse(newCallAudioState.isMuted());
-            serviceMap.values().forEach(inCallServices -> {
-                for (IInCallService inCallService : inCallServices.values()) {
-                    try {
-                        inCallService.onCallAudioStateChanged(newCallAudioState);
-                    } catch (RemoteException ignored) {
-                    }
+            for (InCallServiceRoute route : mAllInCallServiceRoutes) {
+                try {
+                    route.service.onCallAudioStateChanged(newCallAudioState);
+                } catch (RemoteException ignored) {
                 }
-            });
+            }
         }
     }
 
     @Override
     public void onCallEndpointChanged(CallEndpoint callEndpoint) {
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (!serviceMap.isEmpty()) {
+        if (!mInCallServiceRoutes.isEmpty()) {
             Log.i(this, "Calling onCallEndpointChanged");
-            serviceMap.values().forEach(inCallServices -> {
-                for (IInCallService inCallService : inCallServices.values()) {
-                    try {
-                        inCallService.onCallEndpointChanged(callEndpoint);
-                    } catch (RemoteException ignored) {
-                        Log.d(this, "Remote exception calling onCallEndpointChanged");
-                    }
+            for (InCallServiceRoute route : mAllInCallServiceRoutes) {
+                try {
+                    route.service.onCallEndpointChanged(callEndpoint);
+                } catch (RemoteException ignored) {
+                    Log.d(this, "Remote exception calling onCallEndpointChanged");
                 }
-            });
+            }
         }
     }
 
     @Override
     public void onAvailableCallEndpointsChanged(Set<CallEndpoint> availableCallEndpoints) {
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (!serviceMap.isEmpty()) {
+        if (!mInCallServiceRoutes.isEmpty()) {
             Log.i(this, "Calling onAvailableCallEndpointsChanged");
             List<CallEndpoint> availableEndpoints = new ArrayList<>(availableCallEndpoints);
-            serviceMap.values().forEach(inCallServices -> {
-                for (IInCallService inCallService : inCallServices.values()) {
-                    try {
-                        inCallService.onAvailableCallEndpointsChanged(availableEndpoints);
-                    } catch (RemoteException ignored) {
-                        Log.d(this, "Remote exception calling onAvailableCallEndpointsChanged");
-                    }
+            for (InCallServiceRoute route : mAllInCallServiceRoutes) {
+                try {
+                    route.service.onAvailableCallEndpointsChanged(availableEndpoints);
+                } catch (RemoteException ignored) {
+                    Log.d(this, "Remote exception calling onAvailableCallEndpointsChanged");
                 }
-            });
+            }
         }
     }
 
     @Override
     public void onMuteStateChanged(boolean isMuted) {
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (!serviceMap.isEmpty()) {
+        if (!mInCallServiceRoutes.isEmpty()) {
             Log.i(this, "Calling onMuteStateChanged");
-            serviceMap.values().forEach(inCallServices -> {
-                for (IInCallService inCallService : inCallServices.values()) {
-                    try {
-                        inCallService.onMuteStateChanged(isMuted);
-                    } catch (RemoteException ignored) {
-                        Log.d(this, "Remote exception calling onMuteStateChanged");
-                    }
+            for (InCallServiceRoute route : mAllInCallServiceRoutes) {
+                try {
+                    route.service.onMuteStateChanged(isMuted);
+                } catch (RemoteException ignored) {
+                    Log.d(this, "Remote exception calling onMuteStateChanged");
                 }
-            });
+            }
         }
     }
 
     @Override
     public void onCanAddCallChanged(boolean canAddCall) {
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (!serviceMap.isEmpty()) {
+        if (!mInCallServiceRoutes.isEmpty()) {
             Log.i(this, "onCanAddCallChanged : %b", canAddCall);
-            serviceMap.values().forEach(inCallServices -> {
-                for (IInCallService inCallService : inCallServices.values()) {
-                    try {
-                        inCallService.onCanAddCallChanged(canAddCall);
-                    } catch (RemoteException ignored) {
-                    }
+            for (InCallServiceRoute route : mAllInCallServiceRoutes) {
+                try {
+                    route.service.onCanAddCallChanged(canAddCall);
+                } catch (RemoteException ignored) {
                 }
-            });
+            }
         }
     }
 
     void onPostDialWait(Call call, String remaining) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2010,6 +2064,7 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     private void notifyConnectionEvent(Call call, String event, Bundle extras) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2028,6 +2083,7 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     private void notifyRttInitiationFailure(Call call, int reason) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2048,6 +2104,7 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     private void notifyRemoteRttRequest(Call call, int requestId) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2068,6 +2125,7 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     private void notifyHandoverFailed(Call call, int error) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2082,6 +2140,7 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     private void notifyHandoverComplete(Call call) {
+        mUpdateCoalescer.flush();
         UserHandle userFromCall = getUserFromCall(call);
         Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
                 getCombinedInCallServiceMap();
@@ -2120,6 +2179,47 @@ public class InCallController extends CallsManagerListenerBase implements
             // BT ICS is still bound (disconnected tone hasn't finished playing).
             updateCombinedInCallServiceMap(userHandle);
         }
+        rebuildInCallServiceRoutes();
+    }
+
+    /**
+     * Starts binding to the InCallServices for an incoming call which is still being filtered, so
+     * that the UI is likely to be connected by the time the call rings.  The services are not told
+     * about the call until it is added through {@link #onCallAdded(Call)};
+     * {@link #onPrebindingCallFiltered(Call)} unbinds again if the call is not added.
+     *
+     * @param call The incoming call being filtered.
+     */
+    public void prebindToServices(Call call) {
+        UserHandle userFromCall = getUserFromCall(call);
+        if (isBoundAndConnectedToServices(userFromCall)) {
+            return;
+        }
+        Log.i(this, "prebindToServices: %s", call);
+        Log.addEvent(call, LogUtils.Events.INFO, "Pre-binding InCallServices");
+        mPrebindingCalls.add(call);
+        bindToServices(call);
+    }
+
+    /**
+     * Called once filtering of an incoming call passed to {@link #prebindToServices(Call)}
+     * completes.  If the call was blocked and no other calls need the services, unbinds from them.
+     *
+     * @param call The incoming call which was filtered.
+     */
+    public void onPrebindingCallFiltered(Call call) {
+        if (!mPrebindingCalls.remove(call)) {
+            // Either the call was added, or the services were not pre-bound for it.
+            return;
+        }
+        UserHandle userFromCall = getUserFromCall(call);
+        boolean isServiceNeeded = mCallsManager.getCalls().stream()
+                .anyMatch(c -> getUserFromCall(c).equals(userFromCall))
+                || mPrebindingCalls.stream().anyMatch(c -> getUserFromCall(c).equals(userFromCall));
+        if (!isServiceNeeded) {
+            Log.i(this, "onPrebindingCallFiltered: %s was not added; unbinding.", call);
+            unbindFromServices(userFromCall);
+        }
     }
 
     /**
@@ -2454,7 +2554,8 @@ public class InCallController extends CallsManagerListenerBase implements
                 userContext.getPackageManager() : packageManager;
 
 
-        for (ResolveInfo entry : packageManager.queryIntentServicesAsUser(
+        for (ResolveInfo entry : ServiceComponentRegistry.queryIntentServicesAsUser(
+                mCallsManager.getServiceComponentRegistry(), mContext,
                 serviceIntent,
                 PackageManager.GET_META_DATA | PackageManager.MATCH_DISABLED_COMPONENTS,
                 userHandle.getIdentifier())) {
@@ -2496,9 +2597,13 @@ public class InCallController extends CallsManagerListenerBase implements
                         hasInteractAcrossUserOrProfilePerm);
 
                 if ((!ignoreDisabled || isEnabled) && isRequestedType) {
-                    retval.add(new InCallServiceInfo(foundComponentName, isExternalCallsSupported,
-                            isSelfManageCallsSupported, requestedType,
-                            hasInteractAcrossUserOrProfilePerm));
+                    InCallServiceInfo info = new InCallServiceInfo(foundComponentName,
+                            isExternalCallsSupported, isSelfManageCallsSupported, requestedType,
+                            hasInteractAcrossUserOrProfilePerm);
+                    info.setUnchangedUpdateSuppressionEnabled(serviceInfo.metaData != null
+                            && serviceInfo.metaData.getBoolean(
+                                    METADATA_SUPPRESS_UNCHANGED_CALL_UPDATES, false));
+                    retval.add(info);
                 }
             }
         }
@@ -2627,7 +2732,14 @@ public class InCallController extends CallsManagerListenerBase implements
      * @return True if we successfully connected.
      */
     private boolean onConnected(InCallServiceInfo info, IBinder service, UserHandle userHandle) {
-        Log.i(this, "onConnected to %s", info.getComponentName());
+        long bindLatencyMillis = mClockProxy.elapsedRealtime() - info.mBindingStartTime;
+        Log.i(this, "onConnected to %s after %d ms", info.getComponentName(), bindLatencyMillis);
+        LatencyHistogram bindLatencies = mBindLatencies.get(info.getType());
+        if (bindLatencies == null) {
+            bindLatencies = new LatencyHistogram();
+            mBindLatencies.put(info.getType(), bindLatencies);
+        }
+        bindLatencies.record(TimeUnit.MILLISECONDS.toMicros(bindLatencyMillis));
 
         if (info.getType() == IN_CALL_SERVICE_TYPE_CAR_MODE_UI
                 || info.getType() == IN_CALL_SERVICE_TYPE_SYSTEM_UI
@@ -2654,6 +2766,7 @@ public class InCallController extends CallsManagerListenerBase implements
         if (mFeatureFlags.separatelyBindToBtIncallService()) {
             updateCombinedInCallServiceMap(userHandle);
         }
+        rebuildInCallServiceRoutes();
 
         try {
             inCallService.setInCallAdapter(
@@ -2716,6 +2829,7 @@ public class InCallController extends CallsManagerListenerBase implements
 
             // Track the call if we don't already know about it.
             addCall(call);
+            mUpdateCoalescer.forgetCallForService(info, call);
             ParcelableCall parcelableCall = ParcelableCallUtils.toParcelableCall(
                     call,
                     true /* includeVideoProvider */,
@@ -2752,6 +2866,7 @@ public class InCallController extends CallsManagerListenerBase implements
      */
     private void onDisconnected(InCallServiceInfo disconnectedInfo, UserHandle userHandle) {
         Log.i(this, "onDisconnected from %s", disconnectedInfo.getComponentName());
+        mUpdateCoalescer.forgetService(disconnectedInfo);
         if (disconnectedInfo.getType() == IN_CALL_SERVICE_TYPE_CAR_MODE_UI
                 || disconnectedInfo.getType() == IN_CALL_SERVICE_TYPE_SYSTEM_UI
                 || disconnectedInfo.getType() == IN_CALL_SERVICE_TYPE_DEFAULT_DIALER_UI) {
@@ -2765,6 +2880,7 @@ public class InCallController extends CallsManagerListenerBase implements
             mBTInCallServices.remove(userHandle);
             updateCombinedInCallServiceMap(userHandle);
         }
+        rebuildInCallServiceRoutes();
     }
 
     /**
@@ -2777,7 +2893,8 @@ public class InCallController extends CallsManagerListenerBase implements
     }
 
     /**
-     * Informs all {@link InCallService} instances of the updated call information.
+     * Informs all {@link InCallService} instances of the updated call information.  The update may
+     * be coalesced with other updates to the same call, see {@link InCallUpdateCoalescer}.
      *
      * @param call                 The {@link Call}.
      * @param videoProviderChanged {@code true} if the video provider changed, {@code false}
@@ -2791,15 +2908,23 @@ public class InCallController extends CallsManagerListenerBase implements
      */
     private void updateCall(Call call, boolean videoProviderChanged, boolean rttInfoChanged,
             String exceptPackageName) {
+        mUpdateCoalescer.requestUpdate(call, videoProviderChanged, rttInfoChanged,
+                exceptPackageName);
+    }
+
+    /**
+     * Sends the updated call information to all {@link InCallService} instances; see
+     * {@link #updateCall(Call, boolean, boolean, String)}.
+     */
+    private void sendCallUpdate(Call call, boolean videoProviderChanged, boolean rttInfoChanged,
+            String exceptPackageName) {
         UserHandle userFromCall = getUserFromCall(call);
-        Map<UserHandle, Map<InCallController.InCallServiceInfo, IInCallService>> serviceMap =
-                getCombinedInCallServiceMap();
-        if (serviceMap.containsKey(userFromCall)) {
+        InCallServiceRoute[] routes = mInCallServiceRoutes.get(userFromCall);
+        if (routes != null) {
             Log.i(this, "Sending updateCall %s", call);
             List<ComponentName> componentsUpdated = new ArrayList<>();
-            for (Map.Entry<InCallServiceInfo, IInCallService> entry : serviceMap.
-                    get(userFromCall).entrySet()) {
-                InCallServiceInfo info = entry.getKey();
+            for (InCallServiceRoute route : routes) {
+                InCallServiceInfo info = route.info;
                 ComponentName componentName = info.getComponentName();
 
                 // If specified, skip ICS if it matches the package name.  Used for cases where on
@@ -2810,12 +2935,12 @@ public class InCallController extends CallsManagerListenerBase implements
                     continue;
                 }
 
-                if (call.isExternalCall() && !info.isExternalCallsSupported()) {
+                if (call.isExternalCall() && !route.isExternalCallsSupported) {
                     continue;
                 }
 
                 if (call.isSelfManaged() && (!call.visibleToInCallService()
-                        || !info.isSelfManagedCallsSupported())) {
+                        || !route.isSelfManagedCallsSupported)) {
                     continue;
                 }
 
@@ -2823,13 +2948,12 @@ public class InCallController extends CallsManagerListenerBase implements
                         call,
                         videoProviderChanged /* includeVideoProvider */,
                         mCallsManager.getPhoneAccountRegistrar(),
-                        info.isExternalCallsSupported(),
+                        route.isExternalCallsSupported,
                         rttInfoChanged && info.equals(
                                 mInCallServiceConnections.get(userFromCall).getInfo()),
-                        info.getType() == IN_CALL_SERVICE_TYPE_SYSTEM_UI ||
-                        info.getType() == IN_CALL_SERVICE_TYPE_NON_UI);
-                IInCallService inCallService = entry.getValue();
-                boolean isDisconnectingBtIcs = info.getType() == IN_CALL_SERVICE_TYPE_BLUETOOTH
+                        route.isSystemInCallService);
+                IInCallService inCallService = route.service;
+                boolean isDisconnectingBtIcs = route.type == IN_CALL_SERVICE_TYPE_BLUETOOTH
                         && call.getState() == CallState.DISCONNECTED;
 
                 if (isDisconnectingBtIcs) {
@@ -2862,7 +2986,7 @@ public class InCallController extends CallsManagerListenerBase implements
                         // end tone.
                         Log.i(this, "updateCall: skip update for disconnected call to BT ICS");
                     }
-                } else {
+                } else if (mUpdateCoalescer.shouldSendUpdate(info, call, parcelableCall)) {
                     componentsUpdated.add(componentName);
                     updateCallToIcs(inCallService, info, parcelableCall, componentName);
                 }
@@ -2981,6 +3105,20 @@ public class InCallController extends CallsManagerListenerBase implements
         }
         pw.decreaseIndent();
 
+        pw.println("Bind latencies by InCallService type:");
+        pw.increaseIndent();
+        for (int i = 0; i < mBindLatencies.size(); i++) {
+            LatencyHistogram histogram = mBindLatencies.valueAt(i);
+            pw.println(IN_CALL_SERVICE_TYPE_NAMES[mBindLatencies.keyAt(i)]
+                    + ": count=" + histogram.getCount()
+                    + ", p50Micros=" + histogram.getValueAtPercentile(50)
+                    + ", p90Micros=" + histogram.getValueAtPercentile(90)
+                    + ", p99Micros=" + histogram.getValueAtPercentile(99)
+                    + ", maxMicros=" + histogram.getMaxMicros());
+        }
+        pw.decreaseIndent();
+
+        mUpdateCoalescer.dump(pw);
         mCarModeTracker.dump(pw);
     }
 
@@ -3028,7 +3166,8 @@ public class InCallController extends CallsManagerListenerBase implements
 
         Intent intent = new Intent(InCallService.SERVICE_INTERFACE)
             .setPackage(ringingPackage);
-        List<ResolveInfo> entries = mContext.getPackageManager().queryIntentServicesAsUser(
+        List<ResolveInfo> entries = ServiceComponentRegistry.queryIntentServicesAsUser(
+                mCallsManager.getServiceComponentRegistry(), mContext,
                 intent, PackageManager.GET_META_DATA,
                 userHandle.getIdentifier());
         if (entries.isEmpty()) {
@@ -3441,6 +3580,33 @@ public class InCallController extends CallsManagerListenerBase implements
         }
     }
 
+    /**
+     * Rebuilds {@link #mInCallServiceRoutes} from {@link #getCombinedInCallServiceMap()}; must be
+     * called whenever a service is added to or removed from it.
+     */
+    private void rebuildInCallServiceRoutes() {
+        synchronized (mLock) {
+            Map<UserHandle, Map<InCallServiceInfo, IInCallService>> serviceMap =
+                    getCombinedInCallServiceMap();
+            Map<UserHandle, InCallServiceRoute[]> routes = new ArrayMap<>(serviceMap.size());
+            List<InCallServiceRoute> allRoutes = new ArrayList<>();
+            for (Map.Entry<UserHandle, Map<InCallServiceInfo, IInCallService>> userEntry :
+                    serviceMap.entrySet()) {
+                InCallServiceRoute[] userRoutes =
+                        new InCallServiceRoute[userEntry.getValue().size()];
+                int i = 0;
+                for (Map.Entry<InCallServiceInfo, IInCallService> entry :
+                        userEntry.getValue().entrySet()) {
+                    userRoutes[i] = new InCallServiceRoute(entry.getKey(), entry.getValue());
+                    allRoutes.add(userRoutes[i++]);
+                }
+                routes.put(userEntry.getKey(), userRoutes);
+            }
+            mInCallServiceRoutes = Collections.unmodifiableMap(routes);
+            mAllInCallServiceRoutes = allRoutes.toArray(NO_ROUTES);
+        }
+    }
+
     private Map<UserHandle,
             Map<InCallController.InCallServiceInfo, IInCallService>> getCombinedInCallServiceMap() {
         synchronized (mLock) {
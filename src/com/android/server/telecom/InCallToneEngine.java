@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.media.AudioAttributes;
+import android.media.ToneGenerator;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.telecom.Log;
+import android.util.Pair;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the thread and the audio resources used to play {@link InCallTonePlayer} tones.
+ * <p>
+ * All tones are played from a single long-lived thread, which processes the start and stop
+ * requests of the tone players in order. Playback itself is asynchronous, so a long running tone
+ * such as ringback or call waiting does not hold up other tones.
+ * <p>
+ * While warm (see {@link #prewarm}), the engine keeps an idle {@link ToneGenerator} per stream
+ * type and volume, and a prepared media player per tone resource, stream type and audio
+ * attributes, so that starting a tone does not pay for creating them. Otherwise they are created
+ * when a tone starts and released when it ends.
+ * <p>
+ * Unless noted otherwise, methods must be called on the engine thread, see {@link #getHandler()}.
+ */
+public class InCallToneEngine {
+    /**
+     * Identifies the tones a prepared media player can be handed to.
+     */
+    private static final class MediaPlayerKey {
+        private final int mResourceId;
+        private final int mStream;
+        private final AudioAttributes mAttributes;
+
+        MediaPlayerKey(int resourceId, int stream, AudioAttributes attributes) {
+            mResourceId = resourceId;
+            mStream = stream;
+            mAttributes = attributes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MediaPlayerKey)) return false;
+            MediaPlayerKey that = (MediaPlayerKey) o;
+            return mResourceId == that.mResourceId && mStream == that.mStream
+                    && Objects.equals(mAttributes, that.mAttributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mResourceId, mStream, mAttributes);
+        }
+    }
+
+    private static final String TAG = InCallToneEngine.class.getSimpleName();
+
+    private static HandlerThread sEngineThread = null;
+    private static final Object sLock = new Object();
+
+    private final Handler mHandler;
+    private final InCallTonePlayer.ToneGeneratorFactory mToneGeneratorFactory;
+    private final InCallTonePlayer.MediaPlayerFactory mMediaPlayerFactory;
+
+    // Keyed by stream type and volume.
+    private final Map<Pair<Integer, Integer>, ToneGenerator> mIdleToneGenerators = new HashMap<>();
+    private final Map<MediaPlayerKey, InCallTonePlayer.MediaPlayerAdapter> mPreparedMediaPlayers =
+            new HashMap<>();
+    private boolean mIsWarm = false;
+
+    private final AtomicLong mWarmStarts = new AtomicLong(0);
+
+    public InCallToneEngine(InCallTonePlayer.ToneGeneratorFactory toneGeneratorFactory,
+            InCallTonePlayer.MediaPlayerFactory mediaPlayerFactory) {
+        this(getEngineLooper(), toneGeneratorFactory, mediaPlayerFactory);
+    }
+
+    @VisibleForTesting
+    public InCallToneEngine(Looper looper,
+            InCallTonePlayer.ToneGeneratorFactory toneGeneratorFactory,
+            InCallTonePlayer.MediaPlayerFactory mediaPlayerFactory) {
+        mHandler = new Handler(looper);
+        mToneGeneratorFactory = toneGeneratorFactory;
+        mMediaPlayerFactory = mediaPlayerFactory;
+    }
+
+    private static Looper getEngineLooper() {
+        synchronized (sLock) {
+            if (sEngineThread == null) {
+                sEngineThread = new HandlerThread(TAG);
+                sEngineThread.start();
+            }
+            return sEngineThread.getLooper();
+        }
+    }
+
+    /**
+     * @return The handler of the engine thread; may be called from any thread.
+     */
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * Creates the tone generator and media player likely to be needed for the next tones ahead of
+     * time, and keeps the resources of finished tones for reuse until {@link #releaseWarm()}.
+     * @param toneStream The stream type the generated tones will likely be played on.
+     * @param toneVolume The volume of the tone generator to create.
+     * @param mediaResourceId The media tone resource to prepare.
+     * @param mediaStream The stream type the media tones will likely be played on.
+     * @param attributes The audio attributes to prepare the media tone with.
+     */
+    public void prewarm(int toneStream, int toneVolume, int mediaResourceId, int mediaStream,
+            AudioAttributes attributes) {
+        mIsWarm = true;
+        Pair<Integer, Integer> toneKey = new Pair<>(toneStream, toneVolume);
+        if (!mIdleToneGenerators.containsKey(toneKey)) {
+            ToneGenerator toneGenerator = createToneGenerator(toneStream, toneVolume);
+            if (toneGenerator != null) {
+                mIdleToneGenerators.put(toneKey, toneGenerator);
+            }
+        }
+        prepareMediaPlayer(mediaResourceId, mediaStream, attributes);
+    }
+
+    /**
+     * Releases the idle resources and stops keeping the resources of finished tones.
+     */
+    public void releaseWarm() {
+        mIsWarm = false;
+        for (ToneGenerator toneGenerator : mIdleToneGenerators.values()) {
+            toneGenerator.release();
+        }
+        mIdleToneGenerators.clear();
+        for (InCallTonePlayer.MediaPlayerAdapter mediaPlayer : mPreparedMediaPlayers.values()) {
+            mediaPlayer.release();
+        }
+        mPreparedMediaPlayers.clear();
+    }
+
+    /**
+     * @return A tone generator for a tone about to be played, or {@code null} if it could not be
+     * created.  Must be handed back with {@link #releaseToneGenerator} once the tone stops.
+     */
+    public ToneGenerator acquireToneGenerator(int stream, int toneVolume) {
+        ToneGenerator toneGenerator = mIdleToneGenerators.remove(new Pair<>(stream, toneVolume));
+        if (toneGenerator != null) {
+            mWarmStarts.incrementAndGet();
+            return toneGenerator;
+        }
+        return createToneGenerator(stream, toneVolume);
+    }
+
+    /**
+     * Hands back a tone generator once its tone stopped.
+     */
+    public void releaseToneGenerator(int stream, int toneVolume, ToneGenerator toneGenerator) {
+        toneGenerator.stopTone();
+        Pair<Integer, Integer> key = new Pair<>(stream, toneVolume);
+        if (mIsWarm && !mIdleToneGenerators.containsKey(key)) {
+            mIdleToneGenerators.put(key, toneGenerator);
+        } else {
+            toneGenerator.release();
+        }
+    }
+
+    /**
+     * @return A prepared media player for a tone about to be played.  It must be released by the
+     * caller once the tone stops; see {@link #onMediaPlayerReleased}.
+     */
+    public InCallTonePlayer.MediaPlayerAdapter acquireMediaPlayer(int resourceId, int stream,
+            AudioAttributes attributes) {
+        InCallTonePlayer.MediaPlayerAdapter mediaPlayer =
+                mPreparedMediaPlayers.remove(new MediaPlayerKey(resourceId, stream, attributes));
+        if (mediaPlayer != null) {
+            mWarmStarts.incrementAndGet();
+            return mediaPlayer;
+        }
+        return mMediaPlayerFactory.get(resourceId, attributes);
+    }
+
+    /**
+     * Called once the media player of a tone was released, to prepare the next one if warm.
+     */
+    public void onMediaPlayerReleased(int resourceId, int stream, AudioAttributes attributes) {
+        if (!mIsWarm) {
+            return;
+        }
+        // Prepare the replacement after the current work so it does not delay other tones.
+        mHandler.post(() -> {
+            if (mIsWarm) {
+                prepareMediaPlayer(resourceId, stream, attributes);
+            }
+        });
+    }
+
+    private void prepareMediaPlayer(int resourceId, int stream, AudioAttributes attributes) {
+        MediaPlayerKey key = new MediaPlayerKey(resourceId, stream, attributes);
+        if (mPreparedMediaPlayers.containsKey(key)) {
+            return;
+        }
+        // If preparing the media player fails, the tone creates its own when it starts.
+        InCallTonePlayer.MediaPlayerAdapter mediaPlayer;
+        try {
+            mediaPlayer = mMediaPlayerFactory.get(resourceId, attributes);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to prepare MediaPlayer: %s", e);
+            return;
+        }
+        if (mediaPlayer != null) {
+            mPreparedMediaPlayers.put(key, mediaPlayer);
+        }
+    }
+
+    private ToneGenerator createToneGenerator(int stream, int toneVolume) {
+        // If the ToneGenerator creation fails, just continue without it. It is a local audio
+        // signal, and is not as important.
+        try {
+            return mToneGeneratorFactory.get(stream, toneVolume);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to create ToneGenerator: %s", e);
+            return null;
+        }
+    }
+
+    @VisibleForTesting
+    public long getWarmStartCount() {
+        return mWarmStarts.get();
+    }
+}
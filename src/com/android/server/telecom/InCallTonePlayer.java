@@ -32,18 +32,16 @@ import android.telecom.Logging.Session;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.telecom.flags.FeatureFlags;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Play a call-related tone (ringback, busy signal, etc.) either through ToneGenerator, or using a
  * media resource file.
  * To use, create an instance using InCallTonePlayer.Factory (passing in the TONE_* constant for
- * the tone you want) and start() it. Implemented on top of {@link Thread} so that the tone plays in
- * its own thread.
+ * the tone you want) and call startTone(). The tone is played on the thread of the
+ * {@link InCallToneEngine} shared by all tone players of the factory.
  */
-public class InCallTonePlayer extends Thread {
+public class InCallTonePlayer {
 
     /**
      * Factory used to create InCallTonePlayers. Exists to aid with testing mocks.
@@ -52,11 +50,10 @@ public class InCallTonePlayer extends Thread {
         private CallAudioManager mCallAudioManager;
         private final CallAudioRoutePeripheralAdapter mCallAudioRoutePeripheralAdapter;
         private final TelecomSystem.SyncRoot mLock;
-        private final ToneGeneratorFactory mToneGeneratorFactory;
-        private final MediaPlayerFactory mMediaPlayerFactory;
         private final AudioManagerAdapter mAudioManagerAdapter;
         private final FeatureFlags mFeatureFlags;
         private final Looper mLooper;
+        private final InCallToneEngine mToneEngine;
 
         public Factory(CallAudioRoutePeripheralAdapter callAudioRoutePeripheralAdapter,
                 TelecomSystem.SyncRoot lock, ToneGeneratorFactory toneGeneratorFactory,
@@ -64,11 +61,10 @@ public class InCallTonePlayer extends Thread {
                 FeatureFlags flags, Looper looper) {
             mCallAudioRoutePeripheralAdapter = callAudioRoutePeripheralAdapter;
             mLock = lock;
-            mToneGeneratorFactory = toneGeneratorFactory;
-            mMediaPlayerFactory = mediaPlayerFactory;
             mAudioManagerAdapter = audioManagerAdapter;
             mFeatureFlags = flags;
             mLooper = looper;
+            mToneEngine = new InCallToneEngine(toneGeneratorFactory, mediaPlayerFactory);
         }
 
         public void setCallAudioManager(CallAudioManager callAudioManager) {
@@ -77,8 +73,36 @@ public class InCallTonePlayer extends Thread {
 
         public InCallTonePlayer createPlayer(Call call, int tone) {
             return new InCallTonePlayer(call, tone, mCallAudioManager,
-                    mCallAudioRoutePeripheralAdapter, mLock, mToneGeneratorFactory,
-                    mMediaPlayerFactory, mAudioManagerAdapter, mFeatureFlags, mLooper);
+                    mCallAudioRoutePeripheralAdapter, mLock, mToneEngine,
+                    mAudioManagerAdapter, mFeatureFlags, mLooper);
+        }
+
+        /**
+         * Prepares the audio resources for the most common tones (call waiting, ringback and call
+         * ended) ahead of time; called when calls start.
+         */
+        public void prewarm() {
+            mToneEngine.getHandler().post(() -> {
+                int toneStream = getStreamType(mFeatureFlags, mCallAudioRoutePeripheralAdapter,
+                        ToneGenerator.TONE_SUP_CALL_WAITING);
+                int mediaStream = getStreamType(mFeatureFlags, mCallAudioRoutePeripheralAdapter,
+                        ToneGenerator.TONE_UNKNOWN);
+                mToneEngine.prewarm(toneStream, RELATIVE_VOLUME_HIPRI, R.raw.endcall,
+                        mediaStream, getMediaToneAttributes(mediaStream));
+            });
+        }
+
+        /**
+         * Releases the resources prepared by {@link #prewarm()}; called when there are no more
+         * calls.  Tones which are still playing release their resources once they end.
+         */
+        public void releaseWarmResources() {
+            mToneEngine.getHandler().post(mToneEngine::releaseWarm);
+        }
+
+        @VisibleForTesting
+        public InCallToneEngine getToneEngine() {
+            return mToneEngine;
         }
     }
 
@@ -209,8 +233,25 @@ public class InCallTonePlayer extends Thread {
     /** Current state of the tone player. */
     private int mState;
 
+    /** Whether {@link #startTone()} was called. */
+    private boolean mIsStarted = false;
+
+    /**
+     * Whether the tone finished and its resources were handed back.  Only accessed on the engine
+     * thread.
+     */
+    private boolean mIsFinished = false;
+
+    /** For tones which are generated using ToneGenerator. */
+    private ToneGenerator mToneGenerator = null;
+    private int mToneStream;
+    private int mToneVolume;
+
     /** For tones which are not generated using ToneGenerator. */
     private MediaPlayerAdapter mToneMediaPlayer = null;
+    private int mMediaResourceId;
+    private int mMediaStream;
+    private AudioAttributes mMediaAttributes;
 
     /** Telecom lock object. */
     private final TelecomSystem.SyncRoot mLock;
@@ -219,16 +260,12 @@ public class InCallTonePlayer extends Thread {
     private final Object mSessionLock = new Object();
 
     private final Call mCall;
-    private final ToneGeneratorFactory mToneGenerator;
-    private final MediaPlayerFactory mMediaPlayerFactory;
+    private final InCallToneEngine mToneEngine;
     private final AudioManagerAdapter mAudioManagerAdapter;
     private final FeatureFlags mFeatureFlags;
 
-    /**
-     * Latch used for awaiting on playback, which may be interrupted if the tone is stopped from
-     * outside the playback.
-     */
-    private final CountDownLatch mPlaybackLatch = new CountDownLatch(1);
+    /** Ends the tone; posted to the engine thread when it times out or is stopped. */
+    private final java.lang.Runnable mFinishRunnable = this::finish;
 
     /**
      * Initializes the tone player. Private; use the {@link Factory} to create tone players.
@@ -241,8 +278,7 @@ public class InCallTonePlayer extends Thread {
             CallAudioManager callAudioManager,
             CallAudioRoutePeripheralAdapter callAudioRoutePeripheralAdapter,
             TelecomSystem.SyncRoot lock,
-            ToneGeneratorFactory toneGeneratorFactory,
-            MediaPlayerFactory mediaPlayerFactor,
+            InCallToneEngine toneEngine,
             AudioManagerAdapter audioManagerAdapter,
             FeatureFlags flags,
             Looper looper) {
@@ -252,24 +288,29 @@ public class InCallTonePlayer extends Thread {
         mCallAudioManager = callAudioManager;
         mCallAudioRoutePeripheralAdapter = callAudioRoutePeripheralAdapter;
         mLock = lock;
-        mToneGenerator = toneGeneratorFactory;
-        mMediaPlayerFactory = mediaPlayerFactor;
+        mToneEngine = toneEngine;
         mAudioManagerAdapter = audioManagerAdapter;
         mFeatureFlags = flags;
         mMainThreadHandler = new Handler(looper);
     }
 
-    /** {@inheritDoc} */
-    @Override
-    public void run() {
+    /**
+     * Starts playing the tone; runs on the engine thread.
+     */
+    private void play() {
         try {
             synchronized (mSessionLock) {
                 if (mSession != null) {
-                    Log.continueSession(mSession, "ICTP.r");
+                    Log.continueSession(mSession, "ICTP.p");
                     mSession = null;
                 }
             }
-            Log.d(this, "run(toneId = %s)", mToneId);
+            Log.d(this, "play(toneId = %s)", mToneId);
+            if (mState == STATE_STOPPED) {
+                Log.i(this, "play: tone stopped before it started.");
+                finish();
+                return;
+            }
 
             final int toneType;  // Passed to ToneGenerator.startTone.
             final int toneVolume;  // Passed to the ToneGenerator constructor.
@@ -375,14 +416,19 @@ public class InCallTonePlayer extends Thread {
                     throw new IllegalStateException("Bad toneId: " + mToneId);
             }
 
-            int stream = getStreamType(toneType);
+            int stream = getStreamType(mFeatureFlags, mCallAudioRoutePeripheralAdapter,
+                    toneType);
             if (toneType != ToneGenerator.TONE_UNKNOWN) {
                 playToneGeneratorTone(stream, toneVolume, toneType, toneLengthMillis);
             } else if (mediaResourceId != TONE_RESOURCE_ID_UNDEFINED) {
                 playMediaTone(stream, mediaResourceId);
+            } else {
+                finish();
             }
+        } catch (RuntimeException e) {
+            finish();
+            throw e;
         } finally {
-            cleanUpTonePlayer();
             Log.endSession();
         }
     }
@@ -391,20 +437,21 @@ public class InCallTonePlayer extends Thread {
      * @param toneType The ToneGenerator tone type
      * @return The ToneGenerator stream type
      */
-    private int getStreamType(int toneType) {
-        if (mFeatureFlags.useStreamVoiceCallTones()) {
+    private static int getStreamType(FeatureFlags featureFlags,
+            CallAudioRoutePeripheralAdapter callAudioRoutePeripheralAdapter, int toneType) {
+        if (featureFlags.useStreamVoiceCallTones()) {
             return AudioManager.STREAM_VOICE_CALL;
         }
 
         int stream = AudioManager.STREAM_VOICE_CALL;
-        if (mCallAudioRoutePeripheralAdapter.isBluetoothAudioOn()) {
+        if (callAudioRoutePeripheralAdapter.isBluetoothAudioOn()) {
             stream = AudioManager.STREAM_BLUETOOTH_SCO;
         }
         if (toneType != ToneGenerator.TONE_UNKNOWN) {
             if (stream == AudioManager.STREAM_BLUETOOTH_SCO) {
                 // Override audio stream for BT le device and hearing aid device
-                if (mCallAudioRoutePeripheralAdapter.isLeAudioDeviceOn()
-                        || mCallAudioRoutePeripheralAdapter.isHearingAidDeviceOn()) {
+                if (callAudioRoutePeripheralAdapter.isLeAudioDeviceOn()
+                        || callAudioRoutePeripheralAdapter.isHearingAidDeviceOn()) {
                     stream = AudioManager.STREAM_VOICE_CALL;
                 }
             }
@@ -412,6 +459,18 @@ public class InCallTonePlayer extends Thread {
         return stream;
     }
 
+    /**
+     * @param stream The audio stream on which to play a media tone.
+     * @return The audio attributes to play the media tone with.
+     */
+    private static AudioAttributes getMediaToneAttributes(int stream) {
+        return new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                .setLegacyStreamType(stream)
+                .build();
+    }
+
     /**
      * Play a tone generated by the {@link ToneGenerator}.
      * @param stream The stream on which the tone will be played.
@@ -421,38 +480,22 @@ public class InCallTonePlayer extends Thread {
      */
     private void playToneGeneratorTone(int stream, int toneVolume, int toneType,
             int toneLengthMillis) {
-        ToneGenerator toneGenerator = null;
-        try {
-            // If the ToneGenerator creation fails, just continue without it. It is a local audio
-            // signal, and is not as important.
-            try {
-                toneGenerator = mToneGenerator.get(stream, toneVolume);
-            } catch (RuntimeException e) {
-                Log.w(this, "Failed to create ToneGenerator.", e);
-                return;
-            }
+        mToneGenerator = mToneEngine.acquireToneGenerator(stream, toneVolume);
+        if (mToneGenerator == null) {
+            finish();
+            return;
+        }
+        mToneStream = stream;
+        mToneVolume = toneVolume;
 
-            Log.i(this, "playToneGeneratorTone: toneType=%d", toneType);
+        Log.i(this, "playToneGeneratorTone: toneType=%d", toneType);
 
-            mState = STATE_ON;
-            toneGenerator.startTone(toneType);
-            try {
-                Log.v(this, "Starting tone %d...waiting for %d ms.", mToneId,
-                        toneLengthMillis + TIMEOUT_BUFFER_MILLIS);
-                if (mPlaybackLatch.await(toneLengthMillis + TIMEOUT_BUFFER_MILLIS,
-                        TimeUnit.MILLISECONDS)) {
-                    Log.i(this, "playToneGeneratorTone: tone playback stopped.");
-                }
-            } catch (InterruptedException e) {
-                Log.w(this, "playToneGeneratorTone: wait interrupted", e);
-            }
-            // Redundant; don't want anyone re-using at this point.
-            mState = STATE_STOPPED;
-        } finally {
-            if (toneGenerator != null) {
-                toneGenerator.release();
-            }
-        }
+        mState = STATE_ON;
+        mToneGenerator.startTone(toneType);
+        Log.v(this, "Starting tone %d...waiting for %d ms.", mToneId,
+                toneLengthMillis + TIMEOUT_BUFFER_MILLIS);
+        mToneEngine.getHandler().postDelayed(mFinishRunnable,
+                (long) toneLengthMillis + TIMEOUT_BUFFER_MILLIS);
     }
 
     /**
@@ -463,12 +506,11 @@ public class InCallTonePlayer extends Thread {
     private void playMediaTone(int stream, int toneResourceId) {
         mState = STATE_ON;
         Log.i(this, "playMediaTone: toneResourceId=%d", toneResourceId);
-        AudioAttributes attributes = new AudioAttributes.Builder()
-                .setUsage(AudioAttributes.USAGE_VOICE_COMMUNICATION)
-                .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
-                .setLegacyStreamType(stream)
-                .build();
-        mToneMediaPlayer = mMediaPlayerFactory.get(toneResourceId, attributes);
+        mMediaResourceId = toneResourceId;
+        mMediaStream = stream;
+        mMediaAttributes = getMediaToneAttributes(stream);
+        mToneMediaPlayer = mToneEngine.acquireMediaPlayer(toneResourceId, stream,
+                mMediaAttributes);
         mToneMediaPlayer.setLooping(false);
         int durationMillis = mToneMediaPlayer.getDuration();
         mToneMediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
@@ -476,33 +518,48 @@ public class InCallTonePlayer extends Thread {
             public void onCompletion(MediaPlayer mp) {
                 Log.i(InCallTonePlayer.this, "playMediaTone: toneResourceId=%d completed.",
                         toneResourceId);
-                mPlaybackLatch.countDown();
+                mToneEngine.getHandler().post(mFinishRunnable);
             }
         });
 
-        try {
-            mToneMediaPlayer.start();
-            // Wait for the tone to stop playing; timeout at 2x the length of the file just to
-            // be on the safe side.  Playback can also be stopped via stopTone().
-            if (mPlaybackLatch.await(durationMillis * 2, TimeUnit.MILLISECONDS)) {
-                Log.i(this, "playMediaTone: tone playback stopped.");
-            }
-        } catch (InterruptedException ie) {
-            Log.e(this, ie, "playMediaTone: tone playback interrupted.");
-        } finally {
-            // Redundant; don't want anyone re-using at this point.
-            mState = STATE_STOPPED;
+        mToneMediaPlayer.start();
+        // Stop waiting for the tone at 2x the length of the file just to be on the safe side.
+        // Playback can also be stopped via stopTone().
+        mToneEngine.getHandler().postDelayed(mFinishRunnable, durationMillis * 2L);
+    }
+
+    /**
+     * Ends the tone and hands its resources back to the engine; runs on the engine thread.
+     */
+    private void finish() {
+        if (mIsFinished) {
+            return;
+        }
+        mIsFinished = true;
+        mToneEngine.getHandler().removeCallbacks(mFinishRunnable);
+        // Redundant; don't want anyone re-using at this point.
+        mState = STATE_STOPPED;
+        if (mToneGenerator != null) {
+            Log.i(this, "finish: tone generator playback stopped.");
+            mToneEngine.releaseToneGenerator(mToneStream, mToneVolume, mToneGenerator);
+            mToneGenerator = null;
+        }
+        if (mToneMediaPlayer != null) {
+            Log.i(this, "finish: media tone playback stopped.");
             mToneMediaPlayer.release();
             mToneMediaPlayer = null;
+            mToneEngine.onMediaPlayerReleased(mMediaResourceId, mMediaStream, mMediaAttributes);
         }
+        cleanUpTonePlayer();
     }
 
     @VisibleForTesting
     public boolean startTone() {
-        // Tone already done; don't allow re-used
-        if (mState == STATE_STOPPED) {
+        // Tone already done or started; don't allow re-used
+        if (mState == STATE_STOPPED || mIsStarted) {
             return false;
         }
+        mIsStarted = true;
 
         if (sTonesPlaying.incrementAndGet() == 1) {
             mCallAudioManager.setIsTonePlaying(mCall, true);
@@ -515,25 +572,21 @@ public class InCallTonePlayer extends Thread {
             mSession = Log.createSubsession();
         }
 
-        super.start();
+        mToneEngine.getHandler().post(this::play);
         return true;
     }
 
-    @Override
-    public void start() {
-        Log.w(this, "Do not call the start method directly; use startTone instead.");
-    }
-
     /**
      * Stops the tone.
      */
     @VisibleForTesting
     public void stopTone() {
         Log.i(this, "stopTone: Stopping the tone %d.", mToneId);
-        // Notify the playback to end early.
-        mPlaybackLatch.countDown();
-
         mState = STATE_STOPPED;
+        if (mIsStarted) {
+            // Notify the playback to end early.
+            mToneEngine.getHandler().post(mFinishRunnable);
+        }
     }
 
     @VisibleForTesting
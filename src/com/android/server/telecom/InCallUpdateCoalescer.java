@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.os.Handler;
+import android.os.Parcel;
+import android.telecom.Log;
+import android.telecom.Logging.Runnable;
+import android.telecom.ParcelableCall;
+import android.util.ArrayMap;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reduces the number of call updates {@link InCallController} sends to the bound
+ * {@link android.telecom.InCallService}s.
+ * <p>
+ * A single change to a call (e.g. setting it up) typically triggers several capability, property,
+ * extras and caller info changes in a row, each of which would otherwise send a full
+ * {@link ParcelableCall} to every bound service. When coalescing is enabled, all updates requested
+ * for a call during one turn of the Telecom handler are merged into a single update per service,
+ * which is sent at the end of the turn, or earlier if {@link #flush()} is called first.
+ * <p>
+ * In addition, services which opt in using
+ * {@link InCallController#METADATA_SUPPRESS_UNCHANGED_CALL_UPDATES} do not receive updates which
+ * are identical to the last update they were sent for the call.
+ * <p>
+ * All methods must be called with the Telecom lock held.
+ */
+public class InCallUpdateCoalescer {
+    /**
+     * Sends a call update to the bound services.
+     */
+    public interface Sender {
+        /**
+         * See {@link InCallController} for the meaning of the parameters.
+         */
+        void sendCallUpdate(Call call, boolean videoProviderChanged, boolean rttInfoChanged,
+                String exceptPackageName);
+    }
+
+    /**
+     * The union of the updates requested for a call which have not been sent yet.
+     */
+    private static class PendingUpdate {
+        public boolean videoProviderChanged;
+        public boolean rttInfoChanged;
+        public String exceptPackageName;
+
+        PendingUpdate(boolean videoProviderChanged, boolean rttInfoChanged,
+                String exceptPackageName) {
+            this.videoProviderChanged = videoProviderChanged;
+            this.rttInfoChanged = rttInfoChanged;
+            this.exceptPackageName = exceptPackageName;
+        }
+    }
+
+    private final Handler mHandler;
+    private final TelecomSystem.SyncRoot mLock;
+    private final Sender mSender;
+    private final boolean mIsCoalescingEnabled;
+    private final Map<Call, PendingUpdate> mPendingUpdates = new LinkedHashMap<>();
+    // The marshalled form of the last update sent to a service for a call, for the services which
+    // opted into suppressing unchanged updates.
+    private final Map<InCallController.InCallServiceInfo, Map<Call, byte[]>> mLastSentUpdates =
+            new ArrayMap<>();
+    private boolean mIsFlushScheduled;
+
+    private final AtomicLong mRequested = new AtomicLong(0);
+    private final AtomicLong mCoalesced = new AtomicLong(0);
+    private final AtomicLong mSent = new AtomicLong(0);
+    private final AtomicLong mSuppressedUnchanged = new AtomicLong(0);
+
+    public InCallUpdateCoalescer(Handler handler, TelecomSystem.SyncRoot lock, Sender sender,
+            boolean isCoalescingEnabled) {
+        mHandler = handler;
+        mLock = lock;
+        mSender = sender;
+        mIsCoalescingEnabled = isCoalescingEnabled;
+    }
+
+    /**
+     * Requests that the bound services be informed of the updated call information.  When
+     * coalescing is disabled the update is sent immediately.
+     */
+    public void requestUpdate(Call call, boolean videoProviderChanged, boolean rttInfoChanged,
+            String exceptPackageName) {
+        mRequested.incrementAndGet();
+        if (!mIsCoalescingEnabled) {
+            mSender.sendCallUpdate(call, videoProviderChanged, rttInfoChanged, exceptPackageName);
+            return;
+        }
+        PendingUpdate pendingUpdate = mPendingUpdates.get(call);
+        if (pendingUpdate == null) {
+            mPendingUpdates.put(call, new PendingUpdate(videoProviderChanged, rttInfoChanged,
+                    exceptPackageName));
+        } else {
+            mCoalesced.incrementAndGet();
+            pendingUpdate.videoProviderChanged |= videoProviderChanged;
+            pendingUpdate.rttInfoChanged |= rttInfoChanged;
+            // The merged update must reach every service either of the updates was meant for.
+            if (!Objects.equals(pendingUpdate.exceptPackageName, exceptPackageName)) {
+                pendingUpdate.exceptPackageName = null;
+            }
+        }
+        if (!mIsFlushScheduled) {
+            mIsFlushScheduled = true;
+            mHandler.post(new Runnable("ICUC.f", mLock) {
+                @Override
+                public void loggedRun() {
+                    mIsFlushScheduled = false;
+                    flush();
+                }
+            }.prepare());
+        }
+    }
+
+    /**
+     * Sends all pending updates.  Must be called before anything else is sent to the bound
+     * services for a call, so that the services see the changes in order.
+     */
+    public void flush() {
+        if (mPendingUpdates.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Call, PendingUpdate>> pendingUpdates =
+                new ArrayList<>(mPendingUpdates.entrySet());
+        mPendingUpdates.clear();
+        for (Map.Entry<Call, PendingUpdate> entry : pendingUpdates) {
+            PendingUpdate pendingUpdate = entry.getValue();
+            mSender.sendCallUpdate(entry.getKey(), pendingUpdate.videoProviderChanged,
+                    pendingUpdate.rttInfoChanged, pendingUpdate.exceptPackageName);
+        }
+    }
+
+    /**
+     * Determines whether an update should be sent to a service, and records it as sent if so.
+     * @param info The service.
+     * @param call The call being updated.
+     * @param parcelableCall The update.
+     * @return {@code false} if the service opted into suppressing unchanged updates and the update
+     * is identical to the last one it was sent for the call, {@code true} otherwise.
+     */
+    public boolean shouldSendUpdate(InCallController.InCallServiceInfo info, Call call,
+            ParcelableCall parcelableCall) {
+        if (!info.isUnchangedUpdateSuppressionEnabled()) {
+            mSent.incrementAndGet();
+            return true;
+        }
+        Map<Call, byte[]> lastSentUpdates = mLastSentUpdates.get(info);
+        if (lastSentUpdates == null) {
+            lastSentUpdates = new ArrayMap<>();
+            mLastSentUpdates.put(info, lastSentUpdates);
+        }
+        byte[] marshalled = marshall(parcelableCall);
+        if (marshalled != null && Arrays.equals(marshalled, lastSentUpdates.get(call))) {
+            mSuppressedUnchanged.incrementAndGet();
+            return false;
+        }
+        if (marshalled == null) {
+            lastSentUpdates.remove(call);
+        } else {
+            lastSentUpdates.put(call, marshalled);
+        }
+        mSent.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Forgets the last update sent to a service for a call, e.g. because the full call was just
+     * sent to the service using {@code addCall}.
+     */
+    public void forgetCallForService(InCallController.InCallServiceInfo info, Call call) {
+        Map<Call, byte[]> lastSentUpdates = mLastSentUpdates.get(info);
+        if (lastSentUpdates != null) {
+            lastSentUpdates.remove(call);
+        }
+    }
+
+    /**
+     * Forgets the last updates sent to all services for a call.
+     */
+    public void forgetCall(Call call) {
+        Iterator<Map<Call, byte[]>> iterator = mLastSentUpdates.values().iterator();
+        while (iterator.hasNext()) {
+            Map<Call, byte[]> lastSentUpdates = iterator.next();
+            lastSentUpdates.remove(call);
+            if (lastSentUpdates.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets the last updates sent to a service, e.g. because it disconnected.
+     */
+    public void forgetService(InCallController.InCallServiceInfo info) {
+        mLastSentUpdates.remove(info);
+    }
+
+    /**
+     * @return The update in marshalled form, or {@code null} if it can't be marshalled, e.g.
+     * because it includes the video provider binder or the RTT pipes.
+     */
+    private static byte[] marshall(ParcelableCall parcelableCall) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcelableCall.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } catch (RuntimeException e) {
+            Log.d(InCallUpdateCoalescer.class.getSimpleName(), "marshall: %s", e.getMessage());
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @VisibleForTesting
+    public long getCoalescedCount() {
+        return mCoalesced.get();
+    }
+
+    @VisibleForTesting
+    public long getSuppressedUnchangedCount() {
+        return mSuppressedUnchanged.get();
+    }
+
+    /**
+     * Dumps the update statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        pw.println("InCallUpdateCoalescer: coalescing=" + mIsCoalescingEnabled
+                + ", requested=" + mRequested.get()
+                + ", coalesced=" + mCoalesced.get()
+                + ", suppressedUnchanged=" + mSuppressedUnchanged.get()
+                + ", sent=" + mSent.get()
+                + ", pending=" + mPendingUpdates.size());
+    }
+}
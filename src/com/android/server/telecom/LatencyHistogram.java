@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+/**
+ * A histogram of latencies in microseconds which uses a fixed amount of memory.
+ * <p>
+ * The values are counted in log-linear buckets: each power of two is split into four equally
+ * sized buckets, so a percentile is accurate to within 25% of its value regardless of its
+ * magnitude.  Values beyond the last bucket, about 16 seconds, are counted
+ * in the last bucket; the maximum is tracked exactly.
+ * <p>
+ * Not thread safe; callers which record from several threads must synchronize.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // The highest power of two with its own buckets; 2^23 micros is about 8.4 seconds.
+    private static final int MAX_EXPONENT = 23;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final int[] mCounts = new int[BUCKETS];
+    private long mCount;
+    private long mTotalMicros;
+    private long mMaxMicros;
+
+    /**
+     * Records a latency.
+     * @param micros The latency in microseconds.
+     */
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mCounts[getBucket(micros)]++;
+        mCount++;
+        mTotalMicros += micros;
+        if (micros > mMaxMicros) {
+            mMaxMicros = micros;
+        }
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getTotalMicros() {
+        return mTotalMicros;
+    }
+
+    public long getMaxMicros() {
+        return mMaxMicros;
+    }
+
+    /**
+     * @param percentile The percentile, between 0 and 100.
+     * @return The highest value of the bucket containing the given percentile of the recorded
+     * latencies, capped at the maximum, or 0 if none were recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(mCount * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += mCounts[bucket];
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(bucket), mMaxMicros);
+            }
+        }
+        return mMaxMicros;
+    }
+
+    private static int getBucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long getBucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.os.SystemClock;
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A set of listeners which are informed of events, such as the listeners of a {@link Call} or
+ * of {@link CallsManager}.
+ * <p>
+ * Each event has an id in the range {@code [0, eventNames.length)}, and each listener is
+ * subscribed to a subset of the events, by default all of them.  Events are only dispatched to
+ * the listeners subscribed to them.
+ * <p>
+ * The registry keeps an array of the subscribed listeners per event which is replaced whenever a
+ * listener is added or removed, so finding the listeners to inform takes no lock and allocates no
+ * iterator; a listener added or removed while an event is dispatched may or may not be informed
+ * of it.  Callers still allocate the action passed to {@link #dispatch} when it captures the
+ * event's arguments.
+ * The time each listener takes to handle the events is recorded for dumpsys under the registry's
+ * lock, optionally as a {@link LatencyHistogram} per listener and event, and dispatches slower
+ * than a threshold are logged.
+ *
+ * @param <L> The listener type.
+ */
+public class ListenerRegistry<L> {
+    /**
+     * A subscribed listener and the time it spent handling events.
+     */
+    private static final class Registration<L> {
+        final L listener;
+        final long eventMask;
+        // Guarded by the registry's lock, since events may be dispatched from several threads.
+        long dispatchCount;
+        long dispatchNanos;
+        long maxDispatchNanos;
+        long slowDispatchCount;
+        // Indexed by event, and created on the first dispatch of the event; null if the registry
+        // does not record histograms.
+        final LatencyHistogram[] histograms;
+
+        Registration(L listener, long eventMask, int events, boolean recordHistograms) {
+            this.listener = listener;
+            this.eventMask = eventMask;
+            histograms = recordHistograms ? new LatencyHistogram[events] : null;
+        }
+
+        void record(int event, long nanos) {
+            dispatchCount++;
+            dispatchNanos += nanos;
+            if (nanos > maxDispatchNanos) {
+                maxDispatchNanos = nanos;
+            }
+            if (histograms != null) {
+                if (histograms[event] == null) {
+                    histograms[event] = new LatencyHistogram();
+                }
+                histograms[event].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+            }
+        }
+    }
+
+    private static final String TAG = ListenerRegistry.class.getSimpleName();
+
+    /** Subscribes a listener to all events. */
+    public static final long ALL_EVENTS = -1L;
+    private static final int MAX_EVENTS = Long.SIZE;
+
+    private final String mName;
+    private final String[] mEventNames;
+    private final boolean mRecordHistograms;
+    // 0 if slow dispatches are not logged.
+    private volatile long mSlowDispatchThresholdNanos = 0;
+    private final Object mLock = new Object();
+    // Both replaced under mLock whenever a listener is added or removed, and never modified once
+    // published.
+    private volatile List<Registration<L>> mRegistrations = new ArrayList<>();
+    private volatile Registration<L>[][] mRegistrationsByEvent;
+
+    /**
+     * @param name The name of the registry, for dumpsys.
+     * @param eventNames The names of the events, indexed by event id.
+     */
+    public ListenerRegistry(String name, String[] eventNames) {
+        this(name, eventNames, false /* recordHistograms */);
+    }
+
+    /**
+     * @param name The name of the registry, for dumpsys.
+     * @param eventNames The names of the events, indexed by event id.
+     * @param recordHistograms Whether to record a histogram of the time each listener takes to
+     * handle each event, rather than only the totals.
+     */
+    public ListenerRegistry(String name, String[] eventNames, boolean recordHistograms) {
+        if (eventNames.length > MAX_EVENTS) {
+            throw new IllegalArgumentException("Too many events: " + eventNames.length);
+        }
+        mName = name;
+        mEventNames = eventNames;
+        mRecordHistograms = recordHistograms;
+        mRegistrationsByEvent = buildRegistrationsByEvent(mRegistrations);
+    }
+
+    /**
+     * Logs a warning whenever a listener takes longer than the given time to handle an event.
+     * @param thresholdMillis The threshold, or 0 to not log slow dispatches.
+     */
+    public void setSlowDispatchThresholdMillis(long thresholdMillis) {
+        mSlowDispatchThresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * @return A mask for subscribing to the given events.
+     */
+    public static long eventMask(int... events) {
+        long mask = 0;
+        for (int event : events) {
+            mask |= 1L << event;
+        }
+        return mask;
+    }
+
+    /**
+     * Subscribes a listener to all events.
+     * @return {@code false} if the listener was already subscribed.
+     */
+    public boolean add(L listener) {
+        return add(listener, ALL_EVENTS);
+    }
+
+    /**
+     * Subscribes a listener to some events.
+     * @param listener The listener.
+     * @param eventMask The events to subscribe to, see {@link #eventMask}.
+     * @return {@code false} if the listener was already subscribed, in which case its
+     * subscription is left unchanged.
+     */
+    public boolean add(L listener, long eventMask) {
+        synchronized (mLock) {
+            if (indexOf(listener) >= 0) {
+                return false;
+            }
+            List<Registration<L>> registrations = new ArrayList<>(mRegistrations);
+            registrations.add(new Registration<>(listener, eventMask, mEventNames.length,
+                    mRecordHistograms));
+            publish(registrations);
+            return true;
+        }
+    }
+
+    /**
+     * Unsubscribes a listener.
+     * @return {@code false} if the listener was not subscribed.
+     */
+    public boolean remove(L listener) {
+        synchronized (mLock) {
+            int index = indexOf(listener);
+            if (index < 0) {
+                return false;
+            }
+            List<Registration<L>> registrations = new ArrayList<>(mRegistrations);
+            registrations.remove(index);
+            publish(registrations);
+            return true;
+        }
+    }
+
+    public boolean contains(L listener) {
+        return indexOf(listener) >= 0;
+    }
+
+    public int size() {
+        return mRegistrations.size();
+    }
+
+    /**
+     * @return The subscribed listeners, in the order they were added.
+     */
+    public List<L> getListeners() {
+        List<Registration<L>> registrations = mRegistrations;
+        List<L> listeners = new ArrayList<>(registrations.size());
+        for (Registration<L> registration : registrations) {
+            listeners.add(registration.listener);
+        }
+        return listeners;
+    }
+
+    /**
+     * Informs the listeners subscribed to an event of it, in the order they were added.
+     * @param event The event id.
+     * @param action Informs a listener of the event.
+     */
+    public void dispatch(int event, Consumer<L> action) {
+        for (Registration<L> registration : mRegistrationsByEvent[event]) {
+            long startNanos = SystemClock.elapsedRealtimeNanos();
+            action.accept(registration.listener);
+            record(registration, event, SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+    }
+
+    /**
+     * Informs the listeners subscribed to an event of it until one of them handles it.
+     * @param event The event id.
+     * @param action Informs a listener of the event, and returns whether it handled it.
+     * @return {@code true} if a listener handled the event.
+     */
+    public boolean dispatchUntilHandled(int event, Predicate<L> action) {
+        for (Registration<L> registration : mRegistrationsByEvent[event]) {
+            long startNanos = SystemClock.elapsedRealtimeNanos();
+            boolean handled = action.test(registration.listener);
+            record(registration, event, SystemClock.elapsedRealtimeNanos() - startNanos);
+            if (handled) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(Registration<L> registration, int event, long nanos) {
+        long thresholdNanos = mSlowDispatchThresholdNanos;
+        boolean isSlow = thresholdNanos > 0 && nanos >= thresholdNanos;
+        synchronized (mLock) {
+            registration.record(event, nanos);
+            if (isSlow) {
+                registration.slowDispatchCount++;
+            }
+        }
+        if (isSlow) {
+            Log.w(TAG, "record: %s took %d ms to handle %s of %s", getName(registration.listener),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), mEventNames[event], mName);
+        }
+    }
+
+    private int indexOf(L listener) {
+        List<Registration<L>> registrations = mRegistrations;
+        for (int i = 0; i < registrations.size(); i++) {
+            if (registrations.get(i).listener == listener) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void publish(List<Registration<L>> registrations) {
+        mRegistrationsByEvent = buildRegistrationsByEvent(registrations);
+        mRegistrations = registrations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Registration<L>[][] buildRegistrationsByEvent(List<Registration<L>> registrations) {
+        Registration<L>[][] registrationsByEvent = new Registration[mEventNames.length][];
+        List<Registration<L>> subscribed = new ArrayList<>(registrations.size());
+        for (int event = 0; event < mEventNames.length; event++) {
+            subscribed.clear();
+            for (Registration<L> registration : registrations) {
+                if ((registration.eventMask & (1L << event)) != 0) {
+                    subscribed.add(registration);
+                }
+            }
+            registrationsByEvent[event] = subscribed.toArray(new Registration[0]);
+        }
+        return registrationsByEvent;
+    }
+
+    @VisibleForTesting
+    public long getDispatchCount(L listener) {
+        synchronized (mLock) {
+            Registration<L> registration = getRegistration(listener);
+            return registration == null ? 0 : registration.dispatchCount;
+        }
+    }
+
+    @VisibleForTesting
+    public long getSlowDispatchCount(L listener) {
+        synchronized (mLock) {
+            Registration<L> registration = getRegistration(listener);
+            return registration == null ? 0 : registration.slowDispatchCount;
+        }
+    }
+
+    /**
+     * @return The histogram of the time a listener took to handle an event, or {@code null} if
+     * none was recorded.
+     */
+    @VisibleForTesting
+    public LatencyHistogram getHistogram(L listener, int event) {
+        synchronized (mLock) {
+            Registration<L> registration = getRegistration(listener);
+            return registration == null || registration.histograms == null
+                    ? null : registration.histograms[event];
+        }
+    }
+
+    private Registration<L> getRegistration(L listener) {
+        for (Registration<L> registration : mRegistrations) {
+            if (registration.listener == listener) {
+                return registration;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Dumps the listeners and the time they spent handling events.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        List<Registration<L>> registrations = mRegistrations;
+        pw.println(mName + ": " + registrations.size() + " listeners");
+        pw.increaseIndent();
+        synchronized (mLock) {
+            for (Registration<L> registration : registrations) {
+                long count = registration.dispatchCount;
+                long totalMicros = TimeUnit.NANOSECONDS.toMicros(registration.dispatchNanos);
+                pw.println(getName(registration.listener)
+                        + ": events=" + (registration.eventMask == ALL_EVENTS
+                                ? "all" : Long.toHexString(registration.eventMask))
+                        + ", dispatched=" + count
+                        + ", totalMicros=" + totalMicros
+                        + ", avgMicros=" + (count == 0 ? 0 : totalMicros / count)
+                        + ", maxMicros="
+                        + TimeUnit.NANOSECONDS.toMicros(registration.maxDispatchNanos)
+                        + ", slow=" + registration.slowDispatchCount);
+                if (registration.histograms != null) {
+                    pw.increaseIndent();
+                    dumpHistograms(pw, registration.histograms);
+                    pw.decreaseIndent();
+                }
+            }
+        }
+        pw.decreaseIndent();
+    }
+
+    private void dumpHistograms(IndentingPrintWriter pw, LatencyHistogram[] histograms) {
+        for (int event = 0; event < histograms.length; event++) {
+            LatencyHistogram histogram = histograms[event];
+            if (histogram == null) {
+                continue;
+            }
+            pw.println(mEventNames[event]
+                    + ": count=" + histogram.getCount()
+                    + ", p50Micros=" + histogram.getValueAtPercentile(50)
+                    + ", p90Micros=" + histogram.getValueAtPercentile(90)
+                    + ", p99Micros=" + histogram.getValueAtPercentile(99)
+                    + ", maxMicros=" + histogram.getMaxMicros());
+        }
+    }
+
+    private static String getName(Object listener) {
+        String name = listener.getClass().getSimpleName();
+        // Anonymous listeners have no simple name.
+        return name.isEmpty() ? listener.getClass().getName() : name;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.annotation.Nullable;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long sections of code wait for and hold the {@link TelecomSystem.SyncRoot}, so that
+ * the most contended sections can be found.
+ * <p>
+ * Sections are named after the log session they run in, e.g. {@code ICA.aC}, and run through
+ * {@link #runLocked}.  Profiling is off by default; when off, {@link #runLocked} only
+ * synchronizes on the lock.  When on, each section is recorded in a ring buffer of the most
+ * recent samples and in per-section totals, which are summarized in dumpsys and by the
+ * {@code telecom lock-profile} shell command.
+ */
+public class LockProfiler {
+    /**
+     * A section of code which ran holding the lock.
+     */
+    @VisibleForTesting
+    public static class Sample {
+        public final String section;
+        public final String threadName;
+        public final long timestampMillis;
+        public final long waitNanos;
+        public final long holdNanos;
+
+        Sample(String section, String threadName, long timestampMillis, long waitNanos,
+                long holdNanos) {
+            this.section = section;
+            this.threadName = threadName;
+            this.timestampMillis = timestampMillis;
+            this.waitNanos = waitNanos;
+            this.holdNanos = holdNanos;
+        }
+    }
+
+    /**
+     * The totals of a section.
+     */
+    @VisibleForTesting
+    public static class SectionStats {
+        public final String section;
+        public long count;
+        public long totalWaitNanos;
+        public long maxWaitNanos;
+        public long totalHoldNanos;
+        public long maxHoldNanos;
+
+        SectionStats(String section) {
+            this.section = section;
+        }
+
+        SectionStats(SectionStats other) {
+            section = other.section;
+            count = other.count;
+            totalWaitNanos = other.totalWaitNanos;
+            maxWaitNanos = other.maxWaitNanos;
+            totalHoldNanos = other.totalHoldNanos;
+            maxHoldNanos = other.maxHoldNanos;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 256;
+    private static final int TOP_SECTIONS = 10;
+
+    private final Object mStatsLock = new Object();
+    private final Sample[] mSamples;
+    // The index the next sample is written to.
+    private int mNextSample = 0;
+    private int mSampleCount = 0;
+    private final ArrayMap<String, SectionStats> mSectionStats = new ArrayMap<>();
+    private volatile boolean mIsEnabled;
+
+    public LockProfiler(boolean isEnabled) {
+        this(isEnabled, DEFAULT_CAPACITY);
+    }
+
+    @VisibleForTesting
+    public LockProfiler(boolean isEnabled, int capacity) {
+        mIsEnabled = isEnabled;
+        mSamples = new Sample[capacity];
+    }
+
+    /**
+     * Runs a section of code holding the Telecom lock, and records how long it waited for and
+     * held the lock if the lock is being profiled.
+     * @param lock The Telecom lock.
+     * @param section The name of the section, usually the name of its log session.
+     * @param runnable The section.
+     */
+    public static void runLocked(@Nullable TelecomSystem.SyncRoot lock, String section,
+            Runnable runnable) {
+        if (lock == null) {
+            runnable.run();
+            return;
+        }
+        LockProfiler profiler = lock.getLockProfiler();
+        if (profiler == null || !profiler.isEnabled()) {
+            synchronized (lock) {
+                runnable.run();
+            }
+            return;
+        }
+        long requestedNanos = SystemClock.elapsedRealtimeNanos();
+        synchronized (lock) {
+            long acquiredNanos = SystemClock.elapsedRealtimeNanos();
+            try {
+                runnable.run();
+            } finally {
+                profiler.record(section, acquiredNanos - requestedNanos,
+                        SystemClock.elapsedRealtimeNanos() - acquiredNanos);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return mIsEnabled;
+    }
+
+    /**
+     * Starts or stops profiling.  Starting discards the samples recorded so far.
+     */
+    public void setEnabled(boolean isEnabled) {
+        synchronized (mStatsLock) {
+            if (isEnabled && !mIsEnabled) {
+                mNextSample = 0;
+                mSampleCount = 0;
+                mSectionStats.clear();
+            }
+            mIsEnabled = isEnabled;
+        }
+    }
+
+    @VisibleForTesting
+    public void record(String section, long waitNanos, long holdNanos) {
+        Sample sample = new Sample(section, Thread.currentThread().getName(),
+                System.currentTimeMillis(), waitNanos, holdNanos);
+        synchronized (mStatsLock) {
+            mSamples[mNextSample] = sample;
+            mNextSample = (mNextSample + 1) % mSamples.length;
+            mSampleCount = Math.min(mSampleCount + 1, mSamples.length);
+
+            SectionStats stats = mSectionStats.get(section);
+            if (stats == null) {
+                stats = new SectionStats(section);
+                mSectionStats.put(section, stats);
+            }
+            stats.count++;
+            stats.totalWaitNanos += waitNanos;
+            stats.maxWaitNanos = Math.max(stats.maxWaitNanos, waitNanos);
+            stats.totalHoldNanos += holdNanos;
+            stats.maxHoldNanos = Math.max(stats.maxHoldNanos, holdNanos);
+        }
+    }
+
+    /**
+     * @return The most recent samples, oldest first.
+     */
+    @VisibleForTesting
+    public List<Sample> getSamples() {
+        synchronized (mStatsLock) {
+            List<Sample> samples = new ArrayList<>(mSampleCount);
+            int first = (mNextSample - mSampleCount + mSamples.length) % mSamples.length;
+            for (int i = 0; i < mSampleCount; i++) {
+                samples.add(mSamples[(first + i) % mSamples.length]);
+            }
+            return samples;
+        }
+    }
+
+    /**
+     * @return Copies of the totals of the sections which waited longest for the lock in total,
+     * longest first.
+     */
+    @VisibleForTesting
+    public List<SectionStats> getMostContendedSections(int limit) {
+        List<SectionStats> sections = new ArrayList<>();
+        synchronized (mStatsLock) {
+            for (SectionStats stats : mSectionStats.values()) {
+                sections.add(new SectionStats(stats));
+            }
+        }
+        sections.sort((a, b) -> Long.compare(b.totalWaitNanos, a.totalWaitNanos));
+        return sections.subList(0, Math.min(limit, sections.size()));
+    }
+
+    /**
+     * Dumps the most contended sections and the sections which held the lock longest recently.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        pw.println("LockProfiler: enabled=" + mIsEnabled);
+        pw.increaseIndent();
+        pw.println("Most contended sections (total/max wait, total/max hold in micros):");
+        pw.increaseIndent();
+        for (SectionStats stats : getMostContendedSections(TOP_SECTIONS)) {
+            pw.println(stats.section
+                    + ": count=" + stats.count
+                    + ", wait=" + toMicros(stats.totalWaitNanos)
+                    + "/" + toMicros(stats.maxWaitNanos)
+                    + ", hold=" + toMicros(stats.totalHoldNanos)
+                    + "/" + toMicros(stats.maxHoldNanos));
+        }
+        pw.decreaseIndent();
+
+        List<Sample> samples = getSamples();
+        samples.sort((a, b) -> Long.compare(b.holdNanos, a.holdNanos));
+        SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        pw.println("Longest held of the last " + samples.size() + " sections:");
+        pw.increaseIndent();
+        for (Sample sample : samples.subList(0, Math.min(TOP_SECTIONS, samples.size()))) {
+            pw.println(dateFormat.format(new Date(sample.timestampMillis))
+                    + " " + sample.section
+                    + " [" + sample.threadName + "]"
+                    + ": wait=" + toMicros(sample.waitNanos)
+                    + ", hold=" + toMicros(sample.holdNanos));
+        }
+        pw.decreaseIndent();
+        pw.decreaseIndent();
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
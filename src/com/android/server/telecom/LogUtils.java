@@ -131,6 +131,7 @@ public class LogUtils {
         public static final String STOP_DTMF = "STOP_DTMF";
         public static final String START_RINGER = "START_RINGER";
         public static final String STOP_RINGER = "STOP_RINGER";
+        public static final String RINGTONE_AUDIBLE = "RINGTONE_AUDIBLE";
         public static final String START_VIBRATOR = "START_VIBRATOR";
         public static final String STOP_VIBRATOR = "STOP_VIBRATOR";
         public static final String SKIP_VIBRATION = "SKIP_VIBRATION";
@@ -251,6 +252,7 @@ public class LogUtils {
             public static final String FILTERING_TIMED_OUT_TIMING = "filtering_timed_out";
             public static final String START_CONNECTION_TO_REQUEST_DISCONNECT_TIMING =
                     "start_connection_to_request_disconnect";
+            public static final String RING_START_TIMING = "ring_start";
 
             private static final TimedEventPair[] sTimedEvents = {
                     new TimedEventPair(REQUEST_ACCEPT, SET_ACTIVE, ACCEPT_TIMING),
@@ -275,6 +277,7 @@ public class LogUtils {
                             FILTERING_TIMED_OUT_TIMING, 6000L),
                     new TimedEventPair(START_CONNECTION, REQUEST_DISCONNECT,
                             START_CONNECTION_TO_REQUEST_DISCONNECT_TIMING),
+                    new TimedEventPair(CREATED, RINGTONE_AUDIBLE, RING_START_TIMING),
             };
         }
     }
@@ -35,10 +35,12 @@ public class LoggedHandlerExecutor implements Executor {
 
     @Override
     public void execute(java.lang.Runnable command) {
-        mHandler.post(new Runnable(mSessionName, mLock) {
+        // The lock is taken by the profiler rather than by the Runnable, so that the sections
+        // run on this executor can be profiled.
+        mHandler.post(new Runnable(mSessionName, null /* lock */) {
             @Override
             public void loggedRun() {
-                command.run();
+                LockProfiler.runLocked(mLock, mSessionName, command);
             }
         }.prepare());
     }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small, fixed pool of worker loopers plus one shared timer looper.
+ * <p>
+ * Short-lived units of work, such as a call transaction or an incoming call filter graph, are
+ * each given a lightweight {@link PooledHandler} on one of the worker loopers rather than a
+ * {@link HandlerThread} of their own.  Their timeouts are scheduled on the timer looper, so a
+ * timeout still fires on time while the worker running the unit is busy.
+ */
+public class LooperPool {
+    /**
+     * A {@link Handler} on one of the pooled worker loopers, used by a single unit of work.  Once
+     * released, all of its pending work is dropped, including messages which are already due, and
+     * new work is rejected, as {@link HandlerThread#quit()} would on a dedicated thread.
+     */
+    public static class PooledHandler extends Handler {
+        private volatile boolean mIsClosed = false;
+
+        PooledHandler(Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+            if (mIsClosed) {
+                return false;
+            }
+            return super.sendMessageAtTime(msg, uptimeMillis);
+        }
+
+        public boolean isClosed() {
+            return mIsClosed;
+        }
+    }
+
+    private final String mName;
+    private final HandlerThread[] mWorkerThreads;
+    private final HandlerThread mTimerThread;
+    private final Handler mTimerHandler;
+    private final AtomicInteger mNextWorker = new AtomicInteger(0);
+    private final AtomicInteger mActiveHandlers = new AtomicInteger(0);
+    private final Object mTimeoutLock = new Object();
+    // The timeouts which have neither fired nor been cancelled, by token; guarded by mTimeoutLock.
+    private final Map<Object, List<Runnable>> mPendingTimeouts = new IdentityHashMap<>();
+    private int mPendingTimeoutCount = 0;
+    private final AtomicLong mTotalHandlersCreated = new AtomicLong(0);
+    private final AtomicLong mTotalTimeoutsFired = new AtomicLong(0);
+
+    /**
+     * @param name The name of the pool, used for its threads and in dumpsys.
+     * @param workerCount The number of worker loopers.
+     */
+    protected LooperPool(String name, int workerCount) {
+        mName = name;
+        mWorkerThreads = new HandlerThread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            mWorkerThreads[i] = new HandlerThread(name + "-" + i);
+            mWorkerThreads[i].start();
+        }
+        mTimerThread = new HandlerThread(name + "-timer");
+        mTimerThread.start();
+        mTimerHandler = new Handler(mTimerThread.getLooper());
+    }
+
+    /**
+     * Creates a new {@link PooledHandler}.  Handlers are spread round-robin across the worker
+     * loopers.
+     */
+    public PooledHandler createHandler() {
+        int index = Math.floorMod(mNextWorker.getAndIncrement(), mWorkerThreads.length);
+        mActiveHandlers.incrementAndGet();
+        mTotalHandlersCreated.incrementAndGet();
+        return new PooledHandler(mWorkerThreads[index].getLooper());
+    }
+
+    /**
+     * Closes a handler previously returned by {@link #createHandler()}, dropping its pending work.
+     * Safe to call more than once.
+     */
+    public void releaseHandler(PooledHandler handler) {
+        if (handler == null || handler.isClosed()) {
+            return;
+        }
+        handler.mIsClosed = true;
+        handler.removeCallbacksAndMessages(null);
+        mActiveHandlers.decrementAndGet();
+    }
+
+    /**
+     * Schedules a timeout on the shared timer looper.
+     * @param token The token used to cancel the timeout, typically the owning unit of work.
+     * @param onTimeout The work to run when the timeout fires; this runs on the timer looper and
+     *                  should hand off to the unit's handler.
+     * @param timeoutMs The delay before the timeout fires.
+     */
+    public void scheduleTimeout(Object token, Runnable onTimeout, long timeoutMs) {
+        Runnable timeout = new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mTimeoutLock) {
+                    // Cancelled after it was taken off the queue.
+                    if (!removePendingTimeoutLocked(token, this)) {
+                        return;
+                    }
+                }
+                mTotalTimeoutsFired.incrementAndGet();
+                onTimeout.run();
+            }
+        };
+        synchronized (mTimeoutLock) {
+            mPendingTimeouts.computeIfAbsent(token, t -> new ArrayList<>()).add(timeout);
+            mPendingTimeoutCount++;
+            mTimerHandler.postDelayed(timeout, token, timeoutMs);
+        }
+    }
+
+    /**
+     * Cancels any timeouts scheduled with the given token.
+     */
+    public void cancelTimeout(Object token) {
+        synchronized (mTimeoutLock) {
+            List<Runnable> timeouts = mPendingTimeouts.remove(token);
+            if (timeouts != null) {
+                mPendingTimeoutCount -= timeouts.size();
+            }
+            mTimerHandler.removeCallbacksAndMessages(token);
+        }
+    }
+
+    private boolean removePendingTimeoutLocked(Object token, Runnable timeout) {
+        List<Runnable> timeouts = mPendingTimeouts.get(token);
+        if (timeouts == null || !timeouts.remove(timeout)) {
+            return false;
+        }
+        if (timeouts.isEmpty()) {
+            mPendingTimeouts.remove(token);
+        }
+        mPendingTimeoutCount--;
+        return true;
+    }
+
+    @VisibleForTesting
+    public Handler getTimerHandler() {
+        return mTimerHandler;
+    }
+
+    /**
+     * Called when the dumpsys is created for telecom to capture the current state.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        int pendingTimeouts;
+        synchronized (mTimeoutLock) {
+            pendingTimeouts = mPendingTimeoutCount;
+        }
+        pw.println(mName + ":");
+        pw.increaseIndent();
+        pw.println("workers=" + mWorkerThreads.length
+                + ", activeHandlers=" + mActiveHandlers.get()
+                + ", totalHandlersCreated=" + mTotalHandlersCreated.get()
+                + ", pendingTimeouts=" + pendingTimeouts
+                + ", totalTimeoutsFired=" + mTotalTimeoutsFired.get());
+        pw.decreaseIndent();
+    }
+
+    @VisibleForTesting
+    public void quit() {
+        for (HandlerThread thread : mWorkerThreads) {
+            thread.quitSafely();
+        }
+        mTimerThread.quitSafely();
+    }
+}
@@ -20,6 +20,7 @@ import android.annotation.Nullable;
 import android.net.Uri;
 import android.os.UserHandle;
 import android.telecom.PhoneAccountHandle;
+import android.util.IndentingPrintWriter;
 
 import android.telecom.CallerInfo;
 
@@ -95,4 +96,10 @@ public interface MissedCallNotifier extends CallsManager.CallsManagerListener {
             CallInfoFactory callInfoFactory, UserHandle userHandle);
 
     void setCurrentUserHandle(UserHandle userHandle);
+
+    /**
+     * Dumps the state of the notifier.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    default void dump(IndentingPrintWriter pw) {}
 }
@@ -136,8 +136,8 @@ public class NewOutgoingCallIntentBroadcaster {
                             Log.pii(resultNumber));
 
                     boolean endEarly = false;
-                    long disconnectTimeout =
-                            Timeouts.getNewOutgoingCallCancelMillis(mContext.getContentResolver());
+                    long disconnectTimeout = mCallsManager.getTimeoutsAdapter()
+                            .getNewOutgoingCallCancelMillis(mContext.getContentResolver());
                     if (resultNumber == null) {
                         Log.v(this, "Call cancelled (null number), returning...");
                         disconnectTimeout = getDisconnectTimeoutFromApp(
@@ -662,8 +662,8 @@ public class NewOutgoingCallIntentBroadcaster {
             if (disconnectTimeout < 0) {
                 disconnectTimeout = 0;
             }
-            return Math.min(disconnectTimeout,
-                    Timeouts.getMaxNewOutgoingCallCancelMillis(mContext.getContentResolver()));
+            return Math.min(disconnectTimeout, mCallsManager.getTimeoutsAdapter()
+                    .getMaxNewOutgoingCallCancelMillis(mContext.getContentResolver()));
         } else {
             return defaultTimeout;
         }
@@ -66,6 +66,55 @@ public class ParcelableCallUtils {
         RESTRICTED_CALL_SCREENING_EXTRA_KEYS.add(ImsCallProfile.EXTRA_ASSERTED_DISPLAY_NAME);
     }
 
+    /**
+     * The parts of a {@link ParcelableCall} which only change when the extras, child calls or
+     * conferenceable calls of a {@link Call} change.  Each call keeps one, so that updating
+     * several InCallServices about the same change builds these once; they are rebuilt when
+     * {@link Call#getParcelGeneration()} moves on.  The returned objects are shared by every
+     * {@link ParcelableCall} of that generation and must not be modified.
+     */
+    public static class ParcelCache {
+        private int mGeneration = -1;
+        private Bundle mSanitizedExtras;
+        private List<String> mChildCallIds;
+        private List<String> mConferenceableCallIds;
+
+        synchronized Bundle getSanitizedExtras(Call call) {
+            discardIfStale(call);
+            if (mSanitizedExtras == null) {
+                mSanitizedExtras = sanitizeExtras(call.getExtras());
+            }
+            return mSanitizedExtras;
+        }
+
+        synchronized List<String> getChildCallIds(Call call) {
+            discardIfStale(call);
+            if (mChildCallIds == null) {
+                mChildCallIds = Collections.unmodifiableList(getCallIds(call.getChildCalls()));
+            }
+            return mChildCallIds;
+        }
+
+        synchronized List<String> getConferenceableCallIds(Call call) {
+            discardIfStale(call);
+            if (mConferenceableCallIds == null) {
+                mConferenceableCallIds = Collections.unmodifiableList(
+                        getCallIds(call.getConferenceableCalls()));
+            }
+            return mConferenceableCallIds;
+        }
+
+        private void discardIfStale(Call call) {
+            int generation = call.getParcelGeneration();
+            if (generation != mGeneration) {
+                mGeneration = generation;
+                mSanitizedExtras = null;
+                mChildCallIds = null;
+                mConferenceableCallIds = null;
+            }
+        }
+    }
+
     public static class Converter {
         public ParcelableCall toParcelableCall(Call call, boolean includeVideoProvider,
                 PhoneAccountRegistrar phoneAccountRegistrar) {
@@ -188,13 +237,9 @@ public class ParcelableCallUtils {
             parentCallId = parentCall.getId();
         }
 
-        List<Call> childCalls = call.getChildCalls();
-        List<String> childCallIds = new ArrayList<>();
-        if (!childCalls.isEmpty()) {
-            for (Call child : childCalls) {
-                childCallIds.add(child.getId());
-            }
-        }
+        ParcelCache parcelCache = call.getParcelCache();
+        List<String> childCallIds = parcelCache != null
+                ? parcelCache.getChildCallIds(call) : getCallIds(call.getChildCalls());
 
         Uri handle = call.getHandlePresentation() == TelecomManager.PRESENTATION_ALLOWED ?
                 call.getHandle() : null;
@@ -203,11 +248,9 @@ public class ParcelableCallUtils {
 
         Uri contactPhotoUri = call.getContactPhotoUri();
 
-        List<Call> conferenceableCalls = call.getConferenceableCalls();
-        List<String> conferenceableCallIds = new ArrayList<String>(conferenceableCalls.size());
-        for (Call otherCall : conferenceableCalls) {
-            conferenceableCallIds.add(otherCall.getId());
-        }
+        List<String> conferenceableCallIds = parcelCache != null
+                ? parcelCache.getConferenceableCallIds(call)
+                : getCallIds(call.getConferenceableCalls());
 
         ParcelableRttCall rttCall = includeRttCall ? getParcelableRttCall(call) : null;
         int callDirection;
@@ -227,6 +270,8 @@ public class ParcelableCallUtils {
         Bundle extras;
         if (isForSystemInCallService) {
             extras = call.getExtras();
+        } else if (parcelCache != null) {
+            extras = parcelCache.getSanitizedExtras(call);
         } else {
             extras = sanitizeExtras(call.getExtras());
         }
@@ -368,6 +413,14 @@ public class ParcelableCallUtils {
         return extras;
     }
 
+    private static List<String> getCallIds(List<Call> calls) {
+        List<String> callIds = new ArrayList<>(calls.size());
+        for (Call call : calls) {
+            callIds.add(call.getId());
+        }
+        return callIds;
+    }
+
     /**
      * Sanitize the extras bundle passed in, removing keys which should not be sent to call
      * screening services which have access to the restricted extras.
@@ -34,7 +34,6 @@ import android.graphics.drawable.Icon;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Bundle;
-import android.os.AsyncTask;
 import android.os.PersistableBundle;
 import android.os.Process;
 import android.os.UserHandle;
@@ -72,7 +71,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.Integer;
@@ -148,6 +146,7 @@ public class PhoneAccountRegistrar {
             try {
                 synchronized (mLock) {
                     if (intent.getAction().equals(Intent.ACTION_MANAGED_PROFILE_REMOVED)) {
+                        mComponentResolutionCache.invalidatePackage(null);
                         cleanupOrphanedPhoneAccounts();
                     }
                 }
@@ -157,7 +156,51 @@ public class PhoneAccountRegistrar {
         }
     };
 
+    /**
+     * Receiver for package changes which may change how a {@link ConnectionService} component
+     * resolves, so that the cached resolution for the package can be dropped.
+     */
+    private final BroadcastReceiver mPackageChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.startSession("PARbR.oPC");
+            try {
+                Uri packageUri = intent.getData();
+                String packageName = packageUri != null ? packageUri.getSchemeSpecificPart()
+                        : null;
+                if (packageName == null) {
+                    return;
+                }
+                mComponentResolutionCache.invalidatePackage(packageName);
+            } finally {
+                Log.endSession();
+            }
+        }
+    };
+
+    /**
+     * Receiver for user state changes which may change how {@link ConnectionService} components
+     * of the user resolve, so that the cached resolutions for the user can be dropped.
+     */
+    private final BroadcastReceiver mUserStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.startSession("PARbR.oUS");
+            try {
+                int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+                if (userId == UserHandle.USER_NULL) {
+                    return;
+                }
+                mComponentResolutionCache.invalidateUser(UserHandle.of(userId));
+            } finally {
+                Log.endSession();
+            }
+        }
+    };
+
     public static final String FILE_NAME = "phone-account-registrar-state.xml";
+    private static final String XML_FILE_SUFFIX = ".xml";
+    private static final String BINARY_FILE_SUFFIX = ".pb";
     public static final String ICON_ERROR_MSG =
             "Icon cannot be written to memory. Try compressing or downsizing";
     @VisibleForTesting
@@ -171,20 +214,21 @@ public class PhoneAccountRegistrar {
     private static final String SIP_SHARED_PREFERENCES = "SIP_PREFERENCES";
 
     private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+    // The legacy XML state file; only read to migrate to mStateFile.
     private final AtomicFile mAtomicFile;
+    private final PhoneAccountStateFile mStateFile;
     private final Context mContext;
     private final UserManager mUserManager;
     private final TelephonyManager mTelephonyManager;
     private final SubscriptionManager mSubscriptionManager;
     private final DefaultDialerCache mDefaultDialerCache;
+    private final ComponentResolutionCache mComponentResolutionCache =
+            new ComponentResolutionCache();
     private final AppLabelProxy mAppLabelProxy;
     private final TelecomSystem.SyncRoot mLock;
     private State mState;
     private UserHandle mCurrentUserHandle;
     private final Set<String> mTestPhoneAccountPackageNameFilters;
-    private interface PhoneAccountRegistrarWriteLock {}
-    private final PhoneAccountRegistrarWriteLock mWriteLock =
-            new PhoneAccountRegistrarWriteLock() {};
     private final FeatureFlags mTelephonyFeatureFlags;
     private final com.android.server.telecom.flags.FeatureFlags mTelecomFeatureFlags;
 
@@ -204,6 +248,7 @@ public class PhoneAccountRegistrar {
             com.android.server.telecom.flags.FeatureFlags telecomFeatureFlags) {
 
         mAtomicFile = new AtomicFile(new File(context.getFilesDir(), fileName));
+        mStateFile = new PhoneAccountStateFile(context, getBinaryFileName(fileName));
 
         mState = new State();
         mContext = context;
@@ -229,6 +274,22 @@ public class PhoneAccountRegistrar {
         intentFilter.setPriority(IntentFilter.SYSTEM_HIGH_PRIORITY);
         mContext.registerReceiver(mManagedProfileReceiver, intentFilter);
 
+        // register for package changes to keep the component resolution cache up to date
+        IntentFilter packageFilter = new IntentFilter(Intent.ACTION_PACKAGE_CHANGED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        packageFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        packageFilter.addDataScheme("package");
+        packageFilter.setPriority(IntentFilter.SYSTEM_HIGH_PRIORITY);
+        mContext.registerReceiverAsUser(mPackageChangeReceiver, UserHandle.ALL, packageFilter,
+                null, null);
+
+        // ConnectionServices which are not direct boot aware only resolve once the user unlocks
+        IntentFilter userFilter = new IntentFilter(Intent.ACTION_USER_UNLOCKED);
+        userFilter.addAction(Intent.ACTION_USER_SWITCHED);
+        userFilter.addAction(Intent.ACTION_USER_REMOVED);
+        mContext.registerReceiverAsUser(mUserStateReceiver, UserHandle.ALL, userFilter,
+                null, null);
+
         read();
     }
 
@@ -811,6 +872,12 @@ public class PhoneAccountRegistrar {
 
     private List<ResolveInfo> resolveComponent(ComponentName componentName,
             UserHandle userHandle) {
+        return mComponentResolutionCache.resolve(componentName, userHandle,
+                this::queryConnectionService);
+    }
+
+    private List<ResolveInfo> queryConnectionService(ComponentName componentName,
+            UserHandle userHandle) {
         PackageManager pm = mContext.getPackageManager();
         Intent intent = new Intent(ConnectionService.SERVICE_INTERFACE);
         intent.setComponent(componentName);
@@ -822,10 +889,26 @@ public class PhoneAccountRegistrar {
             }
         } catch (SecurityException e) {
             Log.e(this, e, "%s is not visible for the calling user", componentName);
-            return Collections.EMPTY_LIST;
+            // Visibility depends on the caller, so don't cache this result.
+            return null;
         }
     }
 
+    @VisibleForTesting
+    public ComponentResolutionCache getComponentResolutionCache() {
+        return mComponentResolutionCache;
+    }
+
+    @VisibleForTesting
+    public BroadcastReceiver getPackageChangeReceiver() {
+        return mPackageChangeReceiver;
+    }
+
+    @VisibleForTesting
+    public BroadcastReceiver getUserStateReceiver() {
+        return mUserStateReceiver;
+    }
+
     /**
      * Retrieves a list of all {@link PhoneAccountHandle}s registered.
      * Only returns accounts which are enabled.
@@ -1056,13 +1139,10 @@ public class PhoneAccountRegistrar {
         if (packageName == null) {
             return new ArrayList<>();
         }
-        List<PhoneAccount> accounts = new ArrayList<>(mState.accounts.size());
-        for (PhoneAccount m : mState.accounts) {
-            PhoneAccountHandle handle = m.getAccountHandle();
-            if (!packageName.equals(handle.getComponentName().getPackageName())) {
-                // Not the right package name; skip this one.
-                continue;
-            }
+        List<PhoneAccount> candidates = mState.accounts.query(0 /* capabilities */,
+                null /* uriScheme */, packageName, null /* userHandle */);
+        List<PhoneAccount> accounts = new ArrayList<>(candidates.size());
+        for (PhoneAccount m : candidates) {
             // Do not count accounts registered under different users on the device. Otherwise, an
             // application can only have MAX_PHONE_ACCOUNT_REGISTRATIONS across all users. If the
             // DUT has multiple users, they should each get to register 10 accounts. Also, 3rd
@@ -1405,20 +1485,21 @@ public class PhoneAccountRegistrar {
      * @param userHandle The {@link UserHandle} the package is running under.
      */
     public void clearAccounts(String packageName, UserHandle userHandle) {
-        boolean accountsRemoved = false;
-        Iterator<PhoneAccount> it = mState.accounts.iterator();
-        while (it.hasNext()) {
-            PhoneAccount phoneAccount = it.next();
-            PhoneAccountHandle handle = phoneAccount.getAccountHandle();
-            if (Objects.equals(packageName, handle.getComponentName().getPackageName())
-                    && Objects.equals(userHandle, handle.getUserHandle())) {
+        if (packageName == null) {
+            return;
+        }
+        mComponentResolutionCache.invalidatePackage(packageName);
+        List<PhoneAccount> accountsToRemove = new ArrayList<>();
+        for (PhoneAccount phoneAccount : mState.accounts.query(0 /* capabilities */,
+                null /* uriScheme */, packageName, userHandle)) {
+            // A null user only matches accounts without a user.
+            if (Objects.equals(userHandle, phoneAccount.getAccountHandle().getUserHandle())) {
                 Log.i(this, "Removing phone account " + phoneAccount.getLabel());
-                mState.accounts.remove(phoneAccount);
-                accountsRemoved = true;
+                accountsToRemove.add(phoneAccount);
             }
         }
 
-        if (accountsRemoved) {
+        if (mState.accounts.removeAll(accountsToRemove)) {
             write();
             fireAccountsChanged();
         }
@@ -1663,12 +1744,7 @@ public class PhoneAccountRegistrar {
      * @return The corresponding phone account if one exists.
      */
     public PhoneAccount getPhoneAccountUnchecked(PhoneAccountHandle handle) {
-        for (PhoneAccount m : mState.accounts) {
-            if (Objects.equals(handle, m.getAccountHandle())) {
-                return m;
-            }
-        }
-        return null;
+        return mState.accounts.getByHandle(handle);
     }
 
     /**
@@ -1807,9 +1883,12 @@ public class PhoneAccountRegistrar {
             UserHandle userHandle,
             boolean crossUserAccess,
             boolean includeAll) {
-        List<PhoneAccount> accounts = new ArrayList<>(mState.accounts.size());
-        List<PhoneAccount> matchedAccounts = new ArrayList<>(mState.accounts.size());
-        for (PhoneAccount m : mState.accounts) {
+        // The store only returns accounts with the right capabilities, URI scheme and package.
+        List<PhoneAccount> candidates = mState.accounts.query(capabilities, uriScheme,
+                packageName, null /* userHandle */);
+        List<PhoneAccount> accounts = new ArrayList<>(candidates.size());
+        List<PhoneAccount> matchedAccounts = new ArrayList<>(candidates.size());
+        for (PhoneAccount m : candidates) {
             if (!(m.isEnabled() || includeDisabledAccounts)) {
                 // Do not include disabled accounts.
                 continue;
@@ -1819,15 +1898,6 @@ public class PhoneAccountRegistrar {
                 // If an excluded capability is present, skip.
                 continue;
             }
-
-            if (capabilities != 0 && !m.hasCapabilities(capabilities)) {
-                // Account doesn't have the right capabilities; skip this one.
-                continue;
-            }
-            if (uriScheme != null && !m.supportsUriScheme(uriScheme)) {
-                // Account doesn't support this URI scheme; skip this one.
-                continue;
-            }
             PhoneAccountHandle handle = m.getAccountHandle();
 
             // PhoneAccounts with CAPABILITY_SUPPORTS_TRANSACTIONAL_OPERATIONS do not require a
@@ -1837,11 +1907,6 @@ public class PhoneAccountRegistrar {
                 // This component cannot be resolved anymore; skip this one.
                 continue;
             }
-            if (packageName != null &&
-                    !packageName.equals(handle.getComponentName().getPackageName())) {
-                // Not the right package name; skip this one.
-                continue;
-            }
             if (isMatchedUser(m, userHandle)) {
                 matchedAccounts.add(m);
             }
@@ -1927,7 +1992,7 @@ public class PhoneAccountRegistrar {
         /**
          * The complete list of {@code PhoneAccount}s known to the Telecom subsystem.
          */
-        public final List<PhoneAccount> accounts = new CopyOnWriteArrayList<>();
+        public final PhoneAccountStore accounts = new PhoneAccountStore();
 
         /**
          * The version number of the State data.
@@ -1991,6 +2056,9 @@ public class PhoneAccountRegistrar {
             pw.println("test emergency PhoneAccount filter: " + mTestPhoneAccountPackageNameFilters);
             pw.decreaseIndent();
         }
+        mState.accounts.dump(pw);
+        mStateFile.dump(pw);
+        mComponentResolutionCache.dump(pw);
     }
 
     private void sortPhoneAccounts() {
@@ -2044,63 +2112,68 @@ public class PhoneAccountRegistrar {
     // State management
     //
 
-    private class AsyncXmlWriter extends AsyncTask<ByteArrayOutputStream, Void, Void> {
-        @Override
-        public Void doInBackground(ByteArrayOutputStream... args) {
-            final ByteArrayOutputStream buffer = args[0];
-            FileOutputStream fileOutput = null;
-            try {
-                synchronized (mWriteLock) {
-                    fileOutput = mAtomicFile.startWrite();
-                    buffer.writeTo(fileOutput);
-                    mAtomicFile.finishWrite(fileOutput);
-                }
-            } catch (IOException e) {
-                Log.e(this, e, "Writing state to XML file");
-                mAtomicFile.failWrite(fileOutput);
-            }
-            return null;
-        }
+    private static String getBinaryFileName(String xmlFileName) {
+        String baseName = xmlFileName.endsWith(XML_FILE_SUFFIX)
+                ? xmlFileName.substring(0, xmlFileName.length() - XML_FILE_SUFFIX.length())
+                : xmlFileName;
+        return baseName + BINARY_FILE_SUFFIX;
     }
 
     private void write() {
-        try {
-            sortPhoneAccounts();
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            XmlSerializer serializer = Xml.resolveSerializer(os);
-            writeToXml(mState, serializer, mContext, mTelephonyFeatureFlags);
-            serializer.flush();
-            new AsyncXmlWriter().execute(os);
-        } catch (IOException e) {
-            Log.e(this, e, "Writing state to XML buffer");
-        }
+        sortPhoneAccounts();
+        mStateFile.scheduleWrite(mState);
     }
 
-    private void read() {
-        final InputStream is;
-        try {
-            is = mAtomicFile.openRead();
-        } catch (FileNotFoundException ex) {
-            return;
-        }
+    @VisibleForTesting
+    public PhoneAccountStateFile getStateFile() {
+        return mStateFile;
+    }
 
+    private void read() {
         boolean versionChanged = false;
+        boolean migratedFromXml = false;
 
-        try {
-            XmlPullParser parser = Xml.resolvePullParser(is);
-            parser.nextTag();
-            mState = readFromXml(parser, mContext, mTelephonyFeatureFlags, mTelecomFeatureFlags);
-            migratePhoneAccountHandle(mState);
+        State binaryState = null;
+        if (mStateFile.exists()) {
+            binaryState = mStateFile.read(mTelephonyFeatureFlags);
+            if (binaryState == null) {
+                // Never replace state which failed to parse; fall back to the XML file if it is
+                // still there, or start afresh.
+                mStateFile.preserveUnreadable();
+            }
+        }
+        if (binaryState != null) {
+            mState = binaryState;
             versionChanged = mState.versionNumber < EXPECTED_STATE_VERSION;
+            // The XML file is kept after the migration until the binary state reads back.
+            if (mAtomicFile.exists()) {
+                Log.i(this, "Deleting the migrated XML state");
+                mAtomicFile.delete();
+            }
+        } else {
+            final InputStream is;
+            try {
+                is = mAtomicFile.openRead();
+            } catch (FileNotFoundException ex) {
+                return;
+            }
 
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(this, e, "Reading state from XML file");
-            mState = new State();
-        } finally {
             try {
-                is.close();
-            } catch (IOException e) {
-                Log.e(this, e, "Closing InputStream");
+                XmlPullParser parser = Xml.resolvePullParser(is);
+                parser.nextTag();
+                mState = readFromXml(parser, mContext, mTelephonyFeatureFlags,
+                        mTelecomFeatureFlags);
+                migratePhoneAccountHandle(mState);
+                migratedFromXml = true;
+            } catch (IOException | XmlPullParserException e) {
+                Log.e(this, e, "Reading state from XML file");
+                mState = new State();
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    Log.e(this, e, "Closing InputStream");
+                }
             }
         }
 
@@ -2118,17 +2191,18 @@ public class PhoneAccountRegistrar {
         }
         mState.accounts.removeAll(badAccounts);
 
-        // If an upgrade occurred, write out the changed data.
-        if (versionChanged || !badAccounts.isEmpty()) {
+        if (migratedFromXml) {
+            // Write the binary state right away; the XML file is only deleted once a later read
+            // of the binary state succeeds.
+            Log.i(this, "Migrating %d phone accounts from XML", mState.accounts.size());
+            sortPhoneAccounts();
+            mStateFile.writeNow(mState);
+        } else if (versionChanged || !badAccounts.isEmpty()) {
+            // If an upgrade occurred, write out the changed data.
             write();
         }
     }
 
-    private static void writeToXml(State state, XmlSerializer serializer, Context context,
-            FeatureFlags telephonyFeatureFlags) throws IOException {
-        sStateXml.writeToXml(state, serializer, context, telephonyFeatureFlags);
-    }
-
     private static State readFromXml(XmlPullParser parser, Context context,
             FeatureFlags telephonyFeatureFlags,
             com.android.server.telecom.flags.FeatureFlags telecomFeatureFlags)
@@ -2964,12 +3038,12 @@ public class PhoneAccountRegistrar {
             return false;
         }
         UserHandle userHandle = UserHandle.getUserHandleForUid(uid);
-        return mState.accounts.stream()
-                .anyMatch(p -> {
-                    PhoneAccountHandle handle = p.getAccountHandle();
-                    return handle.getUserHandle().equals(userHandle)
-                            && Arrays.stream(packageNames).anyMatch( s -> s.equals(
-                                    handle.getComponentName().getPackageName()));
-                });
+        for (String packageName : packageNames) {
+            if (!mState.accounts.query(0 /* capabilities */, null /* uriScheme */, packageName,
+                    userHandle).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,517 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.graphics.drawable.Icon;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.telecom.Log;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.util.AtomicFile;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.internal.telephony.flags.FeatureFlags;
+import com.android.server.telecom.PhoneAccountRegistrar.DefaultPhoneAccountHandle;
+import com.android.server.telecom.PhoneAccountRegistrar.State;
+import com.android.server.telecom.nano.PhoneAccountRegistrarStateClass.DefaultPhoneAccountHandleEntry;
+import com.android.server.telecom.nano.PhoneAccountRegistrarStateClass.PhoneAccountEntry;
+import com.android.server.telecom.nano.PhoneAccountRegistrarStateClass.PhoneAccountExtra;
+import com.android.server.telecom.nano.PhoneAccountRegistrarStateClass.PhoneAccountHandleEntry;
+import com.android.server.telecom.nano.PhoneAccountRegistrarStateClass.PhoneAccountRegistrarState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persists the {@link PhoneAccountRegistrar} state in a compact protobuf file.
+ * <p>
+ * Icons are written once to content-addressed blob files named after the digest of their bytes
+ * and referenced from the state by digest, so re-registering an account or changing the default
+ * does not re-encode and rewrite every icon. Writes are coalesced: each request replaces the
+ * pending state, and a single write of the latest state happens {@link #WRITE_DELAY_MILLIS} after
+ * the first request.
+ */
+public class PhoneAccountStateFile {
+    private static final String TAG = PhoneAccountStateFile.class.getSimpleName();
+    private static final String ICON_DIR_NAME = "phone-account-icons";
+    @VisibleForTesting
+    public static final String UNREADABLE_FILE_SUFFIX = ".unreadable";
+    @VisibleForTesting
+    public static final long WRITE_DELAY_MILLIS = 500L;
+
+    private static HandlerThread sWriterThread = null;
+    private static final Object sLock = new Object();
+
+    private final Context mContext;
+    private final AtomicFile mStateFile;
+    private final File mIconDir;
+    private final Handler mHandler;
+    // Digests of icons which have already been written, to avoid re-encoding them on each write.
+    private final Map<Icon, String> mIconDigests =
+            Collections.synchronizedMap(new WeakHashMap<>());
+    private final Runnable mWriteRunnable = this::writePending;
+    private final AtomicLong mWritesRequested = new AtomicLong(0);
+    private final AtomicLong mWritesCompleted = new AtomicLong(0);
+    private final AtomicLong mIconBlobsWritten = new AtomicLong(0);
+    // Held while writing so that requesting a write never waits on file I/O.
+    private final Object mWriteLock = new Object();
+    private State mPendingState;
+
+    public PhoneAccountStateFile(Context context, String fileName) {
+        mContext = context;
+        mStateFile = new AtomicFile(new File(context.getFilesDir(), fileName));
+        mIconDir = new File(context.getFilesDir(), ICON_DIR_NAME);
+        mHandler = new Handler(getWriterThread().getLooper());
+    }
+
+    private static HandlerThread getWriterThread() {
+        synchronized (sLock) {
+            if (sWriterThread == null) {
+                sWriterThread = new HandlerThread(TAG);
+                sWriterThread.start();
+            }
+            return sWriterThread;
+        }
+    }
+
+    /**
+     * @return {@code true} if the state file exists.
+     */
+    public boolean exists() {
+        return mStateFile.exists();
+    }
+
+    /**
+     * Deletes the state file. Icon blobs are left in place and cleaned up on the next write.
+     */
+    public void delete() {
+        synchronized (this) {
+            mHandler.removeCallbacks(mWriteRunnable);
+            mPendingState = null;
+        }
+        mStateFile.delete();
+    }
+
+    /**
+     * Renames a state file which could not be read out of the way, so that the next write starts
+     * a new file rather than replacing it.
+     */
+    public void preserveUnreadable() {
+        File file = mStateFile.getBaseFile();
+        File preserved = new File(file.getPath() + UNREADABLE_FILE_SUFFIX);
+        if (file.renameTo(preserved)) {
+            Log.w(TAG, "Kept unreadable state as %s", preserved);
+        } else {
+            Log.e(TAG, new IOException(), "Failed to keep unreadable state %s", file);
+        }
+    }
+
+    /**
+     * Reads the state from the state file.
+     * @return The state, or {@code null} if the file does not exist or cannot be parsed.
+     */
+    public State read(FeatureFlags telephonyFeatureFlags) {
+        PhoneAccountRegistrarState proto;
+        try {
+            proto = PhoneAccountRegistrarState.parseFrom(mStateFile.readFully());
+        } catch (IOException e) {
+            Log.e(TAG, e, "Reading state from %s", mStateFile.getBaseFile());
+            return null;
+        }
+        UserManager userManager = mContext.getSystemService(UserManager.class);
+        State state = new State();
+        state.versionNumber = proto.getVersion();
+        for (DefaultPhoneAccountHandleEntry entry : proto.defaultOutgoing) {
+            UserHandle userHandle = userManager.getUserForSerialNumber(
+                    entry.getUserSerialNumber());
+            PhoneAccountHandle handle = fromProto(entry.accountHandle, userManager);
+            if (userHandle != null && handle != null) {
+                state.defaultOutgoingAccountHandles.put(userHandle,
+                        new DefaultPhoneAccountHandle(userHandle, handle, entry.getGroupId()));
+            }
+        }
+        for (PhoneAccountEntry entry : proto.accounts) {
+            PhoneAccount account = fromProto(entry, userManager, telephonyFeatureFlags);
+            if (account != null) {
+                state.accounts.add(account);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Requests the state be written. The write happens on a background thread within
+     * {@link #WRITE_DELAY_MILLIS}; only the latest requested state is written.
+     * @param state The state to write.
+     */
+    public void scheduleWrite(State state) {
+        mWritesRequested.incrementAndGet();
+        synchronized (this) {
+            mPendingState = state;
+            if (!mHandler.hasCallbacks(mWriteRunnable)) {
+                mHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Writes any pending state immediately on the calling thread.
+     */
+    public void flush() {
+        synchronized (this) {
+            mHandler.removeCallbacks(mWriteRunnable);
+        }
+        writePending();
+    }
+
+    private void writePending() {
+        State state;
+        synchronized (this) {
+            state = mPendingState;
+            mPendingState = null;
+        }
+        if (state != null) {
+            writeNow(state);
+        }
+    }
+
+    /**
+     * Writes the state to the state file on the calling thread.
+     * @param state The state to write.
+     */
+    @VisibleForTesting
+    public void writeNow(State state) {
+        synchronized (mWriteLock) {
+            writeLocked(state);
+        }
+    }
+
+    private void writeLocked(State state) {
+        UserManager userManager = mContext.getSystemService(UserManager.class);
+        Set<String> referencedIcons = new HashSet<>();
+        PhoneAccountRegistrarState proto = new PhoneAccountRegistrarState();
+        proto.setVersion(PhoneAccountRegistrar.EXPECTED_STATE_VERSION);
+
+        List<DefaultPhoneAccountHandleEntry> defaults = new ArrayList<>();
+        for (DefaultPhoneAccountHandle handle : state.defaultOutgoingAccountHandles.values()) {
+            long serialNumber = userManager.getSerialNumberForUser(handle.userHandle);
+            if (serialNumber == -1) {
+                continue;
+            }
+            DefaultPhoneAccountHandleEntry entry = new DefaultPhoneAccountHandleEntry();
+            entry.setUserSerialNumber(serialNumber);
+            entry.setGroupId(handle.groupId != null ? handle.groupId : "");
+            entry.accountHandle = toProto(handle.phoneAccountHandle, userManager);
+            defaults.add(entry);
+        }
+        proto.defaultOutgoing = defaults.toArray(new DefaultPhoneAccountHandleEntry[0]);
+
+        List<PhoneAccountEntry> accounts = new ArrayList<>(state.accounts.size());
+        for (PhoneAccount account : state.accounts) {
+            accounts.add(toProto(account, userManager, referencedIcons));
+        }
+        proto.accounts = accounts.toArray(new PhoneAccountEntry[0]);
+
+        FileOutputStream stream = null;
+        try {
+            stream = mStateFile.startWrite();
+            stream.write(PhoneAccountRegistrarState.toByteArray(proto));
+            mStateFile.finishWrite(stream);
+            mWritesCompleted.incrementAndGet();
+        } catch (IOException e) {
+            Log.e(TAG, e, "Writing state to %s", mStateFile.getBaseFile());
+            mStateFile.failWrite(stream);
+            return;
+        }
+        deleteUnreferencedIcons(referencedIcons);
+    }
+
+    private PhoneAccountEntry toProto(PhoneAccount account, UserManager userManager,
+            Set<String> referencedIcons) {
+        PhoneAccountEntry entry = new PhoneAccountEntry();
+        entry.accountHandle = toProto(account.getAccountHandle(), userManager);
+        if (account.getAddress() != null) {
+            entry.setAddress(account.getAddress().toString());
+        }
+        if (account.getSubscriptionAddress() != null) {
+            entry.setSubscriptionAddress(account.getSubscriptionAddress().toString());
+        }
+        entry.setCapabilities(account.getCapabilities());
+        String iconDigest = writeIcon(account.getIcon());
+        if (iconDigest != null) {
+            entry.setIconDigest(iconDigest);
+            referencedIcons.add(iconDigest);
+        }
+        entry.setHighlightColor(account.getHighlightColor());
+        if (account.getLabel() != null) {
+            entry.setLabel(account.getLabel().toString());
+        }
+        if (account.getShortDescription() != null) {
+            entry.setShortDescription(account.getShortDescription().toString());
+        }
+        List<String> schemes = account.getSupportedUriSchemes();
+        entry.supportedUriSchemes = schemes != null
+                ? schemes.toArray(new String[0]) : new String[0];
+        entry.extras = toProto(account.getExtras());
+        entry.setEnabled(account.isEnabled());
+        entry.setSupportedAudioRoutes(account.getSupportedAudioRoutes());
+        if (account.hasSimultaneousCallingRestriction()) {
+            entry.setHasSimultaneousCallingRestriction(true);
+            List<PhoneAccountHandleEntry> restriction = new ArrayList<>();
+            for (PhoneAccountHandle handle : account.getSimultaneousCallingRestriction()) {
+                restriction.add(toProto(handle, userManager));
+            }
+            entry.simultaneousCallingRestriction =
+                    restriction.toArray(new PhoneAccountHandleEntry[0]);
+        }
+        return entry;
+    }
+
+    private PhoneAccount fromProto(PhoneAccountEntry entry, UserManager userManager,
+            FeatureFlags telephonyFeatureFlags) {
+        PhoneAccountHandle handle = fromProto(entry.accountHandle, userManager);
+        if (handle == null) {
+            Log.w(TAG, "Skipping account without a handle");
+            return null;
+        }
+        PhoneAccount.Builder builder = PhoneAccount.builder(handle,
+                        entry.hasLabel() ? entry.getLabel() : null)
+                .setAddress(entry.hasAddress() ? Uri.parse(entry.getAddress()) : null)
+                .setSubscriptionAddress(entry.hasSubscriptionAddress()
+                        ? Uri.parse(entry.getSubscriptionAddress()) : null)
+                .setCapabilities(entry.getCapabilities())
+                .setSupportedAudioRoutes(entry.getSupportedAudioRoutes())
+                .setShortDescription(entry.hasShortDescription()
+                        ? entry.getShortDescription() : null)
+                .setSupportedUriSchemes(Arrays.asList(entry.supportedUriSchemes))
+                .setHighlightColor(entry.getHighlightColor())
+                .setExtras(fromProto(entry.extras))
+                .setIsEnabled(entry.getEnabled());
+        if (entry.hasIconDigest()) {
+            Icon icon = readIcon(entry.getIconDigest());
+            if (icon != null) {
+                builder.setIcon(icon);
+            }
+        }
+        if (entry.getHasSimultaneousCallingRestriction()
+                && telephonyFeatureFlags.simultaneousCallingIndications()) {
+            Set<PhoneAccountHandle> restriction = new HashSet<>();
+            for (PhoneAccountHandleEntry handleEntry : entry.simultaneousCallingRestriction) {
+                PhoneAccountHandle restrictedHandle = fromProto(handleEntry, userManager);
+                if (restrictedHandle != null) {
+                    restriction.add(restrictedHandle);
+                }
+            }
+            builder.setSimultaneousCallingRestriction(restriction);
+        }
+        return builder.build();
+    }
+
+    private static PhoneAccountHandleEntry toProto(PhoneAccountHandle handle,
+            UserManager userManager) {
+        PhoneAccountHandleEntry entry = new PhoneAccountHandleEntry();
+        if (handle.getComponentName() != null) {
+            entry.setComponentName(handle.getComponentName().flattenToString());
+        }
+        if (handle.getId() != null) {
+            entry.setId(handle.getId());
+        }
+        if (handle.getUserHandle() != null) {
+            entry.setUserSerialNumber(userManager.getSerialNumberForUser(handle.getUserHandle()));
+        }
+        return entry;
+    }
+
+    private static PhoneAccountHandle fromProto(PhoneAccountHandleEntry entry,
+            UserManager userManager) {
+        if (entry == null || !entry.hasComponentName()) {
+            return null;
+        }
+        UserHandle userHandle = entry.hasUserSerialNumber()
+                ? userManager.getUserForSerialNumber(entry.getUserSerialNumber()) : null;
+        return new PhoneAccountHandle(
+                ComponentName.unflattenFromString(entry.getComponentName()),
+                entry.hasId() ? entry.getId() : null, userHandle);
+    }
+
+    private static PhoneAccountExtra[] toProto(Bundle extras) {
+        if (extras == null) {
+            return new PhoneAccountExtra[0];
+        }
+        List<PhoneAccountExtra> result = new ArrayList<>(extras.size());
+        for (String key : extras.keySet()) {
+            Object value = extras.get(key);
+            PhoneAccountExtra extra = new PhoneAccountExtra();
+            extra.setKey(key);
+            if (value instanceof String) {
+                extra.setType(PhoneAccountExtra.VALUE_TYPE_STRING);
+                extra.setStringValue((String) value);
+            } else if (value instanceof Integer) {
+                extra.setType(PhoneAccountExtra.VALUE_TYPE_INTEGER);
+                extra.setIntValue((Integer) value);
+            } else if (value instanceof Boolean) {
+                extra.setType(PhoneAccountExtra.VALUE_TYPE_BOOLEAN);
+                extra.setBoolValue((Boolean) value);
+            } else {
+                // Matches the XML format, which only supports these types.
+                continue;
+            }
+            result.add(extra);
+        }
+        return result.toArray(new PhoneAccountExtra[0]);
+    }
+
+    private static Bundle fromProto(PhoneAccountExtra[] extras) {
+        if (extras.length == 0) {
+            return null;
+        }
+        Bundle bundle = new Bundle();
+        for (PhoneAccountExtra extra : extras) {
+            switch (extra.getType()) {
+                case PhoneAccountExtra.VALUE_TYPE_STRING:
+                    bundle.putString(extra.getKey(), extra.getStringValue());
+                    break;
+                case PhoneAccountExtra.VALUE_TYPE_INTEGER:
+                    bundle.putInt(extra.getKey(), extra.getIntValue());
+                    break;
+                case PhoneAccountExtra.VALUE_TYPE_BOOLEAN:
+                    bundle.putBoolean(extra.getKey(), extra.getBoolValue());
+                    break;
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Writes an icon to its blob file unless it has already been written.
+     * @return The digest of the icon, or {@code null} if there is no icon or it can't be written.
+     */
+    private String writeIcon(Icon icon) {
+        if (icon == null) {
+            return null;
+        }
+        String digest = mIconDigests.get(icon);
+        if (digest != null && getIconFile(digest).exists()) {
+            return digest;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            icon.writeToStream(bytes);
+            byte[] iconBytes = bytes.toByteArray();
+            digest = toHexString(MessageDigest.getInstance("SHA-256").digest(iconBytes));
+            File iconFile = getIconFile(digest);
+            if (!iconFile.exists()) {
+                if (!mIconDir.exists() && !mIconDir.mkdirs()) {
+                    throw new IOException("Cannot create " + mIconDir);
+                }
+                AtomicFile atomicIconFile = new AtomicFile(iconFile);
+                FileOutputStream stream = atomicIconFile.startWrite();
+                try {
+                    stream.write(iconBytes);
+                    atomicIconFile.finishWrite(stream);
+                } catch (IOException e) {
+                    atomicIconFile.failWrite(stream);
+                    throw e;
+                }
+                mIconBlobsWritten.incrementAndGet();
+            }
+            mIconDigests.put(icon, digest);
+            return digest;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Log.e(TAG, e, "Writing icon blob");
+            return null;
+        }
+    }
+
+    private Icon readIcon(String digest) {
+        try (InputStream stream = new FileInputStream(getIconFile(digest))) {
+            Icon icon = Icon.createFromStream(stream);
+            if (icon != null) {
+                mIconDigests.put(icon, digest);
+            }
+            return icon;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, e, "Reading icon blob %s", digest);
+            return null;
+        }
+    }
+
+    private void deleteUnreferencedIcons(Set<String> referencedIcons) {
+        String[] names = mIconDir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (!referencedIcons.contains(name)) {
+                new AtomicFile(new File(mIconDir, name)).delete();
+            }
+        }
+    }
+
+    private File getIconFile(String digest) {
+        return new File(mIconDir, digest);
+    }
+
+    @VisibleForTesting
+    public File getIconDir() {
+        return mIconDir;
+    }
+
+    private static String toHexString(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Dumps the write statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        String[] icons = mIconDir.list();
+        pw.println("PhoneAccountStateFile: writesRequested=" + mWritesRequested.get()
+                + ", writesCompleted=" + mWritesCompleted.get()
+                + ", iconBlobs=" + (icons != null ? icons.length : 0)
+                + ", iconBlobsWritten=" + mIconBlobsWritten.get());
+    }
+}
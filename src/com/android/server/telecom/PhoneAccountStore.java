@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.os.UserHandle;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.util.IndentingPrintWriter;
+import android.util.IntArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * The ordered collection of {@link PhoneAccount}s known to {@link PhoneAccountRegistrar}, indexed
+ * by {@link PhoneAccountHandle}, package name, {@link UserHandle}, supported URI scheme and
+ * capability bit.
+ * <p>
+ * Like the {@code CopyOnWriteArrayList} it replaces, reads see an immutable snapshot and never
+ * block; each mutation publishes a new snapshot. Adding an account extends only the index buckets
+ * it belongs to, while removing or re-ordering accounts rebuilds the indexes since the positions
+ * of the remaining accounts change.
+ * <p>
+ * Index buckets hold positions into the ordered account array in ascending order, so queries are
+ * answered by intersecting buckets and return accounts in the same order a linear scan would.
+ * Enabled state is not indexed since it is mutable on the {@link PhoneAccount} itself.
+ */
+public class PhoneAccountStore implements Iterable<PhoneAccount> {
+    private static final int NUM_CAPABILITY_BITS = Integer.SIZE;
+
+    /**
+     * An immutable version of the store and its indexes.
+     */
+    private static final class Snapshot {
+        final PhoneAccount[] mAccounts;
+        // Position of the first account with a given handle.
+        final Map<PhoneAccountHandle, Integer> mByHandle;
+        final Map<String, int[]> mByPackage;
+        final Map<UserHandle, int[]> mByUser;
+        final Map<String, int[]> mByScheme;
+        final int[][] mByCapability;
+
+        Snapshot(PhoneAccount[] accounts, Map<PhoneAccountHandle, Integer> byHandle,
+                Map<String, int[]> byPackage, Map<UserHandle, int[]> byUser,
+                Map<String, int[]> byScheme, int[][] byCapability) {
+            mAccounts = accounts;
+            mByHandle = byHandle;
+            mByPackage = byPackage;
+            mByUser = byUser;
+            mByScheme = byScheme;
+            mByCapability = byCapability;
+        }
+
+        /**
+         * Builds the indexes for an array of accounts from scratch.
+         */
+        static Snapshot build(PhoneAccount[] accounts) {
+            Map<PhoneAccountHandle, Integer> byHandle = new HashMap<>();
+            Map<String, IntArray> byPackage = new HashMap<>();
+            Map<UserHandle, IntArray> byUser = new HashMap<>();
+            Map<String, IntArray> byScheme = new HashMap<>();
+            IntArray[] byCapability = new IntArray[NUM_CAPABILITY_BITS];
+            for (int position = 0; position < accounts.length; position++) {
+                PhoneAccount account = accounts[position];
+                PhoneAccountHandle handle = account.getAccountHandle();
+                byHandle.putIfAbsent(handle, position);
+                byPackage.computeIfAbsent(getPackageName(handle), k -> new IntArray())
+                        .add(position);
+                byUser.computeIfAbsent(handle != null ? handle.getUserHandle() : null,
+                        k -> new IntArray()).add(position);
+                for (String scheme : getSchemes(account)) {
+                    byScheme.computeIfAbsent(scheme, k -> new IntArray()).add(position);
+                }
+                int capabilities = account.getCapabilities();
+                for (int bit = 0; bit < NUM_CAPABILITY_BITS; bit++) {
+                    if ((capabilities & (1 << bit)) != 0) {
+                        if (byCapability[bit] == null) {
+                            byCapability[bit] = new IntArray();
+                        }
+                        byCapability[bit].add(position);
+                    }
+                }
+            }
+            int[][] capabilityPositions = new int[NUM_CAPABILITY_BITS][];
+            for (int bit = 0; bit < NUM_CAPABILITY_BITS; bit++) {
+                capabilityPositions[bit] = byCapability[bit] != null
+                        ? byCapability[bit].toArray() : new int[0];
+            }
+            return new Snapshot(accounts, byHandle, toPositions(byPackage), toPositions(byUser),
+                    toPositions(byScheme), capabilityPositions);
+        }
+
+        /**
+         * @return A new snapshot with the account appended, extending only the affected buckets.
+         */
+        Snapshot withAdded(PhoneAccount account) {
+            int position = mAccounts.length;
+            PhoneAccount[] accounts = Arrays.copyOf(mAccounts, position + 1);
+            accounts[position] = account;
+            PhoneAccountHandle handle = account.getAccountHandle();
+            Map<PhoneAccountHandle, Integer> byHandle = mByHandle;
+            if (!byHandle.containsKey(handle)) {
+                byHandle = new HashMap<>(byHandle);
+                byHandle.put(handle, position);
+            }
+            Map<String, int[]> byPackage = new HashMap<>(mByPackage);
+            byPackage.put(getPackageName(handle), append(byPackage.get(getPackageName(handle)),
+                    position));
+            UserHandle userHandle = handle != null ? handle.getUserHandle() : null;
+            Map<UserHandle, int[]> byUser = new HashMap<>(mByUser);
+            byUser.put(userHandle, append(byUser.get(userHandle), position));
+            Map<String, int[]> byScheme = mByScheme;
+            List<String> schemes = getSchemes(account);
+            if (!schemes.isEmpty()) {
+                byScheme = new HashMap<>(byScheme);
+                for (String scheme : schemes) {
+                    byScheme.put(scheme, append(byScheme.get(scheme), position));
+                }
+            }
+            int[][] byCapability = mByCapability.clone();
+            int capabilities = account.getCapabilities();
+            for (int bit = 0; bit < NUM_CAPABILITY_BITS; bit++) {
+                if ((capabilities & (1 << bit)) != 0) {
+                    byCapability[bit] = append(byCapability[bit], position);
+                }
+            }
+            return new Snapshot(accounts, byHandle, byPackage, byUser, byScheme, byCapability);
+        }
+
+        private static <K> Map<K, int[]> toPositions(Map<K, IntArray> buckets) {
+            Map<K, int[]> positions = new HashMap<>(buckets.size());
+            for (Map.Entry<K, IntArray> entry : buckets.entrySet()) {
+                positions.put(entry.getKey(), entry.getValue().toArray());
+            }
+            return positions;
+        }
+
+        private static int[] append(int[] positions, int position) {
+            if (positions == null) {
+                return new int[] { position };
+            }
+            int[] result = Arrays.copyOf(positions, positions.length + 1);
+            result[positions.length] = position;
+            return result;
+        }
+    }
+
+    private volatile Snapshot mSnapshot = Snapshot.build(new PhoneAccount[0]);
+
+    public int size() {
+        return mSnapshot.mAccounts.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public PhoneAccount get(int index) {
+        return mSnapshot.mAccounts[index];
+    }
+
+    /**
+     * @return An iterator over a snapshot of the accounts; it does not support removal.
+     */
+    @Override
+    public Iterator<PhoneAccount> iterator() {
+        return Collections.unmodifiableList(Arrays.asList(mSnapshot.mAccounts)).iterator();
+    }
+
+    public Stream<PhoneAccount> stream() {
+        return Arrays.stream(mSnapshot.mAccounts);
+    }
+
+    /**
+     * Appends an account.
+     */
+    public synchronized void add(PhoneAccount account) {
+        mSnapshot = mSnapshot.withAdded(account);
+    }
+
+    /**
+     * Removes the first account equal to the given one.
+     * @return {@code true} if an account was removed.
+     */
+    public synchronized boolean remove(PhoneAccount account) {
+        PhoneAccount[] accounts = mSnapshot.mAccounts;
+        for (int i = 0; i < accounts.length; i++) {
+            if (Objects.equals(account, accounts[i])) {
+                PhoneAccount[] remaining = new PhoneAccount[accounts.length - 1];
+                System.arraycopy(accounts, 0, remaining, 0, i);
+                System.arraycopy(accounts, i + 1, remaining, i, accounts.length - i - 1);
+                mSnapshot = Snapshot.build(remaining);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all accounts contained in the given collection.
+     * @return {@code true} if any account was removed.
+     */
+    public synchronized boolean removeAll(Collection<PhoneAccount> toRemove) {
+        PhoneAccount[] accounts = mSnapshot.mAccounts;
+        List<PhoneAccount> remaining = new ArrayList<>(accounts.length);
+        for (PhoneAccount account : accounts) {
+            if (!toRemove.contains(account)) {
+                remaining.add(account);
+            }
+        }
+        if (remaining.size() == accounts.length) {
+            return false;
+        }
+        mSnapshot = Snapshot.build(remaining.toArray(new PhoneAccount[0]));
+        return true;
+    }
+
+    /**
+     * Re-orders the accounts.
+     */
+    public synchronized void sort(Comparator<PhoneAccount> comparator) {
+        PhoneAccount[] accounts = mSnapshot.mAccounts.clone();
+        Arrays.sort(accounts, comparator);
+        mSnapshot = Snapshot.build(accounts);
+    }
+
+    /**
+     * @return The first account with the given handle, or {@code null} if there is none.
+     */
+    public PhoneAccount getByHandle(PhoneAccountHandle handle) {
+        Snapshot snapshot = mSnapshot;
+        Integer position = snapshot.mByHandle.get(handle);
+        return position != null ? snapshot.mAccounts[position] : null;
+    }
+
+    /**
+     * Finds the accounts matching all of the given criteria, in store order.
+     * @param capabilities Capabilities the accounts must all have, or {@code 0} for any.
+     * @param uriScheme A URI scheme the accounts must support, or {@code null} for any.
+     * @param packageName The package the accounts must belong to, or {@code null} for any.
+     * @param userHandle The user the accounts must be registered for, or {@code null} for any.
+     * @return The matching accounts.
+     */
+    public List<PhoneAccount> query(int capabilities, String uriScheme, String packageName,
+            UserHandle userHandle) {
+        Snapshot snapshot = mSnapshot;
+        List<int[]> buckets = new ArrayList<>();
+        if (packageName != null) {
+            buckets.add(snapshot.mByPackage.get(packageName));
+        }
+        if (userHandle != null) {
+            buckets.add(snapshot.mByUser.get(userHandle));
+        }
+        if (uriScheme != null) {
+            buckets.add(snapshot.mByScheme.get(uriScheme));
+        }
+        for (int bit = 0; bit < NUM_CAPABILITY_BITS; bit++) {
+            if ((capabilities & (1 << bit)) != 0) {
+                buckets.add(snapshot.mByCapability[bit]);
+            }
+        }
+        if (buckets.isEmpty()) {
+            return Collections.unmodifiableList(Arrays.asList(snapshot.mAccounts));
+        }
+        int smallest = 0;
+        for (int i = 0; i < buckets.size(); i++) {
+            int[] bucket = buckets.get(i);
+            if (bucket == null || bucket.length == 0) {
+                return Collections.EMPTY_LIST;
+            }
+            if (bucket.length < buckets.get(smallest).length) {
+                smallest = i;
+            }
+        }
+        int[] candidates = buckets.get(smallest);
+        List<PhoneAccount> result = new ArrayList<>(candidates.length);
+        for (int position : candidates) {
+            boolean inAll = true;
+            for (int i = 0; i < buckets.size() && inAll; i++) {
+                inAll = i == smallest || Arrays.binarySearch(buckets.get(i), position) >= 0;
+            }
+            if (inAll) {
+                result.add(snapshot.mAccounts[position]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dumps the index sizes.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        Snapshot snapshot = mSnapshot;
+        pw.println("PhoneAccountStore: accounts=" + snapshot.mAccounts.length
+                + ", packages=" + snapshot.mByPackage.size()
+                + ", users=" + snapshot.mByUser.size()
+                + ", schemes=" + snapshot.mByScheme.keySet());
+    }
+
+    private static String getPackageName(PhoneAccountHandle handle) {
+        return handle != null && handle.getComponentName() != null
+                ? handle.getComponentName().getPackageName() : null;
+    }
+
+    private static List<String> getSchemes(PhoneAccount account) {
+        List<String> schemes = account.getSupportedUriSchemes();
+        if (schemes == null || schemes.isEmpty()) {
+            return Collections.EMPTY_LIST;
+        }
+        List<String> result = new ArrayList<>(schemes.size());
+        for (String scheme : schemes) {
+            // An account listing the same scheme twice must only appear in its bucket once.
+            if (scheme != null && !result.contains(scheme)) {
+                result.add(scheme);
+            }
+        }
+        return result;
+    }
+}
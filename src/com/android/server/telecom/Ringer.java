@@ -49,6 +49,7 @@ import android.os.vibrator.persistence.ParsedVibration;
 import android.os.vibrator.persistence.VibrationXmlParser;
 import android.telecom.Log;
 import android.telecom.TelecomManager;
+import android.util.LruCache;
 import android.util.Pair;
 import android.view.accessibility.AccessibilityManager;
 
@@ -206,6 +207,12 @@ public class Ringer {
     private final boolean mRingtoneVibrationSupported;
     private final AnomalyReporterAdapter mAnomalyReporter;
 
+    /**
+     * The vibration effects of the ringtones used before, keyed by ringtone URI; {@code null} if
+     * disabled.  The effect of a ringtone only depends on its URI.
+     */
+    private final LruCache<Uri, VibrationEffect> mVibrationEffectCache;
+
     /**
      * For unit testing purposes only; when set, {@link #startRinging(Call, boolean)} will complete
      * the future provided by the test using {@link #setBlockOnRingingFuture(CompletableFuture)}.
@@ -281,6 +288,10 @@ public class Ringer {
         mFlags = featureFlags;
         mRingtoneVibrationSupported = mContext.getResources().getBoolean(
                 com.android.internal.R.bool.config_ringtoneVibrationSettingsSupported);
+        int vibrationEffectCacheSize = mContext.getResources().getInteger(
+                R.integer.ringtone_vibration_cache_size);
+        mVibrationEffectCache = vibrationEffectCacheSize > 0
+                ? new LruCache<>(vibrationEffectCacheSize) : null;
     }
 
     @VisibleForTesting
@@ -496,6 +507,7 @@ public class Ringer {
             // if the loaded ringtone is null. However if a stop event arrives before the ringtone
             // creation finishes, then this consumer can be skipped.
             final boolean finalUseCustomVibrationEffect = useCustomVibrationEffect;
+            final boolean isRingerAudible = attributes.isRingerAudible();
             BiConsumer<Pair<Uri, Ringtone>, Boolean> afterRingtoneLogic =
                     (Pair<Uri, Ringtone> ringtoneInfo, Boolean stopped) -> {
                 try {
@@ -507,6 +519,10 @@ public class Ringer {
                     } else {
                         Log.w(this, "The ringtone could not be loaded.");
                     }
+                    if (ringtone != null && isRingerAudible && !stopped.booleanValue()) {
+                        // Ends the ring start timing, see LogUtils.Events.Timings.
+                        Log.addEvent(foregroundCall, LogUtils.Events.RINGTONE_AUDIBLE);
+                    }
 
                     if (stopped.booleanValue() || !vibratorReserved) {
                         // don't start vibration if the ringing is already abandoned, or the
@@ -632,11 +648,20 @@ public class Ringer {
         if (ringtoneUri == null) {
             return mDefaultVibrationEffect;
         }
+        if (mVibrationEffectCache != null) {
+            VibrationEffect cachedEffect = mVibrationEffectCache.get(ringtoneUri);
+            if (cachedEffect != null) {
+                return cachedEffect;
+            }
+        }
         try {
             VibrationEffect effect = mVibrationEffectProxy.get(ringtoneUri, mContext);
             if (effect == null) {
               Log.i(this, "did not find vibration effect, falling back to default vibration");
-              return mDefaultVibrationEffect;
+              effect = mDefaultVibrationEffect;
+            }
+            if (mVibrationEffectCache != null && effect != null) {
+                mVibrationEffectCache.put(ringtoneUri, effect);
             }
             return effect;
         } catch (IllegalArgumentException iae) {
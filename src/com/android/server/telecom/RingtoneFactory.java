@@ -20,11 +20,14 @@ import android.annotation.Nullable;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.pm.UserInfo;
+import android.database.ContentObserver;
 import android.media.AudioAttributes;
 import android.media.RingtoneManager;
 import android.media.Ringtone;
 import android.media.VolumeShaper;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.UserHandle;
 import android.os.UserManager;
 import android.provider.Settings;
@@ -37,6 +40,7 @@ import com.android.server.telecom.flags.FeatureFlags;
 
 import android.telecom.CallerInfo;
 import android.util.Pair;
+import android.util.SparseArray;
 
 import java.util.List;
 
@@ -44,18 +48,83 @@ import java.util.List;
  * Uses the incoming {@link Call}'s ringtone URI (obtained by the Contact Lookup) to obtain a
  * {@link Ringtone} from the {@link RingtoneManager} that can be played by the system during an
  * incoming call. If the ringtone URI is null, use the default Ringtone for the active user.
+ * <p>
+ * When enabled with {@code R.bool.prepare_ringtones_ahead}, the default ringtone URI of each user
+ * is cached, and once a ringtone was used for an incoming call the next one is created ahead of
+ * time so that the next call using the same ringtone does not have to wait for it.  Both are
+ * dropped when the ringtone settings change.  A prepared ringtone is only handed out for the same
+ * ringtone URI, so a contact whose ringtone changed never gets the old one; the prepared ringtone
+ * is released when it is replaced or the user switches.
  */
 @VisibleForTesting
 public class RingtoneFactory {
 
+    /**
+     * A ringtone created ahead of time for the next incoming call.
+     */
+    private static class PreparedRingtone {
+        public final Context context;
+        public final Uri uri;
+        // Whether this is the actual default ringtone of the user, which is prepared again when
+        // the default changes.
+        public final boolean isDefault;
+        public final boolean hapticChannelsMuted;
+        public final Ringtone ringtone;
+
+        PreparedRingtone(Context context, Uri uri, boolean isDefault, boolean hapticChannelsMuted,
+                Ringtone ringtone) {
+            this.context = context;
+            this.uri = uri;
+            this.isDefault = isDefault;
+            this.hapticChannelsMuted = hapticChannelsMuted;
+            this.ringtone = ringtone;
+        }
+
+        public boolean matches(Context context, Uri uri, boolean hapticChannelsMuted) {
+            return this.context.getUserId() == context.getUserId() && this.uri.equals(uri)
+                    && this.hapticChannelsMuted == hapticChannelsMuted;
+        }
+    }
+
     private final Context mContext;
     private final CallsManager mCallsManager;
     private FeatureFlags mFeatureFlags;
+    private final boolean mIsPreparingRingtones;
+
+    private final Object mCacheLock = new Object();
+    // Keyed by user id; a null value means the user has no default ringtone.
+    private final SparseArray<Uri> mDefaultRingtoneUris = new SparseArray<>();
+    private PreparedRingtone mPreparedRingtone;
+    // Incremented whenever the cached state is dropped.
+    private int mCacheGeneration = 0;
+
+    // The thread ringtones are prepared on; only used when preparing ringtones.
+    private final Handler mHandler;
+    private final ContentObserver mRingtoneObserver;
 
     public RingtoneFactory(CallsManager callsManager, Context context, FeatureFlags featureFlags) {
         mContext = context;
         mCallsManager = callsManager;
         mFeatureFlags = featureFlags;
+        mIsPreparingRingtones = context.getResources().getBoolean(
+                R.bool.prepare_ringtones_ahead);
+        if (mIsPreparingRingtones) {
+            HandlerThread handlerThread = new HandlerThread("RingtoneFactory");
+            handlerThread.start();
+            mHandler = handlerThread.getThreadHandler();
+            mRingtoneObserver = new ContentObserver(mHandler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    invalidateCache();
+                }
+            };
+            context.getContentResolver().registerContentObserverAsUser(
+                    Settings.System.getUriFor(Settings.System.RINGTONE), false,
+                    mRingtoneObserver, UserHandle.ALL);
+        } else {
+            mHandler = null;
+            mRingtoneObserver = null;
+        }
     }
 
     public Pair<Uri, Ringtone> getRingtone(Call incomingCall,
@@ -76,8 +145,8 @@ public class RingtoneFactory {
         if (ringtoneUri != null && userContext != null) {
             // Ringtone URI is explicitly specified. First, try to create a Ringtone with that.
             try {
-                ringtone = RingtoneManager.getRingtone(
-                        userContext, ringtoneUri, volumeShaperConfig, audioAttrs);
+                ringtone = createRingtone(userContext, ringtoneUri, false /* isDefault */,
+                        volumeShaperConfig, hapticChannelsMuted, audioAttrs);
             } catch (Exception e) {
                 Log.e(this, e, "getRingtone: exception while getting ringtone.");
             }
@@ -92,8 +161,7 @@ public class RingtoneFactory {
                     : um.isUserUnlocked(contextToUse.getUserId());
             Uri defaultRingtoneUri;
             if (isUserUnlocked) {
-                defaultRingtoneUri = RingtoneManager.getActualDefaultRingtoneUri(contextToUse,
-                        RingtoneManager.TYPE_RINGTONE);
+                defaultRingtoneUri = getActualDefaultRingtoneUri(contextToUse);
                 if (defaultRingtoneUri == null) {
                     Log.i(this, "getRingtone: defaultRingtoneUri for user is null.");
                 }
@@ -110,8 +178,8 @@ public class RingtoneFactory {
             }
 
             try {
-                ringtone = RingtoneManager.getRingtone(
-                        contextToUse, ringtoneUri, volumeShaperConfig, audioAttrs);
+                ringtone = createRingtone(contextToUse, ringtoneUri, isUserUnlocked,
+                        volumeShaperConfig, hapticChannelsMuted, audioAttrs);
             } catch (Exception e) {
                 Log.e(this, e, "getRingtone: exception while getting ringtone.");
             }
@@ -119,6 +187,165 @@ public class RingtoneFactory {
         return new Pair(ringtoneUri, ringtone);
     }
 
+    /**
+     * Creates a ringtone, or hands out the one prepared for it ahead of time.  Unless a volume
+     * shaper is used, prepares the ringtone for the next call with the same ringtone.
+     */
+    @VisibleForTesting
+    public Ringtone createRingtone(Context context, Uri ringtoneUri, boolean isDefault,
+            @Nullable VolumeShaper.Configuration volumeShaperConfig, boolean hapticChannelsMuted,
+            AudioAttributes audioAttrs) {
+        if (!mIsPreparingRingtones || volumeShaperConfig != null) {
+            return RingtoneManager.getRingtone(context, ringtoneUri, volumeShaperConfig,
+                    audioAttrs);
+        }
+        Ringtone ringtone = null;
+        synchronized (mCacheLock) {
+            if (mPreparedRingtone != null
+                    && mPreparedRingtone.matches(context, ringtoneUri, hapticChannelsMuted)) {
+                ringtone = mPreparedRingtone.ringtone;
+                mPreparedRingtone = null;
+            }
+        }
+        if (ringtone != null) {
+            Log.i(this, "createRingtone: using prepared ringtone.");
+        } else {
+            ringtone = RingtoneManager.getRingtone(context, ringtoneUri, null, audioAttrs);
+        }
+        if (ringtone != null) {
+            prepareRingtone(context, ringtoneUri, isDefault, hapticChannelsMuted);
+        }
+        return ringtone;
+    }
+
+    /**
+     * Creates a ringtone for the next incoming call in the background, replacing the one
+     * prepared before.
+     */
+    private void prepareRingtone(Context context, Uri ringtoneUri, boolean isDefault,
+            boolean hapticChannelsMuted) {
+        mHandler.post(() -> {
+            int generation;
+            synchronized (mCacheLock) {
+                if (mPreparedRingtone != null
+                        && mPreparedRingtone.matches(context, ringtoneUri, hapticChannelsMuted)) {
+                    return;
+                }
+                generation = mCacheGeneration;
+            }
+            Ringtone ringtone;
+            try {
+                ringtone = RingtoneManager.getRingtone(context, ringtoneUri, null,
+                        getDefaultRingtoneAudioAttributes(hapticChannelsMuted));
+            } catch (Exception e) {
+                Log.w(this, "prepareRingtone: exception while getting ringtone: %s", e);
+                return;
+            }
+            if (ringtone == null) {
+                return;
+            }
+            Ringtone replaced = ringtone;
+            synchronized (mCacheLock) {
+                if (generation == mCacheGeneration) {
+                    replaced = mPreparedRingtone != null ? mPreparedRingtone.ringtone : null;
+                    mPreparedRingtone = new PreparedRingtone(context, ringtoneUri, isDefault,
+                            hapticChannelsMuted, ringtone);
+                }
+            }
+            if (replaced != null) {
+                // Release the player of the ringtone which will no longer be used.
+                replaced.stop();
+            }
+        });
+    }
+
+    /**
+     * Drops the cached default ringtones and the prepared ringtone, e.g. because the ringtone
+     * settings or the contacts changed.  A prepared default ringtone is prepared again for the
+     * new default.
+     */
+    @VisibleForTesting
+    public void invalidateCache() {
+        PreparedRingtone preparedRingtone;
+        synchronized (mCacheLock) {
+            mDefaultRingtoneUris.clear();
+            preparedRingtone = dropPreparedRingtoneLocked();
+        }
+        if (preparedRingtone == null) {
+            return;
+        }
+        Log.i(this, "invalidateCache: dropping prepared ringtone.");
+        preparedRingtone.ringtone.stop();
+        if (preparedRingtone.isDefault) {
+            Uri defaultRingtoneUri = getActualDefaultRingtoneUri(preparedRingtone.context);
+            if (defaultRingtoneUri != null) {
+                prepareRingtone(preparedRingtone.context, defaultRingtoneUri, true,
+                        preparedRingtone.hapticChannelsMuted);
+            }
+        }
+    }
+
+    /**
+     * Releases the ringtone prepared for the previous user, which the new user would not use.
+     * The default ringtone of the new user is prepared again by its next incoming call.
+     */
+    public void onUserSwitch() {
+        if (!mIsPreparingRingtones) {
+            return;
+        }
+        PreparedRingtone preparedRingtone;
+        synchronized (mCacheLock) {
+            preparedRingtone = dropPreparedRingtoneLocked();
+        }
+        if (preparedRingtone != null) {
+            Log.i(this, "onUserSwitch: releasing prepared ringtone.");
+            preparedRingtone.ringtone.stop();
+        }
+    }
+
+    /**
+     * Drops the prepared ringtone, and any ringtone still being prepared.
+     * @return The dropped ringtone, which the caller should release.
+     */
+    private PreparedRingtone dropPreparedRingtoneLocked() {
+        mCacheGeneration++;
+        PreparedRingtone preparedRingtone = mPreparedRingtone;
+        mPreparedRingtone = null;
+        return preparedRingtone;
+    }
+
+    @VisibleForTesting
+    public Handler getHandler() {
+        return mHandler;
+    }
+
+    /**
+     * @return The default ringtone URI of the user of the context, which must be unlocked.
+     */
+    private Uri getActualDefaultRingtoneUri(Context context) {
+        if (!mIsPreparingRingtones) {
+            return RingtoneManager.getActualDefaultRingtoneUri(context,
+                    RingtoneManager.TYPE_RINGTONE);
+        }
+        int generation;
+        synchronized (mCacheLock) {
+            int index = mDefaultRingtoneUris.indexOfKey(context.getUserId());
+            if (index >= 0) {
+                return mDefaultRingtoneUris.valueAt(index);
+            }
+            generation = mCacheGeneration;
+        }
+        Uri defaultRingtoneUri = RingtoneManager.getActualDefaultRingtoneUri(context,
+                RingtoneManager.TYPE_RINGTONE);
+        synchronized (mCacheLock) {
+            // Don't cache a value which may have been read before the settings changed.
+            if (generation == mCacheGeneration) {
+                mDefaultRingtoneUris.put(context.getUserId(), defaultRingtoneUri);
+            }
+        }
+        return defaultRingtoneUri;
+    }
+
     private AudioAttributes getDefaultRingtoneAudioAttributes(boolean hapticChannelsMuted) {
         return new AudioAttributes.Builder()
             .setUsage(AudioAttributes.USAGE_NOTIFICATION_RINGTONE)
@@ -22,6 +22,7 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.os.RemoteException;
+import android.os.SystemClock;
 import android.os.UserHandle;
 import android.telecom.Log;
 import android.text.TextUtils;
@@ -55,6 +56,27 @@ public abstract class ServiceBinder {
      */
     interface Listener<ServiceBinderClass extends ServiceBinder> {
         void onUnbind(ServiceBinderClass serviceBinder);
+
+        /**
+         * Called when the binding to the service completes.
+         * @param bindMillis How long the binding took.
+         */
+        default void onBound(ServiceBinderClass serviceBinder, long bindMillis) {}
+
+        /**
+         * Called when the first call is associated with the service, whether or not the service
+         * is already bound.
+         */
+        default void onActive(ServiceBinderClass serviceBinder) {}
+
+        /**
+         * Called when the last call associated with the service is removed.  A listener which
+         * returns {@code true} keeps the service bound, and is responsible for calling
+         * {@link #unbindIfIdle()} later.
+         */
+        default boolean shouldStayBoundWhenIdle(ServiceBinderClass serviceBinder) {
+            return false;
+        }
     }
 
     /**
@@ -91,6 +113,7 @@ public abstract class ServiceBinder {
                 final int bindingFlags = Context.BIND_AUTO_CREATE | Context.BIND_FOREGROUND_SERVICE
                         | Context.BIND_ALLOW_BACKGROUND_ACTIVITY_STARTS;
                 final boolean isBound;
+                mBindRequestedMillis = SystemClock.elapsedRealtime();
                 if (mUserHandle != null) {
                     isBound = mContext.bindServiceAsUser(serviceIntent, connection, bindingFlags,
                             mUserHandle);
@@ -166,6 +189,10 @@ public abstract class ServiceBinder {
                             binder.linkToDeath(mServiceDeathRecipient, 0);
                             mServiceConnection = this;
                             setBinder(binder);
+                            long bindMillis = SystemClock.elapsedRealtime() - mBindRequestedMillis;
+                            for (Listener l : mListeners) {
+                                l.onBound(ServiceBinder.this, bindMillis);
+                            }
                             handleSuccessfulConnection();
                         } catch (RemoteException e) {
                             Log.w(this, "onServiceConnected: %s died.");
@@ -261,6 +288,9 @@ public abstract class ServiceBinder {
 
     private int mAssociatedCallCount = 0;
 
+    /** When the current binding was requested, in {@link SystemClock#elapsedRealtime()}. */
+    private long mBindRequestedMillis;
+
     /**
      * Indicates that an unbind request was made when the service was not yet bound. If the service
      * successfully connects when this is true, it should be unbound immediately.
@@ -302,13 +332,20 @@ public abstract class ServiceBinder {
         return mUserHandle;
     }
 
-    final void incrementAssociatedCallCount() {
+    @VisibleForTesting
+    public final void incrementAssociatedCallCount() {
         mAssociatedCallCount++;
         Log.v(this, "Call count increment %d, %s", mAssociatedCallCount,
                 mComponentName.flattenToShortString());
+        if (mAssociatedCallCount == 1) {
+            for (Listener l : mListeners) {
+                l.onActive(this);
+            }
+        }
     }
 
-    final void decrementAssociatedCallCount() {
+    @VisibleForTesting
+    public final void decrementAssociatedCallCount() {
         if (mFlags.updatedRcsCallCountTracking()) {
             decrementAssociatedCallCountUpdated();
         } else {
@@ -325,7 +362,7 @@ public abstract class ServiceBinder {
                     mComponentName.flattenToShortString());
 
             if (!isSuppressingUnbind && mAssociatedCallCount == 0) {
-                unbind();
+                onIdle();
             }
         } else {
             Log.wtf(this, "%s: ignoring a request to decrement mAssociatedCallCount below zero",
@@ -340,7 +377,7 @@ public abstract class ServiceBinder {
                     mComponentName.flattenToShortString());
 
             if (mAssociatedCallCount == 0) {
-                unbind();
+                onIdle();
             }
         } else {
             Log.wtf(this, "%s: ignoring a request to decrement mAssociatedCallCount below zero",
@@ -352,6 +389,30 @@ public abstract class ServiceBinder {
         return mAssociatedCallCount;
     }
 
+    /**
+     * Unbinds from the service now that no calls are associated with it, unless a listener keeps
+     * it bound for the next call.
+     */
+    private void onIdle() {
+        for (Listener l : mListeners) {
+            if (l.shouldStayBoundWhenIdle(this)) {
+                Log.i(this, "Keeping %s bound while idle.", mComponentName.flattenToShortString());
+                return;
+            }
+        }
+        unbind();
+    }
+
+    /**
+     * Unbinds from a service kept bound by {@link Listener#shouldStayBoundWhenIdle}, unless calls
+     * have been associated with it since.
+     */
+    final void unbindIfIdle() {
+        if (mAssociatedCallCount == 0) {
+            unbind();
+        }
+    }
+
     /**
      * Unbinds from the service if already bound, no-op otherwise.
      */
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.annotation.Nullable;
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ResolveInfo;
+import android.os.UserHandle;
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers which services {@link android.content.pm.PackageManager#queryIntentServicesAsUser}
+ * resolves for each user, so that the InCallServices and CallScreeningServices to bind to are
+ * looked up from memory on the call path.
+ * <p>
+ * A user's results are discarded when a package of that user is added, removed or changed, as
+ * reported by {@link DefaultDialerCache#addPackageChangeListener}, and when the user's default
+ * dialer changes.  They are also discarded when the user unlocks, since services which are not
+ * direct boot aware do not resolve before then, and when the user is switched to or removed.
+ */
+public class ServiceComponentRegistry {
+    /** The resolved services of a user. */
+    private static class UserEntry {
+        final Map<String, List<ResolveInfo>> results = new ConcurrentHashMap<>();
+        // Incremented whenever the results are discarded, so that a query which raced with the
+        // change does not store its stale result.
+        final AtomicInteger generation = new AtomicInteger();
+        final AtomicInteger hitCount = new AtomicInteger();
+        final AtomicInteger missCount = new AtomicInteger();
+    }
+
+    private final Context mContext;
+    private final Map<Integer, UserEntry> mUserEntries = new ConcurrentHashMap<>();
+
+    private final BroadcastReceiver mUserStateReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Log.startSession("SCR.oR");
+            try {
+                int userId = intent.getIntExtra(Intent.EXTRA_USER_HANDLE, UserHandle.USER_NULL);
+                if (userId == UserHandle.USER_NULL) {
+                    return;
+                }
+                invalidate(userId);
+                if (Intent.ACTION_USER_REMOVED.equals(intent.getAction())) {
+                    mUserEntries.remove(userId);
+                }
+            } finally {
+                Log.endSession();
+            }
+        }
+    };
+
+    public ServiceComponentRegistry(Context context, DefaultDialerCache defaultDialerCache) {
+        mContext = context;
+        defaultDialerCache.addPackageChangeListener(this::invalidate);
+        defaultDialerCache.observeDefaultDialerApplication(context.getMainExecutor(),
+                this::invalidate);
+
+        IntentFilter userFilter = new IntentFilter(Intent.ACTION_USER_UNLOCKED);
+        userFilter.addAction(Intent.ACTION_USER_SWITCHED);
+        userFilter.addAction(Intent.ACTION_USER_REMOVED);
+        context.registerReceiverAsUser(mUserStateReceiver, UserHandle.ALL, userFilter, null,
+                null);
+    }
+
+    /**
+     * Queries the services matching an intent, or returns the result of an earlier identical
+     * query if the user's packages have not changed since.
+     *
+     * @param registry The registry to query through, or {@code null} to query the
+     *                 {@link android.content.pm.PackageManager} directly.
+     * @param context The context whose {@link android.content.pm.PackageManager} to query.
+     */
+    public static List<ResolveInfo> queryIntentServicesAsUser(
+            @Nullable ServiceComponentRegistry registry, Context context, Intent intent,
+            int flags, int userId) {
+        if (registry == null) {
+            return context.getPackageManager().queryIntentServicesAsUser(intent, flags, userId);
+        }
+        return registry.queryIntentServicesAsUser(intent, flags, userId);
+    }
+
+    /**
+     * @see #queryIntentServicesAsUser(ServiceComponentRegistry, Context, Intent, int, int)
+     */
+    public List<ResolveInfo> queryIntentServicesAsUser(Intent intent, int flags, int userId) {
+        UserEntry entry = mUserEntries.computeIfAbsent(userId, id -> new UserEntry());
+        String key = getKey(intent, flags);
+        List<ResolveInfo> result = entry.results.get(key);
+        if (result != null) {
+            entry.hitCount.incrementAndGet();
+            return result;
+        }
+        entry.missCount.incrementAndGet();
+        int generation = entry.generation.get();
+        result = Collections.unmodifiableList(
+                mContext.getPackageManager().queryIntentServicesAsUser(intent, flags, userId));
+        if (entry.generation.get() == generation) {
+            entry.results.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Discards the resolved services of a user.
+     *
+     * @param userId The user, or {@link UserHandle#USER_ALL} for all users.
+     */
+    @VisibleForTesting
+    public void invalidate(int userId) {
+        Log.d(this, "invalidate: user %d", userId);
+        for (Map.Entry<Integer, UserEntry> userEntry : mUserEntries.entrySet()) {
+            if (userId == UserHandle.USER_ALL || userId == userEntry.getKey()) {
+                userEntry.getValue().generation.incrementAndGet();
+                userEntry.getValue().results.clear();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    public BroadcastReceiver getUserStateReceiver() {
+        return mUserStateReceiver;
+    }
+
+    /**
+     * Dumps the number of cached queries and how often they were reused, per user.
+     *
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        pw.println("ServiceComponentRegistry:");
+        pw.increaseIndent();
+        for (Map.Entry<Integer, UserEntry> userEntry : mUserEntries.entrySet()) {
+            UserEntry entry = userEntry.getValue();
+            pw.println("User " + userEntry.getKey()
+                    + ": cached=" + entry.results.size()
+                    + ", hits=" + entry.hitCount.get()
+                    + ", misses=" + entry.missCount.get()
+                    + ", invalidations=" + entry.generation.get());
+        }
+        pw.decreaseIndent();
+    }
+
+    private static String getKey(Intent intent, int flags) {
+        ComponentName component = intent.getComponent();
+        return intent.getAction()
+                + "|" + intent.getPackage()
+                + "|" + (component == null ? null : component.flattenToShortString())
+                + "|" + flags;
+    }
+}
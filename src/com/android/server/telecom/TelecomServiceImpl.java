@@ -88,6 +88,7 @@ import com.android.server.telecom.metrics.EventStats;
 import com.android.server.telecom.metrics.EventStats.CriticalEvent;
 import com.android.server.telecom.metrics.TelecomMetricsController;
 import com.android.server.telecom.settings.BlockedNumbersActivity;
+import com.android.server.telecom.callfiltering.CallFilteringExecutor;
 import com.android.server.telecom.callsequencing.TransactionManager;
 import com.android.server.telecom.callsequencing.CallTransaction;
 import com.android.server.telecom.callsequencing.CallTransactionResult;
@@ -1350,10 +1351,9 @@ public class TelecomServiceImpl {
                     return false;
                 }
                 event.setResult(ApiStats.RESULT_NORMAL);
-                synchronized (mLock) {
-                    return mCallsManager.hasOngoingCalls(Binder.getCallingUserHandle(),
-                            hasInAppCrossUserPermission());
-                }
+                // Served from the published snapshot so polling apps don't contend for mLock.
+                return mCallsManager.getCallStateSnapshot().hasOngoingCalls(
+                        Binder.getCallingUserHandle(), hasInAppCrossUserPermission());
             } finally {
                 logEvent(event);
                 Log.endSession();
@@ -1400,10 +1400,8 @@ public class TelecomServiceImpl {
                             "READ_PHONE_STATE permission can use this method.");
                 }
                 event.setResult(ApiStats.RESULT_NORMAL);
-                synchronized (mLock) {
-                    return mCallsManager.hasOngoingManagedCalls(Binder.getCallingUserHandle(),
-                            hasInAppCrossUserPermission());
-                }
+                return mCallsManager.getCallStateSnapshot().hasOngoingManagedCalls(
+                        Binder.getCallingUserHandle(), hasInAppCrossUserPermission());
             } finally {
                 logEvent(event);
                 Log.endSession();
@@ -1430,14 +1428,12 @@ public class TelecomServiceImpl {
                 }
 
                 event.setResult(ApiStats.RESULT_NORMAL);
-                synchronized (mLock) {
-                    // Note: We are explicitly checking the calls telecom is tracking rather than
-                    // relying on mCallsManager#getCallState(). Since getCallState() relies on the
-                    // current state as tracked by PhoneStateBroadcaster, any failure to properly
-                    // track the current call state there could result in the wrong ringing state
-                    // being reported by this API.
-                    return mCallsManager.hasRingingOrSimulatedRingingCall();
-                }
+                // Note: We are explicitly checking the calls telecom is tracking rather than
+                // relying on mCallsManager#getCallState(). Since getCallState() relies on the
+                // current state as tracked by PhoneStateBroadcaster, any failure to properly
+                // track the current call state there could result in the wrong ringing state
+                // being reported by this API.
+                return mCallsManager.getCallStateSnapshot().hasRingingOrSimulatedRingingCall();
             } finally {
                 logEvent(event);
                 Log.endSession();
@@ -1465,9 +1461,7 @@ public class TelecomServiceImpl {
                             + "targeting API version 30 or less.");
                 }
                 event.setResult(ApiStats.RESULT_NORMAL);
-                synchronized (mLock) {
-                    return mCallsManager.getCallState();
-                }
+                return mCallsManager.getCallStateSnapshot().getCallState();
             } finally {
                 Log.endSession();
             }
@@ -1509,9 +1503,7 @@ public class TelecomServiceImpl {
                     }
                 }
                 event.setResult(ApiStats.RESULT_NORMAL);
-                synchronized (mLock) {
-                    return mCallsManager.getCallState();
-                }
+                return mCallsManager.getCallStateSnapshot().getCallState();
             } finally {
                 logEvent(event);
                 Log.endSession();
@@ -2444,6 +2436,15 @@ public class TelecomServiceImpl {
                 pw.increaseIndent();
                 TransactionManager.getInstance().dump(pw);
                 pw.decreaseIndent();
+
+                CallFilteringExecutor.getInstance().dump(pw);
+
+                TelecomTimerService.getInstance().dump(pw);
+
+                LockProfiler lockProfiler = mLock.getLockProfiler();
+                if (lockProfiler != null) {
+                    lockProfiler.dump(pw);
+                }
             }
             if (isTimeLineView) {
                 Log.dumpEventsTimeline(pw);
@@ -2456,8 +2457,10 @@ public class TelecomServiceImpl {
         public int handleShellCommand(@NonNull ParcelFileDescriptor in,
                 @NonNull ParcelFileDescriptor out, @NonNull ParcelFileDescriptor err,
                 @NonNull String[] args) {
-            return new TelecomShellCommand(this, mContext).exec(this,
-                    in.getFileDescriptor(), out.getFileDescriptor(), err.getFileDescriptor(), args);
+            return new TelecomShellCommand(this, mContext, mCallsManager.getTimeoutsAdapter(),
+                    mLock.getLockProfiler())
+                    .exec(this, in.getFileDescriptor(), out.getFileDescriptor(),
+                            err.getFileDescriptor(), args);
         }
 
         /**
@@ -2646,17 +2649,11 @@ public class TelecomServiceImpl {
             try {
                 Log.startSession("TSI.iIEC");
                 enforceModifyPermission();
-                synchronized (mLock) {
-                    long token = Binder.clearCallingIdentity();
-                    event.setResult(ApiStats.RESULT_NORMAL);
-                    try {
-                        boolean isInEmergencyCall = mCallsManager.isInEmergencyCall();
-                        Log.i(this, "isInEmergencyCall: %b", isInEmergencyCall);
-                        return isInEmergencyCall;
-                    } finally {
-                        Binder.restoreCallingIdentity(token);
-                    }
-                }
+                event.setResult(ApiStats.RESULT_NORMAL);
+                boolean isInEmergencyCall =
+                        mCallsManager.getCallStateSnapshot().isInEmergencyCall();
+                Log.i(this, "isInEmergencyCall: %b", isInEmergencyCall);
+                return isInEmergencyCall;
             } finally {
                 logEvent(event);
                 Log.endSession();
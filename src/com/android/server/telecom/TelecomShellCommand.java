@@ -30,6 +30,7 @@ import android.telecom.PhoneAccount;
 import android.telecom.PhoneAccountHandle;
 import android.telephony.TelephonyManager;
 import android.text.TextUtils;
+import android.util.IndentingPrintWriter;
 
 import com.android.internal.telecom.ITelecomService;
 import com.android.modules.utils.BasicShellCommandHandler;
@@ -93,15 +94,22 @@ public class TelecomShellCommand extends BasicShellCommandHandler {
      * Command used to emit a distinct "mark" in the logs.
      */
     private static final String COMMAND_LOG_MARK = "log-mark";
+    private static final String COMMAND_GET_TIMEOUTS = "get-timeouts";
+    private static final String COMMAND_LOCK_PROFILE = "lock-profile";
 
     private final Context mContext;
     private final ITelecomService mTelecomService;
+    private final Timeouts.Adapter mTimeoutsAdapter;
+    private final LockProfiler mLockProfiler;
     private TelephonyManager mTelephonyManager;
     private UserManager mUserManager;
 
-    public TelecomShellCommand(ITelecomService binder, Context context) {
+    public TelecomShellCommand(ITelecomService binder, Context context,
+            Timeouts.Adapter timeoutsAdapter, LockProfiler lockProfiler) {
         mTelecomService = binder;
         mContext = context;
+        mTimeoutsAdapter = timeoutsAdapter;
+        mLockProfiler = lockProfiler;
     }
 
     @Override
@@ -190,6 +198,12 @@ public class TelecomShellCommand extends BasicShellCommandHandler {
                 case COMMAND_LOG_MARK:
                     runLogMark();
                     break;
+                case COMMAND_GET_TIMEOUTS:
+                    runGetTimeouts();
+                    break;
+                case COMMAND_LOCK_PROFILE:
+                    runLockProfile();
+                    break;
                 case COMMAND_SET_METRICS_TEST_ENABLED:
                     mTelecomService.setMetricsTestMode(true);
                     break;
@@ -282,6 +296,9 @@ public class TelecomShellCommand extends BasicShellCommandHandler {
                 + "non-ui-InCallService in InCallController to determine if it is bound \n"
                 + "telecom set-metrics-test-enabled: Enable the metrics test mode.\n"
                 + "telecom set-metrics-test-disabled: Disable the metrics test mode.\n"
+                + "telecom get-timeouts: Displays the timeout values Telecom is using.\n"
+                + "telecom lock-profile [start|stop]: Starts or stops recording how long Telecom"
+                + " waits for and holds its lock, or displays the most contended sections.\n"
         );
     }
     private void runSetPhoneAccountEnabled(boolean enabled) throws RemoteException {
@@ -478,6 +495,29 @@ public class TelecomShellCommand extends BasicShellCommandHandler {
         mTelecomService.requestLogMark(message);
     }
 
+    private void runGetTimeouts() {
+        IndentingPrintWriter pw = new IndentingPrintWriter(getOutPrintWriter(), "  ");
+        mTimeoutsAdapter.dump(pw, mContext.getContentResolver());
+        pw.flush();
+    }
+
+    private void runLockProfile() {
+        if (mLockProfiler == null) {
+            getErrPrintWriter().println("Error: the Telecom lock cannot be profiled.");
+            return;
+        }
+        String action = getNextArg();
+        if ("start".equals(action)) {
+            mLockProfiler.setEnabled(true);
+        } else if ("stop".equals(action)) {
+            mLockProfiler.setEnabled(false);
+        } else {
+            IndentingPrintWriter pw = new IndentingPrintWriter(getOutPrintWriter(), "  ");
+            mLockProfiler.dump(pw);
+            pw.flush();
+        }
+    }
+
     private UserHandle getUserHandleFromArgs() throws RemoteException {
         if (TextUtils.isEmpty(peekNextArg())) {
             return null;
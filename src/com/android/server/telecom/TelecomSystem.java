@@ -63,7 +63,6 @@ import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * Top-level Application class for Telecom.
@@ -90,6 +89,13 @@ public class TelecomSystem {
      * the Telecom system.
      */
     public interface SyncRoot {
+        /**
+         * @return The profiler recording how long sections wait for and hold this lock, or
+         * {@code null} if the lock is not profiled.
+         */
+        default LockProfiler getLockProfiler() {
+            return null;
+        }
     }
 
     private static final IntentFilter USER_SWITCHED_FILTER =
@@ -129,7 +135,13 @@ public class TelecomSystem {
 
     private static TelecomSystem INSTANCE = null;
 
-    private final SyncRoot mLock = new SyncRoot() { };
+    private final LockProfiler mLockProfiler = new LockProfiler(false /* isEnabled */);
+    private final SyncRoot mLock = new SyncRoot() {
+        @Override
+        public LockProfiler getLockProfiler() {
+            return mLockProfiler;
+        }
+    };
     private final MissedCallNotifier mMissedCallNotifier;
     private final IncomingCallNotifier mIncomingCallNotifier;
     private final PhoneAccountRegistrar mPhoneAccountRegistrar;
@@ -245,6 +257,8 @@ public class TelecomSystem {
         DefaultDialerCache defaultDialerCache = new DefaultDialerCache(mContext,
                 defaultDialerAdapter, roleManagerAdapter, mLock);
 
+        mLockProfiler.setEnabled(mContext.getResources().getBoolean(R.bool.profile_telecom_lock));
+
         Log.startSession("TS.init");
         // Wrap this in a try block to ensure session cleanup occurs in the case of error.
         try {
@@ -266,7 +280,7 @@ public class TelecomSystem {
                     mContext.getSystemService(BluetoothManager.class).getAdapter(),
                     communicationDeviceTracker, featureFlags);
             BluetoothRouteManager bluetoothRouteManager = new BluetoothRouteManager(mContext, mLock,
-                    bluetoothDeviceManager, new Timeouts.Adapter(),
+                    bluetoothDeviceManager, timeoutsAdapter,
                     communicationDeviceTracker, featureFlags, looper);
             BluetoothStateReceiver bluetoothStateReceiver = new BluetoothStateReceiver(
                     bluetoothDeviceManager, bluetoothRouteManager,
@@ -287,7 +301,10 @@ public class TelecomSystem {
 
             CallerInfoLookupHelper callerInfoLookupHelper =
                     new CallerInfoLookupHelper(context, callerInfoAsyncQueryFactory,
-                            mContactsAsyncHelper, mLock);
+                            mContactsAsyncHelper, mLock,
+                            context.getResources().getInteger(R.integer.caller_info_cache_size),
+                            context.getResources().getInteger(
+                                    R.integer.caller_info_photo_cache_size_kb));
 
             EmergencyCallHelper emergencyCallHelper = new EmergencyCallHelper(mContext,
                     defaultDialerCache, timeoutsAdapter, mFeatureFlags);
@@ -382,7 +399,7 @@ public class TelecomSystem {
                     ? TelecomMetricsController.make(mContext) : null;
 
             CallAnomalyWatchdog callAnomalyWatchdog = new CallAnomalyWatchdog(
-                    Executors.newSingleThreadScheduledExecutor(),
+                    TelecomTimerService.getInstance(),
                     mLock, mFeatureFlags, timeoutsAdapter, clockProxy,
                     emergencyCallDiagnosticLogger, metricsController);
 
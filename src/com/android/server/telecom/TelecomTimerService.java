@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom;
+
+import android.telecom.Log;
+import android.util.IndentingPrintWriter;
+
+import com.android.internal.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A single Telecom-wide timer service which owns call-scoped timeouts.
+ * <p>
+ * Components such as {@link ConnectionServiceWrapper}, {@link CallAnomalyWatchdog} and
+ * {@link CreateConnectionTimeout} schedule their timeouts here rather than each allocating a
+ * scheduler thread of their own. Pending timers are tracked per call so that they can be cancelled
+ * by call and reported in dumpsys.
+ */
+public class TelecomTimerService {
+    private static final String TAG = "TelecomTimerService";
+    private static TelecomTimerService sInstance = null;
+    private static final Object sLock = new Object();
+
+    /**
+     * A timer which has been scheduled but has not yet fired or been cancelled.
+     */
+    private static class PendingTimer {
+        final String mName;
+        final Object mOwner;
+        final Call mCall;
+        ScheduledFuture<?> mFuture;
+
+        PendingTimer(String name, Object owner, Call call) {
+            mName = name;
+            mOwner = owner;
+            mCall = call;
+        }
+    }
+
+    private final ScheduledExecutorService mExecutor;
+    // Pending timers keyed by the runnable submitted to the executor.
+    private final Map<Runnable, PendingTimer> mPendingTimers = new ConcurrentHashMap<>();
+    private final AtomicLong mTotalScheduled = new AtomicLong(0);
+    private final AtomicLong mTotalFired = new AtomicLong(0);
+    private final AtomicLong mTotalCancelled = new AtomicLong(0);
+
+    @VisibleForTesting
+    public TelecomTimerService(ScheduledExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    public static TelecomTimerService getInstance() {
+        synchronized (sLock) {
+            if (sInstance == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                        r -> new Thread(r, TAG));
+                // Timeouts are usually cancelled well before they expire; don't keep them queued.
+                executor.setRemoveOnCancelPolicy(true);
+                sInstance = new TelecomTimerService(executor);
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Schedules a timer.
+     * @param owner The component which owns the timer, used for dumpsys.
+     * @param call The call the timer is associated with, or {@code null} if not call-scoped.
+     * @param name A short name describing the timer, used for dumpsys.
+     * @param runnable The work to run when the timer fires. This runs on the timer thread.
+     * @param delayMillis The delay before the timer fires.
+     * @return The future for the timer, which may be used to cancel it.
+     */
+    public ScheduledFuture<?> schedule(Object owner, Call call, String name, Runnable runnable,
+            long delayMillis) {
+        PendingTimer timer = new PendingTimer(name, owner, call);
+        Runnable wrapper = new Runnable() {
+            @Override
+            public void run() {
+                mPendingTimers.remove(this);
+                mTotalFired.incrementAndGet();
+                runnable.run();
+            }
+        };
+        mPendingTimers.put(wrapper, timer);
+        mTotalScheduled.incrementAndGet();
+        try {
+            timer.mFuture = mExecutor.schedule(wrapper, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            mPendingTimers.remove(wrapper);
+            throw e;
+        }
+        return new TrackedFuture(timer.mFuture, wrapper);
+    }
+
+    /**
+     * Cancels all pending timers associated with a call.
+     * @param call The call.
+     * @return The number of timers cancelled.
+     */
+    public int cancelTimersForCall(Call call) {
+        if (call == null) {
+            return 0;
+        }
+        int cancelled = 0;
+        for (Map.Entry<Runnable, PendingTimer> entry : new ArrayList<>(
+                mPendingTimers.entrySet())) {
+            PendingTimer timer = entry.getValue();
+            if (timer.mCall == call && timer.mFuture != null) {
+                timer.mFuture.cancel(false /* mayInterruptIfRunning */);
+                mPendingTimers.remove(entry.getKey());
+                mTotalCancelled.incrementAndGet();
+                cancelled++;
+            }
+        }
+        if (cancelled > 0) {
+            Log.i(TAG, "cancelTimersForCall: call=%s, cancelled=%d", call.getId(), cancelled);
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return An executor running on the timer thread, for short, non-blocking work only.
+     */
+    public Executor getExecutor() {
+        return mExecutor;
+    }
+
+    @VisibleForTesting
+    public int getNumberOfPendingTimers() {
+        return mPendingTimers.size();
+    }
+
+    /**
+     * Dumps the pending timers.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public void dump(IndentingPrintWriter pw) {
+        pw.println("TelecomTimerService: scheduled=" + mTotalScheduled.get()
+                + ", fired=" + mTotalFired.get() + ", cancelled=" + mTotalCancelled.get());
+        pw.increaseIndent();
+        pw.println("Pending timers:");
+        pw.increaseIndent();
+        List<PendingTimer> timers = new ArrayList<>(mPendingTimers.values());
+        for (PendingTimer timer : timers) {
+            long remainingMillis = timer.mFuture != null
+                    ? timer.mFuture.getDelay(TimeUnit.MILLISECONDS) : -1;
+            pw.println(timer.mName + " owner=" + timer.mOwner.getClass().getSimpleName()
+                    + " call=" + (timer.mCall != null ? timer.mCall.getId() : "none")
+                    + " remainingMs=" + remainingMillis);
+        }
+        pw.decreaseIndent();
+        pw.decreaseIndent();
+    }
+
+    /**
+     * A future which stops tracking its timer when cancelled.
+     */
+    private class TrackedFuture implements ScheduledFuture<Object> {
+        private final ScheduledFuture<?> mDelegate;
+        private final Runnable mKey;
+
+        TrackedFuture(ScheduledFuture<?> delegate, Runnable key) {
+            mDelegate = delegate;
+            mKey = key;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (mPendingTimers.remove(mKey) != null) {
+                mTotalCancelled.incrementAndGet();
+            }
+            return mDelegate.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mDelegate.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return mDelegate.isDone();
+        }
+
+        @Override
+        public Object get() throws ExecutionException, InterruptedException {
+            return mDelegate.get();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit)
+                throws ExecutionException, InterruptedException, TimeoutException {
+            return mDelegate.get(timeout, unit);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return mDelegate.getDelay(unit);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return mDelegate.compareTo(o);
+        }
+    }
+}
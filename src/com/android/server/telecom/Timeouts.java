@@ -23,6 +23,7 @@ import android.telecom.CallDiagnosticService;
 import android.telecom.CallDiagnostics;
 import android.telecom.CallRedirectionService;
 import android.telephony.ims.ImsReasonInfo;
+import android.util.IndentingPrintWriter;
 
 import java.util.concurrent.TimeUnit;
 
@@ -136,10 +137,163 @@ public final class Timeouts {
         public int getDaysBackToSearchEmergencyDiagnosticEntries(){
             return Timeouts.getDaysBackToSearchEmergencyDiagnosticEntries();
         }
+
+        public long getNewOutgoingCallCancelMillis(ContentResolver cr) {
+            return Timeouts.getNewOutgoingCallCancelMillis(cr);
+        }
+
+        public long getMaxNewOutgoingCallCancelMillis(ContentResolver cr) {
+            return Timeouts.getMaxNewOutgoingCallCancelMillis(cr);
+        }
+
+        public long getDelayBetweenDtmfTonesMillis(ContentResolver cr) {
+            return Timeouts.getDelayBetweenDtmfTonesMillis(cr);
+        }
+
+        /**
+         * Dumps the effective timeout values.
+         * @param pw The {@code IndentingPrintWriter} to write the values to.
+         * @param cr The content resolver to read the values with.
+         */
+        public void dump(IndentingPrintWriter pw, ContentResolver cr) {
+            new Snapshot(cr).dump(pw);
+        }
+    }
+
+    /**
+     * The values of all timeouts at one point in time.
+     */
+    public static final class Snapshot {
+        public final long callScreeningTimeoutMillis;
+        public final long callBindBluetoothInCallServicesDelay;
+        public final long callRemoveUnbindInCallServicesDelay;
+        public final long retryBluetoothConnectAudioBackoffMillis;
+        public final long bluetoothPendingTimeoutMillis;
+        public final long emergencyCallbackWindowMillis;
+        public final long emergencyCallTimeoutMillis;
+        public final long emergencyCallTimeoutRadioOffMillis;
+        public final long userDefinedCallRedirectionTimeoutMillis;
+        public final long carrierCallRedirectionTimeoutMillis;
+        public final long phoneAccountSuggestionServiceTimeout;
+        public final long callRecordingToneRepeatIntervalMillis;
+        public final long callDiagnosticServiceTimeoutMillis;
+        public final long newOutgoingCallCancelMillis;
+        public final long maxNewOutgoingCallCancelMillis;
+        public final long delayBetweenDtmfTonesMillis;
+        public final long callStartAppOpDebounceIntervalMillis;
+        public final long voipCallTransitoryStateTimeoutMillis;
+        public final long voipEmergencyCallTransitoryStateTimeoutMillis;
+        public final long nonVoipCallTransitoryStateTimeoutMillis;
+        public final long nonVoipEmergencyCallTransitoryStateTimeoutMillis;
+        public final long voipCallIntermediateStateTimeoutMillis;
+        public final long voipEmergencyCallIntermediateStateTimeoutMillis;
+        public final long nonVoipCallIntermediateStateTimeoutMillis;
+        public final long nonVoipEmergencyCallIntermediateStateTimeoutMillis;
+        public final long emergencyCallTimeBeforeUserDisconnectThresholdMillis;
+        public final long emergencyCallActiveTimeThresholdMillis;
+        public final int daysBackToSearchEmergencyDiagnosticEntries;
+
+        /**
+         * Reads the current value of every timeout.
+         * @param cr The content resolver to read the settings based timeouts with.
+         */
+        public Snapshot(ContentResolver cr) {
+            callScreeningTimeoutMillis = getCallScreeningTimeoutMillis(cr);
+            callBindBluetoothInCallServicesDelay = getCallBindBluetoothInCallServicesDelay(cr);
+            callRemoveUnbindInCallServicesDelay = getCallRemoveUnbindInCallServicesDelay(cr);
+            retryBluetoothConnectAudioBackoffMillis =
+                    getRetryBluetoothConnectAudioBackoffMillis(cr);
+            bluetoothPendingTimeoutMillis = getBluetoothPendingTimeoutMillis(cr);
+            emergencyCallbackWindowMillis = getEmergencyCallbackWindowMillis(cr);
+            emergencyCallTimeoutMillis = getEmergencyCallTimeoutMillis(cr);
+            emergencyCallTimeoutRadioOffMillis = getEmergencyCallTimeoutRadioOffMillis(cr);
+            userDefinedCallRedirectionTimeoutMillis =
+                    getUserDefinedCallRedirectionTimeoutMillis(cr);
+            carrierCallRedirectionTimeoutMillis = getCarrierCallRedirectionTimeoutMillis(cr);
+            phoneAccountSuggestionServiceTimeout = getPhoneAccountSuggestionServiceTimeout(cr);
+            callRecordingToneRepeatIntervalMillis = getCallRecordingToneRepeatIntervalMillis(cr);
+            callDiagnosticServiceTimeoutMillis = getCallDiagnosticServiceTimeoutMillis(cr);
+            newOutgoingCallCancelMillis = getNewOutgoingCallCancelMillis(cr);
+            maxNewOutgoingCallCancelMillis = getMaxNewOutgoingCallCancelMillis(cr);
+            delayBetweenDtmfTonesMillis = getDelayBetweenDtmfTonesMillis(cr);
+            callStartAppOpDebounceIntervalMillis = getCallStartAppOpDebounceIntervalMillis();
+            voipCallTransitoryStateTimeoutMillis = getVoipCallTransitoryStateTimeoutMillis();
+            voipEmergencyCallTransitoryStateTimeoutMillis =
+                    getVoipEmergencyCallTransitoryStateTimeoutMillis();
+            nonVoipCallTransitoryStateTimeoutMillis = getNonVoipCallTransitoryStateTimeoutMillis();
+            nonVoipEmergencyCallTransitoryStateTimeoutMillis =
+                    getNonVoipEmergencyCallTransitoryStateTimeoutMillis();
+            voipCallIntermediateStateTimeoutMillis = getVoipCallIntermediateStateTimeoutMillis();
+            voipEmergencyCallIntermediateStateTimeoutMillis =
+                    getVoipEmergencyCallIntermediateStateTimeoutMillis();
+            nonVoipCallIntermediateStateTimeoutMillis =
+                    getNonVoipCallIntermediateStateTimeoutMillis();
+            nonVoipEmergencyCallIntermediateStateTimeoutMillis =
+                    getNonVoipEmergencyCallIntermediateStateTimeoutMillis();
+            emergencyCallTimeBeforeUserDisconnectThresholdMillis =
+                    getEmergencyCallTimeBeforeUserDisconnectThresholdMillis();
+            emergencyCallActiveTimeThresholdMillis = getEmergencyCallActiveTimeThresholdMillis();
+            daysBackToSearchEmergencyDiagnosticEntries =
+                    getDaysBackToSearchEmergencyDiagnosticEntries();
+        }
+
+        /**
+         * Dumps the timeout values.
+         * @param pw The {@code IndentingPrintWriter} to write the values to.
+         */
+        public void dump(IndentingPrintWriter pw) {
+            pw.println("callScreeningTimeoutMillis=" + callScreeningTimeoutMillis);
+            pw.println("callBindBluetoothInCallServicesDelay="
+                    + callBindBluetoothInCallServicesDelay);
+            pw.println("callRemoveUnbindInCallServicesDelay="
+                    + callRemoveUnbindInCallServicesDelay);
+            pw.println("retryBluetoothConnectAudioBackoffMillis="
+                    + retryBluetoothConnectAudioBackoffMillis);
+            pw.println("bluetoothPendingTimeoutMillis=" + bluetoothPendingTimeoutMillis);
+            pw.println("emergencyCallbackWindowMillis=" + emergencyCallbackWindowMillis);
+            pw.println("emergencyCallTimeoutMillis=" + emergencyCallTimeoutMillis);
+            pw.println("emergencyCallTimeoutRadioOffMillis=" + emergencyCallTimeoutRadioOffMillis);
+            pw.println("userDefinedCallRedirectionTimeoutMillis="
+                    + userDefinedCallRedirectionTimeoutMillis);
+            pw.println("carrierCallRedirectionTimeoutMillis="
+                    + carrierCallRedirectionTimeoutMillis);
+            pw.println("phoneAccountSuggestionServiceTimeout="
+                    + phoneAccountSuggestionServiceTimeout);
+            pw.println("callRecordingToneRepeatIntervalMillis="
+                    + callRecordingToneRepeatIntervalMillis);
+            pw.println("callDiagnosticServiceTimeoutMillis=" + callDiagnosticServiceTimeoutMillis);
+            pw.println("newOutgoingCallCancelMillis=" + newOutgoingCallCancelMillis);
+            pw.println("maxNewOutgoingCallCancelMillis=" + maxNewOutgoingCallCancelMillis);
+            pw.println("delayBetweenDtmfTonesMillis=" + delayBetweenDtmfTonesMillis);
+            pw.println("callStartAppOpDebounceIntervalMillis="
+                    + callStartAppOpDebounceIntervalMillis);
+            pw.println("voipCallTransitoryStateTimeoutMillis="
+                    + voipCallTransitoryStateTimeoutMillis);
+            pw.println("voipEmergencyCallTransitoryStateTimeoutMillis="
+                    + voipEmergencyCallTransitoryStateTimeoutMillis);
+            pw.println("nonVoipCallTransitoryStateTimeoutMillis="
+                    + nonVoipCallTransitoryStateTimeoutMillis);
+            pw.println("nonVoipEmergencyCallTransitoryStateTimeoutMillis="
+                    + nonVoipEmergencyCallTransitoryStateTimeoutMillis);
+            pw.println("voipCallIntermediateStateTimeoutMillis="
+                    + voipCallIntermediateStateTimeoutMillis);
+            pw.println("voipEmergencyCallIntermediateStateTimeoutMillis="
+                    + voipEmergencyCallIntermediateStateTimeoutMillis);
+            pw.println("nonVoipCallIntermediateStateTimeoutMillis="
+                    + nonVoipCallIntermediateStateTimeoutMillis);
+            pw.println("nonVoipEmergencyCallIntermediateStateTimeoutMillis="
+                    + nonVoipEmergencyCallIntermediateStateTimeoutMillis);
+            pw.println("emergencyCallTimeBeforeUserDisconnectThresholdMillis="
+                    + emergencyCallTimeBeforeUserDisconnectThresholdMillis);
+            pw.println("emergencyCallActiveTimeThresholdMillis="
+                    + emergencyCallActiveTimeThresholdMillis);
+            pw.println("daysBackToSearchEmergencyDiagnosticEntries="
+                    + daysBackToSearchEmergencyDiagnosticEntries);
+        }
     }
 
     /** A prefix to use for all keys so to not clobber the global namespace. */
-    private static final String PREFIX = "telecom.";
+    static final String PREFIX = "telecom.";
 
     /**
      * threshold used to filter out ecalls that the user may have dialed by mistake
@@ -19,8 +19,6 @@ package com.android.server.telecom.callfiltering;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.UserManager;
 import android.provider.BlockedNumberContract;
 import android.provider.CallLog;
@@ -33,6 +31,7 @@ import com.android.server.telecom.CallerInfoLookupHelper;
 import com.android.server.telecom.flags.FeatureFlags;
 import com.android.server.telecom.LogUtils;
 import com.android.server.telecom.LoggedHandlerExecutor;
+import com.android.server.telecom.LooperPool;
 import com.android.server.telecom.settings.BlockedNumbersUtil;
 
 import java.util.concurrent.CompletableFuture;
@@ -45,8 +44,8 @@ public class BlockCheckerFilter extends CallFilter {
     private final BlockCheckerAdapter mBlockCheckerAdapter;
     private final String TAG = "BlockCheckerFilter";
     private boolean mContactExists;
-    private HandlerThread mHandlerThread;
-    private Handler mHandler;
+    private final CallFilteringExecutor mExecutor;
+    private LooperPool.PooledHandler mHandler;
     private FeatureFlags mFeatureFlags;
 
     public static final long CALLER_INFO_QUERY_TIMEOUT = 5000;
@@ -114,9 +113,8 @@ public class BlockCheckerFilter extends CallFilter {
         mCallerInfoLookupHelper = callerInfoLookupHelper;
         mBlockCheckerAdapter = blockCheckerAdapter;
         mContactExists = false;
-        mHandlerThread = new HandlerThread(TAG);
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper());
+        mExecutor = CallFilteringExecutor.getInstance();
+        mHandler = mExecutor.createHandler();
         mFeatureFlags = featureFlags;
     }
 
@@ -182,10 +180,12 @@ public class BlockCheckerFilter extends CallFilter {
         final String number = mCall.getHandle() == null ? null :
                 mCall.getHandle().getSchemeSpecificPart();
 
+        // The block status query blocks on the provider, so keep it off the shared filtering
+        // worker and only hand the result back to it.
         CompletableFuture.supplyAsync(
                 () -> mBlockCheckerAdapter.getBlockStatus(userContext, number,
                         presentation, isNumberInContacts),
-                new LoggedHandlerExecutor(mHandler, "BCF.gBS", null))
+                mExecutor.getBlockingQueryExecutor())
                 .thenApplyAsync((x) -> completeResult(resultFuture, x),
                         new LoggedHandlerExecutor(mHandler, "BCF.gBS", null));
     }
@@ -218,7 +218,7 @@ public class BlockCheckerFilter extends CallFilter {
         Log.addEvent(mCall, LogUtils.Events.BLOCK_CHECK_FINISHED,
                 blockStatusToString(blockStatus) + " " + result);
         resultFuture.complete(result);
-        mHandlerThread.quitSafely();
+        mExecutor.releaseHandler(mHandler);
         return blockStatus;
     }
 
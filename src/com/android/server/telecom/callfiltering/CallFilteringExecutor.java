@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.callfiltering;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.telecom.LooperPool;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared execution service for incoming call filtering.
+ * <p>
+ * {@link IncomingCallFilterGraph}s and the filters they run are scheduled onto a small, bounded
+ * pool of worker loopers instead of starting new threads for every incoming call.  Blocking
+ * provider queries made while filtering run on a separate background executor, so they never
+ * hold up the filters of other calls sharing a worker.
+ */
+public class CallFilteringExecutor extends LooperPool {
+    private static final String TAG = "CallFilteringExecutor";
+    private static final int DEFAULT_WORKER_COUNT = 3;
+    private static final int BLOCKING_QUERY_THREAD_COUNT = 2;
+    private static final long BLOCKING_QUERY_KEEP_ALIVE_SECONDS = 30;
+    private static CallFilteringExecutor INSTANCE = null;
+    private static final Object sLock = new Object();
+
+    private final ThreadPoolExecutor mBlockingQueryExecutor;
+
+    @VisibleForTesting
+    public CallFilteringExecutor(int workerCount) {
+        super(TAG, workerCount);
+        AtomicInteger threadCount = new AtomicInteger(0);
+        mBlockingQueryExecutor = new ThreadPoolExecutor(BLOCKING_QUERY_THREAD_COUNT,
+                BLOCKING_QUERY_THREAD_COUNT, BLOCKING_QUERY_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> new Thread(r, TAG + "-query-" + threadCount.getAndIncrement()));
+        // Incoming calls are rare; don't keep the query threads around between them.
+        mBlockingQueryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    public static CallFilteringExecutor getInstance() {
+        synchronized (sLock) {
+            if (INSTANCE == null) {
+                INSTANCE = new CallFilteringExecutor(DEFAULT_WORKER_COUNT);
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * @return The executor for blocking queries, such as provider lookups, made while filtering.
+     * Their results should be handed back to the filter's handler.
+     */
+    public Executor getBlockingQueryExecutor() {
+        return mBlockingQueryExecutor;
+    }
+
+    @VisibleForTesting
+    @Override
+    public void quit() {
+        super.quit();
+        mBlockingQueryExecutor.shutdown();
+    }
+}
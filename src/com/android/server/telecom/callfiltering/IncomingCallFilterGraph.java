@@ -17,13 +17,12 @@
 package com.android.server.telecom.callfiltering;
 
 import android.content.Context;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.telecom.Log;
 import android.telecom.Logging.Runnable;
 
 import com.android.server.telecom.Call;
 import com.android.server.telecom.LoggedHandlerExecutor;
+import com.android.server.telecom.LooperPool;
 import com.android.server.telecom.LogUtils;
 import com.android.server.telecom.TelecomSystem;
 import com.android.server.telecom.Timeouts;
@@ -47,13 +46,13 @@ public class IncomingCallFilterGraph {
 
     private final CallFilterResultCallback mListener;
     private final Call mCall;
-    private final Handler mHandler;
-    private final HandlerThread mHandlerThread;
+    private final CallFilteringExecutor mExecutor;
+    private final LooperPool.PooledHandler mHandler;
     private final TelecomSystem.SyncRoot mLock;
     private List<CallFilter> mFiltersList;
     private CallFilter mCompletionSentinel;
-    private boolean mFinished;
-    private CallFilteringResult mCurrentResult;
+    private volatile boolean mFinished;
+    private volatile CallFilteringResult mCurrentResult;
     private Context mContext;
     private Timeouts.Adapter mTimeoutsAdapter;
     private final FeatureFlags mFeatureFlags;
@@ -74,12 +73,12 @@ public class IncomingCallFilterGraph {
                 }
             }
             if (mFilter.equals(mCompletionSentinel)) {
+                finishGraph();
                 synchronized (mLock) {
                     mFinished = true;
                     mListener.onCallFilteringComplete(mCall, result, false);
                     Log.addEvent(mCall, LogUtils.Events.FILTERING_COMPLETED, result);
                 }
-                mHandlerThread.quit();
             }
             return result;
         }
@@ -92,9 +91,8 @@ public class IncomingCallFilterGraph {
         mCall = call;
         mFiltersList = new ArrayList<>();
         mFeatureFlags = featureFlags;
-        mHandlerThread = new HandlerThread(TAG);
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper());
+        mExecutor = CallFilteringExecutor.getInstance();
+        mHandler = mExecutor.createHandler();
         mLock = lock;
         mFinished = false;
         mContext = context;
@@ -120,7 +118,9 @@ public class IncomingCallFilterGraph {
         addEdge(dummyStart, mCompletionSentinel);
 
         scheduleFilter(dummyStart);
-        mHandler.postDelayed(new Runnable("ICFG.pF", mLock) {
+        // The timeout runs on the shared filtering timer rather than this graph's worker so that
+        // it still fires on time if a filter is blocking the worker.
+        mExecutor.scheduleTimeout(this, new Runnable("ICFG.pF", mLock) {
             @Override
             public void loggedRun() {
                 if (!mFinished) {
@@ -128,7 +128,7 @@ public class IncomingCallFilterGraph {
                     mCurrentResult = onTimeoutCombineFinishedFilters(mFiltersList, mCurrentResult);
                     mListener.onCallFilteringComplete(mCall, mCurrentResult, true);
                     mFinished = true;
-                    mHandlerThread.quit();
+                    mExecutor.releaseHandler(mHandler);
                 }
                 for (CallFilter filter : mFiltersList) {
                     // unbind timed out call screening service
@@ -202,7 +202,11 @@ public class IncomingCallFilterGraph {
         after.addDependency(before);
     }
 
-    public HandlerThread getHandlerThread() {
-        return mHandlerThread;
+    /**
+     * Stops any further filter work for this graph and cancels the pending graph timeout.
+     */
+    private void finishGraph() {
+        mExecutor.releaseHandler(mHandler);
+        mExecutor.cancelTimeout(this);
     }
 }
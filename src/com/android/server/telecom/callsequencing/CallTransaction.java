@@ -17,12 +17,12 @@
 package com.android.server.telecom.callsequencing;
 
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.telecom.CallException;
 import android.telecom.Log;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.telecom.LoggedHandlerExecutor;
+import com.android.server.telecom.LooperPool;
 import com.android.server.telecom.TelecomSystem;
 import com.android.server.telecom.flags.Flags;
 
@@ -131,21 +131,24 @@ public class CallTransaction {
 
     protected final AtomicBoolean mCompleted = new AtomicBoolean(false);
     protected final String mTransactionName = this.getClass().getSimpleName();
-    private final HandlerThread mHandlerThread;
+    private final TransactionExecutor mExecutor;
+    private final LooperPool.PooledHandler mTransactionHandler;
     protected final Handler mHandler;
     protected TransactionManager.TransactionCompleteListener mCompleteListener;
     protected final List<CallTransaction> mSubTransactions;
     protected final TelecomSystem.SyncRoot mLock;
     protected final long mTransactionTimeoutMs;
     protected final Stats mStats;
+    // The lane assigned by the TransactionManager when this transaction was queued.
+    String mScheduledLane;
 
     public CallTransaction(
             List<CallTransaction> subTransactions, TelecomSystem.SyncRoot lock,
             long timeoutMs) {
         mSubTransactions = subTransactions;
-        mHandlerThread = new HandlerThread(this.toString());
-        mHandlerThread.start();
-        mHandler = new Handler(mHandlerThread.getLooper());
+        mExecutor = TransactionExecutor.getInstance();
+        mTransactionHandler = mExecutor.createHandler();
+        mHandler = mTransactionHandler;
         mLock = lock;
         mTransactionTimeoutMs = timeoutMs;
         mStats = Flags.enableCallSequencing() ? new Stats() : null;
@@ -165,14 +168,11 @@ public class CallTransaction {
 
     public final void start() {
         if (mStats != null) mStats.markStarted();
-        // post timeout work
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        mHandler.postDelayed(() -> future.complete(null), mTransactionTimeoutMs);
-        future.thenApplyAsync((x) -> {
-            timeout();
-            return null;
-        }, new LoggedHandlerExecutor(mHandler, mTransactionName + "@" + hashCode()
-                + ".s", mLock));
+        // post timeout work to the shared timer, which hands off to this transaction's handler
+        LoggedHandlerExecutor timeoutExecutor = new LoggedHandlerExecutor(mHandler,
+                mTransactionName + "@" + hashCode() + ".s", mLock);
+        mExecutor.scheduleTimeout(this, () -> timeoutExecutor.execute(this::timeout),
+                mTransactionTimeoutMs);
 
         processTransactions();
     }
@@ -228,6 +228,33 @@ public class CallTransaction {
                 new CallTransactionResult(CallTransactionResult.RESULT_SUCCEED, null));
     }
 
+    /**
+     * @return The lane this transaction is scheduled in by the {@link TransactionManager},
+     * typically the id of the call this transaction operates on. Transactions in different lanes
+     * may run concurrently. The default {@code null} lane marks this transaction as a barrier,
+     * which only runs once all earlier transactions have completed and blocks all later ones.
+     */
+    public String getLaneKey() {
+        return null;
+    }
+
+    /**
+     * @return The common lane of the sub-transactions if they all share one, or {@code null} if
+     * there are no sub-transactions or they span more than one lane.
+     */
+    protected final String getSubTransactionLaneKey() {
+        if (mSubTransactions == null || mSubTransactions.isEmpty()) {
+            return null;
+        }
+        String laneKey = mSubTransactions.get(0).getLaneKey();
+        for (CallTransaction t : mSubTransactions) {
+            if (laneKey == null || !laneKey.equals(t.getLaneKey())) {
+                return null;
+            }
+        }
+        return laneKey;
+    }
+
     public final void setCompleteListener(TransactionManager.TransactionCompleteListener listener) {
         mCompleteListener = listener;
     }
@@ -259,7 +286,8 @@ public class CallTransaction {
         if (mSubTransactions != null && !mSubTransactions.isEmpty()) {
             mSubTransactions.forEach( t -> t.finish(isTimedOut, result));
         }
-        mHandlerThread.quitSafely();
+        mExecutor.cancelTimeout(this);
+        mExecutor.releaseHandler(mTransactionHandler);
     }
 
     /**
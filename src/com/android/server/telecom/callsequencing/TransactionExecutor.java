@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.callsequencing;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.telecom.LooperPool;
+
+/**
+ * Shared execution engine for {@link CallTransaction}s.
+ * <p>
+ * Rather than each transaction (and each sub-transaction) starting its own thread, transactions
+ * are assigned a {@link LooperPool.PooledHandler} which is released when the transaction
+ * finishes, and their timeouts are scheduled on the pool's timer looper.
+ */
+public class TransactionExecutor extends LooperPool {
+    private static final String TAG = "TransactionExecutor";
+    private static final int DEFAULT_WORKER_COUNT = 2;
+    private static TransactionExecutor INSTANCE = null;
+    private static final Object sLock = new Object();
+
+    @VisibleForTesting
+    public TransactionExecutor(int workerCount) {
+        super(TAG, workerCount);
+    }
+
+    public static TransactionExecutor getInstance() {
+        synchronized (sLock) {
+            if (INSTANCE == null) {
+                INSTANCE = new TransactionExecutor(DEFAULT_WORKER_COUNT);
+            }
+        }
+        return INSTANCE;
+    }
+}
@@ -21,6 +21,8 @@ import static android.telecom.CallException.CODE_OPERATION_TIMED_OUT;
 import android.os.OutcomeReceiver;
 import android.telecom.TelecomManager;
 import android.telecom.CallException;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.IndentingPrintWriter;
 import android.util.Log;
 
@@ -31,20 +33,44 @@ import com.android.server.telecom.flags.Flags;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.BiPredicate;
 
+/**
+ * Schedules {@link CallTransaction}s.
+ * <p>
+ * Transactions are grouped into lanes using {@link CallTransaction#getLaneKey()}. Transactions in
+ * the same lane (i.e. operating on the same call) run one at a time in the order they were added,
+ * while transactions in different lanes may run concurrently. Transactions without a lane are
+ * barriers: a barrier waits for all previously added transactions to complete and no
+ * transactions added after it start until it completes.
+ */
 public class TransactionManager {
     private static final String TAG = "CallTransactionManager";
     private static final int TRANSACTION_HISTORY_SIZE = 20;
+    private static final int MAX_TRACKED_LANES = 10;
+    @VisibleForTesting
+    public static final String BARRIER_LANE = "<barrier>";
     private static TransactionManager INSTANCE = null;
     private static final Object sLock = new Object();
     private final Queue<CallTransaction> mTransactions;
     private final Deque<CallTransaction> mCompletedTransactions;
-    private CallTransaction mCurrentTransaction;
+    // The transactions currently running, keyed by lane.
+    private final Map<String, CallTransaction> mActiveTransactions;
+    // Completed transactions per lane, ordered by least recently used lane first.
+    private final Map<String, Deque<CallTransaction>> mLaneHistory;
+    private final Map<String, LaneStats> mLaneStats;
+    private int mMaxQueueDepth = 0;
+    private long mTotalStartedTransactions = 0;
+    private long mTotalConcurrentStarts = 0;
     private boolean mProcessingCallSequencing;
     private AnomalyReporterAdapter mAnomalyReporter;
     private FeatureFlags mFeatureFlags;
@@ -58,13 +84,26 @@ public class TransactionManager {
         void onTransactionTimeout(String transactionName);
     }
 
+    /**
+     * Queue depth metrics for a single lane.
+     */
+    private static class LaneStats {
+        int mQueueDepth = 0;
+        int mMaxQueueDepth = 0;
+        long mTotalTransactions = 0;
+    }
+
     private TransactionManager() {
         mTransactions = new ArrayDeque<>();
-        mCurrentTransaction = null;
+        mActiveTransactions = new ArrayMap<>();
+        mLaneStats = new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
         if (Flags.enableCallSequencing()) {
             mCompletedTransactions = new ArrayDeque<>();
-        } else
+            mLaneHistory = new LinkedHashMap<>(16, 0.75f, true /* accessOrder */);
+        } else {
             mCompletedTransactions = null;
+            mLaneHistory = null;
+        }
     }
 
     public static TransactionManager getInstance() {
@@ -93,7 +132,11 @@ public class TransactionManager {
             OutcomeReceiver<CallTransactionResult, CallException> receiver) {
         CompletableFuture<Boolean> transactionCompleteFuture = new CompletableFuture<>();
         synchronized (sLock) {
+            // The lane is fixed at the time the transaction is queued.
+            String laneKey = transaction.getLaneKey();
+            transaction.mScheduledLane = laneKey != null ? laneKey : BARRIER_LANE;
             mTransactions.add(transaction);
+            onTransactionQueued(transaction);
         }
         transaction.setCompleteListener(new TransactionCompleteListener() {
             @Override
@@ -116,7 +159,7 @@ public class TransactionManager {
                             + " %s resulted in an Exception.", result), e);
                     transactionCompleteFuture.complete(false);
                 }
-                finishTransaction();
+                finishTransaction(transaction);
             }
 
             @Override
@@ -137,7 +180,7 @@ public class TransactionManager {
                             + " %s resulted in an Exception.", transactionName), e);
                     transactionCompleteFuture.complete(false);
                 }
-                finishTransaction();
+                finishTransaction(transaction);
             }
         });
 
@@ -146,26 +189,50 @@ public class TransactionManager {
     }
 
     private void startTransactions() {
+        List<CallTransaction> transactionsToStart = new ArrayList<>();
         synchronized (sLock) {
             if (mTransactions.isEmpty()) {
                 // No transaction waiting for process
                 return;
             }
-
-            if (mCurrentTransaction != null) {
-                // Ongoing transaction
+            if (mActiveTransactions.containsKey(BARRIER_LANE)) {
+                // A barrier is running, nothing else can start until it completes.
                 return;
             }
-            mCurrentTransaction = mTransactions.poll();
+            // Lanes that already have an earlier transaction running or waiting.
+            Set<String> blockedLanes = new ArraySet<>(mActiveTransactions.keySet());
+            Iterator<CallTransaction> iterator = mTransactions.iterator();
+            while (iterator.hasNext()) {
+                CallTransaction t = iterator.next();
+                String lane = getLane(t);
+                if (BARRIER_LANE.equals(lane)) {
+                    // A barrier can only start once everything queued before it has completed,
+                    // and nothing queued after it may start before it.
+                    if (mActiveTransactions.isEmpty() && transactionsToStart.isEmpty()) {
+                        iterator.remove();
+                        markTransactionActive(lane, t);
+                        transactionsToStart.add(t);
+                    }
+                    break;
+                }
+                if (blockedLanes.add(lane)) {
+                    iterator.remove();
+                    markTransactionActive(lane, t);
+                    transactionsToStart.add(t);
+                }
+            }
+        }
+        for (CallTransaction t : transactionsToStart) {
+            t.start();
         }
-        mCurrentTransaction.start();
     }
 
-    private void finishTransaction() {
+    private void finishTransaction(CallTransaction transaction) {
         synchronized (sLock) {
-            if (mCurrentTransaction != null) {
-                addTransactionToHistory(mCurrentTransaction);
-                mCurrentTransaction = null;
+            String lane = getLane(transaction);
+            if (mActiveTransactions.get(lane) == transaction) {
+                mActiveTransactions.remove(lane);
+                addTransactionToHistory(lane, transaction);
             }
         }
         startTransactions();
@@ -183,13 +250,101 @@ public class TransactionManager {
         }
     }
 
-    private void addTransactionToHistory(CallTransaction t) {
+    /**
+     * @return The number of transactions currently running across all lanes.
+     */
+    @VisibleForTesting
+    public int getActiveTransactionCount() {
+        synchronized (sLock) {
+            return mActiveTransactions.size();
+        }
+    }
+
+    /**
+     * @return The number of transactions waiting to be started across all lanes.
+     */
+    @VisibleForTesting
+    public int getPendingTransactionCount() {
+        synchronized (sLock) {
+            return mTransactions.size();
+        }
+    }
+
+    private static String getLane(CallTransaction t) {
+        return t.mScheduledLane != null ? t.mScheduledLane : BARRIER_LANE;
+    }
+
+    private void onTransactionQueued(CallTransaction t) {
+        String lane = getLane(t);
+        LaneStats stats = mLaneStats.get(lane);
+        if (stats == null) {
+            stats = new LaneStats();
+            mLaneStats.put(lane, stats);
+        }
+        stats.mTotalTransactions++;
+        stats.mQueueDepth++;
+        stats.mMaxQueueDepth = Math.max(stats.mMaxQueueDepth, stats.mQueueDepth);
+        trimLeastRecentlyUsed(mLaneStats, (l, laneStats) -> laneStats.mQueueDepth > 0);
+        mMaxQueueDepth = Math.max(mMaxQueueDepth, mTransactions.size());
+    }
+
+    private void markTransactionActive(String lane, CallTransaction t) {
+        if (!mActiveTransactions.isEmpty()) {
+            mTotalConcurrentStarts++;
+        }
+        mTotalStartedTransactions++;
+        mActiveTransactions.put(lane, t);
+        LaneStats stats = mLaneStats.get(lane);
+        if (stats != null && stats.mQueueDepth > 0) {
+            stats.mQueueDepth--;
+        }
+    }
+
+    private void addTransactionToHistory(String lane, CallTransaction t) {
         if (!Flags.enableCallSequencing()) return;
 
         mCompletedTransactions.add(t);
         if (mCompletedTransactions.size() > TRANSACTION_HISTORY_SIZE) {
             mCompletedTransactions.poll();
         }
+        Deque<CallTransaction> laneHistory = mLaneHistory.get(lane);
+        if (laneHistory == null) {
+            laneHistory = new ArrayDeque<>();
+            mLaneHistory.put(lane, laneHistory);
+            trimLeastRecentlyUsed(mLaneHistory, (l, history) -> hasQueuedTransactions(l));
+        }
+        laneHistory.add(t);
+        if (laneHistory.size() > TRANSACTION_HISTORY_SIZE) {
+            laneHistory.poll();
+        }
+    }
+
+    /**
+     * Lanes are created per call, so only keep bookkeeping for the most recently used lanes.
+     * Lanes which still have queued or running transactions are never dropped, so the map may
+     * briefly hold more than {@link #MAX_TRACKED_LANES} lanes while many calls are busy.
+     * @param isQueued Whether the lane still has transactions waiting to be started.
+     */
+    private <T> void trimLeastRecentlyUsed(Map<String, T> laneMap,
+            BiPredicate<String, T> isQueued) {
+        Iterator<Map.Entry<String, T>> iterator = laneMap.entrySet().iterator();
+        while (laneMap.size() > MAX_TRACKED_LANES && iterator.hasNext()) {
+            Map.Entry<String, T> entry = iterator.next();
+            String lane = entry.getKey();
+            if (!mActiveTransactions.containsKey(lane)
+                    && !isQueued.test(lane, entry.getValue())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private boolean hasQueuedTransactions(String lane) {
+        for (CallTransaction t : mTransactions) {
+            if (lane.equals(getLane(t))) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -208,10 +363,13 @@ public class TransactionManager {
             }
             pw.decreaseIndent();
 
-            pw.println("Ongoing Transaction:");
+            pw.println("Ongoing Transactions:");
             pw.increaseIndent();
-            if (mCurrentTransaction != null) {
-                printPendingTransactionStats(mCurrentTransaction, pw);
+            for (Map.Entry<String, CallTransaction> entry : mActiveTransactions.entrySet()) {
+                pw.println("Lane " + entry.getKey() + ":");
+                pw.increaseIndent();
+                printPendingTransactionStats(entry.getValue(), pw);
+                pw.decreaseIndent();
             }
             pw.decreaseIndent();
 
@@ -221,7 +379,30 @@ public class TransactionManager {
                 printCompleteTransactionStats(t, pw);
             }
             pw.decreaseIndent();
+
+            pw.println(String.format(Locale.getDefault(),
+                    "Lanes: (maxQueueDepth=%d), (started=%d), (startedConcurrently=%d)",
+                    mMaxQueueDepth, mTotalStartedTransactions, mTotalConcurrentStarts));
+            pw.increaseIndent();
+            for (Map.Entry<String, LaneStats> entry : mLaneStats.entrySet()) {
+                LaneStats stats = entry.getValue();
+                pw.println(String.format(Locale.getDefault(),
+                        "Lane %s: (queueDepth=%d), (maxQueueDepth=%d), (total=%d)",
+                        entry.getKey(), stats.mQueueDepth, stats.mMaxQueueDepth,
+                        stats.mTotalTransactions));
+                Deque<CallTransaction> laneHistory = mLaneHistory.get(entry.getKey());
+                if (laneHistory == null) {
+                    continue;
+                }
+                pw.increaseIndent();
+                for (CallTransaction t : laneHistory) {
+                    printCompleteTransactionStats(t, pw);
+                }
+                pw.decreaseIndent();
+            }
+            pw.decreaseIndent();
         }
+        TransactionExecutor.getInstance().dump(pw);
     }
 
     /**
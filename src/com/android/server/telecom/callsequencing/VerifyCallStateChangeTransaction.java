@@ -85,6 +85,11 @@ public class VerifyCallStateChangeTransaction extends CallTransaction {
         mTargetCallStates = IntStream.of(targetCallStates).boxed().collect(Collectors.toSet());;
     }
 
+    @Override
+    public String getLaneKey() {
+        return mCall != null ? mCall.getId() : null;
+    }
+
     @Override
     public CompletionStage<CallTransactionResult> processTransaction(Void v) {
         Log.d(TAG, "processTransaction:");
@@ -95,7 +100,7 @@ public class VerifyCallStateChangeTransaction extends CallTransaction {
             return mTransactionResult;
         }
         mCall.addCallStateListener(mCallStateListenerImpl);
-        mCall.addListener(mCallListenerImpl);
+        mCall.addListener(mCallListenerImpl, Call.LISTENER_EVENT_CONNECTION_EVENTS);
         return mTransactionResult;
     }
 
@@ -97,6 +97,11 @@ public class CallEventCallbackAckTransaction extends CallTransaction {
     }
 
 
+    @Override
+    public String getLaneKey() {
+        return mCallId;
+    }
+
     @Override
     public CompletionStage<CallTransactionResult> processTransaction(Void v) {
         Log.d(TAG, "processTransaction: action [" + mAction + "]");
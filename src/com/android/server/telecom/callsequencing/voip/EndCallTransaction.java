@@ -44,6 +44,11 @@ public class EndCallTransaction extends CallTransaction {
         mCall = call;
     }
 
+    @Override
+    public String getLaneKey() {
+        return mCall != null ? mCall.getId() : null;
+    }
+
     @Override
     public CompletionStage<CallTransactionResult> processTransaction(Void v) {
         int code = mCause.getCode();
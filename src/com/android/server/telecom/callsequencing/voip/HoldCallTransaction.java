@@ -39,6 +39,11 @@ public class HoldCallTransaction extends CallTransaction {
         mCall = call;
     }
 
+    @Override
+    public String getLaneKey() {
+        return mCall != null ? mCall.getId() : null;
+    }
+
     @Override
     public CompletionStage<CallTransactionResult> processTransaction(Void v) {
         Log.d(TAG, "processTransaction");
@@ -37,6 +37,11 @@ public class ParallelTransaction extends CallTransaction {
         super(subTransactions, lock);
     }
 
+    @Override
+    public String getLaneKey() {
+        return getSubTransactionLaneKey();
+    }
+
     @Override
     public void processTransactions() {
         if (mSubTransactions == null || mSubTransactions.isEmpty()) {
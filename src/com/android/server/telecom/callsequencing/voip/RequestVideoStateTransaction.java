@@ -44,6 +44,11 @@ public class RequestVideoStateTransaction extends CallTransaction {
         mVideoProfileState = TransactionalVideoStateToVideoProfileState(transactionalVideoState);
     }
 
+    @Override
+    public String getLaneKey() {
+        return mCall != null ? mCall.getId() : null;
+    }
+
     @Override
     public CompletionStage<CallTransactionResult> processTransaction(Void v) {
         Log.d(TAG, "processTransaction");
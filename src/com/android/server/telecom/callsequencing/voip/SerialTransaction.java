@@ -41,6 +41,11 @@ public class SerialTransaction extends CallTransaction {
         mSubTransactions.add(transaction);
     }
 
+    @Override
+    public String getLaneKey() {
+        return getSubTransactionLaneKey();
+    }
+
     @Override
     public void processTransactions() {
         if (mSubTransactions == null || mSubTransactions.isEmpty()) {
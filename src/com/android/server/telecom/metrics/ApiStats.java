@@ -24,6 +24,7 @@ import android.app.StatsManager;
 import android.content.Context;
 import android.os.Looper;
 import android.telecom.Log;
+import android.util.LongSparseLongArray;
 import android.util.StatsEvent;
 
 import androidx.annotation.VisibleForTesting;
@@ -34,9 +35,7 @@ import com.android.server.telecom.nano.PulledAtomsClass;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 public class ApiStats extends TelecomPulledAtom {
@@ -167,7 +166,8 @@ public class ApiStats extends TelecomPulledAtom {
             .TELECOM_API_STATS__API_RESULT__RESULT_EXCEPTION;
     private static final String TAG = ApiStats.class.getSimpleName();
     private static final String FILE_NAME = "api_stats";
-    private Map<ApiEvent, Integer> mApiStatsMap;
+    // Counts keyed by the packed (api, uid, result) tuple; see ApiEvent#toKey.
+    private LongSparseLongArray mApiStatsCounts;
 
     public ApiStats(@NonNull Context context, @NonNull Looper looper, boolean isTestMode) {
         super(context, looper, isTestMode);
@@ -187,12 +187,14 @@ public class ApiStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized int onPull(final List<StatsEvent> data) {
+        aggregateIfNeeded();
         if (mPulledAtoms.telecomApiStats.length != 0) {
             Arrays.stream(mPulledAtoms.telecomApiStats).forEach(v -> data.add(
                     TelecomStatsLog.buildStatsEvent(getTag(),
                             v.getApiName(), v.getUid(), v.getApiResult(), v.getCount())));
-            mApiStatsMap.clear();
+            mApiStatsCounts.clear();
             onAggregate();
+            save(DELAY_FOR_PERSISTENT_MILLIS);
             return StatsManager.PULL_SUCCESS;
         } else {
             return StatsManager.PULL_SKIP;
@@ -202,9 +204,9 @@ public class ApiStats extends TelecomPulledAtom {
     @Override
     protected synchronized void onLoad() {
         if (mPulledAtoms.telecomApiStats != null) {
-            mApiStatsMap = new HashMap<>();
+            mApiStatsCounts = new LongSparseLongArray();
             for (PulledAtomsClass.TelecomApiStats v : mPulledAtoms.telecomApiStats) {
-                mApiStatsMap.put(new ApiEvent(v.getApiName(), v.getUid(), v.getApiResult()),
+                mApiStatsCounts.put(ApiEvent.toKey(v.getApiName(), v.getUid(), v.getApiResult()),
                         v.getCount());
             }
             mLastPulledTimestamps = mPulledAtoms.getTelecomApiStatsPullTimestampMillis();
@@ -214,31 +216,33 @@ public class ApiStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized void onAggregate() {
-        Log.d(TAG, "onAggregate: %s", mApiStatsMap);
+        Log.d(TAG, "onAggregate: size=%d", mApiStatsCounts.size());
         clearAtoms();
-        if (mApiStatsMap.isEmpty()) {
+        if (mApiStatsCounts.size() == 0) {
             return;
         }
         mPulledAtoms.setTelecomApiStatsPullTimestampMillis(mLastPulledTimestamps);
         mPulledAtoms.telecomApiStats =
-                new PulledAtomsClass.TelecomApiStats[mApiStatsMap.size()];
-        int[] index = new int[1];
-        mApiStatsMap.forEach((k, v) -> {
-            mPulledAtoms.telecomApiStats[index[0]] = new PulledAtomsClass.TelecomApiStats();
-            mPulledAtoms.telecomApiStats[index[0]].setApiName(k.mId);
-            mPulledAtoms.telecomApiStats[index[0]].setUid(k.mCallerUid);
-            mPulledAtoms.telecomApiStats[index[0]].setApiResult(k.mResult);
-            mPulledAtoms.telecomApiStats[index[0]].setCount(v);
-            index[0]++;
-        });
-        save(DELAY_FOR_PERSISTENT_MILLIS);
+                new PulledAtomsClass.TelecomApiStats[mApiStatsCounts.size()];
+        for (int i = 0; i < mApiStatsCounts.size(); i++) {
+            long key = mApiStatsCounts.keyAt(i);
+            mPulledAtoms.telecomApiStats[i] = new PulledAtomsClass.TelecomApiStats();
+            mPulledAtoms.telecomApiStats[i].setApiName(ApiEvent.idFromKey(key));
+            mPulledAtoms.telecomApiStats[i].setUid(ApiEvent.uidFromKey(key));
+            mPulledAtoms.telecomApiStats[i].setApiResult(ApiEvent.resultFromKey(key));
+            mPulledAtoms.telecomApiStats[i].setCount((int) mApiStatsCounts.valueAt(i));
+        }
     }
 
     public void log(@NonNull ApiEvent event) {
-        post(() -> {
-            mApiStatsMap.put(event, mApiStatsMap.getOrDefault(event, 0) + 1);
-            onAggregate();
-        });
+        // Capture the key now; callers may keep mutating the event after logging it.
+        final long key = event.toKey();
+        post(() -> onLog(key));
+    }
+
+    private synchronized void onLog(long key) {
+        mApiStatsCounts.put(key, mApiStatsCounts.get(key, 0) + 1);
+        onCountersChanged();
     }
 
     @IntDef(prefix = "API", value = {
@@ -339,6 +343,31 @@ public class ApiStats extends TelecomPulledAtom {
             this.mResult = result;
         }
 
+        /**
+         * Packs an event into a single {@code long} counter key: the api id and result each take
+         * 16 bits above the 32-bit uid.
+         */
+        static long toKey(int id, int callerUid, int result) {
+            return ((long) (id & 0xffff) << 48) | ((long) (result & 0xffff) << 32)
+                    | (callerUid & 0xffffffffL);
+        }
+
+        static int idFromKey(long key) {
+            return (int) (key >>> 48);
+        }
+
+        static int resultFromKey(long key) {
+            return (int) ((key >>> 32) & 0xffff);
+        }
+
+        static int uidFromKey(long key) {
+            return (int) key;
+        }
+
+        long toKey() {
+            return toKey(mId, mCallerUid, mResult);
+        }
+
         @Override
         public boolean equals(Object other) {
             if (this == other) {
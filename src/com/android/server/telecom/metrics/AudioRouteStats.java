@@ -94,6 +94,7 @@ public class AudioRouteStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized int onPull(final List<StatsEvent> data) {
+        aggregateIfNeeded();
         if (mPulledAtoms.callAudioRouteStats.length != 0) {
             Arrays.stream(mPulledAtoms.callAudioRouteStats).forEach(v -> data.add(
                     TelecomStatsLog.buildStatsEvent(getTag(),
@@ -101,6 +102,7 @@ public class AudioRouteStats extends TelecomPulledAtom {
                             v.getSuccess(), v.getRevert(), v.getCount(), v.getAverageLatencyMs())));
             mAudioRouteStatsMap.clear();
             onAggregate();
+            save(DELAY_FOR_PERSISTENT_MILLIS);
             return StatsManager.PULL_SUCCESS;
         } else {
             return StatsManager.PULL_SKIP;
@@ -142,7 +144,6 @@ public class AudioRouteStats extends TelecomPulledAtom {
             mPulledAtoms.callAudioRouteStats[index[0]].setAverageLatencyMs(v.mAverageLatency);
             index[0]++;
         });
-        save(DELAY_FOR_PERSISTENT_MILLIS);
     }
 
     @VisibleForTesting
@@ -214,11 +215,11 @@ public class AudioRouteStats extends TelecomPulledAtom {
         }
     }
 
-    private void onLog(AudioRouteStatsKey key, int latency) {
+    private synchronized void onLog(AudioRouteStatsKey key, int latency) {
         AudioRouteStatsData data = mAudioRouteStatsMap.computeIfAbsent(key,
                 k -> new AudioRouteStatsData(0, 0));
         data.add(latency);
-        onAggregate();
+        onCountersChanged();
     }
 
     private int convertAudioType(AudioRoute route, boolean isSource) {
@@ -78,6 +78,7 @@ public class CallStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized int onPull(final List<StatsEvent> data) {
+        aggregateIfNeeded();
         if (mPulledAtoms.callStats.length != 0) {
             Arrays.stream(mPulledAtoms.callStats).forEach(v -> data.add(
                     TelecomStatsLog.buildStatsEvent(getTag(),
@@ -87,6 +88,7 @@ public class CallStats extends TelecomPulledAtom {
                             v.getSimultaneousType(), v.getVideoCall())));
             mCallStatsMap.clear();
             onAggregate();
+            save(DELAY_FOR_PERSISTENT_MILLIS);
             return StatsManager.PULL_SUCCESS;
         } else {
             return StatsManager.PULL_SKIP;
@@ -136,7 +138,6 @@ public class CallStats extends TelecomPulledAtom {
             mPulledAtoms.callStats[index[0]].setAverageDurationMs(v.mAverageDuration);
             index[0]++;
         });
-        save(DELAY_FOR_PERSISTENT_MILLIS);
     }
 
     public void log(int direction, boolean isExternal, boolean isEmergency,
@@ -148,14 +149,16 @@ public class CallStats extends TelecomPulledAtom {
     public void log(int direction, boolean isExternal, boolean isEmergency,
             boolean isMultipleAudioAvailable, int accountType, int uid,
             int disconnectCause, int simultaneousType, boolean hasVideoCall, int duration) {
-        post(() -> {
-            CallStatsKey key = new CallStatsKey(direction, isExternal, isEmergency,
-                    isMultipleAudioAvailable, accountType, uid, disconnectCause, simultaneousType,
-                    hasVideoCall);
-            CallStatsData data = mCallStatsMap.computeIfAbsent(key, k -> new CallStatsData(0, 0));
-            data.add(duration);
-            onAggregate();
-        });
+        CallStatsKey key = new CallStatsKey(direction, isExternal, isEmergency,
+                isMultipleAudioAvailable, accountType, uid, disconnectCause, simultaneousType,
+                hasVideoCall);
+        post(() -> onLog(key, duration));
+    }
+
+    private synchronized void onLog(CallStatsKey key, int duration) {
+        CallStatsData data = mCallStatsMap.computeIfAbsent(key, k -> new CallStatsData(0, 0));
+        data.add(duration);
+        onCountersChanged();
     }
 
     public void onCallStart(Call call) {
@@ -24,6 +24,7 @@ import android.app.StatsManager;
 import android.content.Context;
 import android.os.Looper;
 import android.telecom.Log;
+import android.util.LongSparseLongArray;
 import android.util.StatsEvent;
 
 import androidx.annotation.VisibleForTesting;
@@ -34,9 +35,7 @@ import com.android.server.telecom.nano.PulledAtomsClass;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 public class ErrorStats extends TelecomPulledAtom {
@@ -116,7 +115,8 @@ public class ErrorStats extends TelecomPulledAtom {
             .TELECOM_ERROR_STATS__ERROR__ERROR_STUCK_CONNECTING;
     private static final String TAG = ErrorStats.class.getSimpleName();
     private static final String FILE_NAME = "error_stats";
-    private Map<ErrorEvent, Integer> mErrorStatsMap;
+    // Counts keyed by the packed (submodule, error) pair; see ErrorEvent#toKey.
+    private LongSparseLongArray mErrorStatsCounts;
 
     public ErrorStats(@NonNull Context context, @NonNull Looper looper, boolean isTestMode) {
         super(context, looper, isTestMode);
@@ -136,12 +136,14 @@ public class ErrorStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized int onPull(final List<StatsEvent> data) {
+        aggregateIfNeeded();
         if (mPulledAtoms.telecomErrorStats.length != 0) {
             Arrays.stream(mPulledAtoms.telecomErrorStats).forEach(v -> data.add(
                     TelecomStatsLog.buildStatsEvent(getTag(),
                             v.getSubmodule(), v.getError(), v.getCount())));
-            mErrorStatsMap.clear();
+            mErrorStatsCounts.clear();
             onAggregate();
+            save(DELAY_FOR_PERSISTENT_MILLIS);
             return StatsManager.PULL_SUCCESS;
         } else {
             return StatsManager.PULL_SKIP;
@@ -151,9 +153,9 @@ public class ErrorStats extends TelecomPulledAtom {
     @Override
     protected synchronized void onLoad() {
         if (mPulledAtoms.telecomErrorStats != null) {
-            mErrorStatsMap = new HashMap<>();
+            mErrorStatsCounts = new LongSparseLongArray();
             for (PulledAtomsClass.TelecomErrorStats v : mPulledAtoms.telecomErrorStats) {
-                mErrorStatsMap.put(new ErrorEvent(v.getSubmodule(), v.getError()),
+                mErrorStatsCounts.put(ErrorEvent.toKey(v.getSubmodule(), v.getError()),
                         v.getCount());
             }
             mLastPulledTimestamps = mPulledAtoms.getTelecomErrorStatsPullTimestampMillis();
@@ -163,31 +165,31 @@ public class ErrorStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized void onAggregate() {
-        Log.d(TAG, "onAggregate: %s", mErrorStatsMap);
+        Log.d(TAG, "onAggregate: size=%d", mErrorStatsCounts.size());
         clearAtoms();
-        if (mErrorStatsMap.isEmpty()) {
+        if (mErrorStatsCounts.size() == 0) {
             return;
         }
         mPulledAtoms.setTelecomErrorStatsPullTimestampMillis(mLastPulledTimestamps);
         mPulledAtoms.telecomErrorStats =
-                new PulledAtomsClass.TelecomErrorStats[mErrorStatsMap.size()];
-        int[] index = new int[1];
-        mErrorStatsMap.forEach((k, v) -> {
-            mPulledAtoms.telecomErrorStats[index[0]] = new PulledAtomsClass.TelecomErrorStats();
-            mPulledAtoms.telecomErrorStats[index[0]].setSubmodule(k.mModuleId);
-            mPulledAtoms.telecomErrorStats[index[0]].setError(k.mErrorId);
-            mPulledAtoms.telecomErrorStats[index[0]].setCount(v);
-            index[0]++;
-        });
-        save(DELAY_FOR_PERSISTENT_MILLIS);
+                new PulledAtomsClass.TelecomErrorStats[mErrorStatsCounts.size()];
+        for (int i = 0; i < mErrorStatsCounts.size(); i++) {
+            long key = mErrorStatsCounts.keyAt(i);
+            mPulledAtoms.telecomErrorStats[i] = new PulledAtomsClass.TelecomErrorStats();
+            mPulledAtoms.telecomErrorStats[i].setSubmodule(ErrorEvent.moduleIdFromKey(key));
+            mPulledAtoms.telecomErrorStats[i].setError(ErrorEvent.errorIdFromKey(key));
+            mPulledAtoms.telecomErrorStats[i].setCount((int) mErrorStatsCounts.valueAt(i));
+        }
     }
 
     public void log(@SubModuleId int moduleId, @ErrorId int errorId) {
-        post(() -> {
-            ErrorEvent key = new ErrorEvent(moduleId, errorId);
-            mErrorStatsMap.put(key, mErrorStatsMap.getOrDefault(key, 0) + 1);
-            onAggregate();
-        });
+        final long key = ErrorEvent.toKey(moduleId, errorId);
+        post(() -> onLog(key));
+    }
+
+    private synchronized void onLog(long key) {
+        mErrorStatsCounts.put(key, mErrorStatsCounts.get(key, 0) + 1);
+        onCountersChanged();
     }
 
     @IntDef(prefix = "SUB", value = {
@@ -250,6 +252,21 @@ public class ErrorStats extends TelecomPulledAtom {
             mErrorId = errorId;
         }
 
+        /**
+         * Packs a submodule and error into a single {@code long} counter key.
+         */
+        static long toKey(@SubModuleId int moduleId, @ErrorId int errorId) {
+            return ((long) moduleId << 32) | (errorId & 0xffffffffL);
+        }
+
+        static int moduleIdFromKey(long key) {
+            return (int) (key >>> 32);
+        }
+
+        static int errorIdFromKey(long key) {
+            return (int) key;
+        }
+
         @Override
         public boolean equals(Object other) {
             if (this == other) {
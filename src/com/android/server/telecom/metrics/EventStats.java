@@ -25,6 +25,7 @@ import android.content.Context;
 import android.os.Looper;
 import android.telecom.CallException;
 import android.telecom.Log;
+import android.util.LongSparseLongArray;
 import android.util.StatsEvent;
 
 import androidx.annotation.VisibleForTesting;
@@ -36,9 +37,7 @@ import com.android.server.telecom.nano.PulledAtomsClass;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 
 public class EventStats extends TelecomPulledAtom {
@@ -72,7 +71,8 @@ public class EventStats extends TelecomPulledAtom {
             CAUSE_CALL_TRANSACTION_BASE + CallException.CODE_OPERATION_TIMED_OUT;
     private static final String TAG = EventStats.class.getSimpleName();
     private static final String FILE_NAME = "event_stats";
-    private Map<CriticalEvent, Integer> mEventStatsMap;
+    // Counts keyed by the packed (event, uid, cause) tuple; see CriticalEvent#toKey.
+    private LongSparseLongArray mEventStatsCounts;
 
     public EventStats(@NonNull Context context, @NonNull Looper looper,
                       boolean isTestMode) {
@@ -93,12 +93,14 @@ public class EventStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized int onPull(final List<StatsEvent> data) {
+        aggregateIfNeeded();
         if (mPulledAtoms.telecomEventStats.length != 0) {
             Arrays.stream(mPulledAtoms.telecomEventStats).forEach(v -> data.add(
                     TelecomStatsLog.buildStatsEvent(getTag(),
                             v.getEvent(), v.getUid(), v.getEventCause(), v.getCount())));
-            mEventStatsMap.clear();
+            mEventStatsCounts.clear();
             onAggregate();
+            save(DELAY_FOR_PERSISTENT_MILLIS);
             return StatsManager.PULL_SUCCESS;
         } else {
             return StatsManager.PULL_SKIP;
@@ -108,9 +110,9 @@ public class EventStats extends TelecomPulledAtom {
     @Override
     protected synchronized void onLoad() {
         if (mPulledAtoms.telecomEventStats != null) {
-            mEventStatsMap = new HashMap<>();
+            mEventStatsCounts = new LongSparseLongArray();
             for (PulledAtomsClass.TelecomEventStats v : mPulledAtoms.telecomEventStats) {
-                mEventStatsMap.put(new CriticalEvent(v.getEvent(), v.getUid(),
+                mEventStatsCounts.put(CriticalEvent.toKey(v.getEvent(), v.getUid(),
                         v.getEventCause()), v.getCount());
             }
             mLastPulledTimestamps = mPulledAtoms.getTelecomEventStatsPullTimestampMillis();
@@ -120,31 +122,33 @@ public class EventStats extends TelecomPulledAtom {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     @Override
     public synchronized void onAggregate() {
-        Log.d(TAG, "onAggregate: %s", mEventStatsMap);
+        Log.d(TAG, "onAggregate: size=%d", mEventStatsCounts.size());
         clearAtoms();
-        if (mEventStatsMap.isEmpty()) {
+        if (mEventStatsCounts.size() == 0) {
             return;
         }
         mPulledAtoms.setTelecomEventStatsPullTimestampMillis(mLastPulledTimestamps);
         mPulledAtoms.telecomEventStats =
-                new PulledAtomsClass.TelecomEventStats[mEventStatsMap.size()];
-        int[] index = new int[1];
-        mEventStatsMap.forEach((k, v) -> {
-            mPulledAtoms.telecomEventStats[index[0]] = new PulledAtomsClass.TelecomEventStats();
-            mPulledAtoms.telecomEventStats[index[0]].setEvent(k.mId);
-            mPulledAtoms.telecomEventStats[index[0]].setUid(k.mUid);
-            mPulledAtoms.telecomEventStats[index[0]].setEventCause(k.mCause);
-            mPulledAtoms.telecomEventStats[index[0]].setCount(v);
-            index[0]++;
-        });
-        save(DELAY_FOR_PERSISTENT_MILLIS);
+                new PulledAtomsClass.TelecomEventStats[mEventStatsCounts.size()];
+        for (int i = 0; i < mEventStatsCounts.size(); i++) {
+            long key = mEventStatsCounts.keyAt(i);
+            mPulledAtoms.telecomEventStats[i] = new PulledAtomsClass.TelecomEventStats();
+            mPulledAtoms.telecomEventStats[i].setEvent(CriticalEvent.idFromKey(key));
+            mPulledAtoms.telecomEventStats[i].setUid(CriticalEvent.uidFromKey(key));
+            mPulledAtoms.telecomEventStats[i].setEventCause(CriticalEvent.causeFromKey(key));
+            mPulledAtoms.telecomEventStats[i].setCount((int) mEventStatsCounts.valueAt(i));
+        }
     }
 
     public void log(@NonNull CriticalEvent event) {
-        post(() -> {
-            mEventStatsMap.put(event, mEventStatsMap.getOrDefault(event, 0) + 1);
-            onAggregate();
-        });
+        // Capture the key now; callers may keep mutating the event after logging it.
+        final long key = event.toKey();
+        post(() -> onLog(key));
+    }
+
+    private synchronized void onLog(long key) {
+        mEventStatsCounts.put(key, mEventStatsCounts.get(key, 0) + 1);
+        onCountersChanged();
     }
 
     @IntDef(prefix = "ID_", value = {
@@ -195,6 +199,31 @@ public class EventStats extends TelecomPulledAtom {
             this.mCause = result;
         }
 
+        /**
+         * Packs an event into a single {@code long} counter key: the event id and cause each
+         * take 16 bits above the 32-bit uid.
+         */
+        static long toKey(int id, int uid, int cause) {
+            return ((long) (id & 0xffff) << 48) | ((long) (cause & 0xffff) << 32)
+                    | (uid & 0xffffffffL);
+        }
+
+        static int idFromKey(long key) {
+            return (int) (key >>> 48);
+        }
+
+        static int causeFromKey(long key) {
+            return (int) ((key >>> 32) & 0xffff);
+        }
+
+        static int uidFromKey(long key) {
+            return (int) key;
+        }
+
+        long toKey() {
+            return toKey(mId, mUid, mCause);
+        }
+
         @Override
         public boolean equals(Object other) {
             if (this == other) {
@@ -49,6 +49,8 @@ public abstract class TelecomPulledAtom extends Handler {
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     public PulledAtoms mPulledAtoms;
     protected long mLastPulledTimestamps;
+    // Whether the in-memory counters changed since mPulledAtoms was last rebuilt from them.
+    private boolean mIsDirty;
 
     protected TelecomPulledAtom(@NonNull Context context, @NonNull Looper looper,
                                 boolean isTestMode) {
@@ -78,9 +80,32 @@ public abstract class TelecomPulledAtom extends Handler {
 
     protected abstract void onLoad();
 
+    /**
+     * Rebuilds {@link #mPulledAtoms} from the in-memory counters. This is only done when the
+     * atoms are pulled or persisted rather than on every logged event.
+     */
     @VisibleForTesting(otherwise = VisibleForTesting.PROTECTED)
     public abstract void onAggregate();
 
+    /**
+     * Called by subclasses after updating their counters. Marks the atoms as stale and schedules a
+     * deferred save, which rebuilds them.
+     */
+    protected synchronized void onCountersChanged() {
+        mIsDirty = true;
+        save(DELAY_FOR_PERSISTENT_MILLIS);
+    }
+
+    /**
+     * Rebuilds the atoms if the counters changed since they were last rebuilt.
+     */
+    protected synchronized void aggregateIfNeeded() {
+        if (mIsDirty) {
+            mIsDirty = false;
+            onAggregate();
+        }
+    }
+
     public void flush() {
         save(0);
     }
@@ -106,6 +131,7 @@ public abstract class TelecomPulledAtom extends Handler {
     }
 
     private synchronized void onSave() {
+        aggregateIfNeeded();
         if (!mIsTestMode) {
             try (FileOutputStream stream = mContext.openFileOutput(getFileName(),
                     Context.MODE_PRIVATE)) {
@@ -135,7 +135,7 @@ public class CallStreamingNotification extends CallsManagerListenerBase implemen
         }
         mStreamingCall = call;
         if (mStreamingCall != null) {
-            mStreamingCall.addListener(this);
+            mStreamingCall.addListener(this, Call.LISTENER_EVENT_STATE);
         }
     }
 
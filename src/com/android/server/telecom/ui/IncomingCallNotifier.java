@@ -163,7 +163,7 @@ public class IncomingCallNotifier extends CallsManagerListenerBase {
             mIncomingCall = incomingCall;
 
             if (hasIncomingCall && !hadIncomingCall) {
-                mIncomingCall.addListener(mCallListener);
+                mIncomingCall.addListener(mCallListener, Call.LISTENER_EVENT_DETAILS);
                 showIncomingCallNotification(mIncomingCall);
             } else if (hadIncomingCall && !hasIncomingCall) {
                 previousIncomingCall.removeListener(mCallListener);
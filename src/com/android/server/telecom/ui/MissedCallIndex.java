@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.ui;
+
+import android.annotation.Nullable;
+import android.net.Uri;
+import android.os.UserHandle;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+import android.util.IndentingPrintWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the unread missed calls of each user, so that {@link MissedCallNotifierImpl}
+ * does not have to look up and re-post every missed call in the call log each time it reloads.
+ * <p>
+ * The index is updated as missed calls are logged and cleared.  When reloading, the unread
+ * missed calls found in the call log are reconciled with the index; only the differences count
+ * as changes.  The index is only kept in memory: the missed call notification does not survive
+ * a restart of Telecom either, so after one it has to be posted again regardless.
+ */
+public class MissedCallIndex {
+    /**
+     * A missed call which has not been read yet.
+     */
+    public static class Entry {
+        public static final long UNKNOWN_ID = -1;
+
+        /** The {@code _ID} of the call log row, or {@link #UNKNOWN_ID}. */
+        public final long callLogId;
+        @Nullable
+        public final String number;
+        public final int presentation;
+        public final long date;
+
+        public Entry(long callLogId, @Nullable String number, int presentation, long date) {
+            this.callLogId = callLogId;
+            this.number = number;
+            this.presentation = presentation;
+            this.date = date;
+        }
+
+        /**
+         * @return {@code true} if both entries describe the same call log row.  Calls indexed
+         * before their call log URI was known are matched by date and number instead.
+         */
+        boolean isSameCall(Entry other) {
+            if (callLogId != UNKNOWN_ID && other.callLogId != UNKNOWN_ID) {
+                return callLogId == other.callLogId;
+            }
+            return date == other.date && TextUtils.equals(number, other.number);
+        }
+
+        /**
+         * @return The {@code _ID} of a call log entry URI, or {@link #UNKNOWN_ID}.
+         */
+        public static long parseCallLogId(@Nullable Uri uri) {
+            if (uri == null) {
+                return UNKNOWN_ID;
+            }
+            try {
+                return Long.parseLong(uri.getLastPathSegment());
+            } catch (NumberFormatException e) {
+                return UNKNOWN_ID;
+            }
+        }
+    }
+
+    // Keyed by user.
+    private final Map<UserHandle, List<Entry>> mEntries = new ArrayMap<>();
+
+    private final AtomicLong mReconciled = new AtomicLong(0);
+    private final AtomicLong mChanges = new AtomicLong(0);
+
+    /**
+     * @return The unread missed calls of a user, newest first.
+     */
+    public synchronized List<Entry> getEntries(UserHandle userHandle) {
+        return new ArrayList<>(getEntriesLocked(userHandle));
+    }
+
+    /**
+     * Adds a newly missed call.
+     */
+    public synchronized void add(UserHandle userHandle, Entry entry) {
+        List<Entry> entries = getEntriesLocked(userHandle);
+        for (Entry existing : entries) {
+            if (existing.isSameCall(entry)) {
+                return;
+            }
+        }
+        entries.add(0, entry);
+        mChanges.incrementAndGet();
+    }
+
+    /**
+     * Forgets all missed calls of a user, e.g. because they were marked as read.
+     */
+    public synchronized void clear(UserHandle userHandle) {
+        List<Entry> entries = getEntriesLocked(userHandle);
+        if (entries.isEmpty()) {
+            return;
+        }
+        mChanges.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Replaces the missed calls of a user with the unread missed calls found in the call log.
+     * @param userHandle The user.
+     * @param outstanding The unread missed calls in the call log, newest first.
+     * @return The number of calls which were added to or removed from the index.
+     */
+    public synchronized int reconcile(UserHandle userHandle, List<Entry> outstanding) {
+        List<Entry> entries = getEntriesLocked(userHandle);
+        int changes = countMissing(outstanding, entries) + countMissing(entries, outstanding);
+        mReconciled.incrementAndGet();
+        // The call log is the source of truth; its rows also carry the ids which may have been
+        // unknown when the calls were indexed.
+        entries.clear();
+        entries.addAll(outstanding);
+        mChanges.addAndGet(changes);
+        return changes;
+    }
+
+    /**
+     * @return The number of {@code entries} which have no match in {@code others}.
+     */
+    private static int countMissing(List<Entry> entries, List<Entry> others) {
+        int missing = 0;
+        for (Entry entry : entries) {
+            boolean found = false;
+            for (Entry other : others) {
+                if (entry.isSameCall(other)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    private List<Entry> getEntriesLocked(UserHandle userHandle) {
+        List<Entry> entries = mEntries.get(userHandle);
+        if (entries == null) {
+            entries = new ArrayList<>();
+            mEntries.put(userHandle, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Dumps the index statistics.
+     * @param pw The {@code IndentingPrintWriter} to write the state to.
+     */
+    public synchronized void dump(IndentingPrintWriter pw) {
+        StringBuilder counts = new StringBuilder();
+        for (Map.Entry<UserHandle, List<Entry>> entry : mEntries.entrySet()) {
+            counts.append(' ').append(entry.getKey().getIdentifier()).append('=')
+                    .append(entry.getValue().size());
+        }
+        pw.println("MissedCallIndex: reconciled=" + mReconciled.get()
+                + ", changes=" + mChanges.get()
+                + ", users:" + counts);
+    }
+}
@@ -58,6 +58,7 @@ import android.text.TextDirectionHeuristics;
 import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
+import android.util.IndentingPrintWriter;
 
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.telecom.CallerInfoLookupHelper;
@@ -74,6 +75,7 @@ import com.android.server.telecom.TelecomSystem;
 import com.android.server.telecom.Timeouts;
 import com.android.server.telecom.components.TelecomBroadcastReceiver;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -147,6 +149,8 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
 
     private Set<UserHandle> mUsersToLoadAfterBootComplete = new ArraySet<>();
     private FeatureFlags mFeatureFlags;
+    // Unread missed calls per user; null if not enabled, see R.bool.index_missed_calls.
+    private final MissedCallIndex mMissedCallIndex;
 
     public MissedCallNotifierImpl(Context context, PhoneAccountRegistrar phoneAccountRegistrar,
             DefaultDialerCache defaultDialerCache,
@@ -172,6 +176,8 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
         mNotificationBuilderFactory = notificationBuilderFactory;
         mMissedCallCounts = new ArrayMap<>();
         mFeatureFlags = featureFlags;
+        mMissedCallIndex = context.getResources().getBoolean(R.bool.index_missed_calls)
+                ? new MissedCallIndex() : null;
     }
 
     /** Clears missed call notification and marks the call log's missed calls as read. */
@@ -315,6 +321,14 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
         } else {
             userHandle = phoneAccountHandle.getUserHandle();
         }
+        if (mMissedCallIndex != null) {
+            mMissedCallIndex.add(userHandle, new MissedCallIndex.Entry(
+                    MissedCallIndex.Entry.parseCallLogId(uri),
+                    callInfo.getHandleSchemeSpecificPart(),
+                    callInfo.getHandle() == null
+                            ? Calls.PRESENTATION_UNKNOWN : Calls.PRESENTATION_ALLOWED,
+                    callInfo.getCreationTimeMillis()));
+        }
         showMissedCallNotification(callInfo, userHandle, uri);
     }
 
@@ -452,6 +466,9 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
         synchronized(mMissedCallCountsLock) {
             mMissedCallCounts.put(userHandle, 0);
         }
+        if (mMissedCallIndex != null) {
+            mMissedCallIndex.clear(userHandle);
+        }
 
         String dialerPackage = getDefaultDialerPackage(userHandle);
         if (shouldManageNotificationThroughDefaultDialer(dialerPackage, userHandle)) {
@@ -641,72 +658,20 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
                 Log.d(MissedCallNotifierImpl.this, "onQueryComplete()...");
                 if (cursor != null) {
                     try {
+                        if (mMissedCallIndex != null) {
+                            reloadFromIndex(cursor, callerInfoLookupHelper, callInfoFactory,
+                                    userHandle);
+                            return;
+                        }
                         synchronized(mMissedCallCountsLock) {
                             mMissedCallCounts.remove(userHandle);
                         }
                         while (cursor.moveToNext()) {
                             // Get data about the missed call from the cursor
-                            final String handleString = cursor.getString(CALL_LOG_COLUMN_NUMBER);
-                            final Uri uri;
-                            if (mFeatureFlags.addCallUriForMissedCalls()){
-                                uri = Calls.CONTENT_URI.buildUpon().appendPath(
-                                        Long.toString(cursor.getInt(CALL_LOG_COLUMN_ID))).build();
-                            }else{
-                                uri = null;
-                            }
-                            final int presentation =
-                                    cursor.getInt(CALL_LOG_COLUMN_NUMBER_PRESENTATION);
                             final long date = cursor.getLong(CALL_LOG_COLUMN_DATE);
-
-                            final Uri handle;
-                            if (presentation != Calls.PRESENTATION_ALLOWED
-                                    || TextUtils.isEmpty(handleString)) {
-                                handle = null;
-                            } else {
-                                // TODO: Remove the assumption that numbers are SIP or TEL only.
-                                handle = Uri.fromParts(PhoneNumberUtils.isUriNumber(handleString) ?
-                                        PhoneAccount.SCHEME_SIP : PhoneAccount.SCHEME_TEL,
-                                                handleString, null);
-                            }
-
-                            callerInfoLookupHelper.startLookup(handle,
-                                    new CallerInfoLookupHelper.OnQueryCompleteListener() {
-                                        @Override
-                                        public void onCallerInfoQueryComplete(Uri queryHandle,
-                                                CallerInfo info) {
-                                            if (!Objects.equals(queryHandle, handle)) {
-                                                Log.w(MissedCallNotifierImpl.this,
-                                                        "CallerInfo query returned with " +
-                                                                "different handle.");
-                                                return;
-                                            }
-                                            if (info == null ||
-                                                    info.getContactDisplayPhotoUri() == null) {
-                                                // If there is no photo or if the caller info is
-                                                // null, just show the notification.
-                                                CallInfo callInfo = callInfoFactory.makeCallInfo(
-                                                        info, null, handle, date);
-                                                showMissedCallNotification(callInfo, userHandle,
-                                                        /* uri= */ uri);
-                                            }
-                                        }
-
-                                        @Override
-                                        public void onContactPhotoQueryComplete(Uri queryHandle,
-                                                CallerInfo info) {
-                                            if (!Objects.equals(queryHandle, handle)) {
-                                                Log.w(MissedCallNotifierImpl.this,
-                                                        "CallerInfo query for photo returned " +
-                                                                "with different handle.");
-                                                return;
-                                            }
-                                            CallInfo callInfo = callInfoFactory.makeCallInfo(
-                                                    info, null, handle, date);
-                                            showMissedCallNotification(callInfo, userHandle,
-                                                    /* uri= */ uri);
-                                        }
-                                    }
-                            );
+                            showMissedCallNotificationForRow(callerInfoLookupHelper,
+                                    callInfoFactory, userHandle, getHandle(cursor), date,
+                                    getCallLogUri(cursor.getInt(CALL_LOG_COLUMN_ID)));
                         }
                     } finally {
                         cursor.close();
@@ -723,6 +688,112 @@ public class MissedCallNotifierImpl extends CallsManagerListenerBase implements
                 CALL_LOG_WHERE_CLAUSE, null, Calls.DEFAULT_SORT_ORDER);
     }
 
+    /**
+     * Reconciles the index with the unread missed calls in the call log, and re-posts a single
+     * notification for them if they changed since the notification was last posted.
+     */
+    private void reloadFromIndex(Cursor cursor, CallerInfoLookupHelper callerInfoLookupHelper,
+            CallInfoFactory callInfoFactory, UserHandle userHandle) {
+        List<MissedCallIndex.Entry> outstanding = new ArrayList<>();
+        while (cursor.moveToNext()) {
+            outstanding.add(new MissedCallIndex.Entry(cursor.getInt(CALL_LOG_COLUMN_ID),
+                    cursor.getString(CALL_LOG_COLUMN_NUMBER),
+                    cursor.getInt(CALL_LOG_COLUMN_NUMBER_PRESENTATION),
+                    cursor.getLong(CALL_LOG_COLUMN_DATE)));
+        }
+        int changes = mMissedCallIndex.reconcile(userHandle, outstanding);
+        int count = outstanding.size();
+        synchronized (mMissedCallCountsLock) {
+            Integer shownCount = mMissedCallCounts.get(userHandle);
+            if (changes == 0 && shownCount != null && shownCount == count) {
+                Log.i(this, "reloadFromIndex: user=%d, %d missed calls already shown",
+                        userHandle.getIdentifier(), count);
+                return;
+            }
+            if (count == 0) {
+                mMissedCallCounts.remove(userHandle);
+                return;
+            }
+            // The notification is posted once, for the newest call, with the total count.
+            mMissedCallCounts.put(userHandle, count - 1);
+        }
+        Log.i(this, "reloadFromIndex: user=%d, count=%d, changes=%d",
+                userHandle.getIdentifier(), count, changes);
+        MissedCallIndex.Entry newest = outstanding.get(0);
+        showMissedCallNotificationForRow(callerInfoLookupHelper, callInfoFactory, userHandle,
+                getHandle(newest.number, newest.presentation), newest.date,
+                getCallLogUri(newest.callLogId));
+    }
+
+    /**
+     * Looks up the caller of a missed call read from the call log and shows the notification
+     * for it.
+     */
+    private void showMissedCallNotificationForRow(CallerInfoLookupHelper callerInfoLookupHelper,
+            CallInfoFactory callInfoFactory, UserHandle userHandle, @Nullable Uri handle,
+            long date, @Nullable Uri uri) {
+        callerInfoLookupHelper.startLookup(handle,
+                new CallerInfoLookupHelper.OnQueryCompleteListener() {
+                    @Override
+                    public void onCallerInfoQueryComplete(Uri queryHandle, CallerInfo info) {
+                        if (!Objects.equals(queryHandle, handle)) {
+                            Log.w(MissedCallNotifierImpl.this,
+                                    "CallerInfo query returned with different handle.");
+                            return;
+                        }
+                        if (info == null || info.getContactDisplayPhotoUri() == null) {
+                            // If there is no photo or if the caller info is null, just show the
+                            // notification.
+                            CallInfo callInfo = callInfoFactory.makeCallInfo(
+                                    info, null, handle, date);
+                            showMissedCallNotification(callInfo, userHandle, /* uri= */ uri);
+                        }
+                    }
+
+                    @Override
+                    public void onContactPhotoQueryComplete(Uri queryHandle, CallerInfo info) {
+                        if (!Objects.equals(queryHandle, handle)) {
+                            Log.w(MissedCallNotifierImpl.this,
+                                    "CallerInfo query for photo returned with different handle.");
+                            return;
+                        }
+                        CallInfo callInfo = callInfoFactory.makeCallInfo(
+                                info, null, handle, date);
+                        showMissedCallNotification(callInfo, userHandle, /* uri= */ uri);
+                    }
+                }
+        );
+    }
+
+    private static Uri getHandle(Cursor cursor) {
+        return getHandle(cursor.getString(CALL_LOG_COLUMN_NUMBER),
+                cursor.getInt(CALL_LOG_COLUMN_NUMBER_PRESENTATION));
+    }
+
+    private static Uri getHandle(String handleString, int presentation) {
+        if (presentation != Calls.PRESENTATION_ALLOWED || TextUtils.isEmpty(handleString)) {
+            return null;
+        }
+        // TODO: Remove the assumption that numbers are SIP or TEL only.
+        return Uri.fromParts(PhoneNumberUtils.isUriNumber(handleString) ?
+                PhoneAccount.SCHEME_SIP : PhoneAccount.SCHEME_TEL, handleString, null);
+    }
+
+    private Uri getCallLogUri(long callLogId) {
+        if (!mFeatureFlags.addCallUriForMissedCalls()
+                || callLogId == MissedCallIndex.Entry.UNKNOWN_ID) {
+            return null;
+        }
+        return Calls.CONTENT_URI.buildUpon().appendPath(Long.toString(callLogId)).build();
+    }
+
+    @Override
+    public void dump(IndentingPrintWriter pw) {
+        if (mMissedCallIndex != null) {
+            mMissedCallIndex.dump(pw);
+        }
+    }
+
     @Override
     public void setCurrentUserHandle(UserHandle currentUserHandle) {
         mCurrentUserHandle = currentUserHandle;
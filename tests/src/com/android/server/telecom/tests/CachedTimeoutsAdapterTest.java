@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ContentResolver;
+import android.provider.Settings;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.CachedTimeoutsAdapter;
+import com.android.server.telecom.Timeouts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class CachedTimeoutsAdapterTest extends TelecomTestCase {
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testValuesMatchTimeouts() {
+        ContentResolver cr = mContext.getContentResolver();
+        CachedTimeoutsAdapter adapter = new CachedTimeoutsAdapter(cr);
+
+        assertEquals(Timeouts.getCallScreeningTimeoutMillis(cr),
+                adapter.getCallScreeningTimeoutMillis(cr));
+        assertEquals(Timeouts.getNewOutgoingCallCancelMillis(cr),
+                adapter.getNewOutgoingCallCancelMillis(cr));
+        assertEquals(Timeouts.getNonVoipCallTransitoryStateTimeoutMillis(),
+                adapter.getNonVoipCallTransitoryStateTimeoutMillis());
+        assertEquals(Timeouts.getDaysBackToSearchEmergencyDiagnosticEntries(),
+                adapter.getDaysBackToSearchEmergencyDiagnosticEntries());
+    }
+
+    @SmallTest
+    @Test
+    public void testReloadedOnlyWhenTelecomSettingChanges() {
+        CachedTimeoutsAdapter adapter = new CachedTimeoutsAdapter(mContext.getContentResolver());
+
+        adapter.onSettingChanged(Settings.Secure.getUriFor(
+                Settings.Secure.DIALER_DEFAULT_APPLICATION));
+        assertEquals(0, adapter.getReloadCount());
+
+        adapter.onSettingChanged(Settings.Secure.getUriFor("telecom.call_screening_timeout"));
+        assertEquals(1, adapter.getReloadCount());
+    }
+}
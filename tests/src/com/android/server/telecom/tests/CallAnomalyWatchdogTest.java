@@ -44,6 +44,7 @@ import com.android.server.telecom.EmergencyCallDiagnosticLogger;
 import com.android.server.telecom.PhoneAccountRegistrar;
 import com.android.server.telecom.PhoneNumberUtilsAdapter;
 import com.android.server.telecom.TelecomSystem;
+import com.android.server.telecom.TelecomTimerService;
 import com.android.server.telecom.Timeouts;
 import com.android.server.telecom.metrics.TelecomMetricsController;
 import com.android.server.telecom.ui.ToastFactory;
@@ -123,7 +124,8 @@ public class CallAnomalyWatchdogTest extends TelecomTestCase {
         when(mMockClockProxy.elapsedRealtime()).thenReturn(0L);
         doReturn(new ComponentName(mContext, CallTest.class))
                 .when(mMockConnectionService).getComponentName();
-        mCallAnomalyWatchdog = new CallAnomalyWatchdog(mTestScheduledExecutorService, mLock,
+        mCallAnomalyWatchdog = new CallAnomalyWatchdog(
+                new TelecomTimerService(mTestScheduledExecutorService), mLock,
                 mFeatureFlags, mTimeouts, mMockClockProxy, mMockEmergencyCallDiagnosticLogger,
                 mMockTelecomMetricsController);
         mCallAnomalyWatchdog.setAnomalyReporterAdapter(mAnomalyReporterAdapter);
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.Call;
+import com.android.server.telecom.CallIdMapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(JUnit4.class)
+public class CallIdMapperTest extends TelecomTestCase {
+    private final Map<Call, String> mCallIds = new HashMap<>();
+    private CallIdMapper mCallIdMapper;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        mCallIdMapper = new CallIdMapper(mCallIds::get);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that the ID of a removed call no longer resolves, and that the call can be added
+     * again afterwards.
+     */
+    @SmallTest
+    @Test
+    public void testRemovedCallNoLongerResolves() {
+        Call call = createCall("TC@1");
+        mCallIdMapper.addCall(call, "TC@1");
+
+        mCallIdMapper.removeCall(call);
+
+        assertNull(mCallIdMapper.getCall("TC@1"));
+        assertNull(mCallIdMapper.getCallId(call));
+
+        Call otherCall = createCall("TC@2");
+        mCallIdMapper.addCall(otherCall, "TC@2");
+        mCallIdMapper.addCall(call, "TC@1");
+        assertSame(call, mCallIdMapper.getCall("TC@1"));
+        assertSame(otherCall, mCallIdMapper.getCall("TC@2"));
+    }
+
+    /**
+     * Verifies that neither an ID nor a call which is already mapped can be mapped again.
+     */
+    @SmallTest
+    @Test
+    public void testAddIgnoresMappedIdOrCall() {
+        Call call = createCall("TC@1");
+        Call otherCall = createCall("TC@2");
+        mCallIdMapper.addCall(call, "TC@1");
+
+        mCallIdMapper.addCall(otherCall, "TC@1");
+        mCallIdMapper.addCall(call, "TC@3");
+
+        assertSame(call, mCallIdMapper.getCall("TC@1"));
+        assertNull(mCallIdMapper.getCall("TC@3"));
+        assertNull(mCallIdMapper.getCallId(otherCall));
+    }
+
+    /**
+     * Verifies that replacing a call which is still mapped leaves the mapping unchanged, and that
+     * the replacement takes over the ID once the old call is removed.
+     */
+    @SmallTest
+    @Test
+    public void testReplaceCallWhileOldCallMapped() {
+        Call oldCall = createCall("TC@1");
+        Call newCall = createCall("TC@1");
+        mCallIdMapper.addCall(oldCall, "TC@1");
+
+        mCallIdMapper.replaceCall(newCall, oldCall);
+        assertSame(oldCall, mCallIdMapper.getCall("TC@1"));
+        assertNull(mCallIdMapper.getCallId(newCall));
+
+        mCallIdMapper.removeCall("TC@1");
+        mCallIdMapper.addCall(newCall, "TC@1");
+        assertSame(newCall, mCallIdMapper.getCall("TC@1"));
+        assertEquals("TC@1", mCallIdMapper.getCallId(newCall));
+    }
+
+    /**
+     * Verifies that clearing the mapper drops every call.
+     */
+    @SmallTest
+    @Test
+    public void testClear() {
+        Call call = createCall("TC@1");
+        Call otherCall = createCall("TC@2");
+        mCallIdMapper.addCall(call, "TC@1");
+        mCallIdMapper.addCall(otherCall, "TC@2");
+
+        mCallIdMapper.clear();
+
+        assertTrue(mCallIdMapper.getCalls().isEmpty());
+        assertNull(mCallIdMapper.getCall("TC@1"));
+        assertNull(mCallIdMapper.getCallId(otherCall));
+    }
+
+    private Call createCall(String callId) {
+        Call call = mock(Call.class);
+        mCallIds.put(call, callId);
+        return call;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.CallLog;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.CallLogWriter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class CallLogWriterTest extends TelecomTestCase {
+    private static final long TEST_TIMEOUT = 5000L;
+    private static final long TEST_WRITE_DELAY_MILLIS = 200L;
+
+    private final List<CallLog.AddCallParams> mWrittenParams = new ArrayList<>();
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testCallsWithinWriteDelayWrittenByOneFlush() throws Exception {
+        CallLogWriter writer = new CallLogWriter(this::addCall, TEST_WRITE_DELAY_MILLIS);
+        CountDownLatch latch = new CountDownLatch(3);
+        List<Uri> uris = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            writer.write(mContext, makeParams(), "TC@" + i, uri -> {
+                uris.add(uri);
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, writer.getFlushCount());
+        assertEquals(3, mWrittenParams.size());
+        // The listeners are informed in the order the calls were logged.
+        assertEquals(makeUri(0), uris.get(0));
+        assertEquals(makeUri(2), uris.get(2));
+    }
+
+    @SmallTest
+    @Test
+    public void testUnavailableProviderRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        CallLogWriter writer = new CallLogWriter((context, params) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new CallLogWriter.CallLogUnavailableException("provider unavailable");
+            }
+            return addCall(context, params);
+        }, 0 /* writeDelayMillis */);
+        CountDownLatch latch = new CountDownLatch(1);
+        Uri[] result = new Uri[1];
+        writer.write(mContext, makeParams(), "TC@1", uri -> {
+            result[0] = uri;
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(makeUri(0), result[0]);
+        assertEquals(2, attempts.get());
+        assertEquals(1, writer.getRetryCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testPermanentFailureNotRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        CallLogWriter writer = new CallLogWriter((context, params) -> {
+            attempts.incrementAndGet();
+            throw new IllegalArgumentException("encrypted");
+        }, 0 /* writeDelayMillis */);
+        CountDownLatch latch = new CountDownLatch(1);
+        Uri[] result = new Uri[] { Uri.EMPTY };
+        writer.write(mContext, makeParams(), "TC@1", uri -> {
+            result[0] = uri;
+            latch.countDown();
+        });
+
+        assertTrue(latch.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertNull(result[0]);
+        assertEquals(1, attempts.get());
+        assertEquals(0, writer.getRetryCount());
+    }
+
+    /**
+     * Verifies that a failure which may have happened after the row was added is not retried, so
+     * the call can't be logged twice.
+     */
+    @SmallTest
+    @Test
+    public void testOtherFailureNotRetried() throws Exception {
+        AtomicInteger attempts = new AtomicInteger(0);
+        CallLogWriter writer = new CallLogWriter((context, params) -> {
+            attempts.incrementAndGet();
+            addCall(context, params);
+            throw new IllegalStateException("failed after insert");
+        }, 0 /* writeDelayMillis */);
+        CountDownLatch latch = new CountDownLatch(1);
+        writer.write(mContext, makeParams(), "TC@1", uri -> latch.countDown());
+
+        assertTrue(latch.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        assertEquals(1, attempts.get());
+        assertEquals(1, mWrittenParams.size());
+        assertEquals(0, writer.getRetryCount());
+    }
+
+    /**
+     * Verifies that the writer thread quits once everything was written, and is started again by
+     * the next write.
+     */
+    @SmallTest
+    @Test
+    public void testWriterThreadQuitsWhenIdle() throws Exception {
+        CallLogWriter writer = new CallLogWriter(this::addCall, 0 /* writeDelayMillis */);
+        assertFalse(writer.isWriterThreadRunning());
+
+        for (int i = 0; i < 2; i++) {
+            CountDownLatch latch = new CountDownLatch(1);
+            writer.write(mContext, makeParams(), "TC@" + i, uri -> latch.countDown());
+            assertTrue(latch.await(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+            waitForWriterThreadToQuit(writer);
+        }
+        assertEquals(2, mWrittenParams.size());
+    }
+
+    private static void waitForWriterThreadToQuit(CallLogWriter writer) throws Exception {
+        long deadline = System.currentTimeMillis() + TEST_TIMEOUT;
+        while (writer.isWriterThreadRunning()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private Uri addCall(Context context, CallLog.AddCallParams params) {
+        synchronized (mWrittenParams) {
+            mWrittenParams.add(params);
+            return makeUri(mWrittenParams.size() - 1);
+        }
+    }
+
+    private static Uri makeUri(int id) {
+        return Uri.withAppendedPath(CallLog.Calls.CONTENT_URI, String.valueOf(id));
+    }
+
+    private static CallLog.AddCallParams makeParams() {
+        return new CallLog.AddCallParams.AddCallParametersBuilder()
+                .setCallType(CallLog.Calls.MISSED_TYPE)
+                .build();
+    }
+}
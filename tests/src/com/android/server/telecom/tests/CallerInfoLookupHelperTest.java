@@ -17,21 +17,25 @@
 package com.android.server.telecom.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import android.content.ContentResolver;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.os.UserHandle;
 import android.telecom.CallerInfo;
 import android.telecom.CallerInfoAsyncQuery;
 import android.telecom.Logging.Session;
@@ -59,6 +63,7 @@ import java.util.concurrent.CountDownLatch;
 @RunWith(JUnit4.class)
 public class CallerInfoLookupHelperTest extends TelecomTestCase {
     @Mock Context mContext;
+    @Mock ContentResolver mContentResolver;
     @Mock CallerInfoAsyncQueryFactory mFactory;
     @Mock ContactsAsyncHelper mContactsAsyncHelper;
     @Mock Drawable mDrawable2;
@@ -81,6 +86,7 @@ public class CallerInfoLookupHelperTest extends TelecomTestCase {
     @Before
     public void setUp() throws Exception {
         super.setUp();
+        when(mContext.getContentResolver()).thenReturn(mContentResolver);
         mCallerInfoLookupHelper = new CallerInfoLookupHelper(mContext,
                 mFactory, mContactsAsyncHelper, new TelecomSystem.SyncRoot() { });
         when(mFactory.startQuery(anyInt(), eq(mContext), anyString(),
@@ -239,6 +245,116 @@ public class CallerInfoLookupHelperTest extends TelecomTestCase {
         verifyProperCleanup();
     }
 
+    @SmallTest
+    @Test
+    public void testRepeatedLookupServedFromCacheUntilContactsChange() {
+        CallerInfoLookupHelper.OnQueryCompleteListener listener = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        CallerInfoLookupHelper.OnQueryCompleteListener cachedListener = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        mCallerInfo1.setName("Foo");
+        mCallerInfo1.SetContactDisplayPhotoUri(CONTACTS_PHOTO_URI);
+        lookUpWithPhoto(URI1, listener);
+
+        // A differently formatted version of the same number is answered from the cache, with a
+        // copy of the caller info.
+        Uri sameNumber = Uri.parse("tel:5555557010");
+        mCallerInfoLookupHelper.startLookup(sameNumber, cachedListener);
+        ArgumentCaptor<CallerInfo> callerInfoCaptor = ArgumentCaptor.forClass(CallerInfo.class);
+        verify(cachedListener).onCallerInfoQueryComplete(eq(sameNumber),
+                callerInfoCaptor.capture());
+        verify(cachedListener).onContactPhotoQueryComplete(sameNumber,
+                callerInfoCaptor.getValue());
+        CallerInfo cached = callerInfoCaptor.getValue();
+        assertNotSame(mCallerInfo1, cached);
+        assertEquals("Foo", cached.getName());
+        assertEquals(mDrawable1, cached.cachedPhoto);
+        assertEquals(mBitmap, cached.cachedPhotoIcon);
+        verify(mFactory, times(1)).startQuery(anyInt(), eq(mContext), anyString(), any(), any());
+        verify(mContactsAsyncHelper, times(1)).startObtainPhotoAsync(anyInt(), eq(mContext),
+                any(), any(), any());
+
+        // Once the contacts change, the number is looked up again.
+        mCallerInfoLookupHelper.getContactsObserver().onChange(false);
+        mCallerInfoLookupHelper.startLookup(URI1, listener);
+        waitForActionCompletion();
+        verify(mFactory, times(2)).startQuery(anyInt(), eq(mContext),
+                eq(URI1.getSchemeSpecificPart()), any(), any());
+        verify(cachedListener, never()).onCallerInfoQueryComplete(eq(URI1), any());
+    }
+
+    @SmallTest
+    @Test
+    public void testListenersDoNotShareCachedCallerInfo() {
+        CallerInfoLookupHelper.OnQueryCompleteListener listener = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        mCallerInfo1.SetContactDisplayPhotoUri(CONTACTS_PHOTO_URI);
+        lookUpWithPhoto(URI1, listener);
+
+        CallerInfoLookupHelper.OnQueryCompleteListener first = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        CallerInfoLookupHelper.OnQueryCompleteListener second = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        ArgumentCaptor<CallerInfo> firstCaptor = ArgumentCaptor.forClass(CallerInfo.class);
+        ArgumentCaptor<CallerInfo> secondCaptor = ArgumentCaptor.forClass(CallerInfo.class);
+        mCallerInfoLookupHelper.startLookup(URI1, first);
+        verify(first).onCallerInfoQueryComplete(eq(URI1), firstCaptor.capture());
+
+        // A destroyed call drops the photo of its caller info; that must not affect other calls.
+        firstCaptor.getValue().cachedPhoto = null;
+        firstCaptor.getValue().cachedPhotoIcon = null;
+        mCallerInfoLookupHelper.startLookup(URI1, second);
+        verify(second).onCallerInfoQueryComplete(eq(URI1), secondCaptor.capture());
+        assertNotSame(firstCaptor.getValue(), secondCaptor.getValue());
+        assertEquals(mDrawable1, secondCaptor.getValue().cachedPhoto);
+        assertEquals(mBitmap, secondCaptor.getValue().cachedPhotoIcon);
+    }
+
+    @SmallTest
+    @Test
+    public void testUserSwitchDropsCachedLookups() {
+        CallerInfoLookupHelper.OnQueryCompleteListener listener = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        CallerInfoLookupHelper.OnQueryCompleteListener otherUserListener = mock(
+                CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        mCallerInfo1.SetContactDisplayPhotoUri(CONTACTS_PHOTO_URI);
+        lookUpWithPhoto(URI1, listener);
+
+        mCallerInfoLookupHelper.onUserSwitch(UserHandle.of(10));
+        mCallerInfoLookupHelper.startLookup(URI1, otherUserListener);
+        waitForActionCompletion();
+        verify(mFactory, times(2)).startQuery(anyInt(), eq(mContext),
+                eq(URI1.getSchemeSpecificPart()), any(), any());
+        verify(otherUserListener, never()).onCallerInfoQueryComplete(any(), any());
+    }
+
+    /**
+     * Looks up a number whose contact has a photo, completing the caller info and photo queries
+     * with {@link #mCallerInfo1} and {@link #mDrawable1}.
+     */
+    private void lookUpWithPhoto(Uri handle,
+            CallerInfoLookupHelper.OnQueryCompleteListener listener) {
+        mCallerInfoLookupHelper.startLookup(handle, listener);
+        waitForActionCompletion();
+
+        ArgumentCaptor<CallerInfoAsyncQuery.OnQueryCompleteListener> queryListenerCaptor =
+                ArgumentCaptor.forClass(CallerInfoAsyncQuery.OnQueryCompleteListener.class);
+        ArgumentCaptor<Session> logSessionCaptor = ArgumentCaptor.forClass(Session.class);
+        verify(mFactory).startQuery(anyInt(), eq(mContext), eq(handle.getSchemeSpecificPart()),
+                queryListenerCaptor.capture(), logSessionCaptor.capture());
+        queryListenerCaptor.getValue().onQueryComplete(
+                0, logSessionCaptor.getValue(), mCallerInfo1);
+        waitForActionCompletion();
+
+        ArgumentCaptor<ContactsAsyncHelper.OnImageLoadCompleteListener> imageListenerCaptor =
+                ArgumentCaptor.forClass(ContactsAsyncHelper.OnImageLoadCompleteListener.class);
+        verify(mContactsAsyncHelper).startObtainPhotoAsync(anyInt(), eq(mContext),
+                eq(CONTACTS_PHOTO_URI), imageListenerCaptor.capture(), logSessionCaptor.capture());
+        imageListenerCaptor.getValue().onImageLoadComplete(0, mDrawable1, mBitmap,
+                logSessionCaptor.getValue());
+        verifyProperCleanup();
+    }
+
     private void verifyProperCleanup() {
         assertEquals(0, mCallerInfoLookupHelper.getCallerInfoEntries().size());
     }
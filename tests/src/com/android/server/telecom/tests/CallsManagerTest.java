@@ -101,6 +101,7 @@ import com.android.server.telecom.CallDiagnosticServiceController;
 import com.android.server.telecom.CallEndpointController;
 import com.android.server.telecom.CallEndpointControllerFactory;
 import com.android.server.telecom.CallState;
+import com.android.server.telecom.CallStateSnapshot;
 import com.android.server.telecom.CallerInfoLookupHelper;
 import com.android.server.telecom.CallsManager;
 import com.android.server.telecom.callsequencing.CallSequencingController;
@@ -130,6 +131,7 @@ import com.android.server.telecom.Ringer;
 import com.android.server.telecom.RoleManagerAdapter;
 import com.android.server.telecom.SystemStateHelper;
 import com.android.server.telecom.TelecomSystem;
+import com.android.server.telecom.TelecomTimerService;
 import com.android.server.telecom.Timeouts;
 import com.android.server.telecom.WiredHeadsetManager;
 import com.android.server.telecom.bluetooth.BluetoothDeviceManager;
@@ -1713,6 +1715,33 @@ public class CallsManagerTest extends TelecomTestCase {
         assertTrue(mCallsManager.isInEmergencyCall());
     }
 
+    @SmallTest
+    @Test
+    public void testCallStateSnapshotPublishedOnCallChanges() {
+        CallStateSnapshot initialSnapshot = mCallsManager.getCallStateSnapshot();
+        assertFalse(initialSnapshot.hasRingingOrSimulatedRingingCall());
+
+        // Adding a call publishes a new snapshot.
+        Call ringingCall = addSpyCall(CallState.RINGING);
+        CallStateSnapshot snapshot = mCallsManager.getCallStateSnapshot();
+        assertTrue(snapshot.getVersion() > initialSnapshot.getVersion());
+        assertEquals(1, snapshot.getNumCallsWithState(CallState.RINGING));
+        assertTrue(snapshot.hasRingingOrSimulatedRingingCall());
+        assertTrue(snapshot.hasOngoingCalls(UserHandle.CURRENT_OR_SELF, true));
+        assertFalse(snapshot.isInEmergencyCall());
+
+        // Connection property changes can make the call an emergency call.
+        ringingCall.setConnectionProperties(Connection.PROPERTY_NETWORK_IDENTIFIED_EMERGENCY_CALL);
+        assertTrue(mCallsManager.getCallStateSnapshot().isInEmergencyCall());
+
+        // Removing the call publishes an empty snapshot.
+        mCallsManager.removeCall(ringingCall);
+        snapshot = mCallsManager.getCallStateSnapshot();
+        assertEquals(0, snapshot.getNumCallsWithState(CallState.RINGING));
+        assertFalse(snapshot.hasRingingOrSimulatedRingingCall());
+        assertFalse(snapshot.hasOngoingCalls(UserHandle.CURRENT_OR_SELF, true));
+    }
+
     @SmallTest
     @Test
     public void testIsInEmergencyCallLocalDisconnected() {
@@ -3260,7 +3289,7 @@ public class CallsManagerTest extends TelecomTestCase {
                 SIM_1_ACCOUNT.getAccountHandle().getComponentName(), null,
                 mPhoneAccountRegistrar, mCallsManager, mContext, mLock, null, mFeatureFlags);
         TestScheduledExecutorService scheduledExecutorService = new TestScheduledExecutorService();
-        service.setScheduledExecutorService(scheduledExecutorService);
+        service.setTimerService(new TelecomTimerService(scheduledExecutorService));
         Call call = addSpyCall();
         service.addCall(call);
         when(call.isCreateConnectionComplete()).thenReturn(false);
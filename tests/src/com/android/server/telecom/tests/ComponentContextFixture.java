@@ -849,6 +849,10 @@ public class ComponentContextFixture implements TestFixture<Context> {
         when(mResources.getBoolean(eq(id))).thenReturn(value);
     }
 
+    public void putIntegerResource(int id, int value) {
+        when(mResources.getInteger(eq(id))).thenReturn(value);
+    }
+
     public void putStringArrayResource(int id, String[] value) {
         when(mResources.getStringArray(eq(id))).thenReturn(value);
     }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.UserHandle;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.internal.telecom.IConnectionService;
+import com.android.internal.util.IndentingPrintWriter;
+import com.android.server.telecom.CallsManager;
+import com.android.server.telecom.ConnectionServiceRepository;
+import com.android.server.telecom.ConnectionServiceWrapper;
+import com.android.server.telecom.DefaultDialerCache;
+import com.android.server.telecom.PhoneAccountRegistrar;
+import com.android.server.telecom.R;
+import com.android.server.telecom.TelecomSystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+
+import java.io.StringWriter;
+
+@RunWith(JUnit4.class)
+public class ConnectionServiceRepositoryTest extends TelecomTestCase {
+    private static final int KEEP_WARM_MILLIS = 200;
+    private static final int TEST_TIMEOUT = 1000;
+    private static final UserHandle USER = Process.myUserHandle();
+    private static final PhoneAccountHandle SIM_ACCOUNT = new PhoneAccountHandle(
+            new ComponentName("com.foo", "com.foo.SimConnectionService"), "sim", USER);
+    private static final PhoneAccountHandle VOIP_ACCOUNT = new PhoneAccountHandle(
+            new ComponentName("com.bar", "com.bar.VoipConnectionService"), "voip", USER);
+
+    @Mock private PhoneAccountRegistrar mPhoneAccountRegistrar;
+    @Mock private CallsManager mCallsManager;
+    @Mock private DefaultDialerCache mDefaultDialerCache;
+    @Mock private IConnectionService mSimService;
+    @Mock private IConnectionService mVoipService;
+
+    private ConnectionServiceRepository mRepository;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        when(mSimService.asBinder()).thenReturn(mock(IBinder.class));
+        when(mVoipService.asBinder()).thenReturn(mock(IBinder.class));
+        mComponentContextFixture.addConnectionService(SIM_ACCOUNT.getComponentName(),
+                mSimService);
+        mComponentContextFixture.addConnectionService(VOIP_ACCOUNT.getComponentName(),
+                mVoipService);
+        mComponentContextFixture.putIntegerResource(R.integer.connection_service_keep_warm_millis,
+                KEEP_WARM_MILLIS);
+        setDefaultAccount(SIM_ACCOUNT);
+        mRepository = new ConnectionServiceRepository(mPhoneAccountRegistrar, mContext,
+                new TelecomSystem.SyncRoot() { }, mCallsManager, mFeatureFlags,
+                mDefaultDialerCache);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        mRepository.getHandler().removeCallbacksAndMessages(null);
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that the default connection service stays bound after its last call, and is
+     * unbound once the keep warm grace period passes.
+     */
+    @SmallTest
+    @Test
+    public void testDefaultServiceStaysBoundUntilKeepWarmExpires() {
+        ConnectionServiceWrapper service = bindAndPlaceCall(SIM_ACCOUNT);
+
+        service.decrementAssociatedCallCount();
+        assertTrue(service.isServiceValid("test"));
+
+        waitForHandlerActionDelayed(mRepository.getHandler(), TEST_TIMEOUT,
+                KEEP_WARM_MILLIS + 50);
+        assertFalse(service.isServiceValid("test"));
+    }
+
+    /**
+     * Verifies that a call placed during the grace period reuses the binding and cancels the
+     * pending unbind.
+     */
+    @SmallTest
+    @Test
+    public void testCallDuringGracePeriodReusesBinding() {
+        ConnectionServiceWrapper service = bindAndPlaceCall(SIM_ACCOUNT);
+        service.decrementAssociatedCallCount();
+
+        service.incrementAssociatedCallCount();
+        waitForHandlerActionDelayed(mRepository.getHandler(), TEST_TIMEOUT,
+                KEEP_WARM_MILLIS + 50);
+
+        assertTrue(service.isServiceValid("test"));
+        verify(mContext, times(1)).bindServiceAsUser(any(Intent.class),
+                any(ServiceConnection.class), anyInt(), eq(USER));
+        // Both the prebound binding and the one kept warm were reused.
+        assertTrue(dump().contains("reused=2"));
+    }
+
+    /**
+     * Verifies that a connection service which is not the user's default is still unbound as
+     * soon as its last call ends.
+     */
+    @SmallTest
+    @Test
+    public void testNonDefaultServiceUnbindsImmediately() {
+        ConnectionServiceWrapper service = bindAndPlaceCall(SIM_ACCOUNT);
+        setDefaultAccount(VOIP_ACCOUNT);
+
+        service.decrementAssociatedCallCount();
+
+        assertFalse(service.isServiceValid("test"));
+    }
+
+    /**
+     * Verifies that prebinding skips a default connection service which already has calls.
+     */
+    @SmallTest
+    @Test
+    public void testPrebindSkipsBusyServices() {
+        ConnectionServiceWrapper service = mRepository.getService(
+                SIM_ACCOUNT.getComponentName(), USER);
+        service.incrementAssociatedCallCount();
+
+        mRepository.prebindDefaultServices(USER);
+
+        assertFalse(service.isServiceValid("test"));
+        verify(mContext, never()).bindServiceAsUser(any(Intent.class),
+                any(ServiceConnection.class), anyInt(), any(UserHandle.class));
+    }
+
+    /**
+     * Binds the connection service of the given account ahead of a call, then places a call with
+     * it.
+     */
+    private ConnectionServiceWrapper bindAndPlaceCall(PhoneAccountHandle handle) {
+        mRepository.prebindDefaultServices(USER);
+        ConnectionServiceWrapper service = mRepository.getService(handle.getComponentName(),
+                USER);
+        assertTrue(service.isServiceValid("test"));
+        service.incrementAssociatedCallCount();
+        return service;
+    }
+
+    private void setDefaultAccount(PhoneAccountHandle handle) {
+        when(mPhoneAccountRegistrar.getOutgoingPhoneAccountForScheme(
+                eq(PhoneAccount.SCHEME_TEL), eq(USER))).thenReturn(handle);
+    }
+
+    private String dump() {
+        StringWriter stringWriter = new StringWriter();
+        mRepository.dump(new IndentingPrintWriter(stringWriter, "  "));
+        return stringWriter.toString();
+    }
+}
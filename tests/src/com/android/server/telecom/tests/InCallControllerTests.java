@@ -432,6 +432,51 @@ public class InCallControllerTests extends TelecomTestCase {
         assertNull(bindIntent.getExtras());
     }
 
+    @MediumTest
+    @Test
+    public void testPrebindToServices_UnbindsWhenCallBlocked() throws Exception {
+        setupPrebindingIncomingCall();
+        mInCallController.prebindToServices(mMockCall);
+        verify(mMockContext).bindServiceAsUser(any(Intent.class), any(ServiceConnection.class),
+                eq(serviceBindingFlags), eq(mUserHandle));
+
+        // The call was blocked, so it was never added.
+        when(mMockCallsManager.getCalls()).thenReturn(Collections.emptyList());
+        mInCallController.onPrebindingCallFiltered(mMockCall);
+        verify(mMockContext).unbindService(any(ServiceConnection.class));
+    }
+
+    @MediumTest
+    @Test
+    public void testPrebindToServices_StaysBoundWhenCallAllowed() throws Exception {
+        setupPrebindingIncomingCall();
+        mInCallController.prebindToServices(mMockCall);
+
+        when(mMockCallsManager.getCalls()).thenReturn(Collections.singletonList(mMockCall));
+        mInCallController.onCallAdded(mMockCall);
+        mInCallController.onPrebindingCallFiltered(mMockCall);
+
+        // Binding once during filtering is enough; adding the call must not bind again.
+        verify(mMockContext).bindServiceAsUser(any(Intent.class), any(ServiceConnection.class),
+                eq(serviceBindingFlags), eq(mUserHandle));
+        verify(mMockContext, never()).unbindService(any(ServiceConnection.class));
+    }
+
+    private void setupPrebindingIncomingCall() {
+        when(mMockCallsManager.getCurrentUserHandle()).thenReturn(mUserHandle);
+        when(mMockContext.getPackageManager()).thenReturn(mMockPackageManager);
+        when(mMockCallsManager.isInEmergencyCall()).thenReturn(false);
+        when(mMockCall.isIncoming()).thenReturn(true);
+        when(mMockCall.isExternalCall()).thenReturn(false);
+        when(mMockCall.getAssociatedUser()).thenReturn(mUserHandle);
+        when(mMockCall.getTargetPhoneAccount()).thenReturn(PA_HANDLE);
+        when(mTimeoutsAdapter.getEmergencyCallbackWindowMillis(any(ContentResolver.class)))
+                .thenReturn(300_000L);
+        when(mMockContext.bindServiceAsUser(any(Intent.class), any(ServiceConnection.class),
+                anyInt(), eq(mUserHandle))).thenReturn(true);
+        setupMockPackageManager(false /* default */, true /* system */, false /* external calls */);
+    }
+
     @MediumTest
     @Test
     public void testBindToService_NoServicesFound_OutgoingCall() throws Exception {
@@ -1305,6 +1350,55 @@ public class InCallControllerTests extends TelecomTestCase {
         verify(mockInCallService).addCall(any(ParcelableCall.class));
     }
 
+    /**
+     * Ensures that state broadcasts reach an {@link InCallService} only while it is connected.
+     */
+    @MediumTest
+    @Test
+    public void testBroadcastsFollowServiceConnection() throws Exception {
+        when(mMockCallsManager.getCurrentUserHandle()).thenReturn(mUserHandle);
+        when(mMockContext.getPackageManager()).thenReturn(mMockPackageManager);
+        when(mMockCallsManager.isInEmergencyCall()).thenReturn(false);
+        when(mMockCall.isIncoming()).thenReturn(true);
+        when(mMockCall.isExternalCall()).thenReturn(false);
+        when(mMockCall.getTargetPhoneAccount()).thenReturn(PA_HANDLE);
+        when(mDefaultDialerCache.getDefaultDialerApplication(CURRENT_USER_ID)).thenReturn(DEF_PKG);
+        when(mMockContext.bindServiceAsUser(nullable(Intent.class),
+                nullable(ServiceConnection.class), anyInt(), nullable(UserHandle.class)))
+                .thenReturn(true);
+        when(mMockCallsManager.getCalls()).thenReturn(Collections.singletonList(mMockCall));
+        setupMockPackageManager(true /* default */, true /* system */, false /* external calls */);
+        mInCallController.bindToServices(mMockCall);
+
+        ArgumentCaptor<ServiceConnection> serviceConnectionCaptor =
+                ArgumentCaptor.forClass(ServiceConnection.class);
+        verify(mMockContext, times(1)).bindServiceAsUser(
+                any(Intent.class),
+                serviceConnectionCaptor.capture(),
+                eq(serviceBindingFlags),
+                eq(mUserHandle));
+
+        // Nothing is bound yet.
+        mInCallController.onMuteStateChanged(true);
+
+        ServiceConnection serviceConnection = serviceConnectionCaptor.getValue();
+        ComponentName defDialerComponentName = new ComponentName(DEF_PKG, DEF_CLASS);
+        IBinder mockBinder = mock(IBinder.class);
+        IInCallService mockInCallService = mock(IInCallService.class);
+        when(mockBinder.queryLocalInterface(anyString())).thenReturn(mockInCallService);
+        serviceConnection.onServiceConnected(defDialerComponentName, mockBinder);
+
+        mInCallController.onMuteStateChanged(false);
+        mInCallController.onCanAddCallChanged(true);
+        verify(mockInCallService).onMuteStateChanged(false);
+        verify(mockInCallService, never()).onMuteStateChanged(true);
+        verify(mockInCallService).onCanAddCallChanged(true);
+
+        serviceConnection.onServiceDisconnected(defDialerComponentName);
+        mInCallController.onMuteStateChanged(true);
+        verify(mockInCallService, never()).onMuteStateChanged(true);
+    }
+
     /**
      * Ensures that the {@link InCallController} will bind to an {@link InCallService} which
      * supports third party car mode ui calls
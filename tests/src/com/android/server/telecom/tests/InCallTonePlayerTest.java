@@ -16,6 +16,7 @@
 
 package com.android.server.telecom.tests;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -24,6 +25,7 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -197,6 +199,29 @@ public class InCallTonePlayerTest extends TelecomTestCase {
         assertFalse(mInCallTonePlayer.startTone());
     }
 
+    @SmallTest
+    @Test
+    public void testPrewarmedToneGeneratorReused() {
+        mFactory.prewarm();
+        waitForHandlerAction(mFactory.getToneEngine().getHandler(), TEST_TIMEOUT);
+        verify(mToneGeneratorFactory).get(anyInt(), anyInt());
+
+        when(mAudioManagerAdapter.isVolumeOverZero()).thenReturn(true);
+        for (int i = 0; i < 2; i++) {
+            mInCallTonePlayer = mFactory.createPlayer(mCall, InCallTonePlayer.TONE_RING_BACK);
+            assertTrue(mInCallTonePlayer.startTone());
+            waitForHandlerAction(mFactory.getToneEngine().getHandler(), TEST_TIMEOUT);
+            mInCallTonePlayer.stopTone();
+            waitForHandlerAction(mFactory.getToneEngine().getHandler(), TEST_TIMEOUT);
+        }
+
+        // Both tones were played on the prewarmed tone generator.
+        verify(mToneGenerator, times(2)).startTone(anyInt());
+        verify(mToneGeneratorFactory).get(anyInt(), anyInt());
+        assertEquals(2, mFactory.getToneEngine().getWarmStartCount());
+        mFactory.releaseWarmResources();
+    }
+
     @SmallTest
     @Test
     public void testEndCallToneWhenNotSilenced() {
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import android.content.ComponentName;
+import android.os.Handler;
+import android.os.Looper;
+import android.telecom.ParcelableCall;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.Call;
+import com.android.server.telecom.InCallController;
+import com.android.server.telecom.InCallUpdateCoalescer;
+import com.android.server.telecom.TelecomSystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+
+@RunWith(JUnit4.class)
+public class InCallUpdateCoalescerTest extends TelecomTestCase {
+    private static final long TEST_TIMEOUT = 5000L;
+    private static final String TEST_PACKAGE = "com.android.server.telecom.tests";
+
+    @Mock InCallUpdateCoalescer.Sender mSender;
+    @Mock Call mCall;
+    @Mock Call mOtherCall;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final TelecomSystem.SyncRoot mLock = new TelecomSystem.SyncRoot() { };
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testUpdatesCoalescedUntilEndOfHandlerTurn() {
+        InCallUpdateCoalescer coalescer = new InCallUpdateCoalescer(mHandler, mLock, mSender,
+                true /* isCoalescingEnabled */);
+        synchronized (mLock) {
+            coalescer.requestUpdate(mCall, false, false, TEST_PACKAGE);
+            coalescer.requestUpdate(mCall, true /* videoProviderChanged */, false, null);
+            coalescer.requestUpdate(mCall, false, false, null);
+            coalescer.requestUpdate(mOtherCall, false, true /* rttInfoChanged */, TEST_PACKAGE);
+        }
+        verify(mSender, never()).sendCallUpdate(any(), anyBoolean(), anyBoolean(), any());
+
+        waitForHandlerAction(mHandler, TEST_TIMEOUT);
+        // The merged update for mCall must reach TEST_PACKAGE too.
+        verify(mSender).sendCallUpdate(mCall, true, false, null);
+        verify(mSender).sendCallUpdate(mOtherCall, false, true, TEST_PACKAGE);
+        assertEquals(2, coalescer.getCoalescedCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testFlushSendsPendingUpdates() {
+        InCallUpdateCoalescer coalescer = new InCallUpdateCoalescer(mHandler, mLock, mSender,
+                true /* isCoalescingEnabled */);
+        synchronized (mLock) {
+            coalescer.requestUpdate(mCall, false, false, null);
+            coalescer.flush();
+        }
+        verify(mSender).sendCallUpdate(mCall, false, false, null);
+
+        // Nothing is left to send at the end of the handler turn.
+        waitForHandlerAction(mHandler, TEST_TIMEOUT);
+        verify(mSender).sendCallUpdate(any(), anyBoolean(), anyBoolean(), any());
+    }
+
+    @SmallTest
+    @Test
+    public void testUpdatesSentImmediatelyWhenCoalescingDisabled() {
+        InCallUpdateCoalescer coalescer = new InCallUpdateCoalescer(mHandler, mLock, mSender,
+                false /* isCoalescingEnabled */);
+        coalescer.requestUpdate(mCall, false, false, TEST_PACKAGE);
+        verify(mSender).sendCallUpdate(mCall, false, false, TEST_PACKAGE);
+        coalescer.requestUpdate(mCall, false, false, null);
+        verify(mSender).sendCallUpdate(mCall, false, false, null);
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testUnchangedUpdatesSuppressedForOptedInServices() {
+        InCallUpdateCoalescer coalescer = new InCallUpdateCoalescer(mHandler, mLock, mSender,
+                true /* isCoalescingEnabled */);
+        InCallController.InCallServiceInfo optedIn = makeInfo("OptedIn");
+        optedIn.setUnchangedUpdateSuppressionEnabled(true);
+        InCallController.InCallServiceInfo notOptedIn = makeInfo("NotOptedIn");
+        ParcelableCall dialing = makeParcelableCall(android.telecom.Call.STATE_DIALING);
+        ParcelableCall active = makeParcelableCall(android.telecom.Call.STATE_ACTIVE);
+
+        assertTrue(coalescer.shouldSendUpdate(optedIn, mCall, dialing));
+        assertFalse(coalescer.shouldSendUpdate(optedIn, mCall,
+                makeParcelableCall(android.telecom.Call.STATE_DIALING)));
+        assertTrue(coalescer.shouldSendUpdate(optedIn, mOtherCall, dialing));
+        assertTrue(coalescer.shouldSendUpdate(optedIn, mCall, active));
+
+        // After the full call is re-sent, the next update is sent even if unchanged.
+        coalescer.forgetCallForService(optedIn, mCall);
+        assertTrue(coalescer.shouldSendUpdate(optedIn, mCall, active));
+
+        assertTrue(coalescer.shouldSendUpdate(notOptedIn, mCall, active));
+        assertTrue(coalescer.shouldSendUpdate(notOptedIn, mCall, active));
+        assertEquals(1, coalescer.getSuppressedUnchangedCount());
+    }
+
+    private static InCallController.InCallServiceInfo makeInfo(String className) {
+        return new InCallController.InCallServiceInfo(
+                new ComponentName(TEST_PACKAGE, TEST_PACKAGE + "." + className),
+                false /* isExternalCallsSupported */, false /* isSelfManageCallsSupported */,
+                0 /* type */, false /* hasCrossUserOrProfilePerm */);
+    }
+
+    private static ParcelableCall makeParcelableCall(int state) {
+        return new ParcelableCall.ParcelableCallBuilder()
+                .setId("TC@1")
+                .setState(state)
+                .createParcelableCall();
+    }
+}
@@ -37,6 +37,7 @@ import com.android.server.telecom.TelecomSystem;
 import com.android.server.telecom.Timeouts;
 import com.android.server.telecom.callfiltering.CallFilter;
 import com.android.server.telecom.callfiltering.CallFilterResultCallback;
+import com.android.server.telecom.callfiltering.CallFilteringExecutor;
 import com.android.server.telecom.callfiltering.CallFilteringResult;
 import com.android.server.telecom.callfiltering.DndCallFilter;
 import com.android.server.telecom.callfiltering.IncomingCallFilterGraph;
@@ -186,6 +187,27 @@ public class IncomingCallFilterGraphTest extends TelecomTestCase {
         assertEquals(REJECT_CALL_RESULT, testResult.get(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
     }
 
+    /**
+     * Verify that graphs run on the shared filtering executor and that the graph timeout is
+     * cancelled on the shared timer once filtering completes.
+     */
+    @SmallTest
+    @Test
+    public void testGraphTimeoutCancelledOnCompletion() throws Exception {
+        CompletableFuture<CallFilteringResult> testResult = new CompletableFuture<>();
+        CallFilterResultCallback listener = (call, result, timeout) -> testResult.complete(result);
+
+        IncomingCallFilterGraph graph = new IncomingCallFilterGraph(mCall, listener, mContext,
+                mTimeoutsAdapter, mFeatureFlags, mLock);
+        graph.addFilter(new AllowFilter());
+        graph.performFiltering();
+
+        assertEquals(PASS_CALL_RESULT, testResult.get(TEST_TIMEOUT, TimeUnit.MILLISECONDS));
+        Handler timerHandler = CallFilteringExecutor.getInstance().getTimerHandler();
+        waitForHandlerAction(timerHandler, TEST_TIMEOUT);
+        assertFalse(timerHandler.hasMessages(0, graph));
+    }
+
     /**
      * Verify that when the Call Filtering Graph times out, already completed filters are combined.
      * Graph being tested:
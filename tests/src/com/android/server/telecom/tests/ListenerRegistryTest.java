@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.LatencyHistogram;
+import com.android.server.telecom.ListenerRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class ListenerRegistryTest extends TelecomTestCase {
+    private static final int EVENT_A = 0;
+    private static final int EVENT_B = 1;
+    private static final String[] EVENT_NAMES = { "a", "b" };
+
+    private final List<String> mDispatched = new ArrayList<>();
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testDispatchOnlyToSubscribedListeners() {
+        ListenerRegistry<String> registry = new ListenerRegistry<>("test", EVENT_NAMES);
+        registry.add("all");
+        registry.add("onlyB", ListenerRegistry.eventMask(EVENT_B));
+
+        registry.dispatch(EVENT_A, mDispatched::add);
+        assertEquals(List.of("all"), mDispatched);
+
+        mDispatched.clear();
+        registry.dispatch(EVENT_B, mDispatched::add);
+        assertEquals(List.of("all", "onlyB"), mDispatched);
+        assertEquals(2, registry.getDispatchCount("all"));
+        assertEquals(1, registry.getDispatchCount("onlyB"));
+    }
+
+    @SmallTest
+    @Test
+    public void testAddIgnoresDuplicatesAndRemoveUnsubscribes() {
+        ListenerRegistry<String> registry = new ListenerRegistry<>("test", EVENT_NAMES);
+        String listener = "listener";
+        assertTrue(registry.add(listener));
+        assertFalse(registry.add(listener));
+        assertEquals(1, registry.size());
+
+        assertTrue(registry.remove(listener));
+        assertFalse(registry.contains(listener));
+        registry.dispatch(EVENT_A, mDispatched::add);
+        assertTrue(mDispatched.isEmpty());
+    }
+
+    @SmallTest
+    @Test
+    public void testDispatchUntilHandledStopsAtFirstHandler() {
+        ListenerRegistry<String> registry = new ListenerRegistry<>("test", EVENT_NAMES);
+        registry.add("first");
+        registry.add("second");
+        registry.add("third");
+
+        assertTrue(registry.dispatchUntilHandled(EVENT_A, l -> {
+            mDispatched.add(l);
+            return l.equals("second");
+        }));
+        assertEquals(List.of("first", "second"), mDispatched);
+        assertEquals(0, registry.getDispatchCount("third"));
+    }
+
+    @SmallTest
+    @Test
+    public void testHistogramsRecordedPerEvent() {
+        ListenerRegistry<String> registry = new ListenerRegistry<>("test", EVENT_NAMES,
+                true /* recordHistograms */);
+        registry.add("listener");
+
+        registry.dispatch(EVENT_B, mDispatched::add);
+        registry.dispatch(EVENT_B, mDispatched::add);
+
+        assertNull(registry.getHistogram("listener", EVENT_A));
+        LatencyHistogram histogram = registry.getHistogram("listener", EVENT_B);
+        assertEquals(2, histogram.getCount());
+    }
+
+    @SmallTest
+    @Test
+    public void testSlowDispatchCounted() {
+        ListenerRegistry<String> registry = new ListenerRegistry<>("test", EVENT_NAMES);
+        registry.setSlowDispatchThresholdMillis(1);
+        registry.add("fast");
+        registry.add("slow");
+
+        registry.dispatch(EVENT_A, l -> {
+            if (l.equals("slow")) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    // Ignore
+                }
+            }
+        });
+
+        assertEquals(0, registry.getSlowDispatchCount("fast"));
+        assertEquals(1, registry.getSlowDispatchCount("slow"));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.LockProfiler;
+import com.android.server.telecom.TelecomSystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class LockProfilerTest extends TelecomTestCase {
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testSectionsRecordedOnlyWhenEnabled() {
+        LockProfiler profiler = new LockProfiler(false /* isEnabled */);
+        TelecomSystem.SyncRoot lock = new TelecomSystem.SyncRoot() {
+            @Override
+            public LockProfiler getLockProfiler() {
+                return profiler;
+            }
+        };
+        boolean[] ran = new boolean[1];
+
+        LockProfiler.runLocked(lock, "T.a", () -> ran[0] = Thread.holdsLock(lock));
+        assertTrue(ran[0]);
+        assertTrue(profiler.getSamples().isEmpty());
+
+        profiler.setEnabled(true);
+        LockProfiler.runLocked(lock, "T.a", () -> { });
+        LockProfiler.runLocked(lock, "T.b", () -> { });
+        List<LockProfiler.Sample> samples = profiler.getSamples();
+        assertEquals(2, samples.size());
+        assertEquals("T.a", samples.get(0).section);
+        assertEquals("T.b", samples.get(1).section);
+    }
+
+    @SmallTest
+    @Test
+    public void testRingBufferKeepsMostRecentSamples() {
+        LockProfiler profiler = new LockProfiler(true /* isEnabled */, 2 /* capacity */);
+        profiler.record("T.a", 10, 1);
+        profiler.record("T.b", 30, 1);
+        profiler.record("T.a", 30, 1);
+
+        List<LockProfiler.Sample> samples = profiler.getSamples();
+        assertEquals(2, samples.size());
+        assertEquals("T.b", samples.get(0).section);
+        assertEquals("T.a", samples.get(1).section);
+
+        // The totals cover every sample, not only those still in the ring buffer.
+        List<LockProfiler.SectionStats> sections = profiler.getMostContendedSections(1);
+        assertEquals(1, sections.size());
+        assertEquals("T.a", sections.get(0).section);
+        assertEquals(2, sections.get(0).count);
+        assertEquals(40, sections.get(0).totalWaitNanos);
+    }
+}
@@ -649,6 +649,84 @@ public class MissedCallNotifierImplTest extends TelecomTestCase {
                 nullable(Notification.class), eq(PRIMARY_USER));
     }
 
+    @SmallTest
+    @Test
+    public void testLoadTwoCallsFromIndex() throws Exception {
+        mComponentContextFixture.putBooleanResource(R.bool.index_missed_calls, true);
+        TelecomSystem.setInstance(mTelecomSystem);
+        when(mTelecomSystem.isBootComplete()).thenReturn(true);
+        CallerInfoLookupHelper mockCallerInfoLookupHelper = mock(CallerInfoLookupHelper.class);
+        MissedCallNotifier.CallInfoFactory mockCallInfoFactory =
+                mock(MissedCallNotifier.CallInfoFactory.class);
+
+        Uri queryUri = ContentProvider.maybeAddUserId(CallLog.Calls.CONTENT_URI,
+                PRIMARY_USER.getIdentifier());
+        IContentProvider cp = getContentProviderForUser(PRIMARY_USER.getIdentifier());
+        when(cp.query(any(), eq(queryUri), nullable(String[].class),
+                nullable(Bundle.class), nullable(ICancellationSignal.class)))
+                .thenAnswer(unused -> new MockMissedCallCursorBuilder()
+                        .addEntry(TEL_CALL_HANDLE.getSchemeSpecificPart(),
+                                CallLog.Calls.PRESENTATION_ALLOWED, CALL_TIMESTAMP)
+                        .addEntry(SIP_CALL_HANDLE.getSchemeSpecificPart(),
+                                CallLog.Calls.PRESENTATION_ALLOWED, CALL_TIMESTAMP)
+                        .build());
+
+        PhoneAccount phoneAccount = makePhoneAccount(PRIMARY_USER, NO_CAPABILITY);
+        MissedCallNotifier.CallInfo fakeCallInfo = makeFakeCallInfo(TEL_CALL_HANDLE,
+                CALLER_NAME, CALL_TIMESTAMP, phoneAccount.getAccountHandle());
+        when(mockCallInfoFactory.makeCallInfo(nullable(CallerInfo.class),
+                nullable(PhoneAccountHandle.class), nullable(Uri.class), eq(CALL_TIMESTAMP)))
+                .thenReturn(fakeCallInfo);
+
+        Notification.Builder builder1 = makeNotificationBuilder("builder1");
+        MissedCallNotifierImpl.NotificationBuilderFactory fakeBuilderFactory =
+                makeNotificationBuilderFactory(builder1);
+
+        MissedCallNotifier missedCallNotifier = new MissedCallNotifierImpl(mContext,
+                mPhoneAccountRegistrar, mDefaultDialerCache, fakeBuilderFactory,
+                mDeviceIdleControllerAdapter, mFeatureFlags);
+
+        Handler h = new Handler(Looper.getMainLooper());
+        h.post(() -> missedCallNotifier.reloadFromDatabase(
+                mockCallerInfoLookupHelper, mockCallInfoFactory, PRIMARY_USER));
+        waitForHandlerAction(h, TEST_TIMEOUT);
+
+        // Only the newest call is looked up; the notification shows the count of both.
+        Uri escapedTelHandle = Uri.fromParts(PhoneAccount.SCHEME_TEL,
+                TEL_CALL_HANDLE.getSchemeSpecificPart(), null);
+        ArgumentCaptor<CallerInfoLookupHelper.OnQueryCompleteListener> listenerCaptor =
+                ArgumentCaptor.forClass(CallerInfoLookupHelper.OnQueryCompleteListener.class);
+        verify(mockCallerInfoLookupHelper, timeout(TEST_TIMEOUT)).startLookup(eq(escapedTelHandle),
+                listenerCaptor.capture());
+        listenerCaptor.getValue().onCallerInfoQueryComplete(escapedTelHandle, new CallerInfo());
+        verify(mNotificationManager).notifyAsUser(nullable(String.class), eq(1),
+                nullable(Notification.class), eq(PRIMARY_USER));
+        verify(builder1).setContentText(String.format(MISSED_CALLS_MSG, 2));
+
+        // Reloading again without any change in the call log does not re-post it.
+        h.post(() -> missedCallNotifier.reloadFromDatabase(
+                mockCallerInfoLookupHelper, mockCallInfoFactory, PRIMARY_USER));
+        waitForHandlerAction(h, TEST_TIMEOUT);
+        verify(cp, timeout(TEST_TIMEOUT).times(2)).query(any(), eq(queryUri),
+                nullable(String[].class), nullable(Bundle.class),
+                nullable(ICancellationSignal.class));
+        waitForHandlerAction(h, TEST_TIMEOUT);
+        verify(mockCallerInfoLookupHelper, times(1)).startLookup(any(), any());
+
+        // After a restart of Telecom the notification is gone, so it is posted again.
+        MissedCallNotifier restartedNotifier = new MissedCallNotifierImpl(mContext,
+                mPhoneAccountRegistrar, mDefaultDialerCache, fakeBuilderFactory,
+                mDeviceIdleControllerAdapter, mFeatureFlags);
+        h.post(() -> restartedNotifier.reloadFromDatabase(
+                mockCallerInfoLookupHelper, mockCallInfoFactory, PRIMARY_USER));
+        waitForHandlerAction(h, TEST_TIMEOUT);
+        verify(mockCallerInfoLookupHelper, timeout(TEST_TIMEOUT).times(2)).startLookup(
+                eq(escapedTelHandle), listenerCaptor.capture());
+        listenerCaptor.getValue().onCallerInfoQueryComplete(escapedTelHandle, new CallerInfo());
+        verify(mNotificationManager, times(2)).notifyAsUser(nullable(String.class), eq(1),
+                nullable(Notification.class), eq(PRIMARY_USER));
+    }
+
     @SmallTest
     @Test
     public void testDialerHandleMissedCall() {
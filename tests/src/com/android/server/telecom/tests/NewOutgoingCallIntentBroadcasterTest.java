@@ -64,6 +64,7 @@ import com.android.server.telecom.PhoneNumberUtilsAdapterImpl;
 import com.android.server.telecom.RoleManagerAdapter;
 import com.android.server.telecom.SystemStateHelper;
 import com.android.server.telecom.TelecomSystem;
+import com.android.server.telecom.Timeouts;
 import com.android.server.telecom.flags.FeatureFlags;
 
 import org.junit.After;
@@ -111,6 +112,7 @@ public class NewOutgoingCallIntentBroadcasterTest extends TelecomTestCase {
         when(mCallsManager.getCurrentUserHandle()).thenReturn(mUserHandle);
         when(mCallsManager.getPhoneAccountRegistrar()).thenReturn(mPhoneAccountRegistrar);
         when(mCallsManager.getRoleManagerAdapter()).thenReturn(mRoleManagerAdapter);
+        when(mCallsManager.getTimeoutsAdapter()).thenReturn(new Timeouts.Adapter());
         when(mPhoneAccountRegistrar.getSubscriptionIdForPhoneAccount(
                 any(PhoneAccountHandle.class))).thenReturn(-1);
         when(mPhoneAccountRegistrar.getPhoneAccountUnchecked(
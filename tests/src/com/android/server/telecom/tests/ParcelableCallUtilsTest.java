@@ -4,6 +4,8 @@ import static com.android.server.telecom.TelecomSystem.SyncRoot;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
 import static junit.framework.Assert.assertTrue;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -124,6 +126,26 @@ public class ParcelableCallUtilsTest extends TelecomTestCase {
         assertTrue(parceledExtras.containsKey(Connection.EXTRA_CALL_SUBJECT));
     }
 
+    @SmallTest
+    @Test
+    public void testSanitizedExtrasReusedUntilExtrasChange() {
+        mCall.putConnectionServiceExtras(getSomeExtras());
+        ParcelableCall first = toParcelableCallForNonSystemDialer();
+        ParcelableCall second = toParcelableCallForNonSystemDialer();
+        assertSame(first.getExtras(), second.getExtras());
+
+        Bundle moreExtras = new Bundle();
+        moreExtras.putString(Connection.EXTRA_ANSWERING_DROPS_FG_CALL_APP_NAME, "Foo");
+        mCall.putConnectionServiceExtras(moreExtras);
+        ParcelableCall third = toParcelableCallForNonSystemDialer();
+        assertNotSame(first.getExtras(), third.getExtras());
+        assertFalse(first.getExtras().containsKey(
+                Connection.EXTRA_ANSWERING_DROPS_FG_CALL_APP_NAME));
+        assertTrue(third.getExtras().containsKey(
+                Connection.EXTRA_ANSWERING_DROPS_FG_CALL_APP_NAME));
+        assertFalse(third.getExtras().containsKey("SomeExtra"));
+    }
+
     @SmallTest
     @Test
     public void testParcelForSystemCallScreening() {
@@ -194,6 +216,15 @@ public class ParcelableCallUtilsTest extends TelecomTestCase {
         assertEquals(connectionVerificationStatus, call.getCallerNumberVerificationStatus());
     }
 
+    private ParcelableCall toParcelableCallForNonSystemDialer() {
+        return ParcelableCallUtils.toParcelableCall(mCall,
+                false /* includevideoProvider */,
+                null /* phoneAccountRegistrar */,
+                false /* supportsExternalCalls */,
+                false /* includeRttCall */,
+                false /* isForSystemDialer */);
+    }
+
     private Bundle getSomeExtras() {
         Bundle extras = new Bundle();
         extras.putString(Connection.EXTRA_SIP_INVITE, "scary data");
@@ -16,6 +16,7 @@
 
 package com.android.server.telecom.tests;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -39,6 +40,7 @@ import static org.mockito.Mockito.when;
 import android.annotation.Nullable;
 import android.content.ComponentName;
 import android.content.Context;
+import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.BitmapFactory;
@@ -71,6 +73,7 @@ import com.android.server.telecom.AppLabelProxy;
 import com.android.server.telecom.DefaultDialerCache;
 import com.android.server.telecom.PhoneAccountRegistrar;
 import com.android.server.telecom.PhoneAccountRegistrar.DefaultPhoneAccountHandle;
+import com.android.server.telecom.PhoneAccountStateFile;
 import com.android.server.telecom.TelecomSystem;
 
 import org.junit.After;
@@ -89,8 +92,11 @@ import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -108,6 +114,7 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
             PhoneAccountRegistrar.MAX_PHONE_ACCOUNT_FIELD_CHAR_LIMIT + 1;
     private static final String INVALID_STR = "a".repeat(INVALID_CHAR_LIMIT_COUNT);
     private static final String FILE_NAME = "phone-account-registrar-test-1223.xml";
+    private static final String BINARY_FILE_NAME = "phone-account-registrar-test-1223.pb";
     private static final String TEST_LABEL = "right";
     private static final String TEST_ID = "123";
     private final String PACKAGE_1 = "PACKAGE_1";
@@ -133,6 +140,10 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
                 mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir(),
                 FILE_NAME)
                 .delete();
+        new File(
+                mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir(),
+                BINARY_FILE_NAME)
+                .delete();
         when(mDefaultDialerCache.getDefaultDialerApplication(anyInt()))
                 .thenReturn("com.android.dialer");
         when(mAppLabelProxy.getAppLabel(anyString(), any()))
@@ -148,11 +159,16 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
     @Override
     @After
     public void tearDown() throws Exception {
+        mRegistrar.getStateFile().delete();
         mRegistrar = null;
         new File(
                 mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir(),
                 FILE_NAME)
                 .delete();
+        new File(
+                mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir(),
+                BINARY_FILE_NAME + PhoneAccountStateFile.UNREADABLE_FILE_SUFFIX)
+                .delete();
         super.tearDown();
     }
 
@@ -423,6 +439,106 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
         assertStateEquals(input, result);
     }
 
+    @MediumTest
+    @Test
+    public void testBinaryState() throws Exception {
+        PhoneAccountRegistrar.State input = makeQuickState();
+        PhoneAccountStateFile stateFile = mRegistrar.getStateFile();
+        stateFile.writeNow(input);
+        PhoneAccountRegistrar.State result = stateFile.read(mTelephonyFeatureFlags);
+        assertStateEquals(input, result);
+        // All three accounts use the same icon, which is stored once.
+        assertEquals(1, stateFile.getIconDir().list().length);
+    }
+
+    @MediumTest
+    @Test
+    public void testMigratesXmlStateToBinary() throws Exception {
+        PhoneAccountRegistrar.State input = makeQuickState();
+        File filesDir =
+                mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir();
+        File xmlFile = new File(filesDir, FILE_NAME);
+        try (OutputStream os = new FileOutputStream(xmlFile)) {
+            os.write(toXml(input, PhoneAccountRegistrar.sStateXml, mContext,
+                    mTelephonyFeatureFlags));
+        }
+
+        PhoneAccountRegistrar registrar = new PhoneAccountRegistrar(
+                mComponentContextFixture.getTestDouble().getApplicationContext(), mLock, FILE_NAME,
+                mDefaultDialerCache, mAppLabelProxy, mTelephonyFeatureFlags, mFeatureFlags);
+
+        for (PhoneAccount account : input.accounts) {
+            assertNotNull(registrar.getPhoneAccountUnchecked(account.getAccountHandle()));
+        }
+        assertTrue(new File(filesDir, BINARY_FILE_NAME).exists());
+        assertStateEquals(input, registrar.getStateFile().read(mTelephonyFeatureFlags));
+        // The XML file is kept until the binary state has been read back.
+        assertTrue(xmlFile.exists());
+
+        createRegistrar();
+        assertFalse(xmlFile.exists());
+    }
+
+    /**
+     * Verifies that an unreadable binary state falls back to the XML file kept after the
+     * migration, and is preserved rather than overwritten.
+     */
+    @MediumTest
+    @Test
+    public void testUnreadableBinaryStateFallsBackToXml() throws Exception {
+        PhoneAccountRegistrar.State input = makeQuickState();
+        File filesDir =
+                mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir();
+        File xmlFile = new File(filesDir, FILE_NAME);
+        try (OutputStream os = new FileOutputStream(xmlFile)) {
+            os.write(toXml(input, PhoneAccountRegistrar.sStateXml, mContext,
+                    mTelephonyFeatureFlags));
+        }
+        createRegistrar();
+        byte[] unreadable = "not a protobuf".getBytes(StandardCharsets.UTF_8);
+        try (OutputStream os = new FileOutputStream(new File(filesDir, BINARY_FILE_NAME))) {
+            os.write(unreadable);
+        }
+
+        PhoneAccountRegistrar registrar = createRegistrar();
+
+        for (PhoneAccount account : input.accounts) {
+            assertNotNull(registrar.getPhoneAccountUnchecked(account.getAccountHandle()));
+        }
+        assertStateEquals(input, registrar.getStateFile().read(mTelephonyFeatureFlags));
+        File preserved = new File(filesDir,
+                BINARY_FILE_NAME + PhoneAccountStateFile.UNREADABLE_FILE_SUFFIX);
+        assertArrayEquals(unreadable, Files.readAllBytes(preserved.toPath()));
+    }
+
+    /**
+     * Verifies that an unreadable binary state with no XML file to fall back to is preserved
+     * rather than overwritten by the next write.
+     */
+    @MediumTest
+    @Test
+    public void testUnreadableBinaryStateNotOverwritten() throws Exception {
+        File filesDir =
+                mComponentContextFixture.getTestDouble().getApplicationContext().getFilesDir();
+        byte[] unreadable = "not a protobuf".getBytes(StandardCharsets.UTF_8);
+        try (OutputStream os = new FileOutputStream(new File(filesDir, BINARY_FILE_NAME))) {
+            os.write(unreadable);
+        }
+
+        PhoneAccountRegistrar registrar = createRegistrar();
+        registrar.getStateFile().writeNow(makeQuickState());
+
+        File preserved = new File(filesDir,
+                BINARY_FILE_NAME + PhoneAccountStateFile.UNREADABLE_FILE_SUFFIX);
+        assertArrayEquals(unreadable, Files.readAllBytes(preserved.toPath()));
+    }
+
+    private PhoneAccountRegistrar createRegistrar() {
+        return new PhoneAccountRegistrar(
+                mComponentContextFixture.getTestDouble().getApplicationContext(), mLock, FILE_NAME,
+                mDefaultDialerCache, mAppLabelProxy, mTelephonyFeatureFlags, mFeatureFlags);
+    }
+
     private void registerAndEnableAccount(PhoneAccount account) {
         mRegistrar.registerPhoneAccount(account);
         mRegistrar.enablePhoneAccount(account.getAccountHandle(), true);
@@ -490,6 +606,8 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
         // remove the ConnectionService so that the account cannot be resolved anymore
         mComponentContextFixture.removeConnectionService(componentName,
                 Mockito.mock(IConnectionService.class));
+        sendPackageChangedBroadcast(Intent.ACTION_PACKAGE_REMOVED,
+                componentName.getPackageName());
         // verify the account is unregistered when fetching the phone accounts for the package
         assertEquals(1,
                 mRegistrar.getRegisteredAccountsForPackageName(componentName.getPackageName(),
@@ -501,6 +619,70 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
                         USER_HANDLE_10).size());
     }
 
+    /**
+     * Verify that resolving a {@link android.telecom.ConnectionService} is cached until the
+     * package changes.
+     */
+    @SmallTest
+    @Test
+    public void testComponentResolutionCachedUntilPackageChanges() throws Exception {
+        ComponentName componentName = makeQuickConnectionServiceComponentName();
+        PhoneAccount account = makeQuickAccountBuilder("0", 0, USER_HANDLE_10).build();
+        mComponentContextFixture.addConnectionService(componentName,
+                Mockito.mock(IConnectionService.class));
+        registerAndEnableAccount(account);
+        PackageManager pm = mContext.getPackageManager();
+        clearInvocations(pm);
+
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, never()).queryIntentServicesAsUser(any(Intent.class), anyInt(), anyInt());
+        assertTrue(mRegistrar.getComponentResolutionCache().getHitCount() >= 2);
+
+        // A change to an unrelated package keeps the cached resolution.
+        sendPackageChangedBroadcast(Intent.ACTION_PACKAGE_CHANGED, "com.example.unrelated");
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, never()).queryIntentServicesAsUser(any(Intent.class), anyInt(), anyInt());
+
+        // A change to the package drops it.
+        sendPackageChangedBroadcast(Intent.ACTION_PACKAGE_CHANGED,
+                componentName.getPackageName());
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, times(1)).queryIntentServicesAsUser(any(Intent.class), anyInt(), anyInt());
+    }
+
+    /**
+     * Verify that a {@link android.telecom.ConnectionService} is resolved again once its user
+     * unlocks, since components which are not direct boot aware do not resolve before then.
+     */
+    @SmallTest
+    @Test
+    public void testComponentResolutionDroppedWhenUserUnlocks() throws Exception {
+        ComponentName componentName = makeQuickConnectionServiceComponentName();
+        PhoneAccount account = makeQuickAccountBuilder("0", 0, USER_HANDLE_10).build();
+        mComponentContextFixture.addConnectionService(componentName,
+                Mockito.mock(IConnectionService.class));
+        registerAndEnableAccount(account);
+        PackageManager pm = mContext.getPackageManager();
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        clearInvocations(pm);
+
+        // Another user unlocking keeps the cached resolution.
+        sendUserStateBroadcast(Intent.ACTION_USER_UNLOCKED, USER_HANDLE_10.getIdentifier() + 1);
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, never()).queryIntentServicesAsUser(any(Intent.class), anyInt(), anyInt());
+
+        sendUserStateBroadcast(Intent.ACTION_USER_UNLOCKED, USER_HANDLE_10.getIdentifier());
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, times(1)).queryIntentServicesAsUser(any(Intent.class), anyInt(),
+                eq(USER_HANDLE_10.getIdentifier()));
+
+        sendUserStateBroadcast(Intent.ACTION_USER_SWITCHED, USER_HANDLE_10.getIdentifier());
+        assertTrue(mRegistrar.phoneAccountRequiresBindPermission(account.getAccountHandle()));
+        verify(pm, times(2)).queryIntentServicesAsUser(any(Intent.class), anyInt(),
+                eq(USER_HANDLE_10.getIdentifier()));
+    }
+
     /**
      * Verify that if a client adds both the {@link
      * PhoneAccount#CAPABILITY_SUPPORTS_TRANSACTIONAL_OPERATIONS} capability AND is backed by a
@@ -2338,4 +2520,14 @@ public class PhoneAccountRegistrarTest extends TelecomTestCase {
                         "testGroup"));
         return s;
     }
+
+    private void sendPackageChangedBroadcast(String action, String packageName) {
+        Intent intent = new Intent(action, Uri.fromParts("package", packageName, null));
+        mRegistrar.getPackageChangeReceiver().onReceive(mContext, intent);
+    }
+
+    private void sendUserStateBroadcast(String action, int userId) {
+        Intent intent = new Intent(action).putExtra(Intent.EXTRA_USER_HANDLE, userId);
+        mRegistrar.getUserStateReceiver().onReceive(mContext, intent);
+    }
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.PhoneAccountStore;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class PhoneAccountStoreTest extends TelecomTestCase {
+    private static final String TAG = PhoneAccountStoreTest.class.getSimpleName();
+    private static final String PACKAGE_1 = "com.android.server.telecom.tests.one";
+    private static final String PACKAGE_2 = "com.android.server.telecom.tests.two";
+    private static final UserHandle USER_0 = UserHandle.of(0);
+    private static final UserHandle USER_10 = UserHandle.of(10);
+    private static final int BENCHMARK_ITERATIONS = 1000;
+
+    @SmallTest
+    @Test
+    public void testQueryIntersectsIndexesInOrder() {
+        PhoneAccountStore store = new PhoneAccountStore();
+        PhoneAccount sipSelfManaged = makeAccount(PACKAGE_1, "a", USER_0,
+                PhoneAccount.CAPABILITY_SELF_MANAGED, PhoneAccount.SCHEME_SIP);
+        PhoneAccount telProvider = makeAccount(PACKAGE_2, "b", USER_0,
+                PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_TEL);
+        PhoneAccount telSelfManaged = makeAccount(PACKAGE_1, "c", USER_10,
+                PhoneAccount.CAPABILITY_SELF_MANAGED | PhoneAccount.CAPABILITY_VIDEO_CALLING,
+                PhoneAccount.SCHEME_TEL);
+        store.add(sipSelfManaged);
+        store.add(telProvider);
+        store.add(telSelfManaged);
+
+        assertEquals(Arrays.asList(sipSelfManaged, telSelfManaged),
+                store.query(PhoneAccount.CAPABILITY_SELF_MANAGED, null, PACKAGE_1, null));
+        assertEquals(Arrays.asList(telProvider, telSelfManaged),
+                store.query(0, PhoneAccount.SCHEME_TEL, null, null));
+        assertEquals(Arrays.asList(telSelfManaged),
+                store.query(PhoneAccount.CAPABILITY_SELF_MANAGED, PhoneAccount.SCHEME_TEL, null,
+                        USER_10));
+        assertTrue(store.query(PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_SIP,
+                null, null).isEmpty());
+        assertEquals(3, store.query(0, null, null, null).size());
+    }
+
+    @SmallTest
+    @Test
+    public void testRemoveAndSortRebuildIndexes() {
+        PhoneAccountStore store = new PhoneAccountStore();
+        PhoneAccount first = makeAccount(PACKAGE_1, "a", USER_0,
+                PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_TEL);
+        PhoneAccount second = makeAccount(PACKAGE_1, "b", USER_0,
+                PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_TEL);
+        PhoneAccount third = makeAccount(PACKAGE_2, "c", USER_0,
+                PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_TEL);
+        store.add(first);
+        store.add(second);
+        store.add(third);
+
+        assertTrue(store.remove(first));
+        assertFalse(store.remove(first));
+        assertNull(store.getByHandle(first.getAccountHandle()));
+        assertSame(second, store.getByHandle(second.getAccountHandle()));
+        assertEquals(Arrays.asList(second), store.query(0, PhoneAccount.SCHEME_TEL, PACKAGE_1,
+                null));
+
+        store.sort((a, b) -> b.getAccountHandle().getId().compareTo(
+                a.getAccountHandle().getId()));
+        assertEquals(Arrays.asList(third, second), store.query(0, PhoneAccount.SCHEME_TEL, null,
+                null));
+        assertSame(third, store.get(0));
+
+        assertTrue(store.removeAll(Arrays.asList(second, third)));
+        assertTrue(store.isEmpty());
+        assertTrue(store.query(0, PhoneAccount.SCHEME_TEL, null, null).isEmpty());
+    }
+
+    /**
+     * Compares indexed queries against a linear scan over 10, 100 and 1000 registered accounts.
+     * Timings are logged rather than asserted on since they depend on the device.
+     */
+    @LargeTest
+    @Test
+    public void testBenchmarkIndexedQueries() {
+        for (int numAccounts : new int[] {10, 100, 1000}) {
+            PhoneAccountStore store = new PhoneAccountStore();
+            List<PhoneAccount> list = new ArrayList<>(numAccounts);
+            for (int i = 0; i < numAccounts; i++) {
+                // Every tenth account is a self-managed SIP account for PACKAGE_1.
+                PhoneAccount account = i % 10 == 0
+                        ? makeAccount(PACKAGE_1, "id" + i, USER_0,
+                                PhoneAccount.CAPABILITY_SELF_MANAGED, PhoneAccount.SCHEME_SIP)
+                        : makeAccount(PACKAGE_2 + (i % 7), "id" + i, USER_0,
+                                PhoneAccount.CAPABILITY_CALL_PROVIDER, PhoneAccount.SCHEME_TEL);
+                store.add(account);
+                list.add(account);
+            }
+
+            List<PhoneAccount> indexed = null;
+            long startNanos = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                indexed = store.query(PhoneAccount.CAPABILITY_SELF_MANAGED,
+                        PhoneAccount.SCHEME_SIP, PACKAGE_1, null);
+            }
+            long indexedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+
+            List<PhoneAccount> scanned = null;
+            startNanos = SystemClock.elapsedRealtimeNanos();
+            for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                scanned = linearScan(list, PhoneAccount.CAPABILITY_SELF_MANAGED,
+                        PhoneAccount.SCHEME_SIP, PACKAGE_1);
+            }
+            long scannedNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+
+            assertEquals(scanned, indexed);
+            Log.i(TAG, "accounts=" + numAccounts
+                    + " indexedNsPerQuery=" + indexedNanos / BENCHMARK_ITERATIONS
+                    + " scanNsPerQuery=" + scannedNanos / BENCHMARK_ITERATIONS);
+        }
+    }
+
+    private static List<PhoneAccount> linearScan(List<PhoneAccount> accounts, int capabilities,
+            String uriScheme, String packageName) {
+        List<PhoneAccount> result = new ArrayList<>();
+        for (PhoneAccount account : accounts) {
+            if (account.hasCapabilities(capabilities) && account.supportsUriScheme(uriScheme)
+                    && packageName.equals(
+                            account.getAccountHandle().getComponentName().getPackageName())) {
+                result.add(account);
+            }
+        }
+        return result;
+    }
+
+    private static PhoneAccount makeAccount(String packageName, String id, UserHandle userHandle,
+            int capabilities, String scheme) {
+        PhoneAccountHandle handle = new PhoneAccountHandle(
+                new ComponentName(packageName, packageName + ".ConnectionService"), id,
+                userHandle);
+        return PhoneAccount.builder(handle, id)
+                .setCapabilities(capabilities)
+                .addSupportedUriScheme(scheme)
+                .build();
+    }
+}
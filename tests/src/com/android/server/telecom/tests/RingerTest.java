@@ -591,6 +591,28 @@ public class RingerTest extends TelecomTestCase {
         verify(mockVibrator).vibrate(eq(URI_VIBRATION_EFFECT), any(VibrationAttributes.class));
     }
 
+    @SmallTest
+    @Test
+    public void testVibrationEffectForRingtoneCached() throws Exception {
+        mComponentContextFixture.putIntegerResource(R.integer.ringtone_vibration_cache_size, 8);
+        createRingerUnderTest(); // Needed after mock the config.
+        Ringtone mockRingtone = ensureRingtoneMocked();
+        when(mockAudioManager.getRingerMode()).thenReturn(AudioManager.RINGER_MODE_NORMAL);
+        enableVibrationWhenRinging();
+
+        assertTrue(startRingingAndWaitForAsync(mockCall1, false));
+        mRingerUnderTest.stopRinging();
+        mRingCompletionFuture = new CompletableFuture<>();
+        mRingerUnderTest.setBlockOnRingingFuture(mRingCompletionFuture);
+        assertTrue(startRingingAndWaitForAsync(mockCall2, false));
+
+        // The effect of the ringtone is only looked up for the first call.
+        verify(spyVibrationEffectProxy).get(eq(FAKE_RINGTONE_URI), any(Context.class));
+        verify(mockVibrator, times(2)).vibrate(eq(URI_VIBRATION_EFFECT),
+                any(VibrationAttributes.class));
+        verify(mockRingtone, times(2)).play();
+    }
+
     @SmallTest
     @Test
     public void testRingAndNoVibrate() throws Exception {
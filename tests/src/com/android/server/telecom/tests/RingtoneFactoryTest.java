@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.Ringtone;
+import android.media.RingtoneManager;
+import android.media.VolumeShaper;
+import android.net.Uri;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.dx.mockito.inline.extended.ExtendedMockito;
+import com.android.server.telecom.CallsManager;
+import com.android.server.telecom.R;
+import com.android.server.telecom.RingtoneFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.MockitoSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class RingtoneFactoryTest extends TelecomTestCase {
+    private static final long TEST_TIMEOUT = 5000L;
+    private static final Uri CONTACT_RINGTONE_URI = Uri.parse("content://media/ringtone/1");
+    private static final Uri OTHER_RINGTONE_URI = Uri.parse("content://media/ringtone/2");
+    private static final Uri DEFAULT_RINGTONE_URI = Uri.parse("content://media/ringtone/3");
+    private static final Uri NEW_DEFAULT_RINGTONE_URI = Uri.parse("content://media/ringtone/4");
+
+    private final List<Uri> mCreatedUris = new ArrayList<>();
+    private final List<Ringtone> mCreatedRingtones = new ArrayList<>();
+    private MockitoSession mMockitoSession;
+    private Context mUserContext;
+    private RingtoneFactory mRingtoneFactory;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        mMockitoSession = ExtendedMockito.mockitoSession().mockStatic(RingtoneManager.class)
+                .startMocking();
+        ExtendedMockito.doAnswer(invocation -> {
+            Ringtone ringtone = mock(Ringtone.class);
+            synchronized (mCreatedRingtones) {
+                mCreatedUris.add(invocation.getArgument(1));
+                mCreatedRingtones.add(ringtone);
+            }
+            return ringtone;
+        }).when(() -> RingtoneManager.getRingtone(any(Context.class), any(Uri.class),
+                nullable(VolumeShaper.Configuration.class), any(AudioAttributes.class)));
+        ExtendedMockito.doReturn(NEW_DEFAULT_RINGTONE_URI).when(() ->
+                RingtoneManager.getActualDefaultRingtoneUri(any(Context.class), anyInt()));
+
+        mUserContext = mock(Context.class);
+        when(mUserContext.getUserId()).thenReturn(0);
+        mComponentContextFixture.putBooleanResource(R.bool.prepare_ringtones_ahead, true);
+        doReturn(mock(ContentResolver.class)).when(mContext).getContentResolver();
+        mRingtoneFactory = new RingtoneFactory(mock(CallsManager.class), mContext,
+                mFeatureFlags);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        mMockitoSession.finishMocking();
+        super.tearDown();
+    }
+
+    /**
+     * Verifies that the ringtone prepared after a call is handed out to the next call with the
+     * same ringtone.
+     */
+    @SmallTest
+    @Test
+    public void testPreparedRingtoneReusedOnMatch() {
+        createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */);
+        Ringtone prepared = getCreatedRingtone(1);
+
+        assertSame(prepared, createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */));
+        // Only the ringtone for the call after that was created since.
+        assertEquals(3, getCreatedCount());
+    }
+
+    /**
+     * Verifies that a call with another ringtone gets a new ringtone, and that the ringtone
+     * prepared before is released once replaced.
+     */
+    @SmallTest
+    @Test
+    public void testPreparedRingtoneDroppedOnMismatch() {
+        createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */);
+        Ringtone prepared = getCreatedRingtone(1);
+
+        Ringtone ringtone = createRingtone(OTHER_RINGTONE_URI, false /* isDefault */);
+
+        assertNotSame(prepared, ringtone);
+        assertEquals(OTHER_RINGTONE_URI, mCreatedUris.get(3));
+        verify(prepared).stop();
+    }
+
+    /**
+     * Verifies that invalidating the cache releases a prepared contact ringtone, so the next call
+     * creates its ringtone again.
+     */
+    @SmallTest
+    @Test
+    public void testPreparedRingtoneDroppedOnInvalidation() {
+        createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */);
+        Ringtone prepared = getCreatedRingtone(1);
+
+        mRingtoneFactory.invalidateCache();
+        waitForHandlerAction(mRingtoneFactory.getHandler(), TEST_TIMEOUT);
+
+        verify(prepared).stop();
+        assertEquals(2, getCreatedCount());
+        assertNotSame(prepared, createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */));
+    }
+
+    /**
+     * Verifies that invalidating the cache prepares the default ringtone again for the new
+     * default.
+     */
+    @SmallTest
+    @Test
+    public void testDefaultRingtonePreparedAgainOnInvalidation() {
+        createRingtone(DEFAULT_RINGTONE_URI, true /* isDefault */);
+        Ringtone prepared = getCreatedRingtone(1);
+
+        mRingtoneFactory.invalidateCache();
+        waitForHandlerAction(mRingtoneFactory.getHandler(), TEST_TIMEOUT);
+
+        verify(prepared).stop();
+        assertEquals(NEW_DEFAULT_RINGTONE_URI, mCreatedUris.get(2));
+        Ringtone preparedAgain = getCreatedRingtone(2);
+        assertSame(preparedAgain, createRingtone(NEW_DEFAULT_RINGTONE_URI, true /* isDefault */));
+    }
+
+    /**
+     * Verifies that a user switch releases the prepared ringtone.
+     */
+    @SmallTest
+    @Test
+    public void testPreparedRingtoneReleasedOnUserSwitch() {
+        createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */);
+        Ringtone prepared = getCreatedRingtone(1);
+
+        mRingtoneFactory.onUserSwitch();
+
+        verify(prepared).stop();
+        assertNotSame(prepared, createRingtone(CONTACT_RINGTONE_URI, false /* isDefault */));
+    }
+
+    /**
+     * Creates a ringtone for a call, and waits for the ringtone of the next call to be prepared.
+     */
+    private Ringtone createRingtone(Uri uri, boolean isDefault) {
+        Ringtone ringtone = mRingtoneFactory.createRingtone(mUserContext, uri, isDefault,
+                null /* volumeShaperConfig */, false /* hapticChannelsMuted */,
+                new AudioAttributes.Builder().build());
+        waitForHandlerAction(mRingtoneFactory.getHandler(), TEST_TIMEOUT);
+        return ringtone;
+    }
+
+    private Ringtone getCreatedRingtone(int index) {
+        synchronized (mCreatedRingtones) {
+            return mCreatedRingtones.get(index);
+        }
+    }
+
+    private int getCreatedCount() {
+        synchronized (mCreatedRingtones) {
+            return mCreatedRingtones.size();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.UserHandle;
+import android.telecom.InCallService;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.DefaultDialerCache;
+import com.android.server.telecom.ServiceComponentRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+@RunWith(JUnit4.class)
+public class ServiceComponentRegistryTest extends TelecomTestCase {
+    private static final int USER_A = 0;
+    private static final int USER_B = 10;
+    private static final Intent IN_CALL_SERVICE_INTENT =
+            new Intent(InCallService.SERVICE_INTERFACE).setPackage("com.foo");
+
+    @Mock Context mMockContext;
+    @Mock PackageManager mMockPackageManager;
+    @Mock DefaultDialerCache mMockDefaultDialerCache;
+
+    private ServiceComponentRegistry mRegistry;
+    private IntConsumer mPackageChangeListener;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        when(mMockContext.getPackageManager()).thenReturn(mMockPackageManager);
+        when(mMockPackageManager.queryIntentServicesAsUser(any(Intent.class), anyInt(), anyInt()))
+                .thenReturn(List.of(new ResolveInfo()));
+        mRegistry = new ServiceComponentRegistry(mMockContext, mMockDefaultDialerCache);
+
+        ArgumentCaptor<IntConsumer> listenerCaptor = ArgumentCaptor.forClass(IntConsumer.class);
+        verify(mMockDefaultDialerCache).addPackageChangeListener(listenerCaptor.capture());
+        mPackageChangeListener = listenerCaptor.getValue();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        super.tearDown();
+    }
+
+    @SmallTest
+    @Test
+    public void testRepeatedQueriesServedFromMemory() {
+        List<ResolveInfo> first = mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT,
+                PackageManager.GET_META_DATA, USER_A);
+        List<ResolveInfo> second = mRegistry.queryIntentServicesAsUser(
+                new Intent(IN_CALL_SERVICE_INTENT), PackageManager.GET_META_DATA, USER_A);
+
+        assertEquals(first, second);
+        verify(mMockPackageManager, times(1)).queryIntentServicesAsUser(any(Intent.class),
+                eq(PackageManager.GET_META_DATA), eq(USER_A));
+
+        // Different flags are a different query.
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        verify(mMockPackageManager, times(1)).queryIntentServicesAsUser(any(Intent.class),
+                eq(0), eq(USER_A));
+    }
+
+    @SmallTest
+    @Test
+    public void testPackageChangeDiscardsOnlyThatUser() {
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_B);
+
+        mPackageChangeListener.accept(USER_B);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_B);
+        verify(mMockPackageManager, times(1)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_A));
+        verify(mMockPackageManager, times(2)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_B));
+
+        mPackageChangeListener.accept(UserHandle.USER_ALL);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        verify(mMockPackageManager, times(2)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_A));
+    }
+
+    @SmallTest
+    @Test
+    public void testUserUnlockDiscardsThatUser() {
+        // Services which are not direct boot aware are missing from queries made before unlock.
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_B);
+
+        sendUserStateBroadcast(Intent.ACTION_USER_UNLOCKED, USER_B);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_B);
+        verify(mMockPackageManager, times(1)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_A));
+        verify(mMockPackageManager, times(2)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_B));
+
+        sendUserStateBroadcast(Intent.ACTION_USER_SWITCHED, USER_A);
+        mRegistry.queryIntentServicesAsUser(IN_CALL_SERVICE_INTENT, 0, USER_A);
+        verify(mMockPackageManager, times(2)).queryIntentServicesAsUser(any(Intent.class),
+                anyInt(), eq(USER_A));
+    }
+
+    private void sendUserStateBroadcast(String action, int userId) {
+        Intent intent = new Intent(action).putExtra(Intent.EXTRA_USER_HANDLE, userId);
+        mRegistry.getUserStateReceiver().onReceive(mMockContext, intent);
+    }
+}
@@ -321,14 +321,35 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             apiStats.log(event);
             waitForHandlerAction(apiStats, TEST_TIMEOUT);
 
-            verify(apiStats, times(i + 1)).onAggregate();
             verify(apiStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            apiStats.flush();
+            verify(apiStats, times(i + 1)).onAggregate();
             assertEquals(apiStats.mPulledAtoms.telecomApiStats.length, 1);
             verifyMessageForApiStats(apiStats.mPulledAtoms.telecomApiStats[0], VALUE_API_ID,
                     VALUE_UID, VALUE_API_RESULT, i + 1);
         }
     }
 
+    @Test
+    public void testApiStatsLogDefersAggregationUntilPull() throws Exception {
+        ApiStats apiStats = spy(new ApiStats(mSpyContext, mLooper, false));
+        ApiStats.ApiEvent event = new ApiStats.ApiEvent(VALUE_API_ID, VALUE_UID, VALUE_API_RESULT);
+        final List<StatsEvent> data = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            apiStats.log(event);
+        }
+        waitForHandlerAction(apiStats, TEST_TIMEOUT);
+
+        // Logging only bumps the counters; the atoms are not rebuilt for every event.
+        verify(apiStats, never()).onAggregate();
+        assertEquals(apiStats.mPulledAtoms.telecomApiStats.length, 0);
+
+        assertEquals(StatsManager.PULL_SUCCESS, apiStats.onPull(data));
+        assertEquals(data.size(), 1);
+        assertEquals(apiStats.mPulledAtoms.telecomApiStats.length, 0);
+    }
+
     @Test
     public void testApiStatsLogEvent() throws Exception {
         final int[] apis = {
@@ -409,8 +430,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             apiStats.log(event);
             waitForHandlerAction(apiStats, TEST_TIMEOUT);
 
-            verify(apiStats, times(i + 1)).onAggregate();
             verify(apiStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            apiStats.flush();
+            verify(apiStats, times(i + 1)).onAggregate();
             assertEquals(apiStats.mPulledAtoms.telecomApiStats.length, eventMap.size());
             assertTrue(hasMessageForApiStats(apiStats.mPulledAtoms.telecomApiStats,
                     api, uid, result, eventMap.get(event)));
@@ -425,8 +447,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
                 VALUE_AUDIO_ROUTE_LATENCY);
         waitForHandlerAction(audioRouteStats, TEST_TIMEOUT);
 
-        verify(audioRouteStats, times(1)).onAggregate();
         verify(audioRouteStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(1)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 VALUE_AUDIO_ROUTE_TYPE1, VALUE_AUDIO_ROUTE_TYPE2, true, false, 1,
@@ -436,8 +459,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
                 VALUE_AUDIO_ROUTE_LATENCY);
         waitForHandlerAction(audioRouteStats, TEST_TIMEOUT);
 
-        verify(audioRouteStats, times(2)).onAggregate();
         verify(audioRouteStats, times(2)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(2)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 VALUE_AUDIO_ROUTE_TYPE1, VALUE_AUDIO_ROUTE_TYPE2, true, false, 2,
@@ -463,8 +487,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
         waitForHandlerActionDelayed(
                 audioRouteStats, TEST_TIMEOUT, AudioRouteStats.THRESHOLD_REVERT_MS);
 
-        verify(audioRouteStats, times(1)).onAggregate();
         verify(audioRouteStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(1)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 CALL_AUDIO_ROUTE_STATS__ROUTE_SOURCE__CALL_AUDIO_EARPIECE,
@@ -500,8 +525,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
         audioRouteStats.onRouteEnter(mMockPendingAudioRoute);
         waitForHandlerAction(audioRouteStats, delay);
 
-        verify(audioRouteStats, times(1)).onAggregate();
         verify(audioRouteStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(1)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 CALL_AUDIO_ROUTE_STATS__ROUTE_SOURCE__CALL_AUDIO_EARPIECE,
@@ -537,8 +563,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
         audioRouteStats.onRouteEnter(mMockPendingAudioRoute);
         waitForHandlerAction(audioRouteStats, delay);
 
-        verify(audioRouteStats, times(1)).onAggregate();
         verify(audioRouteStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(1)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 CALL_AUDIO_ROUTE_STATS__ROUTE_SOURCE__CALL_AUDIO_EARPIECE,
@@ -574,8 +601,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
         audioRouteStats.onRouteEnter(mMockPendingAudioRoute);
         waitForHandlerAction(audioRouteStats, delay);
 
-        verify(audioRouteStats, times(1)).onAggregate();
         verify(audioRouteStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        audioRouteStats.flush();
+        verify(audioRouteStats, times(1)).onAggregate();
         assertEquals(audioRouteStats.mPulledAtoms.callAudioRouteStats.length, 1);
         verifyMessageForAudioRouteStats(audioRouteStats.mPulledAtoms.callAudioRouteStats[0],
                 CALL_AUDIO_ROUTE_STATS__ROUTE_SOURCE__CALL_AUDIO_EARPIECE,
@@ -622,7 +650,7 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
         waitForHandlerActionDelayed(audioRouteStats, TEST_TIMEOUT, latency);
 
         // Verify that the stats should be saved after exit
-        verify(audioRouteStats, times(1)).onAggregate();
+        verify(audioRouteStats, never()).onAggregate();
         verify(audioRouteStats, times(1)).save(anyInt());
         assertTrue(audioRouteStats.hasMessages(AudioRouteStats.EVENT_REVERT_THRESHOLD_EXPIRED));
     }
@@ -657,8 +685,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
                 VALUE_UID, VALUE_CALL_DURATION);
         waitForHandlerAction(callStats, TEST_TIMEOUT);
 
-        verify(callStats, times(1)).onAggregate();
         verify(callStats, times(1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        callStats.flush();
+        verify(callStats, times(1)).onAggregate();
         assertEquals(callStats.mPulledAtoms.callStats.length, 1);
         verifyMessageForCallStats(callStats.mPulledAtoms.callStats[0], VALUE_CALL_DIRECTION,
                 false, false, true, VALUE_CALL_ACCOUNT_TYPE, VALUE_UID, 1, VALUE_CALL_DURATION);
@@ -667,8 +696,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
                 VALUE_UID, VALUE_CALL_DURATION);
         waitForHandlerAction(callStats, TEST_TIMEOUT);
 
-        verify(callStats, times(2)).onAggregate();
         verify(callStats, times(2)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+        callStats.flush();
+        verify(callStats, times(2)).onAggregate();
         assertEquals(callStats.mPulledAtoms.callStats.length, 1);
         verifyMessageForCallStats(callStats.mPulledAtoms.callStats[0], VALUE_CALL_DIRECTION,
                 false, false, true, VALUE_CALL_ACCOUNT_TYPE, VALUE_UID, 2, VALUE_CALL_DURATION);
@@ -766,8 +796,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             errorStats.log(VALUE_MODULE_ID, VALUE_ERROR_ID);
             waitForHandlerAction(errorStats, TEST_TIMEOUT);
 
-            verify(errorStats, times(i + 1)).onAggregate();
             verify(errorStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            errorStats.flush();
+            verify(errorStats, times(i + 1)).onAggregate();
             assertEquals(errorStats.mPulledAtoms.telecomErrorStats.length, 1);
             verifyMessageForErrorStats(errorStats.mPulledAtoms.telecomErrorStats[0],
                     VALUE_MODULE_ID,
@@ -832,8 +863,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             errorStats.log(module, error);
             waitForHandlerAction(errorStats, DELAY_TOLERANCE);
 
-            verify(errorStats, times(i + 1)).onAggregate();
             verify(errorStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            errorStats.flush();
+            verify(errorStats, times(i + 1)).onAggregate();
             assertEquals(errorStats.mPulledAtoms.telecomErrorStats.length, eventMap.size());
             assertTrue(hasMessageForErrorStats(
                     errorStats.mPulledAtoms.telecomErrorStats, module, error, eventMap.get(key)));
@@ -926,8 +958,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             eventStats.log(event);
             waitForHandlerAction(eventStats, TEST_TIMEOUT);
 
-            verify(eventStats, times(i + 1)).onAggregate();
             verify(eventStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            eventStats.flush();
+            verify(eventStats, times(i + 1)).onAggregate();
             assertEquals(eventStats.mPulledAtoms.telecomEventStats.length, 1);
             verifyMessageForEventStats(eventStats.mPulledAtoms.telecomEventStats[0],
                     VALUE_EVENT_ID, VALUE_UID, VALUE_CAUSE_ID, i + 1);
@@ -968,8 +1001,9 @@ public class TelecomPulledAtomTest extends TelecomTestCase {
             eventStats.log(ce);
             waitForHandlerAction(eventStats, TEST_TIMEOUT);
 
-            verify(eventStats, times(i + 1)).onAggregate();
             verify(eventStats, times(i + 1)).save(eq(DELAY_FOR_PERSISTENT_MILLIS));
+            eventStats.flush();
+            verify(eventStats, times(i + 1)).onAggregate();
             assertEquals(eventStats.mPulledAtoms.telecomEventStats.length, eventMap.size());
             assertTrue(hasMessageForEventStats(eventStats.mPulledAtoms.telecomEventStats,
                     e, uid, cause, eventMap.get(ce)));
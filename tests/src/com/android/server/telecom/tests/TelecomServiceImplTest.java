@@ -87,6 +87,7 @@ import com.android.server.telecom.AnomalyReporterAdapter;
 import com.android.server.telecom.Call;
 import com.android.server.telecom.CallIntentProcessor;
 import com.android.server.telecom.CallState;
+import com.android.server.telecom.CallStateSnapshot;
 import com.android.server.telecom.CallsManager;
 import com.android.server.telecom.DefaultDialerCache;
 import com.android.server.telecom.InCallController;
@@ -187,6 +188,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
     private UserManager mUserManager;
 
     @Mock private CallsManager mFakeCallsManager;
+    @Mock private CallStateSnapshot mCallStateSnapshot;
     @Mock private PhoneAccountRegistrar mFakePhoneAccountRegistrar;
     @Mock private TelecomManager mTelecomManager;
     private CallIntentProcessor.Adapter mCallIntentProcessorAdapter =
@@ -239,6 +241,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
         doReturn(mContext).when(mContext).getApplicationContext();
         doReturn(mContext).when(mContext).createContextAsUser(any(UserHandle.class), anyInt());
         when(mFakeCallsManager.getInCallController()).thenReturn(mInCallController);
+        when(mFakeCallsManager.getCallStateSnapshot()).thenReturn(mCallStateSnapshot);
         doNothing().when(mContext).sendBroadcastAsUser(any(Intent.class), any(UserHandle.class),
                 anyString());
         when(mContext.checkCallingOrSelfPermission(Manifest.permission.INTERACT_ACROSS_USERS))
@@ -2279,7 +2282,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
     @SmallTest
     @Test
     public void testIsInCall() throws Exception {
-        when(mFakeCallsManager.hasOngoingCalls(any(UserHandle.class), anyBoolean()))
+        when(mCallStateSnapshot.hasOngoingCalls(any(UserHandle.class), anyBoolean()))
                 .thenReturn(true);
         assertTrue(mTSIBinder.isInCall(DEFAULT_DIALER_PACKAGE, null));
     }
@@ -2287,7 +2290,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
     @SmallTest
     @Test
     public void testNotIsInCall() throws Exception {
-        when(mFakeCallsManager.hasOngoingCalls(any(UserHandle.class), anyBoolean()))
+        when(mCallStateSnapshot.hasOngoingCalls(any(UserHandle.class), anyBoolean()))
                 .thenReturn(false);
         assertFalse(mTSIBinder.isInCall(DEFAULT_DIALER_PACKAGE, null));
     }
@@ -2303,13 +2306,13 @@ public class TelecomServiceImplTest extends TelecomTestCase {
         } catch (SecurityException e) {
             // desired result
         }
-        verify(mFakeCallsManager, never()).hasOngoingCalls(any(UserHandle.class), anyBoolean());
+        verify(mCallStateSnapshot, never()).hasOngoingCalls(any(UserHandle.class), anyBoolean());
     }
 
     @SmallTest
     @Test
     public void testIsInManagedCall() throws Exception {
-        when(mFakeCallsManager.hasOngoingManagedCalls(any(UserHandle.class), anyBoolean()))
+        when(mCallStateSnapshot.hasOngoingManagedCalls(any(UserHandle.class), anyBoolean()))
                 .thenReturn(true);
         assertTrue(mTSIBinder.isInManagedCall(DEFAULT_DIALER_PACKAGE, null));
     }
@@ -2317,7 +2320,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
     @SmallTest
     @Test
     public void testNotIsInManagedCall() throws Exception {
-        when(mFakeCallsManager.hasOngoingManagedCalls(any(UserHandle.class), anyBoolean()))
+        when(mCallStateSnapshot.hasOngoingManagedCalls(any(UserHandle.class), anyBoolean()))
                 .thenReturn(false);
         assertFalse(mTSIBinder.isInManagedCall(DEFAULT_DIALER_PACKAGE, null));
     }
@@ -2333,7 +2336,7 @@ public class TelecomServiceImplTest extends TelecomTestCase {
         } catch (SecurityException e) {
             // desired result
         }
-        verify(mFakeCallsManager, never()).hasOngoingCalls(any(UserHandle.class), anyBoolean());
+        verify(mCallStateSnapshot, never()).hasOngoingCalls(any(UserHandle.class), anyBoolean());
     }
 
     /**
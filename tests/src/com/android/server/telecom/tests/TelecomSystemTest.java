@@ -114,7 +114,6 @@ import org.mockito.stubbing.Answer;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -413,13 +412,6 @@ public class TelecomSystemTest extends TelecomTestCase{
     public void tearDown() throws Exception {
         if (mTelecomSystem != null && mTelecomSystem.getCallsManager() != null) {
             mTelecomSystem.getCallsManager().waitOnHandlers();
-            LinkedList<HandlerThread> handlerThreads = mTelecomSystem.getCallsManager()
-                    .getGraphHandlerThreads();
-            for (HandlerThread handlerThread : handlerThreads) {
-                handlerThread.quitSafely();
-            }
-            handlerThreads.clear();
-
             VoipCallMonitor vcm = mTelecomSystem.getCallsManager().getVoipCallMonitor();
             if (vcm != null) {
                 vcm.unregisterNotificationListener();
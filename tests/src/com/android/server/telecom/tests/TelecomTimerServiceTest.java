@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.telecom.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.telecom.Call;
+import com.android.server.telecom.TelecomTimerService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JUnit4.class)
+public class TelecomTimerServiceTest extends TelecomTestCase {
+    @Mock private Call mCall1;
+    @Mock private Call mCall2;
+    private TestScheduledExecutorService mTestScheduledExecutorService;
+    private TelecomTimerService mTimerService;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        mTestScheduledExecutorService = new TestScheduledExecutorService();
+        mTimerService = new TelecomTimerService(mTestScheduledExecutorService);
+    }
+
+    @SmallTest
+    @Test
+    public void testTimerFiresAndStopsTracking() {
+        AtomicInteger fired = new AtomicInteger(0);
+        mTimerService.schedule(this, mCall1, "test", fired::incrementAndGet, 100L);
+        assertEquals(1, mTimerService.getNumberOfPendingTimers());
+
+        mTestScheduledExecutorService.advanceTime(101L);
+
+        assertEquals(1, fired.get());
+        assertEquals(0, mTimerService.getNumberOfPendingTimers());
+    }
+
+    @SmallTest
+    @Test
+    public void testCancelTimer() {
+        AtomicInteger fired = new AtomicInteger(0);
+        ScheduledFuture<?> future = mTimerService.schedule(this, mCall1, "test",
+                fired::incrementAndGet, 100L);
+
+        future.cancel(false);
+        mTestScheduledExecutorService.advanceTime(101L);
+
+        assertEquals(0, fired.get());
+        assertEquals(0, mTimerService.getNumberOfPendingTimers());
+        assertEquals(0, mTestScheduledExecutorService.getNumberOfScheduledRunnables());
+    }
+
+    @SmallTest
+    @Test
+    public void testCancelTimersForCall() {
+        AtomicInteger fired1 = new AtomicInteger(0);
+        AtomicInteger fired2 = new AtomicInteger(0);
+        mTimerService.schedule(this, mCall1, "test1", fired1::incrementAndGet, 100L);
+        mTimerService.schedule(this, mCall2, "test2", fired2::incrementAndGet, 200L);
+
+        assertEquals(1, mTimerService.cancelTimersForCall(mCall1));
+        mTestScheduledExecutorService.advanceTime(201L);
+
+        assertEquals(0, fired1.get());
+        assertEquals(1, fired2.get());
+        assertFalse(mTimerService.getNumberOfPendingTimers() > 0);
+        assertTrue(mTimerService.cancelTimersForCall(mCall2) == 0);
+    }
+}
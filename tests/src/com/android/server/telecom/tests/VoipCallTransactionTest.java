@@ -17,8 +17,11 @@
 package com.android.server.telecom.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import android.os.Looper;
+
 import android.os.OutcomeReceiver;
 import android.telecom.CallException;
 
@@ -38,7 +41,9 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
@@ -103,6 +108,20 @@ public class VoipCallTransactionTest extends TelecomTestCase {
         }
     }
 
+    private class TestLaneCallTransaction extends TestVoipCallTransaction {
+        private final String mLaneKey;
+
+        public TestLaneCallTransaction(String name, String laneKey, long sleepTime) {
+            super(name, sleepTime, SUCCESS);
+            mLaneKey = laneKey;
+        }
+
+        @Override
+        public String getLaneKey() {
+            return mLaneKey;
+        }
+    }
+
     @Override
     @Before
     public void setUp() throws Exception {
@@ -382,6 +401,95 @@ public class VoipCallTransactionTest extends TelecomTestCase {
         verifyTransactionsFinished(t1, t2, t3);
     }
 
+    /**
+     * Verifies that transactions for different calls run concurrently, so a slow transaction on
+     * one call does not delay a transaction for another call.
+     */
+    @SmallTest
+    @Test
+    public void testTransactionsInDifferentLanesRunConcurrently()
+            throws ExecutionException, InterruptedException, TimeoutException {
+        TestLaneCallTransaction t1 = new TestLaneCallTransaction("t1", "call1", 1000L);
+        TestLaneCallTransaction t2 = new TestLaneCallTransaction("t2", "call2", 200L);
+        CompletableFuture<CallTransactionResult> resultFuture1 = new CompletableFuture<>();
+        CompletableFuture<CallTransactionResult> resultFuture2 = new CompletableFuture<>();
+        mTransactionManager.addTransaction(t1, resultFuture1::complete);
+        mTransactionManager.addTransaction(t2, resultFuture2::complete);
+        assertEquals(2, mTransactionManager.getActiveTransactionCount());
+        resultFuture1.get(5000L, TimeUnit.MILLISECONDS);
+        resultFuture2.get(5000L, TimeUnit.MILLISECONDS);
+        assertEquals("t2 success;\nt1 success;\n", mLog.toString());
+        verifyTransactionsFinished(t1, t2);
+    }
+
+    /**
+     * Verifies that transactions for the same call are still processed in order.
+     */
+    @SmallTest
+    @Test
+    public void testTransactionsInSameLaneRunInOrder()
+            throws ExecutionException, InterruptedException, TimeoutException {
+        TestLaneCallTransaction t1 = new TestLaneCallTransaction("t1", "call1", 1000L);
+        TestLaneCallTransaction t2 = new TestLaneCallTransaction("t2", "call1", 200L);
+        CompletableFuture<CallTransactionResult> resultFuture = new CompletableFuture<>();
+        mTransactionManager.addTransaction(t1, result -> { });
+        mTransactionManager.addTransaction(t2, resultFuture::complete);
+        assertEquals(1, mTransactionManager.getActiveTransactionCount());
+        assertEquals(1, mTransactionManager.getPendingTransactionCount());
+        resultFuture.get(5000L, TimeUnit.MILLISECONDS);
+        assertEquals("t1 success;\nt2 success;\n", mLog.toString());
+        verifyTransactionsFinished(t1, t2);
+    }
+
+    /**
+     * Verifies that a transaction without a lane waits for all earlier transactions and blocks all
+     * later transactions, regardless of their lane.
+     */
+    @SmallTest
+    @Test
+    public void testBarrierTransactionBlocksOtherLanes()
+            throws ExecutionException, InterruptedException, TimeoutException {
+        TestLaneCallTransaction t1 = new TestLaneCallTransaction("t1", "call1", 500L);
+        TestVoipCallTransaction t2 = new TestVoipCallTransaction("t2", 200L,
+                TestVoipCallTransaction.SUCCESS);
+        TestLaneCallTransaction t3 = new TestLaneCallTransaction("t3", "call2", 100L);
+        CompletableFuture<CallTransactionResult> resultFuture = new CompletableFuture<>();
+        mTransactionManager.addTransaction(t1, result -> { });
+        mTransactionManager.addTransaction(t2, result -> { });
+        mTransactionManager.addTransaction(t3, resultFuture::complete);
+        assertEquals(1, mTransactionManager.getActiveTransactionCount());
+        resultFuture.get(5000L, TimeUnit.MILLISECONDS);
+        assertEquals("t1 success;\nt2 success;\nt3 success;\n", mLog.toString());
+        verifyTransactionsFinished(t1, t2, t3);
+    }
+
+    /**
+     * Verifies that transactions run on the shared pool of loopers rather than each creating its
+     * own thread, and that a finished transaction's handler no longer accepts work.
+     */
+    @SmallTest
+    @Test
+    public void testTransactionsShareExecutorLoopers() {
+        Set<Looper> loopers = new HashSet<>();
+        List<TestVoipCallTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TestVoipCallTransaction t = new TestVoipCallTransaction("t" + i, 0L,
+                    TestVoipCallTransaction.SUCCESS);
+            transactions.add(t);
+            loopers.add(t.getHandler().getLooper());
+        }
+        assertTrue(loopers.size() < transactions.size());
+
+        TestVoipCallTransaction t = transactions.get(0);
+        t.finish(new CallTransactionResult(CallTransactionResult.RESULT_SUCCEED, null));
+        assertFalse(t.getHandler().post(() -> { }));
+        for (TestVoipCallTransaction remaining : transactions) {
+            remaining.finish(new CallTransactionResult(CallTransactionResult.RESULT_SUCCEED,
+                    null));
+        }
+        verifyTransactionsFinished(transactions.toArray(new TestVoipCallTransaction[0]));
+    }
+
     public void verifyTransactionsFinished(TestVoipCallTransaction... transactions) {
         for (TestVoipCallTransaction t : transactions) {
             assertTrue("TestVoipCallTransaction[" + t.mName + "] never called finishTransaction",